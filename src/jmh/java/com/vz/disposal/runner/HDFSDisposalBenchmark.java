@@ -0,0 +1,84 @@
+// Copyright Verizon Media
+// Licensed under the terms of the Apache 2.0 license. Please see LICENSE file in the project root for terms.
+
+package com.vz.disposal.runner;
+
+import com.vz.disposal.config.HDFSConfigEntry;
+import com.vz.disposal.config.HDFSRetentionType;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A whole {@code GLOB} disposal of one entry whose glob matches {@code files} hourly directories, most of them
+ * expired. In a dry run only the listing is filtered and ordered; otherwise every expired path also goes through
+ * the parallel deleter.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Dlog4j.configuration=log4j-jmh.properties"})
+@State(Scope.Benchmark)
+public class HDFSDisposalBenchmark {
+    private static final String CONFIG_PATH = "hdfs://namenode:8020/projects/events/hour=%s";
+
+    @Param({"10000", "100000", "1000000"})
+    public int files;
+
+    @Param({"true", "false"})
+    public boolean dryRun;
+
+    private HDFSDisposal disposal;
+    private HDFSConfigEntry entry;
+
+    @Setup
+    public void setUp() {
+        DateTimeFormatter format = DateTimeFormatter.ofPattern("yyyyMMddHH");
+        ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+        FileStatus[] listing = new FileStatus[files];
+        for (int i = 0; i < files; i++) {
+            ZonedDateTime hour = now.minusHours(i);
+            Path path = new Path(CONFIG_PATH.replace(HDFSDisposal.TIMESTAMP_LOCATOR, format.format(hour)));
+            listing[i] = new FileStatus(0, true, 0, 0, hour.toInstant().toEpochMilli(), path);
+        }
+
+        entry = new HDFSConfigEntry();
+        entry.setPath(CONFIG_PATH);
+        entry.setRetentionType(HDFSRetentionType.PATH_DATE);
+        entry.setDateFormat("yyyyMMddHH");
+        entry.setRetentionDuration(30);
+        entry.setGranularity(ChronoUnit.DAYS);
+        entry.setRecursive(true);
+
+        disposal = new HDFSDisposal(null, dryRun, new SyntheticFileSystem(listing));
+    }
+
+    @TearDown
+    public void tearDown() {
+        disposal.close();
+    }
+
+    @Benchmark
+    public List dispose() {
+        return disposal.dispose(entry);
+    }
+}
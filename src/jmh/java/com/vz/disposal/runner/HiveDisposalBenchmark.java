@@ -0,0 +1,104 @@
+// Copyright Verizon Media
+// Licensed under the terms of the Apache 2.0 license. Please see LICENSE file in the project root for terms.
+
+package com.vz.disposal.runner;
+
+import com.vz.disposal.config.HiveConfigEntry;
+import com.vz.disposal.config.HiveConfigList;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoFactory;
+import org.apache.hive.hcatalog.api.HCatClient;
+import org.apache.hive.hcatalog.api.HCatPartition;
+import org.apache.hive.hcatalog.api.HCatTable;
+import org.apache.hive.hcatalog.common.HCatException;
+import org.apache.hive.hcatalog.data.schema.HCatFieldSchema;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.when;
+
+/**
+ * Listing and selecting the expired partitions of a table with {@code partitions} partitions, hourly under four
+ * regions, from a stub client that hands out the same list every time. A dry run, so nothing is dropped.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx6g", "-Dlog4j.configuration=log4j-jmh.properties"})
+@State(Scope.Benchmark)
+public class HiveDisposalBenchmark {
+    private static final String[] REGIONS = {"us", "eu", "apac", "latam"};
+
+    @Param({"10000", "100000", "1000000"})
+    public int partitions;
+
+    private HiveDisposal disposal;
+    private HiveConfigEntry entry;
+
+    @Setup
+    public void setUp() throws HCatException {
+        HCatTable table = new HCatTable("db", "events")
+                .cols(Collections.singletonList(new HCatFieldSchema("payload", TypeInfoFactory.stringTypeInfo, null)))
+                .partCols(Arrays.asList(
+                        new HCatFieldSchema("dt", TypeInfoFactory.stringTypeInfo, null),
+                        new HCatFieldSchema("region", TypeInfoFactory.stringTypeInfo, null)
+                ));
+        DateTimeFormatter format = DateTimeFormatter.ofPattern("yyyy-MM-dd-HH");
+        ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+        List<HCatPartition> listing = new ArrayList<>(partitions);
+        for (int i = 0; i < partitions; i++) {
+            Map<String, String> spec = new LinkedHashMap<>();
+            spec.put("dt", format.format(now.minusHours(i / REGIONS.length)));
+            spec.put("region", REGIONS[i % REGIONS.length]);
+            listing.add(new HCatPartition(table, spec, null));
+        }
+
+        HCatClient client = Mockito.mock(HCatClient.class);
+        when(client.getPartitions("db", "events")).thenReturn(listing);
+
+        entry = new HiveConfigEntry();
+        entry.setDatabase("db");
+        entry.setTable("events");
+        entry.setPartitionFilterKey("dt");
+        entry.setDateFormat("yyyy-MM-dd-HH");
+        entry.setRetentionDuration(30);
+        entry.setGranularity(ChronoUnit.DAYS);
+
+        HiveConfigList config = new HiveConfigList();
+        config.setEntries(Collections.emptyList());
+        disposal = new HiveDisposal(config, true, client);
+    }
+
+    @TearDown
+    public void tearDown() {
+        disposal.close();
+    }
+
+    @Benchmark
+    public List dispose() {
+        return disposal.dispose(entry);
+    }
+}
@@ -0,0 +1,97 @@
+// Copyright Verizon Media
+// Licensed under the terms of the Apache 2.0 license. Please see LICENSE file in the project root for terms.
+
+package com.vz.disposal.runner;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.util.Progressable;
+
+import java.io.FileNotFoundException;
+import java.net.URI;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An in-memory file system holding nothing but a fixed listing, which every glob and listing returns. Deletes and
+ * renames succeed at once and are only counted, so that benchmarks measure the disposal rather than a namenode.
+ */
+final class SyntheticFileSystem extends FileSystem {
+    private static final URI URI = java.net.URI.create("hdfs://namenode:8020");
+
+    private final FileStatus[] listing;
+    private final LongAdder deletes = new LongAdder();
+
+    SyntheticFileSystem(FileStatus[] listing) {
+        this.listing = listing;
+    }
+
+    long getDeletes() {
+        return deletes.sum();
+    }
+
+    @Override
+    public FileStatus[] globStatus(Path pathPattern) {
+        return listing;
+    }
+
+    @Override
+    public FileStatus[] listStatus(Path f) {
+        return listing;
+    }
+
+    @Override
+    public boolean delete(Path f, boolean recursive) {
+        deletes.increment();
+        return true;
+    }
+
+    @Override
+    public boolean rename(Path src, Path dst) {
+        deletes.increment();
+        return true;
+    }
+
+    @Override
+    public boolean mkdirs(Path f, FsPermission permission) {
+        return true;
+    }
+
+    @Override
+    public FileStatus getFileStatus(Path f) throws FileNotFoundException {
+        throw new FileNotFoundException(f.toString());
+    }
+
+    @Override
+    public URI getUri() {
+        return URI;
+    }
+
+    @Override
+    public Path getWorkingDirectory() {
+        return new Path("/");
+    }
+
+    @Override
+    public void setWorkingDirectory(Path newDir) {
+    }
+
+    @Override
+    public FSDataInputStream open(Path f, int bufferSize) {
+        throw new UnsupportedOperationException("Synthetic file systems hold no data");
+    }
+
+    @Override
+    public FSDataOutputStream create(Path f, FsPermission permission, boolean overwrite, int bufferSize,
+                                     short replication, long blockSize, Progressable progress) {
+        throw new UnsupportedOperationException("Synthetic file systems hold no data");
+    }
+
+    @Override
+    public FSDataOutputStream append(Path f, int bufferSize, Progressable progress) {
+        throw new UnsupportedOperationException("Synthetic file systems hold no data");
+    }
+}
@@ -0,0 +1,91 @@
+// Copyright Verizon Media
+// Licensed under the terms of the Apache 2.0 license. Please see LICENSE file in the project root for terms.
+
+package com.vz.disposal.utils;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-path cost of the retention filters, over a rotating set of paths so that both outcomes are measured.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configuration=log4j-jmh.properties")
+@State(Scope.Thread)
+public class PathFilterBenchmark {
+    private static final int PATHS = 1024;
+    private static final String CONFIG_PATH = "hdfs://namenode:8020/projects/events/date=%s/hour=00";
+
+    private ZonedDateTime timeOfRun;
+    private int retentionDuration;
+    private ChronoUnit granularity;
+    private FileStatus[] statuses;
+    private DatestampPathFilter datestampFilter;
+    private ModificationTimePathFilter modificationTimeFilter;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        timeOfRun = ZonedDateTime.of(2019, 5, 14, 12, 0, 0, 0, ZoneOffset.UTC);
+        retentionDuration = 30;
+        granularity = ChronoUnit.DAYS;
+
+        // A day per path, reaching back beyond the retention of the filters.
+        DateTimeFormatter format = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+        statuses = new FileStatus[PATHS];
+        for (int i = 0; i < PATHS; i++) {
+            ZonedDateTime date = timeOfRun.minusDays(i);
+            Path path = new Path(CONFIG_PATH.replace("%s", format.format(date)));
+            statuses[i] = new FileStatus(0, true, 0, 0, date.toInstant().toEpochMilli(), path);
+        }
+
+        datestampFilter = new DatestampPathFilter(
+                timeOfRun,
+                granularity,
+                retentionDuration,
+                CONFIG_PATH.indexOf("%s"),
+                CompiledDatePattern.compile("yyyy-MM-dd")
+        );
+        modificationTimeFilter = new ModificationTimePathFilter(timeOfRun, granularity, retentionDuration);
+    }
+
+    @Benchmark
+    public boolean datestampAccept() {
+        return datestampFilter.accept(nextStatus());
+    }
+
+    @Benchmark
+    public boolean modificationTimeAccept() {
+        return modificationTimeFilter.accept(nextStatus());
+    }
+
+    @Benchmark
+    public Instant beginningOfRetention() {
+        return Utils.getBeginningOfRetention(timeOfRun, retentionDuration, granularity);
+    }
+
+    private FileStatus nextStatus() {
+        next = (next + 1) & (PATHS - 1);
+        return statuses[next];
+    }
+}
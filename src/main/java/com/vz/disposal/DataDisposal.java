@@ -3,9 +3,23 @@
 
 package com.vz.disposal;
 
+import com.vz.disposal.config.ConfigLoader;
+import com.vz.disposal.config.HDFSConfigList;
+import com.vz.disposal.config.HiveConfigList;
+import com.vz.disposal.config.LocalConfigList;
+import com.vz.disposal.daemon.DisposalDaemon;
+import com.vz.disposal.daemon.StatusServer;
+import com.vz.disposal.metrics.DisposalMetrics;
+import com.vz.disposal.metrics.MetricsWriter;
 import com.vz.disposal.runner.Disposal;
 import com.vz.disposal.runner.HDFSDisposal;
 import com.vz.disposal.runner.HiveDisposal;
+import com.vz.disposal.runner.IOExecutor;
+import com.vz.disposal.runner.LocalDisposal;
+import com.vz.disposal.state.DeletionJournal;
+import com.vz.disposal.state.PlanManifest;
+import com.vz.disposal.state.WatermarkStore;
+import com.vz.disposal.utils.Utils;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.DefaultParser;
@@ -15,8 +29,15 @@ import org.apache.commons.cli.ParseException;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class DataDisposal {
@@ -24,7 +45,17 @@ public class DataDisposal {
 
     public static final String HDFS_CONF = "hdfs_conf";
     public static final String HIVE_CONF = "hive_conf";
+    public static final String LOCAL_CONF = "local_conf";
     public static final String DRY_RUN = "dry_run";
+    public static final String METRICS_FILE = "metrics_file";
+    public static final String STATE_DIR = "state_dir";
+    public static final String DAEMON = "daemon";
+    public static final String SCHEDULE = "schedule";
+    public static final String STATUS_PORT = "status_port";
+    public static final String DAEMON_THREADS = "daemon_threads";
+    public static final String MAX_DURATION = "max_duration";
+    public static final String PLAN_MANIFEST = "plan_manifest";
+    public static final String EXECUTE_PLAN = "execute_plan";
 
     private static CommandLine parseArgs(String[] args) throws ParseException {
         Options options = new Options();
@@ -47,6 +78,12 @@ public class DataDisposal {
 
         options.addOption(hiveConf);
 
+        options.addOption(Option.builder()
+                .longOpt(LOCAL_CONF)
+                .hasArg()
+                .desc("Config for local file system Disposal")
+                .build());
+
         Option dryRun = Option.builder()
                 .longOpt(DRY_RUN)
                 .desc("Enable dry run")
@@ -54,25 +91,237 @@ public class DataDisposal {
                 .build();
 
         options.addOption(dryRun);
+
+        Option metricsFile = Option.builder()
+                .longOpt(METRICS_FILE)
+                .hasArg()
+                .desc("File to write run metrics to, as JSON if it ends in .json, else in the Prometheus text format")
+                .build();
+
+        options.addOption(metricsFile);
+
+        Option stateDir = Option.builder()
+                .longOpt(STATE_DIR)
+                .hasArg()
+                .desc("Directory for entry cutoffs, for incremental runs, and a journal to resume runs")
+                .build();
+
+        options.addOption(stateDir);
+
+        options.addOption(Option.builder()
+                .longOpt(DAEMON)
+                .desc("Keep running, disposing of every entry on its schedule and reloading changed configs")
+                .build());
+
+        options.addOption(Option.builder()
+                .longOpt(SCHEDULE)
+                .hasArg()
+                .desc("In daemon mode, how often entries without a schedule are disposed of (default PT1H)")
+                .build());
+
+        options.addOption(Option.builder()
+                .longOpt(STATUS_PORT)
+                .hasArg()
+                .desc("In daemon mode, port serving /health, /status and /metrics")
+                .build());
+
+        options.addOption(Option.builder()
+                .longOpt(DAEMON_THREADS)
+                .hasArg()
+                .desc("In daemon mode, how many entries may be disposed of at the same time (default 4)")
+                .build());
+
+        options.addOption(Option.builder()
+                .longOpt(MAX_DURATION)
+                .hasArg()
+                .desc("Stop starting deletions once the run has taken this long, as an ISO-8601 duration like PT2H")
+                .build());
+
+        options.addOption(Option.builder()
+                .longOpt(PLAN_MANIFEST)
+                .hasArg()
+                .desc("File to write every path and partition up for disposal to, as gzip-compressed JSON lines")
+                .build());
+
+        options.addOption(Option.builder()
+                .longOpt(EXECUTE_PLAN)
+                .hasArg()
+                .desc("Delete what a plan manifest of an earlier run holds instead of listing, checking each target")
+                .build());
         CommandLineParser parser = new DefaultParser();
         return parser.parse(options, args);
     }
     
+    /**
+     * @return the watermarks of {@code confFile}, or null if runs are not incremental
+     */
+    private static WatermarkStore openWatermarks(CommandLine cmdArgs, String confFile) throws IOException {
+        if (!cmdArgs.hasOption(STATE_DIR)) {
+            return null;
+        }
+        return WatermarkStore.open(Paths.get(cmdArgs.getOptionValue(STATE_DIR)), Utils.stateName(confFile));
+    }
+
+    /**
+     * @return the deletion journal of {@code confFile}, or null if runs are not journaled
+     */
+    private static DeletionJournal openJournal(CommandLine cmdArgs, String confFile, boolean dryRun)
+            throws IOException {
+        if (!cmdArgs.hasOption(STATE_DIR) || dryRun) {
+            return null;
+        }
+        return DeletionJournal.open(Paths.get(cmdArgs.getOptionValue(STATE_DIR)), Utils.stateName(confFile));
+    }
+
+    /**
+     * Closes every disposal, even if closing one of them fails.
+     */
+    private static void closeAll(List<Disposal> disposals) {
+        for (Disposal disposal : disposals) {
+            try {
+                disposal.close();
+            } catch (IOException | RuntimeException e) {
+                LOG.warn("Unable to close the " + disposal.getBackend() + " disposal", e);
+            }
+        }
+    }
+
+    private static void runDaemon(CommandLine cmdArgs, boolean dryRun) throws IOException {
+        DisposalDaemon daemon = new DisposalDaemon(
+                cmdArgs.hasOption(STATE_DIR) ? Paths.get(cmdArgs.getOptionValue(STATE_DIR)) : null,
+                Duration.parse(cmdArgs.getOptionValue(SCHEDULE, "PT1H")),
+                Integer.parseInt(cmdArgs.getOptionValue(DAEMON_THREADS, "4"))
+        );
+        if (cmdArgs.hasOption(HIVE_CONF)) {
+            daemon.addConfig(cmdArgs.getOptionValue(HIVE_CONF), confFile -> new HiveDisposal(
+                    new ConfigLoader<HiveConfigList>().readConfig(confFile, HiveConfigList.class), dryRun));
+        }
+        if (cmdArgs.hasOption(HDFS_CONF)) {
+            daemon.addConfig(cmdArgs.getOptionValue(HDFS_CONF), confFile -> new HDFSDisposal(
+                    new ConfigLoader<HDFSConfigList>().readConfig(confFile, HDFSConfigList.class), dryRun));
+        }
+        if (cmdArgs.hasOption(LOCAL_CONF)) {
+            daemon.addConfig(cmdArgs.getOptionValue(LOCAL_CONF), confFile -> new LocalDisposal(
+                    new ConfigLoader<LocalConfigList>().readConfig(confFile, LocalConfigList.class), dryRun));
+        }
+
+        StatusServer statusServer = cmdArgs.hasOption(STATUS_PORT)
+                ? new StatusServer(daemon, Integer.parseInt(cmdArgs.getOptionValue(STATUS_PORT)))
+                : null;
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            LOG.info("Stopping data disposal daemon");
+            if (statusServer != null) {
+                statusServer.close();
+            }
+            daemon.close();
+        }));
+
+        daemon.start();
+        if (statusServer != null) {
+            statusServer.start();
+        }
+        try {
+            daemon.awaitTermination();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     public static void main(String[] args) throws ParseException, IOException {
         CommandLine cmdArgs = parseArgs(args);
-        List<Disposal> disposals = new ArrayList<>();
+        // Apache Hive drops partitions, along with the data of internal tables, before HDFS lists what is left, so
+        // the two run one after the other; local disks depend on neither and are disposed of alongside them.
+        List<Disposal> clusterDisposals = new ArrayList<>();
+        List<Disposal> localDisposals = new ArrayList<>();
         boolean dryRun = cmdArgs.hasOption(DRY_RUN);
 
         LOG.info("Data disposal started with command: " + String.join(" ", args));
 
-        if (cmdArgs.hasOption(HIVE_CONF)) {
-            disposals.add(new HiveDisposal(cmdArgs.getOptionValue(HIVE_CONF), dryRun));
+        if (cmdArgs.hasOption(EXECUTE_PLAN) && (dryRun || cmdArgs.hasOption(DAEMON))) {
+            throw new IllegalStateException("--" + EXECUTE_PLAN + " cannot be combined with --" + DRY_RUN +
+                    " or --" + DAEMON);
+        }
+        if (cmdArgs.hasOption(DAEMON)) {
+            if (cmdArgs.hasOption(PLAN_MANIFEST)) {
+                LOG.warn("Ignoring --" + PLAN_MANIFEST + ", plan manifests are only written by one-shot runs");
+            }
+            runDaemon(cmdArgs, dryRun);
+            return;
         }
 
-        if (cmdArgs.hasOption(HDFS_CONF)) {
-            disposals.add(new HDFSDisposal(cmdArgs.getOptionValue(HDFS_CONF), dryRun));
+        Instant deadline = cmdArgs.hasOption(MAX_DURATION)
+                ? Instant.now().plus(Duration.parse(cmdArgs.getOptionValue(MAX_DURATION)))
+                : null;
+        Path plan = cmdArgs.hasOption(EXECUTE_PLAN) ? Paths.get(cmdArgs.getOptionValue(EXECUTE_PLAN)) : null;
+
+        // Disposals hold connections to the namenode and the metastore, closed once the run is done.
+        try (Closeable closeClusterDisposals = () -> closeAll(clusterDisposals);
+             Closeable closeLocalDisposals = () -> closeAll(localDisposals)) {
+            if (cmdArgs.hasOption(HIVE_CONF)) {
+                String confFile = cmdArgs.getOptionValue(HIVE_CONF);
+                HiveDisposal disposal = new HiveDisposal(confFile, dryRun);
+                disposal.setDeadline(deadline);
+                if (plan == null) {
+                    disposal.setWatermarks(openWatermarks(cmdArgs, confFile));
+                    disposal.setJournal(openJournal(cmdArgs, confFile, dryRun));
+                }
+                clusterDisposals.add(disposal);
+            }
+
+            if (cmdArgs.hasOption(HDFS_CONF)) {
+                String confFile = cmdArgs.getOptionValue(HDFS_CONF);
+                HDFSDisposal disposal = new HDFSDisposal(confFile, dryRun);
+                disposal.setDeadline(deadline);
+                if (plan == null) {
+                    disposal.setWatermarks(openWatermarks(cmdArgs, confFile));
+                    disposal.setJournal(openJournal(cmdArgs, confFile, dryRun));
+                }
+                clusterDisposals.add(disposal);
+            }
+
+            if (cmdArgs.hasOption(LOCAL_CONF)) {
+                String confFile = cmdArgs.getOptionValue(LOCAL_CONF);
+                LocalDisposal disposal = new LocalDisposal(confFile, dryRun);
+                disposal.setDeadline(deadline);
+                if (plan == null) {
+                    disposal.setJournal(openJournal(cmdArgs, confFile, dryRun));
+                }
+                localDisposals.add(disposal);
+            }
+
+            List<List<Disposal>> lanes = new ArrayList<>();
+            for (List<Disposal> lane : Arrays.asList(clusterDisposals, localDisposals)) {
+                if (!lane.isEmpty()) {
+                    lanes.add(lane);
+                }
+            }
+            // The lanes wait on different services, so neither holds the other back.
+            try (PlanManifest manifest = cmdArgs.hasOption(PLAN_MANIFEST)
+                    ? PlanManifest.create(Paths.get(cmdArgs.getOptionValue(PLAN_MANIFEST)))
+                    : null;
+                 IOExecutor backends = new IOExecutor("disposal", Math.max(1, lanes.size()))) {
+                lanes.forEach(lane -> lane.forEach(disposal -> disposal.setManifest(manifest)));
+                if (plan == null) {
+                    backends.forEach(lanes, lane -> lane.forEach(Disposal::run));
+                } else {
+                    backends.forEach(lanes, lane -> lane.forEach(disposal -> {
+                        try {
+                            disposal.execute(plan);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException("Unable to read the plan manifest " + plan, e);
+                        }
+                    }));
+                }
+            }
         }
 
-        disposals.forEach(Disposal::run);
+        if (cmdArgs.hasOption(METRICS_FILE)) {
+            String metricsFile = cmdArgs.getOptionValue(METRICS_FILE);
+            try {
+                new MetricsWriter(DisposalMetrics.global()).write(Paths.get(metricsFile));
+            } catch (IOException e) {
+                LOG.error("Unable to write metrics to: " + metricsFile, e);
+            }
+        }
     }
 }
@@ -3,10 +3,12 @@
 
 package com.vz.disposal.config;
 
+import com.vz.disposal.utils.CompiledDatePattern;
 import lombok.Getter;
 import lombok.Setter;
 
 import java.text.SimpleDateFormat;
+import java.time.Duration;
 import java.time.ZoneId;
 import java.time.temporal.ChronoUnit;
 import java.util.TimeZone;
@@ -23,8 +25,41 @@ public abstract class ConfigEntry {
     @Getter
     private SimpleDateFormat dateFormat;
 
+    /**
+     * The same pattern as {@link #getDateFormat()}, compiled for thread-safe parsing.
+     */
+    @Getter
+    private CompiledDatePattern datePattern;
+
     public void setDateFormat(String dateFormat) {
         this.dateFormat = new SimpleDateFormat(dateFormat);
         this.dateFormat.setTimeZone(TimeZone.getTimeZone(ZoneId.of("UTC")));
+        this.datePattern = CompiledDatePattern.compile(dateFormat);
+    }
+
+    /**
+     * How often the entry is disposed of in daemon mode, or null for the daemon's default.
+     */
+    @Getter
+    private Duration schedule;
+
+    /**
+     * @param schedule an ISO-8601 duration, for example {@code PT1H}
+     */
+    public void setSchedule(String schedule) {
+        this.schedule = Duration.parse(schedule);
+    }
+
+    /**
+     * Copies the settings common to all entries to {@code copy}; the date format is compiled anew, as a
+     * {@link SimpleDateFormat} must not be shared between threads.
+     */
+    protected void copyTo(ConfigEntry copy) {
+        copy.retentionDuration = retentionDuration;
+        copy.granularity = granularity;
+        if (dateFormat != null) {
+            copy.setDateFormat(dateFormat.toPattern());
+        }
+        copy.schedule = schedule;
     }
 }
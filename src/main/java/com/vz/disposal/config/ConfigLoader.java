@@ -19,8 +19,7 @@ public class ConfigLoader<T> {
     public T loadConfig(String file, Class<T> clazz) {
         T config = null;
         try {
-            ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
-            config = mapper.readValue(new File(file), clazz);
+            config = readConfig(file, clazz);
         } catch (IOException e) {
             LOG.error("Unable to load config file: " + file, e);
             System.exit(-1);
@@ -28,4 +27,12 @@ public class ConfigLoader<T> {
 
         return config;
     }
+
+    /**
+     * Like {@link #loadConfig}, but leaves it to the caller to handle a file that cannot be read.
+     */
+    public T readConfig(String file, Class<T> clazz) throws IOException {
+        ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
+        return mapper.readValue(new File(file), clazz);
+    }
 }
@@ -19,4 +19,15 @@ public class HDFSConfigEntry extends ConfigEntry {
     @Getter
     @Setter
     private boolean recursive;
+
+    @Getter
+    @Setter
+    private HDFSListingMode listingMode = HDFSListingMode.GLOB;
+
+    /**
+     * When set, expired paths are renamed into this directory and purged after the run instead of deleted in place.
+     */
+    @Getter
+    @Setter
+    private String stagingDir;
 }
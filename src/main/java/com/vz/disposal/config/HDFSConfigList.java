@@ -6,6 +6,7 @@ package com.vz.disposal.config;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public class HDFSConfigList implements BaseConfigList {
@@ -16,4 +17,54 @@ public class HDFSConfigList implements BaseConfigList {
     @Getter
     @Setter
     private List<HDFSConfigEntry> entries;
+
+    /**
+     * Optional per-namespace settings. Entries may point into any namespace through the scheme and authority of
+     * their path; paths without one use {@link #hdfsNamenode}.
+     */
+    @Getter
+    @Setter
+    private List<HDFSNamespaceConfig> namespaces = new ArrayList<>();
+
+    /**
+     * How many entries are listed and disposed of at the same time.
+     */
+    @Getter
+    @Setter
+    private int entryConcurrency = 16;
+
+    /**
+     * Upper bound on concurrent delete RPCs against the namenode. The actual concurrency adapts below this bound.
+     */
+    @Getter
+    @Setter
+    private int deleteConcurrency = 16;
+
+    /**
+     * How many times a delete failing with a transient error is retried.
+     */
+    @Getter
+    @Setter
+    private int deleteRetries = 3;
+
+    /**
+     * Delete latency above which the namenode is considered busy and delete concurrency is reduced.
+     */
+    @Getter
+    @Setter
+    private long deleteTargetLatencyMillis = 500;
+
+    /**
+     * Upper bound on concurrent deletes when purging staging directories after the run.
+     */
+    @Getter
+    @Setter
+    private int stagingPurgeConcurrency = 2;
+
+    /**
+     * How many directories a {@link HDFSRetentionType#DEEP_MODIFICATION_TIME} entry lists at the same time.
+     */
+    @Getter
+    @Setter
+    private int sweepConcurrency = 16;
 }
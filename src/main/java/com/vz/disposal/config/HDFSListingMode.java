@@ -0,0 +1,10 @@
+// Copyright Verizon Media
+// Licensed under the terms of the Apache 2.0 license. Please see LICENSE file in the project root for terms.
+
+package com.vz.disposal.config;
+
+public enum HDFSListingMode {
+    GLOB,
+    STREAMING,
+    DATE_TREE
+}
@@ -0,0 +1,20 @@
+// Copyright Verizon Media
+// Licensed under the terms of the Apache 2.0 license. Please see LICENSE file in the project root for terms.
+
+package com.vz.disposal.config;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Settings for one HDFS namespace that entries' paths point into. Unset values fall back to the top-level ones.
+ */
+public class HDFSNamespaceConfig {
+    @Getter
+    @Setter
+    private String uri;
+
+    @Getter
+    @Setter
+    private Integer deleteConcurrency;
+}
@@ -5,5 +5,9 @@ package com.vz.disposal.config;
 
 public enum HDFSRetentionType {
     MODIFICATION_TIME,
-    PATH_DATE
+    PATH_DATE,
+    /**
+     * Expired files at any depth under the matched directories, then the directories left empty by them.
+     */
+    DEEP_MODIFICATION_TIME
 }
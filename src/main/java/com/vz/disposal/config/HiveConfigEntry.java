@@ -8,10 +8,16 @@ import lombok.Setter;
 
 
 public class HiveConfigEntry extends ConfigEntry {
+    /**
+     * The database holding the table, or a pattern of database names; see {@link #isPattern()}.
+     */
     @Getter
     @Setter
     private String database;
 
+    /**
+     * The table, or a pattern of table names; see {@link #isPattern()}.
+     */
     @Getter
     @Setter
     private String table;
@@ -32,6 +38,104 @@ public class HiveConfigEntry extends ConfigEntry {
     @Setter
     private boolean validationEnabled = true;
 
+    /**
+     * Name of the metastore holding the table, or null for the default metastore.
+     */
+    @Getter
+    @Setter
+    private String metastore;
+
+    /**
+     * How expired partitions are dropped: one call per date ({@code PER_DATE}), one call per {@link #dropBatchSize}
+     * dates ({@code BATCH}) or a single call for everything up to the newest expired date ({@code RANGE}).
+     */
+    @Getter
+    @Setter
+    private HiveDropMode dropMode = HiveDropMode.PER_DATE;
+
+    /**
+     * How many dates a {@code BATCH} drop covers per call.
+     */
+    @Getter
+    @Setter
+    private int dropBatchSize = 100;
+
+    /**
+     * How expired partitions are listed: all at once ({@code FULL}), a few dates at a time ({@code PAGED}), each
+     * page dropped before the next is listed, or all at once by name only ({@code NAMES}).
+     */
+    @Getter
+    @Setter
+    private HiveListingMode listingMode = HiveListingMode.FULL;
+
+    /**
+     * How many dates, in the finest unit of the date format, a {@code PAGED} listing starts with per page.
+     */
+    @Getter
+    @Setter
+    private int listingWindow = 30;
+
+    /**
+     * Pages holding more partitions than this are split, down to a single date.
+     */
+    @Getter
+    @Setter
+    private int listingPageSize = 1000;
+
+    /**
+     * How many pages of a {@code PAGED} listing are listed and dropped at the same time.
+     */
+    @Getter
+    @Setter
+    private int listingConcurrency = 4;
+
+    /**
+     * Name of a table property holding the table's retention in units of the granularity, such as
+     * {@code retention.days}, which then takes the place of the retention duration. Tables without a valid value
+     * are skipped.
+     */
+    @Getter
+    @Setter
+    private String retentionProperty;
+
+    /**
+     * @return whether the database or the table is a pattern of names, as the metastore matches them: {@code *} for
+     * any characters and {@code |} between alternatives
+     */
+    public boolean isPattern() {
+        return isPattern(database) || isPattern(table);
+    }
+
+    /**
+     * @return whether {@code name} is a pattern of database or table names
+     */
+    public static boolean isPattern(String name) {
+        return name != null && (name.indexOf('*') >= 0 || name.indexOf('|') >= 0);
+    }
+
+    /**
+     * @return a copy of this entry for the single table {@code database.table}
+     */
+    public HiveConfigEntry forTable(String database, String table) {
+        HiveConfigEntry copy = new HiveConfigEntry();
+        copyTo(copy);
+        copy.database = database;
+        copy.table = table;
+        copy.partitionFilterKey = partitionFilterKey;
+        copy.deleteExternalData = deleteExternalData;
+        copy.enableHivePartitionFilter = enableHivePartitionFilter;
+        copy.validationEnabled = validationEnabled;
+        copy.metastore = metastore;
+        copy.dropMode = dropMode;
+        copy.dropBatchSize = dropBatchSize;
+        copy.listingMode = listingMode;
+        copy.listingWindow = listingWindow;
+        copy.listingPageSize = listingPageSize;
+        copy.listingConcurrency = listingConcurrency;
+        copy.retentionProperty = retentionProperty;
+        return copy;
+    }
+
     @Override
     public void setDateFormat(String dateFormat) {
         if (dateFormat == null) {
@@ -7,6 +7,7 @@ import lombok.Getter;
 import lombok.Setter;
 import org.apache.hadoop.fs.Path;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public class HiveConfigList implements BaseConfigList {
@@ -17,4 +18,25 @@ public class HiveConfigList implements BaseConfigList {
     @Getter
     @Setter
     private List<HiveConfigEntry> entries;
+
+    /**
+     * Optional named metastores. Entries without a metastore use the one configured by the hive-site on the classpath.
+     */
+    @Getter
+    @Setter
+    private List<HiveMetastoreConfig> metastores = new ArrayList<>();
+
+    /**
+     * Upper bound on open clients per metastore, and so on tables listed and dropped at the same time.
+     */
+    @Getter
+    @Setter
+    private int clientPoolSize = 8;
+
+    /**
+     * How many tables are disposed of at the same time; by default, as many as there are metastore clients.
+     */
+    @Getter
+    @Setter
+    private Integer entryConcurrency;
 }
@@ -0,0 +1,40 @@
+// Copyright Verizon Media
+// Licensed under the terms of the Apache 2.0 license. Please see LICENSE file in the project root for terms.
+
+package com.vz.disposal.config;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A Hive metastore that entries can refer to by name.
+ */
+public class HiveMetastoreConfig {
+    @Getter
+    @Setter
+    private String name;
+
+    /**
+     * Thrift URIs of the metastore, as in {@code hive.metastore.uris}.
+     */
+    @Getter
+    @Setter
+    private String uris;
+
+    /**
+     * Extra client settings for this metastore only, e.g. {@code hive.metastore.kerberos.principal}.
+     */
+    @Getter
+    @Setter
+    private Map<String, String> properties = new HashMap<>();
+
+    /**
+     * Upper bound on open clients of this metastore; falls back to the top-level {@code clientPoolSize}.
+     */
+    @Getter
+    @Setter
+    private Integer clientPoolSize;
+}
@@ -0,0 +1,26 @@
+// Copyright Verizon Media
+// Licensed under the terms of the Apache 2.0 license. Please see LICENSE file in the project root for terms.
+
+package com.vz.disposal.config;
+
+import lombok.Getter;
+import lombok.Setter;
+
+
+public class LocalConfigEntry extends ConfigEntry {
+    /**
+     * An absolute path on the local file system, treated as a glob, with {@code %s} where the date is for
+     * {@link LocalRetentionType#PATH_DATE}.
+     */
+    @Getter
+    @Setter
+    private String path;
+
+    @Getter
+    @Setter
+    private LocalRetentionType retentionType;
+
+    @Getter
+    @Setter
+    private boolean recursive;
+}
@@ -0,0 +1,36 @@
+// Copyright Verizon Media
+// Licensed under the terms of the Apache 2.0 license. Please see LICENSE file in the project root for terms.
+
+package com.vz.disposal.config;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+public class LocalConfigList implements BaseConfigList {
+    @Getter
+    @Setter
+    private List<LocalConfigEntry> entries;
+
+    /**
+     * How many entries are listed and disposed of at the same time.
+     */
+    @Getter
+    @Setter
+    private int entryConcurrency = 4;
+
+    /**
+     * How many directories are listed at the same time, across all entries.
+     */
+    @Getter
+    @Setter
+    private int listingConcurrency = 16;
+
+    /**
+     * How many deletes run at the same time, across all entries.
+     */
+    @Getter
+    @Setter
+    private int deleteConcurrency = 16;
+}
@@ -0,0 +1,12 @@
+// Copyright Verizon Media
+// Licensed under the terms of the Apache 2.0 license. Please see LICENSE file in the project root for terms.
+
+package com.vz.disposal.config;
+
+/**
+ * The retention types of {@link HDFSRetentionType} that apply to a local or NFS disk, under the same names.
+ */
+public enum LocalRetentionType {
+    MODIFICATION_TIME,
+    PATH_DATE
+}
@@ -0,0 +1,290 @@
+// Copyright Verizon Media
+// Licensed under the terms of the Apache 2.0 license. Please see LICENSE file in the project root for terms.
+
+package com.vz.disposal.daemon;
+
+import com.vz.disposal.config.ConfigEntry;
+import com.vz.disposal.runner.Disposal;
+import com.vz.disposal.runner.HDFSDisposal;
+import com.vz.disposal.state.WatermarkStore;
+import com.vz.disposal.utils.Utils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Keeps disposals, and with them their HDFS and metastore clients, alive between runs and disposes of every entry
+ * on its own schedule, with retention counted back from the start of each entry's run.
+ *
+ * Config files are checked for changes every minute. A changed file is loaded into a new disposal, which replaces
+ * the old one at the first check that finds none of the old one's entries running. A file that fails to load leaves
+ * the previous config in place, and is not loaded again until it changes.
+ */
+public class DisposalDaemon implements Closeable {
+    private static final Log LOG = LogFactory.getLog(DisposalDaemon.class);
+    private static final long RELOAD_CHECK_SECONDS = 60;
+
+    private final Path stateDir;
+    private final Duration defaultSchedule;
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final List<ManagedConfig> configs = new CopyOnWriteArrayList<>();
+    private final CountDownLatch stopped = new CountDownLatch(1);
+
+    /**
+     * Creates a disposal from a config file; the daemon closes it once it is replaced.
+     */
+    @FunctionalInterface
+    public interface DisposalFactory {
+        Disposal<?, ?> create(String confFile) throws IOException;
+    }
+
+    /**
+     * @param stateDir where to keep watermarks, or null to dispose of every entry in full on each run
+     * @param defaultSchedule how often entries without a schedule of their own are disposed of
+     * @param threads how many entries may be disposed of at the same time
+     */
+    public DisposalDaemon(Path stateDir, Duration defaultSchedule, int threads) {
+        this.stateDir = stateDir;
+        this.defaultSchedule = defaultSchedule;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.scheduler = new ScheduledThreadPoolExecutor(threads, runnable -> {
+            Thread thread = new Thread(runnable, "disposal-daemon-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    public void addConfig(String confFile, DisposalFactory factory) {
+        configs.add(new ManagedConfig(confFile, factory));
+    }
+
+    /**
+     * Loads every config and schedules its entries, then keeps watching the config files for changes.
+     */
+    public void start() {
+        reloadChanged();
+        scheduler.scheduleWithFixedDelay(
+                this::reloadChanged,
+                RELOAD_CHECK_SECONDS,
+                RELOAD_CHECK_SECONDS,
+                TimeUnit.SECONDS
+        );
+    }
+
+    /**
+     * Blocks until the daemon is closed.
+     */
+    public void awaitTermination() throws InterruptedException {
+        stopped.await();
+    }
+
+    /**
+     * @return whether every config has been loaded and is being disposed of
+     */
+    public boolean isHealthy() {
+        return !scheduler.isShutdown() && configs.stream().allMatch(config -> config.disposal != null);
+    }
+
+    /**
+     * @return the state of every config and its entries, for the status page
+     */
+    public Map<String, Object> getStatus() {
+        List<Map<String, Object>> configStatuses = new ArrayList<>();
+        for (ManagedConfig config : configs) {
+            Map<String, Object> status = new LinkedHashMap<>();
+            status.put("file", config.confFile);
+            status.put("loadedAt", config.loadedAt);
+            status.put("loadError", config.loadError);
+            status.put("entries", config.entryStatuses);
+            configStatuses.add(status);
+        }
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("healthy", isHealthy());
+        status.put("configs", configStatuses);
+        return status;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        try {
+            scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (ManagedConfig config : configs) {
+            closeQuietly(config.disposal);
+        }
+        stopped.countDown();
+    }
+
+    /**
+     * Loads every config file that changed since it was last loaded, or tried to be.
+     */
+    void reloadChanged() {
+        configs.forEach(this::reloadIfChanged);
+    }
+
+    private void reloadIfChanged(ManagedConfig config) {
+        FileTime modified = null;
+        Disposal<?, ?> disposal = null;
+        try {
+            modified = Files.getLastModifiedTime(Paths.get(config.confFile));
+            if (modified.equals(config.lastModified) || modified.equals(config.failedModified)) {
+                return;
+            }
+            disposal = config.factory.create(config.confFile);
+            if (stateDir != null) {
+                disposal.setWatermarks(WatermarkStore.open(stateDir, Utils.stateName(config.confFile)));
+            }
+        } catch (IOException | RuntimeException e) {
+            LOG.error("Unable to load " + config.confFile + ", keeping the previous config", e);
+            closeQuietly(disposal);
+            config.failedModified = modified;
+            config.loadError = e.toString();
+            return;
+        }
+
+        // Running entries of the previous config hold the read lock. Waiting for them would hold up this thread, and
+        // every entry of the config queued behind the writer, for as long as the longest of them runs.
+        if (!config.lock.writeLock().tryLock()) {
+            LOG.info("Entries of " + config.confFile + " are running, reloading it at the next check");
+            closeQuietly(disposal);
+            return;
+        }
+        try {
+            config.futures.forEach(future -> future.cancel(false));
+            config.futures.clear();
+            closeQuietly(config.disposal);
+
+            config.generation++;
+            config.disposal = disposal;
+            config.lastModified = modified;
+            config.loadedAt = Instant.now().toString();
+            config.loadError = null;
+            schedule(config, disposal);
+        } finally {
+            config.lock.writeLock().unlock();
+        }
+        LOG.info("Loaded " + config.confFile + " with " + config.entryStatuses.size() + " entries");
+    }
+
+    private <U extends ConfigEntry> void schedule(ManagedConfig config, Disposal<?, U> disposal) {
+        long generation = config.generation;
+        List<EntryStatus> statuses = new ArrayList<>();
+        for (Object configEntry : disposal.getConfig().getEntries()) {
+            // Entries of a config list are of its disposal's entry type.
+            @SuppressWarnings("unchecked")
+            U entry = (U) configEntry;
+            Duration schedule = entry.getSchedule() == null ? defaultSchedule : entry.getSchedule();
+            EntryStatus status = new EntryStatus(disposal.getBackend(), disposal.entryKey(entry), schedule);
+            statuses.add(status);
+            config.futures.add(scheduler.scheduleWithFixedDelay(
+                    () -> runEntry(config, generation, disposal, entry, status),
+                    0,
+                    schedule.toMillis(),
+                    TimeUnit.MILLISECONDS
+            ));
+        }
+        config.entryStatuses = statuses;
+
+        if (disposal instanceof HDFSDisposal) {
+            config.futures.add(scheduler.scheduleWithFixedDelay(() -> {
+                config.lock.readLock().lock();
+                try {
+                    if (config.generation == generation) {
+                        ((HDFSDisposal) disposal).purgeStaging();
+                    }
+                } catch (RuntimeException e) {
+                    LOG.error("Purging staging directories of " + config.confFile + " failed", e);
+                } finally {
+                    config.lock.readLock().unlock();
+                }
+            }, defaultSchedule.toMillis(), defaultSchedule.toMillis(), TimeUnit.MILLISECONDS));
+        }
+    }
+
+    private <U extends ConfigEntry> void runEntry(ManagedConfig config, long generation, Disposal<?, U> disposal,
+                                                  U entry, EntryStatus status) {
+        config.lock.readLock().lock();
+        try {
+            // The config was replaced while this run was waiting for its turn.
+            if (config.generation != generation) {
+                return;
+            }
+            Instant start = Instant.now();
+            status.started(start);
+            try {
+                disposal.runEntry(entry, ZonedDateTime.ofInstant(start, ZoneOffset.UTC));
+                status.succeeded(start, Instant.now());
+            } catch (RuntimeException e) {
+                // Let the entry run again on schedule; an exception escaping would cancel it for good.
+                LOG.error("Disposal of " + status.getEntry() + " failed", e);
+                status.failed(start, Instant.now(), e);
+            }
+        } finally {
+            config.lock.readLock().unlock();
+        }
+    }
+
+    private static void closeQuietly(Disposal<?, ?> disposal) {
+        if (disposal == null) {
+            return;
+        }
+        try {
+            disposal.close();
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Unable to close a disposal", e);
+        }
+    }
+
+    /**
+     * A config file and the disposal currently loaded from it.
+     */
+    private static class ManagedConfig {
+        private final String confFile;
+        private final DisposalFactory factory;
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        private final List<ScheduledFuture<?>> futures = new ArrayList<>();
+
+        private volatile Disposal<?, ?> disposal;
+        private volatile long generation;
+        private volatile FileTime lastModified;
+        /**
+         * When the file was last modified as of a load that failed.
+         */
+        private volatile FileTime failedModified;
+        private volatile String loadedAt;
+        private volatile String loadError;
+        private volatile List<EntryStatus> entryStatuses = new ArrayList<>();
+
+        ManagedConfig(String confFile, DisposalFactory factory) {
+            this.confFile = confFile;
+            this.factory = factory;
+        }
+    }
+}
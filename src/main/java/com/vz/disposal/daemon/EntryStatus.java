@@ -0,0 +1,129 @@
+// Copyright Verizon Media
+// Licensed under the terms of the Apache 2.0 license. Please see LICENSE file in the project root for terms.
+
+package com.vz.disposal.daemon;
+
+import lombok.Getter;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * How the runs of one scheduled entry went, as shown on the status page.
+ */
+public class EntryStatus {
+    /**
+     * How many of the latest runs are kept.
+     */
+    static final int RECENT_RUNS = 10;
+
+    @Getter
+    private final String backend;
+
+    @Getter
+    private final String entry;
+
+    @Getter
+    private final String schedule;
+
+    @Getter
+    private volatile boolean running;
+
+    @Getter
+    private volatile long runs;
+
+    @Getter
+    private volatile long failures;
+
+    @Getter
+    private volatile String lastStart;
+
+    @Getter
+    private volatile String lastSuccess;
+
+    @Getter
+    private volatile String lastEnd;
+
+    @Getter
+    private volatile long lastDurationMillis;
+
+    @Getter
+    private volatile String lastError;
+
+    private final Deque<Run> recentRuns = new ArrayDeque<>();
+
+    public EntryStatus(String backend, String entry, Duration schedule) {
+        this.backend = backend;
+        this.entry = entry;
+        this.schedule = schedule.toString();
+    }
+
+    synchronized void started(Instant start) {
+        running = true;
+        lastStart = start.toString();
+    }
+
+    synchronized void succeeded(Instant start, Instant end) {
+        lastSuccess = end.toString();
+        lastError = null;
+        finished(start, end, null);
+    }
+
+    synchronized void failed(Instant start, Instant end, Exception error) {
+        failures++;
+        lastError = error.toString();
+        finished(start, end, error.toString());
+    }
+
+    /**
+     * @return the latest runs, oldest first
+     */
+    public synchronized List<Run> getRecentRuns() {
+        return new ArrayList<>(recentRuns);
+    }
+
+    /**
+     * Counts the run last, so that whoever sees it counted also sees everything else about it.
+     */
+    private void finished(Instant start, Instant end, String error) {
+        lastEnd = end.toString();
+        lastDurationMillis = Duration.between(start, end).toMillis();
+        if (recentRuns.size() == RECENT_RUNS) {
+            recentRuns.removeFirst();
+        }
+        recentRuns.addLast(new Run(start, end, error));
+        running = false;
+        runs++;
+    }
+
+    /**
+     * One finished run of the entry.
+     */
+    public static class Run {
+        @Getter
+        private final String start;
+
+        @Getter
+        private final String end;
+
+        @Getter
+        private final long durationMillis;
+
+        /**
+         * Null if the run succeeded.
+         */
+        @Getter
+        private final String error;
+
+        Run(Instant start, Instant end, String error) {
+            this.start = start.toString();
+            this.end = end.toString();
+            this.durationMillis = Duration.between(start, end).toMillis();
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+// Copyright Verizon Media
+// Licensed under the terms of the Apache 2.0 license. Please see LICENSE file in the project root for terms.
+
+package com.vz.disposal.daemon;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.vz.disposal.metrics.DisposalMetrics;
+import com.vz.disposal.metrics.MetricsWriter;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A small HTTP server for the daemon: {@code /health} for liveness checks, {@code /status} with the state of every
+ * entry as JSON and {@code /metrics} in the Prometheus text format.
+ */
+public class StatusServer implements Closeable {
+    private static final Log LOG = LogFactory.getLog(StatusServer.class);
+
+    private final HttpServer server;
+    private final ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    public StatusServer(DisposalDaemon daemon, int port) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+
+        server.createContext("/health", exchange -> {
+            boolean healthy = daemon.isHealthy();
+            respond(exchange, healthy ? 200 : 503, "text/plain", healthy ? "OK\n" : "UNAVAILABLE\n");
+        });
+        server.createContext("/status", exchange ->
+                respond(exchange, 200, "application/json", mapper.writeValueAsString(daemon.getStatus())));
+        server.createContext("/metrics", exchange -> {
+            StringWriter metrics = new StringWriter();
+            new MetricsWriter(DisposalMetrics.global()).writePrometheus(metrics);
+            respond(exchange, 200, "text/plain; version=0.0.4", metrics.toString());
+        });
+    }
+
+    public void start() {
+        server.start();
+        LOG.info("Serving status on port " + getPort());
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, String body)
+            throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
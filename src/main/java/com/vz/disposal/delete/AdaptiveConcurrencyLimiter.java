@@ -0,0 +1,93 @@
+// Copyright Verizon Media
+// Licensed under the terms of the Apache 2.0 license. Please see LICENSE file in the project root for terms.
+
+package com.vz.disposal.delete;
+
+/**
+ * Bounds the number of in-flight RPCs and adapts that bound from what the RPCs report back (AIMD).
+ *
+ * Every successful call that completes under the target latency grows the limit by roughly one per window of
+ * calls (additive increase). A failed call, or one slower than the target latency, halves the limit
+ * (multiplicative decrease). Calls that were already in flight when the limit was last cut do not cut it again,
+ * so one slow spell on the server does not collapse the limit to the minimum.
+ */
+public class AdaptiveConcurrencyLimiter {
+    private static final double BACKOFF_RATIO = 0.5;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long targetLatencyNanos;
+
+    private double limit;
+    private int inFlight;
+    private boolean decreased;
+    private long lastDecreaseNanos;
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, long targetLatencyNanos) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Invalid concurrency bounds: [" + minLimit + ", " + maxLimit + "]");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.targetLatencyNanos = targetLatencyNanos;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /**
+     * Blocks until a slot is free under the current limit.
+     *
+     * @return the start time of the call, to be handed back to {@link #onSuccess} or {@link #onFailure}
+     */
+    public synchronized long acquire() throws InterruptedException {
+        while (inFlight >= (int) limit) {
+            wait();
+        }
+        inFlight++;
+        return System.nanoTime();
+    }
+
+    public synchronized void onSuccess(long startNanos) {
+        long now = System.nanoTime();
+        if (now - startNanos > targetLatencyNanos) {
+            decrease(startNanos, now);
+        } else {
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+        release();
+    }
+
+    public synchronized void onFailure(long startNanos) {
+        decrease(startNanos, System.nanoTime());
+        release();
+    }
+
+    /**
+     * Frees the slot without feeding the outcome back into the limit, e.g. for errors that say nothing about
+     * server load such as a permission failure.
+     */
+    public synchronized void onIgnore() {
+        release();
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    private void decrease(long startNanos, long now) {
+        if (decreased && startNanos - lastDecreaseNanos <= 0) {
+            return;
+        }
+        limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+        decreased = true;
+        lastDecreaseNanos = now;
+    }
+
+    private void release() {
+        inFlight--;
+        notifyAll();
+    }
+}
@@ -0,0 +1,255 @@
+// Copyright Verizon Media
+// Licensed under the terms of the Apache 2.0 license. Please see LICENSE file in the project root for terms.
+
+package com.vz.disposal.delete;
+
+import com.vz.disposal.utils.TimePathFilter;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.RemoteIterator;
+
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Deletes the expired files at any depth under a directory, then the directories left empty, bottom-up, in a single
+ * pass over the tree.
+ *
+ * Every directory is a fork-join task that lists the directory, queues its expired files as one batch and forks a
+ * task per subdirectory, so idle workers steal subtrees from busy ones and a deep or lopsided tree keeps every worker
+ * listing. Once its files and subdirectories are done, a directory knows whether anything is left in it. An empty
+ * directory is deleted in turn if its own modification time is expired too, which may leave its parent empty; one
+ * modified within retention is kept even when empty, as a writer may be about to use it. The directories a sweep
+ * starts from are always kept.
+ *
+ * Deletes are never recursive, so nothing the sweep did not see as expired is removed, even if it appeared after the
+ * listing.
+ */
+public class DeepSweeper implements Closeable {
+    private static final Log LOG = LogFactory.getLog(DeepSweeper.class);
+
+    private final FileSystem fs;
+    private final TimePathFilter filter;
+    private final boolean descend;
+    private final Supplier<ParallelDeleter.Batch> deletes;
+    private final BooleanSupplier stop;
+    private final Consumer<FileStatus> found;
+    private final ForkJoinPool pool;
+
+    /**
+     * @param concurrency how many directories are listed at the same time
+     * @param filter which files and directories are expired
+     * @param descend whether to look into subdirectories, or only at the files right under the roots
+     * @param deletes new batches of non-recursive deletes, or null to only count what a sweep would delete
+     * @param stop checked before each delete; once true, nothing more is deleted or listed
+     * @param found told of every file and directory before it is deleted, or instead in a dry run
+     */
+    public DeepSweeper(
+            FileSystem fs,
+            int concurrency,
+            TimePathFilter filter,
+            boolean descend,
+            Supplier<ParallelDeleter.Batch> deletes,
+            BooleanSupplier stop,
+            Consumer<FileStatus> found
+    ) {
+        this.fs = fs;
+        this.filter = filter;
+        this.descend = descend;
+        this.deletes = deletes;
+        this.stop = stop;
+        this.found = found;
+        this.pool = new ForkJoinPool(concurrency);
+    }
+
+    /**
+     * Sweeps the tree under {@code root}, or deletes {@code root} alone if it is an expired file.
+     */
+    public Sweep sweep(FileStatus root) {
+        Sweep sweep = new Sweep();
+        if (root.isDirectory()) {
+            pool.invoke(new DirectoryTask(root, true, sweep));
+        } else {
+            sweep.scanned.increment();
+            if (filter.accept(root)) {
+                ParallelDeleter.Batch batch = deletes == null ? null : deletes.get();
+                deleteFile(root, batch, sweep);
+                if (batch != null) {
+                    batch.await();
+                    sweep.deleted.add(batch.getDeletedCount());
+                    sweep.failed.add(batch.getFailed().size());
+                }
+            }
+        }
+        LOG.info("Swept " + root.getPath() + ": " + sweep);
+        return sweep;
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    /**
+     * @return whether the file is gone, or would be in a dry run
+     */
+    private boolean deleteFile(FileStatus file, ParallelDeleter.Batch batch, Sweep sweep) {
+        sweep.expired.increment();
+        if (stop.getAsBoolean()) {
+            sweep.deferred.increment();
+            return false;
+        }
+        found.accept(file);
+        if (batch != null) {
+            batch.submit(file.getPath());
+        }
+        return true;
+    }
+
+    /**
+     * Sweeps one directory and, through the tasks it forks, everything under it.
+     */
+    private final class DirectoryTask extends RecursiveTask<Boolean> {
+        private final FileStatus dir;
+        private final boolean root;
+        private final Sweep sweep;
+
+        DirectoryTask(FileStatus dir, boolean root, Sweep sweep) {
+            this.dir = dir;
+            this.root = root;
+            this.sweep = sweep;
+        }
+
+        /**
+         * @return whether the directory was deleted, or would be in a dry run
+         */
+        @Override
+        protected Boolean compute() {
+            if (stop.getAsBoolean()) {
+                return false;
+            }
+            ParallelDeleter.Batch batch = deletes == null ? null : deletes.get();
+            List<DirectoryTask> subdirs = new ArrayList<>();
+            long left = 0;
+            try {
+                RemoteIterator<FileStatus> children = fs.listStatusIterator(dir.getPath());
+                while (children.hasNext()) {
+                    FileStatus child = children.next();
+                    sweep.scanned.increment();
+                    if (child.isDirectory() && descend) {
+                        subdirs.add(new DirectoryTask(child, false, sweep));
+                    } else if (child.isDirectory() || !filter.accept(child) || !deleteFile(child, batch, sweep)) {
+                        left++;
+                    }
+                }
+            } catch (FileNotFoundException e) {
+                LOG.debug(dir.getPath() + " is already gone");
+                return true;
+            } catch (IOException e) {
+                LOG.error("Listing failed on path: " + dir.getPath() + ", the rest is swept on the next run", e);
+                left++;
+            }
+
+            for (DirectoryTask subdir : invokeAll(subdirs)) {
+                if (!subdir.join()) {
+                    left++;
+                }
+            }
+            if (batch == null) {
+                return left == 0 && prunable();
+            }
+
+            batch.await();
+            int failed = batch.getFailed().size();
+            sweep.deleted.add(batch.getDeletedCount());
+            sweep.failed.add(failed);
+            if (failed > 0 || left > 0 || !prunable()) {
+                return false;
+            }
+
+            // A file created since the listing makes this delete fail, and the directory stays.
+            batch.submit(dir.getPath());
+            batch.await();
+            if (batch.getFailed().size() > failed) {
+                return false;
+            }
+            sweep.pruned.increment();
+            return true;
+        }
+
+        private boolean prunable() {
+            if (root || !filter.accept(dir) || stop.getAsBoolean()) {
+                return false;
+            }
+            found.accept(dir);
+            if (deletes == null) {
+                sweep.pruned.increment();
+            }
+            return true;
+        }
+    }
+
+    /**
+     * What a sweep found and did. In a dry run, nothing is deleted and {@link #getPruned()} counts the directories
+     * that would have been.
+     */
+    public static final class Sweep {
+        private final LongAdder scanned = new LongAdder();
+        private final LongAdder expired = new LongAdder();
+        private final LongAdder deleted = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder deferred = new LongAdder();
+        private final LongAdder pruned = new LongAdder();
+
+        public long getScanned() {
+            return scanned.sum();
+        }
+
+        public long getExpired() {
+            return expired.sum();
+        }
+
+        /**
+         * @return how many expired files were deleted
+         */
+        public long getDeleted() {
+            return deleted.sum();
+        }
+
+        public long getFailed() {
+            return failed.sum();
+        }
+
+        /**
+         * @return how many expired files were left for a later run
+         */
+        public long getDeferred() {
+            return deferred.sum();
+        }
+
+        /**
+         * @return how many emptied directories were deleted
+         */
+        public long getPruned() {
+            return pruned.sum();
+        }
+
+        @Override
+        public String toString() {
+            return getScanned() + " scanned, " + getExpired() + " expired, " + getDeleted() + " deleted, " +
+                    getFailed() + " failed, " + getDeferred() + " left for later, " + getPruned() +
+                    " empty directories pruned";
+        }
+    }
+}
@@ -0,0 +1,117 @@
+// Copyright Verizon Media
+// Licensed under the terms of the Apache 2.0 license. Please see LICENSE file in the project root for terms.
+
+package com.vz.disposal.delete;
+
+import org.apache.hadoop.fs.Path;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The deletions of a run across all of its entries, kept as a trie of path components with one root per namespace,
+ * so that each path is deleted once at most, and not at all when an ancestor of it is deleted recursively.
+ *
+ * Deletions are claimed before they are issued. A claim is refused for a path claimed before, or for a path under
+ * one claimed for recursive deletion. A recursive claim on a path claimed before without recursion is granted
+ * instead, as only the recursive deletion removes a directory that is not empty. Claiming the paths of all entries
+ * shallowest first, and recursive ones first among paths of the same depth, refuses every path another one covers.
+ * A path claimed before its ancestor is still deleted on its own; that costs a redundant call, but as the ancestor
+ * is deleted afterwards, no error.
+ *
+ * Paths that are only checked with {@link #isCovered} are not added to the trie, so the plan grows with the paths
+ * claimed, not with the paths checked.
+ */
+public class DeletionPlan {
+    private final Map<String, Node> roots = new HashMap<>();
+    private long claimed;
+    private long covered;
+
+    /**
+     * @param recursive whether {@code path} is deleted along with everything under it
+     * @return whether {@code path} is to be deleted by the caller, false if it is already taken care of
+     */
+    public synchronized boolean claim(Path path, boolean recursive) {
+        URI uri = path.toUri();
+        Node node = roots.computeIfAbsent(uri.getScheme() + "://" + uri.getAuthority(), root -> new Node());
+        for (String name : uri.getPath().split(Path.SEPARATOR)) {
+            if (name.isEmpty()) {
+                continue;
+            }
+            if (node.recursive) {
+                covered++;
+                return false;
+            }
+            node = node.child(name);
+        }
+        if (node.claimed && (node.recursive || !recursive)) {
+            covered++;
+            return false;
+        }
+        node.claimed = true;
+        if (recursive) {
+            // Nothing under a recursive deletion is claimed from now on, so there is no need to keep it around.
+            node.recursive = true;
+            node.children = null;
+        }
+        claimed++;
+        return true;
+    }
+
+    /**
+     * Checks {@code path} against the claims so far without claiming it.
+     *
+     * @return whether {@code path} was claimed before or lies under a path claimed for recursive deletion
+     */
+    public synchronized boolean isCovered(Path path) {
+        URI uri = path.toUri();
+        Node node = roots.get(uri.getScheme() + "://" + uri.getAuthority());
+        for (String name : uri.getPath().split(Path.SEPARATOR)) {
+            if (node == null) {
+                return false;
+            }
+            if (name.isEmpty()) {
+                continue;
+            }
+            if (node.recursive) {
+                covered++;
+                return true;
+            }
+            node = node.children == null ? null : node.children.get(name);
+        }
+        if (node == null || !node.claimed) {
+            return false;
+        }
+        covered++;
+        return true;
+    }
+
+    /**
+     * @return how many paths were claimed
+     */
+    public synchronized long getClaimed() {
+        return claimed;
+    }
+
+    /**
+     * @return how many claims were refused, or checks found covered, because the path was claimed before or lies under
+     * a recursive deletion
+     */
+    public synchronized long getCovered() {
+        return covered;
+    }
+
+    private static class Node {
+        private Map<String, Node> children;
+        private boolean claimed;
+        private boolean recursive;
+
+        Node child(String name) {
+            if (children == null) {
+                children = new HashMap<>();
+            }
+            return children.computeIfAbsent(name, child -> new Node());
+        }
+    }
+}
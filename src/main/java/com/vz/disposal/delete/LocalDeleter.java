@@ -0,0 +1,225 @@
+// Copyright Verizon Media
+// Licensed under the terms of the Apache 2.0 license. Please see LICENSE file in the project root for terms.
+
+package com.vz.disposal.delete;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Deletes paths on the local file system concurrently, the local counterpart of {@link ParallelDeleter}.
+ *
+ * A local disk has no namenode to back off from, so concurrency is fixed, and a failed delete is not retried: the
+ * next run picks the path up again. A path that is already gone counts as deleted. Callers group their deletes in a
+ * {@link Batch} and wait for that batch only, so several entries can share one deleter at the same time.
+ */
+public class LocalDeleter implements Closeable {
+    private static final Log LOG = LogFactory.getLog(LocalDeleter.class);
+
+    private static final int PENDING_PER_THREAD = 4;
+
+    private final ExecutorService executor;
+    private final Semaphore pending;
+
+    /**
+     * @param concurrency how many deletes run at the same time
+     */
+    public LocalDeleter(int concurrency) {
+        this.pending = new Semaphore(concurrency * PENDING_PER_THREAD);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "local-delete-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public Batch newBatch(boolean recursive) {
+        return newBatch(path -> delete(path, recursive));
+    }
+
+    public Batch newBatch(Operation operation) {
+        return new Batch(operation);
+    }
+
+    /**
+     * Deletes {@code path}. A directory that is not empty is only deleted if {@code recursive}, with everything under
+     * it, without following symbolic links.
+     *
+     * @throws DirectoryNotEmptyException if {@code path} is a directory that is not empty and not {@code recursive}
+     */
+    public static void delete(Path path, boolean recursive) throws IOException {
+        try {
+            Files.delete(path);
+        } catch (DirectoryNotEmptyException e) {
+            if (!recursive) {
+                throw e;
+            }
+            Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                    Files.deleteIfExists(file);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException failure) throws IOException {
+                    if (failure != null) {
+                        throw failure;
+                    }
+                    Files.deleteIfExists(dir);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    /**
+     * What is done to each path of a batch.
+     */
+    @FunctionalInterface
+    public interface Operation {
+        void apply(Path path) throws IOException;
+    }
+
+    /**
+     * A group of paths going through the same operation that a caller can wait on.
+     */
+    public class Batch {
+        private final Operation operation;
+        private final LongAdder deleted = new LongAdder();
+        private final ConcurrentLinkedQueue<Path> failed = new ConcurrentLinkedQueue<>();
+        private int outstanding;
+
+        private Batch(Operation operation) {
+            this.operation = operation;
+        }
+
+        /**
+         * Queues a delete. Blocks while the deleter already has too much queued work, which keeps a listing from
+         * running arbitrarily far ahead of the deletes. Called from a fork-join worker, such as those of a
+         * {@link com.vz.disposal.utils.LocalGlobLister}, it lets the pool make up for the blocked worker.
+         *
+         * @throws RejectedExecutionException if the deleter is closed
+         */
+        public void submit(Path path) {
+            try {
+                ForkJoinPool.managedBlock(new PendingBlocker());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failed.add(path);
+                return;
+            }
+
+            synchronized (this) {
+                outstanding++;
+            }
+
+            try {
+                execute(path);
+            } catch (RejectedExecutionException e) {
+                pending.release();
+                complete();
+                throw e;
+            }
+        }
+
+        private void execute(Path path) {
+            executor.execute(() -> {
+                try {
+                    operation.apply(path);
+                    deleted.increment();
+                } catch (NoSuchFileException e) {
+                    LOG.debug(path + " is already gone");
+                    deleted.increment();
+                } catch (IOException | RuntimeException e) {
+                    LOG.warn("Delete failed on path: " + path, e);
+                    failed.add(path);
+                } finally {
+                    pending.release();
+                    complete();
+                }
+            });
+        }
+
+        /**
+         * Waits until every delete submitted to this batch has finished.
+         */
+        public synchronized void await() {
+            boolean interrupted = false;
+            while (outstanding > 0) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        public long getDeletedCount() {
+            return deleted.sum();
+        }
+
+        public List<Path> getFailed() {
+            return new ArrayList<>(failed);
+        }
+
+        private synchronized void complete() {
+            if (--outstanding == 0) {
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Takes a permit of the queued work.
+     */
+    private class PendingBlocker implements ForkJoinPool.ManagedBlocker {
+        private boolean acquired;
+
+        @Override
+        public boolean block() throws InterruptedException {
+            if (!acquired) {
+                pending.acquire();
+                acquired = true;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean isReleasable() {
+            if (!acquired) {
+                acquired = pending.tryAcquire();
+            }
+            return acquired;
+        }
+    }
+}
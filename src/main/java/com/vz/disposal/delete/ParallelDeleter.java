@@ -0,0 +1,214 @@
+// Copyright Verizon Media
+// Licensed under the terms of the Apache 2.0 license. Please see LICENSE file in the project root for terms.
+
+package com.vz.disposal.delete;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PathIOException;
+import org.apache.hadoop.security.AccessControlException;
+
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs {@link FileSystem#delete} calls, or other single-path {@link PathOperation}s, concurrently against one
+ * namespace.
+ *
+ * The number of concurrent deletes is governed by an {@link AdaptiveConcurrencyLimiter}, so the deleter speeds up
+ * while the namenode answers quickly and backs off on its own once calls slow down or start failing. Transient
+ * {@link IOException}s are retried with exponential backoff; errors that will not go away on retry (missing path,
+ * permission denied, non-empty directory, runtime exceptions) are not.
+ *
+ * Callers group their deletes in a {@link Batch} and wait for that batch only, so several config entries can share
+ * one deleter, and therefore one concurrency budget, at the same time.
+ */
+public class ParallelDeleter implements Closeable {
+    private static final Log LOG = LogFactory.getLog(ParallelDeleter.class);
+
+    private static final long BASE_BACKOFF_MILLIS = 200;
+    private static final long MAX_BACKOFF_MILLIS = 10_000;
+    private static final int PENDING_PER_THREAD = 4;
+
+    private final FileSystem fs;
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final int maxRetries;
+    private final ThreadPoolExecutor executor;
+    private final Semaphore pending;
+
+    public ParallelDeleter(FileSystem fs, int maxConcurrency, int maxRetries, long targetLatencyMillis) {
+        this.fs = fs;
+        this.maxRetries = maxRetries;
+        this.limiter = new AdaptiveConcurrencyLimiter(
+                Math.max(1, maxConcurrency / 4),
+                1,
+                maxConcurrency,
+                TimeUnit.MILLISECONDS.toNanos(targetLatencyMillis)
+        );
+        this.pending = new Semaphore(maxConcurrency * PENDING_PER_THREAD);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                maxConcurrency,
+                maxConcurrency,
+                60,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "parallel-delete-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+        );
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    public Batch newBatch(boolean recursive) {
+        return new Batch("Delete", (fileSystem, path) -> fileSystem.delete(path, recursive));
+    }
+
+    /**
+     * @param name what the operation does, used in log messages
+     */
+    public Batch newBatch(String name, PathOperation operation) {
+        return new Batch(name, operation);
+    }
+
+    public AdaptiveConcurrencyLimiter getLimiter() {
+        return limiter;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    /**
+     * @return true if the operation succeeded, or found the path already gone
+     */
+    private boolean applyWithRetry(String name, PathOperation operation, Path path) throws InterruptedException {
+        for (int attempt = 0; ; attempt++) {
+            long start = limiter.acquire();
+            try {
+                operation.apply(fs, path);
+                limiter.onSuccess(start);
+                return true;
+            } catch (FileNotFoundException e) {
+                limiter.onSuccess(start);
+                return true;
+            } catch (AccessControlException | PathIOException e) {
+                limiter.onIgnore();
+                LOG.error(name + " failed on path: " + path, e);
+                return false;
+            } catch (RuntimeException e) {
+                // Such as a path of another file system; not a sign of load and not worth retrying.
+                limiter.onIgnore();
+                LOG.error(name + " failed on path: " + path, e);
+                return false;
+            } catch (IOException e) {
+                limiter.onFailure(start);
+                if (attempt >= maxRetries) {
+                    LOG.error(name + " failed on path: " + path + " after " + (attempt + 1) + " attempt(s)", e);
+                    return false;
+                }
+                long backoff = Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << attempt);
+                LOG.warn(name + " failed on path: " + path + ", retrying in " + backoff + " ms", e);
+                Thread.sleep(backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1));
+            }
+        }
+    }
+
+    /**
+     * A group of paths going through the same operation that a caller can wait on.
+     */
+    public class Batch {
+        private final String name;
+        private final PathOperation operation;
+        private final LongAdder deleted = new LongAdder();
+        private final ConcurrentLinkedQueue<Path> failed = new ConcurrentLinkedQueue<>();
+        private int outstanding;
+
+        private Batch(String name, PathOperation operation) {
+            this.name = name;
+            this.operation = operation;
+        }
+
+        /**
+         * Queues a delete. Blocks while the deleter already has too much queued work, which keeps producers from
+         * running arbitrarily far ahead of the namenode.
+         */
+        public void submit(Path path) {
+            try {
+                pending.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failed.add(path);
+                return;
+            }
+
+            synchronized (this) {
+                outstanding++;
+            }
+
+            executor.execute(() -> {
+                try {
+                    if (applyWithRetry(name, operation, path)) {
+                        deleted.increment();
+                    } else {
+                        failed.add(path);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    failed.add(path);
+                } finally {
+                    pending.release();
+                    complete();
+                }
+            });
+        }
+
+        /**
+         * Waits until every delete submitted to this batch has finished.
+         */
+        public synchronized void await() {
+            boolean interrupted = false;
+            while (outstanding > 0) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        public long getDeletedCount() {
+            return deleted.sum();
+        }
+
+        public List<Path> getFailed() {
+            return new ArrayList<>(failed);
+        }
+
+        private synchronized void complete() {
+            if (--outstanding == 0) {
+                notifyAll();
+            }
+        }
+    }
+}
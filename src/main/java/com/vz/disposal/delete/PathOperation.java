@@ -0,0 +1,17 @@
+// Copyright Verizon Media
+// Licensed under the terms of the Apache 2.0 license. Please see LICENSE file in the project root for terms.
+
+package com.vz.disposal.delete;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import java.io.IOException;
+
+/**
+ * A single namenode operation that {@link ParallelDeleter} runs, retries and throttles for each submitted path.
+ */
+@FunctionalInterface
+public interface PathOperation {
+    void apply(FileSystem fs, Path path) throws IOException;
+}
@@ -0,0 +1,91 @@
+// Copyright Verizon Media
+// Licensed under the terms of the Apache 2.0 license. Please see LICENSE file in the project root for terms.
+
+package com.vz.disposal.delete;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Second phase of the "rename, then delete" disposal mode.
+ *
+ * Expired paths are first renamed into a per-run directory under a staging directory, which is a single metadata
+ * operation and hides the data from readers at once. The purger then removes whatever is left under the staging
+ * directory at its own, throttled pace. It works purely from what it finds on disk, so a purge that is interrupted
+ * simply resumes on the next run, including leftovers of earlier runs.
+ */
+public class StagingPurger {
+    private static final Log LOG = LogFactory.getLog(StagingPurger.class);
+
+    private final FileSystem fs;
+    private final ParallelDeleter deleter;
+
+    public StagingPurger(FileSystem fs, ParallelDeleter deleter) {
+        this.fs = fs;
+        this.deleter = deleter;
+    }
+
+    /**
+     * @return the directory under {@code stagingDir} that a run started at {@code runId} stages into
+     */
+    public static Path runDir(Path stagingDir, String runId) {
+        return new Path(stagingDir, "run-" + runId);
+    }
+
+    /**
+     * @return where {@code path} goes when staged into {@code runDir}; the full original path is kept, encoded into
+     * a single name, so that staged data can be traced back to where it came from
+     */
+    public static Path stagedPath(Path runDir, Path path) {
+        try {
+            return new Path(runDir, URLEncoder.encode(path.toUri().getPath(), StandardCharsets.UTF_8.name()));
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Deletes everything staged under {@code stagingDir}, then the emptied run directories.
+     *
+     * @return the number of staged paths deleted
+     */
+    public long purge(Path stagingDir) {
+        ParallelDeleter.Batch contents = deleter.newBatch(true);
+        ParallelDeleter.Batch runDirs = deleter.newBatch(false);
+        try {
+            RemoteIterator<FileStatus> runs = fs.listStatusIterator(stagingDir);
+            while (runs.hasNext()) {
+                FileStatus run = runs.next();
+                if (!run.isDirectory()) {
+                    continue;
+                }
+                RemoteIterator<FileStatus> staged = fs.listStatusIterator(run.getPath());
+                while (staged.hasNext()) {
+                    contents.submit(staged.next().getPath());
+                }
+                contents.await();
+                runDirs.submit(run.getPath());
+            }
+        } catch (FileNotFoundException e) {
+            LOG.debug("Nothing staged under " + stagingDir);
+        } catch (IOException e) {
+            LOG.error("Listing failed on staging directory: " + stagingDir + ", the rest is purged on the next run", e);
+        }
+        contents.await();
+        runDirs.await();
+
+        LOG.info("Purged " + contents.getDeletedCount() + " staged paths under " + stagingDir + ", " +
+                contents.getFailed().size() + " failed");
+        return contents.getDeletedCount();
+    }
+}
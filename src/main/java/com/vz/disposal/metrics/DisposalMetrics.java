@@ -0,0 +1,116 @@
+// Copyright Verizon Media
+// Licensed under the terms of the Apache 2.0 license. Please see LICENSE file in the project root for terms.
+
+package com.vz.disposal.metrics;
+
+import lombok.Value;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms of the disposal runs in this process.
+ *
+ * Looking up a metric goes through a map, so callers on a hot path should look a metric up once, for example per
+ * entry, and keep the returned {@link LongAdder} or {@link LatencyHistogram}; updating those is lock-free.
+ */
+public class DisposalMetrics {
+    private static final DisposalMetrics GLOBAL = new DisposalMetrics();
+
+    public static final String HDFS = "hdfs";
+    public static final String HIVE = "hive";
+    public static final String LOCAL = "local";
+
+    private final Map<CounterKey, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<LatencyKey, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+    private final Map<String, Duration> runDurations = new ConcurrentHashMap<>();
+
+    /**
+     * @return the metrics shared by every disposal in this process
+     */
+    public static DisposalMetrics global() {
+        return GLOBAL;
+    }
+
+    /**
+     * What happened to the paths or partitions of an entry.
+     */
+    public enum Stage {
+        /** Listed, before the retention filter. */
+        SCANNED,
+        /** Expired, and therefore up for disposal. */
+        MATCHED,
+        DELETED,
+        FAILED,
+        /** Expired, but left for a later run by the deadline of the run. */
+        DEFERRED
+    }
+
+    /**
+     * @param backend {@link #HDFS}, {@link #HIVE} or {@link #LOCAL}
+     * @param entry the entry's path, or its database and table
+     */
+    public LongAdder counter(String backend, String entry, Stage stage) {
+        return counters.computeIfAbsent(new CounterKey(backend, entry, stage), key -> new LongAdder());
+    }
+
+    /**
+     * @param rpc the name of the call, for example {@code globStatus} or {@code dropPartitions}
+     */
+    public LatencyHistogram latency(String backend, String rpc) {
+        return latencies.computeIfAbsent(new LatencyKey(backend, rpc), key -> new LatencyHistogram());
+    }
+
+    public void recordRunDuration(String backend, Duration duration) {
+        runDurations.put(backend, duration);
+    }
+
+    public Map<CounterKey, Long> getCounters() {
+        Map<CounterKey, Long> snapshot = new TreeMap<>();
+        counters.forEach((key, counter) -> snapshot.put(key, counter.sum()));
+        return snapshot;
+    }
+
+    public Map<LatencyKey, LatencyHistogram> getLatencies() {
+        return new TreeMap<>(latencies);
+    }
+
+    /**
+     * @return how long the last run of each backend took
+     */
+    public Map<String, Duration> getRunDurations() {
+        return new TreeMap<>(runDurations);
+    }
+
+    @Value
+    public static class CounterKey implements Comparable<CounterKey> {
+        String backend;
+        String entry;
+        Stage stage;
+
+        @Override
+        public int compareTo(CounterKey other) {
+            int byBackend = backend.compareTo(other.backend);
+            if (byBackend != 0) {
+                return byBackend;
+            }
+            int byEntry = entry.compareTo(other.entry);
+            return byEntry != 0 ? byEntry : stage.compareTo(other.stage);
+        }
+    }
+
+    @Value
+    public static class LatencyKey implements Comparable<LatencyKey> {
+        String backend;
+        String rpc;
+
+        @Override
+        public int compareTo(LatencyKey other) {
+            int byBackend = backend.compareTo(other.backend);
+            return byBackend != 0 ? byBackend : rpc.compareTo(other.rpc);
+        }
+    }
+}
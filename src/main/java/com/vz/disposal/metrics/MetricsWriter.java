@@ -0,0 +1,131 @@
+// Copyright Verizon Media
+// Licensed under the terms of the Apache 2.0 license. Please see LICENSE file in the project root for terms.
+
+package com.vz.disposal.metrics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Writes {@link DisposalMetrics} to a file, either in the Prometheus text format, for the node exporter's textfile
+ * collector, or as JSON when the file name ends in {@code .json}.
+ *
+ * The file is written next to its destination and then moved over it, so a scrape never sees a partial file.
+ */
+public class MetricsWriter {
+    private static final String PREFIX = "data_disposal_";
+
+    private final DisposalMetrics metrics;
+
+    public MetricsWriter(DisposalMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public void write(Path file) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            if (file.getFileName().toString().endsWith(".json")) {
+                writeJson(writer);
+            } else {
+                writePrometheus(writer);
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public void writePrometheus(Writer writer) throws IOException {
+        String counter = PREFIX + "entry_paths_total";
+        writer.write("# HELP " + counter + " Paths or partitions per entry and stage of disposal.\n");
+        writer.write("# TYPE " + counter + " counter\n");
+        for (Map.Entry<DisposalMetrics.CounterKey, Long> entry : metrics.getCounters().entrySet()) {
+            DisposalMetrics.CounterKey key = entry.getKey();
+            writer.write(counter + "{backend=\"" + escape(key.getBackend()) + "\",entry=\"" + escape(key.getEntry()) +
+                    "\",stage=\"" + key.getStage().name().toLowerCase(Locale.ROOT) + "\"} " + entry.getValue() + "\n");
+        }
+
+        String histogram = PREFIX + "rpc_latency_seconds";
+        writer.write("# HELP " + histogram + " Latency of calls to HDFS and the Hive metastore.\n");
+        writer.write("# TYPE " + histogram + " histogram\n");
+        long[] bounds = LatencyHistogram.getBoundsMillis();
+        for (Map.Entry<DisposalMetrics.LatencyKey, LatencyHistogram> entry : metrics.getLatencies().entrySet()) {
+            String labels = "backend=\"" + escape(entry.getKey().getBackend()) + "\",rpc=\"" +
+                    escape(entry.getKey().getRpc()) + "\"";
+            long[] counts = entry.getValue().getBucketCounts();
+            long cumulative = 0;
+            for (int i = 0; i < counts.length; i++) {
+                cumulative += counts[i];
+                String le = i < bounds.length ? seconds(bounds[i] * 1_000_000L) : "+Inf";
+                writer.write(histogram + "_bucket{" + labels + ",le=\"" + le + "\"} " + cumulative + "\n");
+            }
+            writer.write(histogram + "_sum{" + labels + "} " + seconds(entry.getValue().getSumNanos()) + "\n");
+            writer.write(histogram + "_count{" + labels + "} " + cumulative + "\n");
+        }
+
+        String duration = PREFIX + "run_duration_seconds";
+        writer.write("# HELP " + duration + " Duration of the last run per backend.\n");
+        writer.write("# TYPE " + duration + " gauge\n");
+        for (Map.Entry<String, Duration> entry : metrics.getRunDurations().entrySet()) {
+            writer.write(duration + "{backend=\"" + escape(entry.getKey()) + "\"} " +
+                    seconds(entry.getValue().toNanos()) + "\n");
+        }
+    }
+
+    protected void writeJson(Writer writer) throws IOException {
+        List<Map<String, Object>> counters = new ArrayList<>();
+        metrics.getCounters().forEach((key, value) -> {
+            Map<String, Object> counter = new LinkedHashMap<>();
+            counter.put("backend", key.getBackend());
+            counter.put("entry", key.getEntry());
+            counter.put("stage", key.getStage().name().toLowerCase(Locale.ROOT));
+            counter.put("value", value);
+            counters.add(counter);
+        });
+
+        List<Map<String, Object>> latencies = new ArrayList<>();
+        long[] bounds = LatencyHistogram.getBoundsMillis();
+        metrics.getLatencies().forEach((key, histogram) -> {
+            Map<String, Long> buckets = new LinkedHashMap<>();
+            long[] counts = histogram.getBucketCounts();
+            for (int i = 0; i < counts.length; i++) {
+                buckets.put(i < bounds.length ? String.valueOf(bounds[i]) : "+Inf", counts[i]);
+            }
+            Map<String, Object> latency = new LinkedHashMap<>();
+            latency.put("backend", key.getBackend());
+            latency.put("rpc", key.getRpc());
+            latency.put("count", histogram.getCount());
+            latency.put("sumMillis", histogram.getSumNanos() / 1_000_000L);
+            latency.put("bucketsMillis", buckets);
+            latencies.add(latency);
+        });
+
+        Map<String, Long> durations = new LinkedHashMap<>();
+        metrics.getRunDurations().forEach((backend, duration) -> durations.put(backend, duration.toMillis()));
+
+        Map<String, Object> document = new LinkedHashMap<>();
+        document.put("counters", counters);
+        document.put("latencies", latencies);
+        document.put("runDurationMillis", durations);
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(writer, document);
+    }
+
+    private static String seconds(long nanos) {
+        return String.valueOf(nanos / 1e9);
+    }
+
+    private static String escape(String label) {
+        return label.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -5,14 +5,73 @@ package com.vz.disposal.runner;
 
 import com.vz.disposal.config.BaseConfigList;
 import com.vz.disposal.config.ConfigEntry;
+import com.vz.disposal.metrics.DisposalMetrics;
+import com.vz.disposal.state.DeletionJournal;
+import com.vz.disposal.state.PlanManifest;
+import com.vz.disposal.state.WatermarkStore;
+import com.vz.disposal.utils.Utils;
+import lombok.Setter;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+public abstract class Disposal<T extends BaseConfigList, U extends ConfigEntry> implements Closeable {
+    private static final Log LOG = LogFactory.getLog(Disposal.class);
 
-public abstract class Disposal<T extends BaseConfigList, U extends ConfigEntry> {
     protected final T config;
     protected final boolean dryRun;
+    protected final DisposalMetrics metrics = DisposalMetrics.global();
+
+    /**
+     * When set, entries only look at what expired since their last successful disposal; see {@link WatermarkStore}.
+     */
+    @Setter
+    protected WatermarkStore watermarks;
+
+    /**
+     * When set, deletions are journaled so that an interrupted run can be resumed; see {@link DeletionJournal}.
+     */
+    @Setter
+    protected DeletionJournal journal;
+
+    /**
+     * When set, every path or partition found up for disposal is written to it as it is found; see
+     * {@link PlanManifest}.
+     */
+    @Setter
+    protected PlanManifest manifest;
+
+    /**
+     * When set, no entry is started and no deletion is issued from this time on. What is left is reported, and kept
+     * in the journal, if there is one, for the next run to pick up.
+     */
+    @Setter
+    protected Instant deadline;
+
+    private final Set<String> notStarted = ConcurrentHashMap.newKeySet();
+    private final Map<String, Long> deferred = new ConcurrentHashMap<>();
+    private final Set<String> failed = ConcurrentHashMap.newKeySet();
+
+    /**
+     * When a one-shot run started; retention of a whole run is counted back from this time. A long-running process
+     * passes the time of each entry's run to {@link #runEntry} instead.
+     */
     protected static final ZonedDateTime TIME_OF_RUN = ZonedDateTime.now(ZoneOffset.UTC);
 
     protected Disposal(T config, boolean dryRun) {
@@ -21,8 +80,269 @@ public abstract class Disposal<T extends BaseConfigList, U extends ConfigEntry>
     }
 
     public void run() {
-        config.getEntries().parallelStream().forEach(entry -> this.dispose((U) entry));
+        long start = System.nanoTime();
+        disposeEntries();
+        metrics.recordRunDuration(getBackend(), Duration.ofNanos(System.nanoTime() - start));
+
+        saveWatermarks();
+        boolean cutShort = reportDeadline();
+        if (journal != null) {
+            try {
+                if (cutShort) {
+                    journal.close();
+                } else {
+                    journal.complete();
+                }
+            } catch (IOException e) {
+                LOG.error("Unable to close the journal of the run", e);
+            }
+        }
+    }
+
+    /**
+     * Carries out the deletions of a plan manifest an earlier run wrote, typically a reviewed dry run, instead of
+     * listing. Only targets of this backend and of entries in the config are looked at, as they are read, and each
+     * is checked on its own before it is deleted: a target that is gone is skipped, as is one the retention of its
+     * entry no longer expires. Watermarks and the journal are left alone.
+     */
+    public void execute(Path manifestFile) throws IOException {
+        Map<String, U> entries = new HashMap<>();
+        for (U entry : (List<U>) config.getEntries()) {
+            entries.put(entryKey(entry), entry);
+        }
+        Map<String, Long> unknown = new TreeMap<>();
+
+        long start = System.nanoTime();
+        PlanExecution<U> execution = newPlanExecution(TIME_OF_RUN);
+        try {
+            PlanManifest.read(manifestFile, item -> {
+                if (!getBackend().equals(item.getBackend())) {
+                    return;
+                }
+                U entry = entries.get(item.getEntry());
+                if (entry == null) {
+                    unknown.merge(item.getEntry(), 1L, Long::sum);
+                } else if (pastDeadline()) {
+                    defer(entry, 1);
+                } else {
+                    execution.execute(entry, item);
+                }
+            });
+        } finally {
+            execution.finish();
+            metrics.recordRunDuration(getBackend(), Duration.ofNanos(System.nanoTime() - start));
+        }
+        if (!unknown.isEmpty()) {
+            LOG.warn("Skipped targets of entries missing from the " + getBackend() + " config, per entry: " + unknown);
+        }
+        reportDeadline();
+    }
+
+    /**
+     * Disposes of a single entry, with retention counted back from {@code timeOfRun}, for processes that schedule
+     * entries on their own. Not journaled.
+     */
+    public void runEntry(U entry, ZonedDateTime timeOfRun) {
+        dispose(entry, timeOfRun);
+        saveWatermarks();
+    }
+
+    public T getConfig() {
+        return config;
+    }
+
+    /**
+     * Releases the clients this disposal holds.
+     */
+    @Override
+    public void close() throws IOException {
+    }
+
+    protected void disposeEntries() {
+        try (IOExecutor executor = new IOExecutor(getBackend() + "-entries", entryConcurrency())) {
+            executor.forEach(entriesByPriority(), this::disposeOrResume);
+        }
+    }
+
+    /**
+     * @return the entries of the run, those furthest behind first, so that a run cut short by its deadline leaves
+     * the least important deletions behind. Entries never disposed of incrementally come first, then entries by the
+     * cutoff of their last successful disposal, and among those, the entries whose retention reaches back the
+     * furthest, as their expired data is the oldest.
+     */
+    protected List<U> entriesByPriority() {
+        List<U> entries = new ArrayList<>((List<U>) config.getEntries());
+        Map<U, Instant> lastCutoffs = new IdentityHashMap<>();
+        Map<U, Instant> beginningsOfRetention = new IdentityHashMap<>();
+        for (U entry : entries) {
+            lastCutoffs.put(entry, watermarks == null ? null : watermarks.get(entryKey(entry)));
+            beginningsOfRetention.put(entry, entry.getGranularity() == null ? null : Utils.getBeginningOfRetention(
+                    TIME_OF_RUN, entry.getRetentionDuration(), entry.getGranularity()));
+        }
+        entries.sort(Comparator.comparing(lastCutoffs::get, Comparator.nullsFirst(Comparator.<Instant>naturalOrder()))
+                .thenComparing(beginningsOfRetention::get, Comparator.nullsLast(Comparator.naturalOrder())));
+        return entries;
+    }
+
+    /**
+     * @return whether the run is past its deadline
+     */
+    protected boolean pastDeadline() {
+        return deadline != null && !Instant.now().isBefore(deadline);
+    }
+
+    /**
+     * @return whether the run listed {@code entry} before disposing of any entry; past the deadline, such an entry
+     * still journals and reports its expired paths, but does not delete them
+     */
+    protected boolean isListedUpFront(U entry) {
+        return false;
     }
 
-    protected abstract List dispose(U entry);
+    /**
+     * Records that {@code count} expired paths or partitions of {@code entry} are left for a later run because of
+     * the deadline; the entry is not marked done in the journal.
+     */
+    protected void defer(U entry, long count) {
+        deferred.merge(entryKey(entry), count, Long::sum);
+    }
+
+    /**
+     * Records that deletions of {@code entry} failed in this run; the entry is not marked done in the journal, so
+     * that a resumed run replays the deletions that were not acknowledged.
+     */
+    protected void fail(U entry) {
+        failed.add(entryKey(entry));
+    }
+
+    /**
+     * Writes {@code target} of {@code entry} to the plan manifest, if there is one.
+     *
+     * @param epochSecond when retention of the target was counted from, or
+     *                    {@link com.vz.disposal.utils.CompiledDatePattern#NO_MATCH} if it has no time of its own
+     */
+    protected void planned(U entry, String target, long epochSecond, String reason) {
+        if (manifest != null) {
+            manifest.add(getBackend(), entryKey(entry), target, epochSecond, reason);
+        }
+    }
+
+    /**
+     * @return how many entries of a run are disposed of at the same time
+     */
+    protected abstract int entryConcurrency();
+
+    /**
+     * @return whether the run was cut short by its deadline, which is then logged
+     */
+    private boolean reportDeadline() {
+        boolean cutShort = !notStarted.isEmpty() || !deferred.isEmpty();
+        if (cutShort) {
+            LOG.warn("The " + getBackend() + " run stopped at its deadline of " + deadline + ". Entries not started: " +
+                    notStarted + ". Expired paths or partitions left for a later run, per entry: " + deferred);
+        }
+        return cutShort;
+    }
+
+    private void saveWatermarks() {
+        if (watermarks != null && !dryRun) {
+            try {
+                watermarks.save();
+            } catch (IOException e) {
+                LOG.error("Unable to save watermarks, the next run looks at everything again", e);
+            }
+        }
+    }
+
+    /**
+     * Disposes of {@code entry}, unless an interrupted run already got through it or planned all of its deletions.
+     * The entry is only marked done in the journal if none of its deletions was deferred or failed.
+     */
+    private void disposeOrResume(U entry) {
+        String key = entryKey(entry);
+        if (pastDeadline() && !isListedUpFront(entry)) {
+            notStarted.add(key);
+            return;
+        }
+        if (journal == null) {
+            dispose(entry);
+            return;
+        }
+        DeletionJournal.Recovered recovered = journal.recovered(key);
+        if (recovered != null && recovered.isDone()) {
+            LOG.info("Skipping " + key + ", the interrupted run got through it");
+            return;
+        }
+        if (recovered != null && recovered.isListed()) {
+            LOG.info("Replaying " + recovered.getPending().size() + " deletion(s) of " + key +
+                    " left over by the interrupted run");
+            resume(entry, recovered.getPending(), TIME_OF_RUN);
+        } else {
+            dispose(entry);
+        }
+        if (!deferred.containsKey(key) && !failed.contains(key)) {
+            journal.entryDone(key);
+        }
+    }
+
+    /**
+     * @return whether the journal has {@code entry} skipped or replayed in this run rather than disposed of
+     */
+    protected boolean isRecovered(U entry) {
+        if (journal == null) {
+            return false;
+        }
+        DeletionJournal.Recovered recovered = journal.recovered(entryKey(entry));
+        return recovered != null && (recovered.isDone() || recovered.isListed());
+    }
+
+    protected List dispose(U entry) {
+        return dispose(entry, TIME_OF_RUN);
+    }
+
+    /**
+     * Disposes of what expired in {@code entry}, with retention counted back from {@code timeOfRun}.
+     *
+     * @return what was up for disposal, when it was listed in full
+     */
+    protected abstract List dispose(U entry, ZonedDateTime timeOfRun);
+
+    /**
+     * Carries out the deletions an interrupted run planned for {@code entry} but did not get to, without listing.
+     *
+     * @param pending the targets as they were passed to {@link DeletionJournal#plan}
+     */
+    protected abstract void resume(U entry, Set<String> pending, ZonedDateTime timeOfRun);
+
+    /**
+     * @param timeOfRun what retention of the targets is checked against
+     * @return a new execution of the targets of a plan manifest
+     */
+    protected abstract PlanExecution<U> newPlanExecution(ZonedDateTime timeOfRun);
+
+    /**
+     * @return what identifies {@code entry} among the entries of its config, in watermarks and in the journal
+     */
+    public abstract String entryKey(U entry);
+
+    /**
+     * @return the backend name metrics of this disposal are recorded under
+     */
+    public abstract String getBackend();
+
+    /**
+     * Carries out the targets of a plan manifest, as they are read.
+     */
+    protected interface PlanExecution<U> {
+        /**
+         * Checks {@code item}, a target of {@code entry}, and deletes it unless it is gone or no longer expired;
+         * may return before the deletion is done.
+         */
+        void execute(U entry, PlanManifest.Item item);
+
+        /**
+         * Waits until every target is done.
+         */
+        void finish();
+    }
 }
@@ -6,10 +6,24 @@ package com.vz.disposal.runner;
 import com.vz.disposal.config.ConfigLoader;
 import com.vz.disposal.config.HDFSConfigEntry;
 import com.vz.disposal.config.HDFSConfigList;
+import com.vz.disposal.config.HDFSListingMode;
+import com.vz.disposal.config.HDFSNamespaceConfig;
 import com.vz.disposal.config.HDFSRetentionType;
+import com.vz.disposal.delete.DeepSweeper;
+import com.vz.disposal.delete.DeletionPlan;
+import com.vz.disposal.delete.ParallelDeleter;
+import com.vz.disposal.delete.PathOperation;
+import com.vz.disposal.delete.StagingPurger;
+import com.vz.disposal.metrics.DisposalMetrics;
+import com.vz.disposal.metrics.LatencyHistogram;
+import com.vz.disposal.state.PlanManifest;
+import com.vz.disposal.utils.CompiledDatePattern;
+import com.vz.disposal.utils.DateTreeWalker;
 import com.vz.disposal.utils.DatestampPathFilter;
 import com.vz.disposal.utils.ModificationTimePathFilter;
+import com.vz.disposal.utils.StreamingGlobLister;
 import com.vz.disposal.utils.TimePathFilter;
+import com.vz.disposal.utils.Utils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
@@ -18,11 +32,33 @@ import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
+import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 
 
@@ -30,7 +66,21 @@ public class HDFSDisposal extends Disposal<HDFSConfigList, HDFSConfigEntry> {
     private static final Log LOG = LogFactory.getLog(HDFSDisposal.class);
     public static final String TIMESTAMP_LOCATOR = "%s";
 
-    private final FileSystem fs;
+    /**
+     * Beyond this many dates since the last disposal, a full listing is cheaper than globbing them one by one.
+     */
+    private static final int MAX_WINDOW_DATES = 512;
+    private static final String GLOB_SPECIAL_CHARS = "{},*?[]\\";
+
+    private final Function<URI, FileSystem> fileSystems;
+    private final URI defaultNamespace;
+    private final Map<URI, HDFSNamespace> namespaces = new ConcurrentHashMap<>();
+
+    /**
+     * The deletions of the run in progress, if any; entries disposed of on their own are not planned together.
+     */
+    private volatile DeletionPlan plan;
+    private final Map<HDFSConfigEntry, Listing> planned = new ConcurrentHashMap<>();
 
     /**
      * This should only be used for unit testing.
@@ -38,74 +88,844 @@ public class HDFSDisposal extends Disposal<HDFSConfigList, HDFSConfigEntry> {
     protected HDFSDisposal(HDFSConfigList config, boolean dryRun, FileSystem mockfs) {
         super(config, dryRun);
 
-        this.fs = mockfs;
+        this.fileSystems = uri -> mockfs;
+        this.defaultNamespace = defaultNamespace(config);
+        validateConfig();
     }
 
     public HDFSDisposal(String confFile, boolean dryRun) throws IOException {
-        super(new ConfigLoader<HDFSConfigList>().loadConfig(confFile, HDFSConfigList.class), dryRun);
+        this(new ConfigLoader<HDFSConfigList>().loadConfig(confFile, HDFSConfigList.class), dryRun);
+    }
+
+    public HDFSDisposal(HDFSConfigList config, boolean dryRun) throws IOException {
+        super(config, dryRun);
         Configuration conf = new Configuration();
         conf.set("hadoop.security.authentication", "kerberos");
-        this.fs = FileSystem.get(URI.create(config.getHdfsNamenode()), conf);
+        this.fileSystems = uri -> {
+            try {
+                return FileSystem.get(uri, conf);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+        this.defaultNamespace = defaultNamespace(config);
+        validateConfig();
+
+        // Connect to every namespace up front so that a bad namenode fails the run before anything is deleted.
+        try {
+            namespaceFor(new Path(config.getHdfsNamenode()));
+            config.getEntries().forEach(entry -> namespaceFor(new Path(entry.getPath())));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static URI defaultNamespace(HDFSConfigList config) {
+        if (config == null || config.getHdfsNamenode() == null) {
+            return URI.create("hdfs:///");
+        }
+        return HDFSNamespace.namespaceOf(new Path(config.getHdfsNamenode()), null);
+    }
+
+    /**
+     * @return the namespace {@code path} lives in, connecting to it on first use
+     */
+    protected HDFSNamespace namespaceFor(Path path) {
+        return namespaces.computeIfAbsent(HDFSNamespace.namespaceOf(path, defaultNamespace), this::openNamespace);
+    }
+
+    private HDFSNamespace openNamespace(URI uri) {
+        HDFSConfigList settings = config == null ? new HDFSConfigList() : config;
+        int deleteConcurrency = settings.getNamespaces().stream()
+                .filter(namespace -> uri.equals(HDFSNamespace.namespaceOf(new Path(namespace.getUri()), null)))
+                .map(HDFSNamespaceConfig::getDeleteConcurrency)
+                .filter(Objects::nonNull)
+                .findFirst()
+                .orElse(settings.getDeleteConcurrency());
+
+        FileSystem fs = fileSystems.apply(uri);
+        ParallelDeleter deleter = new ParallelDeleter(
+                fs,
+                deleteConcurrency,
+                settings.getDeleteRetries(),
+                settings.getDeleteTargetLatencyMillis()
+        );
+        LOG.info("Using namespace " + uri + " with up to " + deleteConcurrency + " concurrent deletes");
+        return new HDFSNamespace(uri, fs, deleter);
+    }
+
+    /**
+     * Plans the deletions of every entry together so that none is issued twice, disposes of every entry, then
+     * purges the staging directories that entries renamed expired paths into.
+     */
+    @Override
+    protected void disposeEntries() {
+        plan = new DeletionPlan();
+        try {
+            planListedEntries();
+            super.disposeEntries();
+        } finally {
+            plan = null;
+            planned.clear();
+        }
+        purgeStaging();
     }
 
     @Override
-    protected List dispose(HDFSConfigEntry entry) {
+    public String getBackend() {
+        return DisposalMetrics.HDFS;
+    }
+
+    @Override
+    protected int entryConcurrency() {
+        return config.getEntryConcurrency();
+    }
+
+    /**
+     * Stops the deleters; file systems are cached and shared by Hadoop, so they are left open.
+     */
+    @Override
+    public void close() {
+        namespaces.values().forEach(namespace -> namespace.getDeleter().close());
+    }
+
+    @Override
+    protected List dispose(HDFSConfigEntry entry, ZonedDateTime timeOfRun) {
+        if (entry.getRetentionType() == HDFSRetentionType.DEEP_MODIFICATION_TIME) {
+            sweep(entry, timeOfRun);
+            return new ArrayList<>();
+        }
+        Listing listing = planned.remove(entry);
+        if (listing == null) {
+            listing = list(entry, timeOfRun);
+        }
         List<Path> upForDisposal = new ArrayList<>();
+        if (listing.skipped || (listing.paths == null && listing.streamed == null)) {
+            return upForDisposal;
+        }
+
+        HDFSNamespace namespace = namespaceFor(new Path(entry.getPath()));
+        String globPath = listing.globPath;
+        if (listing.streamed != null) {
+            boolean disposed = disposeStreaming(namespace, entry, timeOfRun, globPath, listing.streamed);
+            advanceWatermark(entry, listing.cutoff, disposed);
+            return upForDisposal;
+        }
+
+        upForDisposal = listing.paths;
+        String reason = reason(entry, timeOfRun);
+        Map<Path, Long> epochSeconds = listing.epochSeconds;
+        upForDisposal.forEach(path -> planned(entry, path.toString(), epochSeconds.get(path), reason));
+        LOG.info(upForDisposal.size() + " paths up for disposal under " + globPath);
+        if (upForDisposal.isEmpty()) {
+            advanceWatermark(entry, listing.cutoff, !dryRun);
+            return upForDisposal;
+        }
+
+        if (!dryRun) {
+            LOG.info("Disposal for " + globPath);
+            if (journal != null) {
+                upForDisposal.forEach(path -> journal.plan(entryKey(entry), path.toString()));
+                journal.listed(entryKey(entry));
+            }
+            ParallelDeleter.Batch batch = newDisposalBatch(namespace, entry, timeOfRun);
+            long left = submitUntilDeadline(entry, upForDisposal, batch);
+            batch.await();
+            recordOutcome(entry, batch);
+            LOG.info("Deleted " + batch.getDeletedCount() + " of " + upForDisposal.size() + " paths for " + globPath +
+                    ", " + batch.getFailed().size() + " failed" + (left > 0 ? ", " + left + " left for later" : ""));
+            advanceWatermark(entry, listing.cutoff, batch.getFailed().isEmpty() && left == 0);
+        }
+
+        return upForDisposal;
+    }
 
+    /**
+     * Sweeps the directories {@code entry}'s path matches for expired files at any depth, and prunes the directories
+     * they leave empty. Sweeps are not journaled: they only ever delete what they just saw expired, and the next run
+     * finds whatever an interrupted sweep left on its own.
+     */
+    private void sweep(HDFSConfigEntry entry, ZonedDateTime timeOfRun) {
+        String globPath = entry.getPath();
+        HDFSNamespace namespace = namespaceFor(new Path(globPath));
+        FileStatus[] roots;
+        long start = System.nanoTime();
+        try {
+            roots = namespace.getFs().globStatus(new Path(globPath));
+        } catch (IOException e) {
+            LOG.error("Glob status failed on path: " + globPath, e);
+            return;
+        } finally {
+            metrics.latency(DisposalMetrics.HDFS, "globStatus").recordSince(start);
+        }
+        if (roots == null || roots.length == 0) {
+            LOG.info("Nothing to sweep for: " + globPath);
+            return;
+        }
+
+        HDFSConfigList settings = config == null ? new HDFSConfigList() : config;
+        ParallelDeleter deleter = namespace.getDeleter();
+        PathOperation delete = timed("delete", (fileSystem, path) -> fileSystem.delete(path, false));
+        TimePathFilter filter = pathFilter(entry, timeOfRun);
+        String reason = reason(entry, timeOfRun);
+        try (DeepSweeper sweeper = new DeepSweeper(
+                namespace.getFs(),
+                settings.getSweepConcurrency(),
+                filter,
+                entry.isRecursive(),
+                dryRun ? null : () -> deleter.newBatch("Delete", delete),
+                this::pastDeadline,
+                status -> planned(entry, status.getPath().toString(), filter.epochSecondOf(status),
+                        status.isDirectory() ? reason + ", left empty" : reason))) {
+            for (FileStatus root : roots) {
+                DeepSweeper.Sweep sweep = sweeper.sweep(root);
+                metrics.counter(DisposalMetrics.HDFS, globPath, DisposalMetrics.Stage.SCANNED).add(sweep.getScanned());
+                metrics.counter(DisposalMetrics.HDFS, globPath, DisposalMetrics.Stage.MATCHED).add(sweep.getExpired());
+                metrics.counter(DisposalMetrics.HDFS, globPath, DisposalMetrics.Stage.DELETED)
+                        .add(sweep.getDeleted() + sweep.getPruned());
+                metrics.counter(DisposalMetrics.HDFS, globPath, DisposalMetrics.Stage.FAILED).add(sweep.getFailed());
+                if (sweep.getFailed() > 0) {
+                    fail(entry);
+                }
+                if (sweep.getDeferred() > 0) {
+                    deferPaths(entry, sweep.getDeferred());
+                }
+            }
+        }
+    }
+
+    /**
+     * Lists what expired in {@code entry}: in full when listing by glob, else as a source streaming expired paths
+     * once they are asked for.
+     */
+    private Listing list(HDFSConfigEntry entry, ZonedDateTime timeOfRun) {
         String globPath = entry.getPath();
+        FileSystem fs = namespaceFor(new Path(globPath)).getFs();
 
         ChronoUnit granularity = entry.getGranularity();
         int retentionDuration = entry.getRetentionDuration();
-        TimePathFilter pathFilter = null;
-
-        HDFSRetentionType retentionType = entry.getRetentionType();
-        if (retentionType.equals(HDFSRetentionType.MODIFICATION_TIME)) {
-            pathFilter = new ModificationTimePathFilter(TIME_OF_RUN, granularity, retentionDuration);
-        } else if (entry.getRetentionType().equals(HDFSRetentionType.PATH_DATE)) {
-            int indexOfDatestamp = globPath.indexOf(TIMESTAMP_LOCATOR);
-            globPath = globPath.replace(TIMESTAMP_LOCATOR, "*");
-            pathFilter = new DatestampPathFilter(
-                    TIME_OF_RUN,
-                    granularity,
-                    retentionDuration,
-                    indexOfDatestamp,
-                    entry.getDateFormat()
+
+        Instant cutoff = incrementalCutoff(entry, timeOfRun);
+        Instant watermark = cutoff == null ? null : watermarks.get(entryKey(entry));
+        if (watermark != null && !cutoff.isAfter(watermark)) {
+            LOG.info("Skipping " + entry.getPath() + ", nothing expired since its last successful disposal");
+            return Listing.skipped(globPath);
+        }
+
+        if (entry.getRetentionType() == HDFSRetentionType.PATH_DATE) {
+            String dates = watermark == null ? "*" : dateWindow(entry, watermark, cutoff);
+            globPath = globPath.replace(TIMESTAMP_LOCATOR, dates);
+        }
+
+        LongAdder scanned = metrics.counter(DisposalMetrics.HDFS, entry.getPath(), DisposalMetrics.Stage.SCANNED);
+        TimePathFilter filter = pathFilter(entry, timeOfRun);
+        String reason = reason(entry, timeOfRun);
+
+        if (entry.getListingMode() == HDFSListingMode.DATE_TREE) {
+            DateTreeWalker walker = new DateTreeWalker(
+                    fs,
+                    entry.getPath(),
+                    TIMESTAMP_LOCATOR,
+                    entry.getDateFormat().toPattern(),
+                    Utils.getBeginningOfRetention(timeOfRun, retentionDuration, granularity),
+                    entry.isRecursive()
             );
+            // The walker only hands out expired paths, so everything it scans is a match.
+            return Listing.streamed(entry.getPath(), cutoff, sink -> walker.walk(status -> {
+                scanned.increment();
+                sink.accept(status);
+            }));
+        }
+
+        if (entry.getListingMode() == HDFSListingMode.STREAMING) {
+            Path glob = new Path(globPath);
+            StreamingGlobLister lister = new StreamingGlobLister(fs);
+            return Listing.streamed(globPath, cutoff, sink -> lister.list(glob, status -> {
+                scanned.increment();
+                if (filter.accept(status)) {
+                    sink.accept(status);
+                }
+            }));
         }
+
         FileStatus[] dirs;
+        long start = System.nanoTime();
         try {
             dirs = fs.globStatus(new Path(globPath));
         } catch (IOException e) {
             LOG.error("Glob status failed on path: " + globPath, e);
             // Removing exit for now. probably should add config param
             // System.exit(-1);
-            dirs = null;
+            return Listing.listed(globPath, cutoff, null, null);
+        } finally {
+            metrics.latency(DisposalMetrics.HDFS, "globStatus").recordSince(start);
         }
 
         if (dirs == null || dirs.length == 0) {
             LOG.info("No directories to remove for: " + globPath);
-            return upForDisposal;
+            return Listing.listed(globPath, cutoff, new ArrayList<>(), new HashMap<>());
         }
 
-        upForDisposal = Arrays.asList(dirs).stream()
-                .filter(pathFilter::accept)
+        // Oldest first, and the biggest first among paths of the same age, in case the run is cut short.
+        Map<Path, Long> epochSeconds = new HashMap<>();
+        List<Path> expired = Arrays.asList(dirs).stream()
+                .filter(filter::accept)
+                .sorted(Comparator.comparingLong(filter::epochSecondOf)
+                        .thenComparing(Comparator.comparingLong(FileStatus::getLen).reversed()))
+                .peek(status -> epochSeconds.put(status.getPath(), filter.epochSecondOf(status)))
                 .map(FileStatus::getPath)
                 .collect(Collectors.toList());
+        scanned.add(dirs.length);
+        metrics.counter(DisposalMetrics.HDFS, entry.getPath(), DisposalMetrics.Stage.MATCHED).add(expired.size());
+        return Listing.listed(globPath, cutoff, expired, epochSeconds);
+    }
+
+    /**
+     * @return what tells which paths of {@code entry} expired by {@code timeOfRun}
+     */
+    private static TimePathFilter pathFilter(HDFSConfigEntry entry, ZonedDateTime timeOfRun) {
+        if (entry.getRetentionType() == HDFSRetentionType.PATH_DATE) {
+            return new DatestampPathFilter(
+                    timeOfRun,
+                    entry.getGranularity(),
+                    entry.getRetentionDuration(),
+                    entry.getPath().indexOf(TIMESTAMP_LOCATOR),
+                    entry.getDatePattern()
+            );
+        }
+        return new ModificationTimePathFilter(timeOfRun, entry.getGranularity(), entry.getRetentionDuration());
+    }
+
+    /**
+     * @return why paths of {@code entry} are up for disposal, for the plan manifest
+     */
+    private static String reason(HDFSConfigEntry entry, ZonedDateTime timeOfRun) {
+        return entry.getRetentionType() + " before " +
+                Utils.getBeginningOfRetention(timeOfRun, entry.getRetentionDuration(), entry.getGranularity());
+    }
+
+    /**
+     * Lists every entry listed by glob up front and claims their expired paths in the run's plan, shallowest and
+     * recursive first, so that a path is left out when another entry deletes it as well or deletes it along with an
+     * ancestor. Streaming entries check their paths against these claims as they list them, without claiming them.
+     */
+    private void planListedEntries() {
+        List<HDFSConfigEntry> listed = entriesByPriority().stream()
+                .filter(entry -> entry.getListingMode() == HDFSListingMode.GLOB && !isRecovered(entry))
+                .filter(entry -> entry.getRetentionType() != HDFSRetentionType.DEEP_MODIFICATION_TIME)
+                .collect(Collectors.toList());
+        try (IOExecutor executor = new IOExecutor(getBackend() + "-listing", entryConcurrency())) {
+            executor.forEach(listed, entry -> {
+                // Entries left unlisted by the deadline are reported as not started.
+                if (!pastDeadline()) {
+                    planned.put(entry, list(entry, TIME_OF_RUN));
+                }
+            });
+        }
 
-        LOG.info(upForDisposal.size() + " paths up for disposal: " + upForDisposal);
+        List<Map.Entry<HDFSConfigEntry, Path>> targets = new ArrayList<>();
+        for (HDFSConfigEntry entry : listed) {
+            List<Path> paths = planned.containsKey(entry) ? planned.get(entry).paths : null;
+            if (paths != null) {
+                paths.forEach(path -> targets.add(new AbstractMap.SimpleImmutableEntry<>(entry, path)));
+            }
+        }
+        // Among paths of the same depth, a recursive deletion goes first and covers the others.
+        targets.sort(Comparator.<Map.Entry<HDFSConfigEntry, Path>>comparingInt(target -> target.getValue().depth())
+                .thenComparing(target -> !target.getKey().isRecursive()));
 
-        if (!dryRun) {
-            LOG.info("Disposal for " + globPath);
-            upForDisposal.stream().forEach(
-                    dir -> {
-                        try {
-                            fs.delete(dir, entry.isRecursive());
-                        } catch (IOException e) {
-                            LOG.error("Delete failed on path: " + dir, e);
-                        }
-                    });
+        Map<HDFSConfigEntry, Set<Path>> covered = new HashMap<>();
+        for (Map.Entry<HDFSConfigEntry, Path> target : targets) {
+            HDFSConfigEntry entry = target.getKey();
+            if (!plan.claim(target.getValue(), entry.isRecursive())) {
+                LOG.info("Leaving " + target.getValue() + " of " + entry.getPath() + " out, another entry deletes it");
+                covered.computeIfAbsent(entry, key -> new HashSet<>()).add(target.getValue());
+            }
         }
+        covered.forEach((entry, paths) -> planned.get(entry).paths.removeAll(paths));
+        LOG.info("Planned " + plan.getClaimed() + " deletion(s), leaving out " + plan.getCovered() +
+                " covered by others");
+    }
 
-        return upForDisposal;
+    @Override
+    protected void resume(HDFSConfigEntry entry, Set<String> pending, ZonedDateTime timeOfRun) {
+        HDFSNamespace namespace = namespaceFor(new Path(entry.getPath()));
+        // The retention of the entry may have changed since the interrupted run listed these paths.
+        Predicate<FileStatus> expired = stillExpired(entry, timeOfRun);
+        LongAdder kept = new LongAdder();
+        ParallelDeleter.Batch batch = newDisposalBatch(namespace, entry, timeOfRun, operation -> (fileSystem, path) -> {
+            if (expired.test(fileSystem.getFileStatus(path))) {
+                operation.apply(fileSystem, path);
+            } else {
+                LOG.warn("Keeping journaled path " + path + " of " + entry.getPath() + ", it is no longer expired");
+                kept.increment();
+            }
+        });
+        submitUntilDeadline(entry, pending.stream().map(Path::new).collect(Collectors.toList()), batch);
+        batch.await();
+        long deleted = batch.getDeletedCount() - kept.sum();
+        metrics.counter(DisposalMetrics.HDFS, entry.getPath(), DisposalMetrics.Stage.DELETED).add(deleted);
+        metrics.counter(DisposalMetrics.HDFS, entry.getPath(), DisposalMetrics.Stage.FAILED)
+                .add(batch.getFailed().size());
+        if (!batch.getFailed().isEmpty()) {
+            fail(entry);
+        }
+        LOG.info("Deleted " + deleted + " of " + pending.size() + " replayed paths for " + entry.getPath() + ", " +
+                kept.sum() + " no longer expired, " + batch.getFailed().size() + " failed");
+    }
+
+    /**
+     * @return whether a path listed for {@code entry} by an earlier run is still expired at {@code timeOfRun}
+     */
+    private Predicate<FileStatus> stillExpired(HDFSConfigEntry entry, ZonedDateTime timeOfRun) {
+        TimePathFilter filter = pathFilter(entry, timeOfRun);
+        // Date-tree listings plan whole expired years or months, whose paths hold no full date to check.
+        boolean trustUndated = entry.getRetentionType() == HDFSRetentionType.PATH_DATE
+                && entry.getListingMode() == HDFSListingMode.DATE_TREE;
+        return status -> filter.accept(status)
+                || (trustUndated && filter.epochSecondOf(status) == CompiledDatePattern.NO_MATCH);
+    }
+
+    @Override
+    public String entryKey(HDFSConfigEntry entry) {
+        return entry.getPath();
+    }
+
+    /**
+     * @return the cutoff a watermark is kept at for {@code entry}, or null if the entry is not disposed of
+     * incrementally. Path dates are whole units of the date format, and a path date is expired exactly when it is
+     * before this cutoff, so runs sharing a cutoff expire the same paths.
+     */
+    private Instant incrementalCutoff(HDFSConfigEntry entry, ZonedDateTime timeOfRun) {
+        // Modification times keep expiring as time passes, so only path dates can be tracked with a watermark.
+        if (watermarks == null || entry.getRetentionType() != HDFSRetentionType.PATH_DATE) {
+            return null;
+        }
+        ChronoUnit unit;
+        try {
+            unit = CompiledDatePattern.finestUnit(entry.getDateFormat().toPattern());
+        } catch (IllegalArgumentException e) {
+            LOG.warn("Disposing of " + entry.getPath() + " in full, its date format has no unit to track", e);
+            return null;
+        }
+        Instant beginningOfRetention = Utils.getBeginningOfRetention(
+                timeOfRun,
+                entry.getRetentionDuration(),
+                entry.getGranularity()
+        );
+        return Utils.ceilTo(beginningOfRetention, unit);
+    }
+
+    /**
+     * @return a glob matching the dates from {@code from} up to, not including, {@code to}, or {@code *} if there
+     * are too many of them or they cannot be put in a glob
+     */
+    private String dateWindow(HDFSConfigEntry entry, Instant from, Instant to) {
+        String pattern = entry.getDateFormat().toPattern();
+        // The streaming lister matches one path component at a time, so it cannot take dates spanning several.
+        if (entry.getListingMode() == HDFSListingMode.STREAMING && pattern.contains(Path.SEPARATOR)) {
+            return "*";
+        }
+        ChronoUnit unit = CompiledDatePattern.finestUnit(pattern);
+        SimpleDateFormat format = (SimpleDateFormat) entry.getDateFormat().clone();
+
+        List<String> dates = new ArrayList<>();
+        for (ZonedDateTime date = Utils.floorTo(from, unit).atZone(ZoneOffset.UTC);
+             date.toInstant().isBefore(to);
+             date = date.plus(1, unit)) {
+            String formatted = format.format(Date.from(date.toInstant()));
+            boolean special = formatted.chars().anyMatch(c -> GLOB_SPECIAL_CHARS.indexOf(c) >= 0);
+            if (special || dates.size() == MAX_WINDOW_DATES) {
+                return "*";
+            }
+            dates.add(formatted);
+        }
+        LOG.info("Only looking at " + dates.size() + " date(s) expired since the last disposal of " + entry.getPath());
+        return dates.size() == 1 ? dates.get(0) : "{" + String.join(",", dates) + "}";
+    }
+
+    @Override
+    protected boolean isListedUpFront(HDFSConfigEntry entry) {
+        return planned.containsKey(entry);
+    }
+
+    /**
+     * Submits {@code paths} in order until the run is past its deadline.
+     *
+     * @return how many paths were left for a later run
+     */
+    private long submitUntilDeadline(HDFSConfigEntry entry, List<Path> paths, ParallelDeleter.Batch batch) {
+        for (int i = 0; i < paths.size(); i++) {
+            if (pastDeadline()) {
+                deferPaths(entry, paths.size() - i);
+                return paths.size() - i;
+            }
+            batch.submit(paths.get(i));
+        }
+        return 0;
+    }
+
+    private void deferPaths(HDFSConfigEntry entry, long count) {
+        metrics.counter(DisposalMetrics.HDFS, entry.getPath(), DisposalMetrics.Stage.DEFERRED).add(count);
+        defer(entry, count);
+    }
+
+    private void advanceWatermark(HDFSConfigEntry entry, Instant cutoff, boolean disposed) {
+        if (cutoff != null && disposed) {
+            watermarks.advance(entryKey(entry), cutoff);
+        }
+    }
+
+    /**
+     * Streams expired paths straight into the deleter instead of materializing them first.
+     * The deleter blocks submissions while its queue is full, which in turn pauses the listing, so memory stays
+     * flat however many paths match. Matches are not collected, only counted, and only checked against the paths
+     * entries listed up front claimed in the run's plan, not claimed themselves.
+     *
+     * @return whether every expired path was listed and disposed of
+     */
+    private boolean disposeStreaming(
+            HDFSNamespace namespace,
+            HDFSConfigEntry entry,
+            ZonedDateTime timeOfRun,
+            String globPath,
+            CandidateSource candidates
+    ) {
+        ParallelDeleter.Batch batch = dryRun ? null : newDisposalBatch(namespace, entry, timeOfRun);
+        TimePathFilter filter = pathFilter(entry, timeOfRun);
+        String reason = reason(entry, timeOfRun);
+        LongAdder matched = new LongAdder();
+        LongAdder matchedTotal = metrics.counter(DisposalMetrics.HDFS, entry.getPath(), DisposalMetrics.Stage.MATCHED);
+
+        boolean listed = true;
+        try {
+            candidates.forEach(status -> {
+                matched.increment();
+                matchedTotal.increment();
+                if (pastDeadline()) {
+                    throw new DeadlineReached();
+                }
+                DeletionPlan runPlan = plan;
+                if (runPlan != null && runPlan.isCovered(status.getPath())) {
+                    LOG.debug("Leaving " + status.getPath() + " out, another entry deletes it");
+                    return;
+                }
+                LOG.debug("Path up for disposal: " + status.getPath());
+                planned(entry, status.getPath().toString(), filter.epochSecondOf(status), reason);
+                if (batch != null) {
+                    if (journal != null) {
+                        journal.plan(entryKey(entry), status.getPath().toString());
+                    }
+                    batch.submit(status.getPath());
+                }
+            });
+            if (batch != null && journal != null) {
+                journal.listed(entryKey(entry));
+            }
+        } catch (IOException e) {
+            LOG.error("Streaming listing failed on path: " + globPath, e);
+            fail(entry);
+            listed = false;
+        } catch (DeadlineReached e) {
+            // How many more would have been listed is unknown; the path in hand is the first of them.
+            LOG.warn("Stopped listing " + globPath + " at the deadline of the run");
+            deferPaths(entry, 1);
+            listed = false;
+        }
+
+        if (batch == null) {
+            LOG.info(matched.sum() + " paths up for disposal under " + globPath);
+            return false;
+        }
+
+        batch.await();
+        recordOutcome(entry, batch);
+        LOG.info("Deleted " + batch.getDeletedCount() + " of " + matched.sum() + " paths for " + globPath +
+                ", " + batch.getFailed().size() + " failed");
+        return listed && batch.getFailed().isEmpty();
+    }
+
+    private void recordOutcome(HDFSConfigEntry entry, ParallelDeleter.Batch batch) {
+        String path = entry.getPath();
+        metrics.counter(DisposalMetrics.HDFS, path, DisposalMetrics.Stage.DELETED).add(batch.getDeletedCount());
+        metrics.counter(DisposalMetrics.HDFS, path, DisposalMetrics.Stage.FAILED).add(batch.getFailed().size());
+        if (!batch.getFailed().isEmpty()) {
+            fail(entry);
+        }
+    }
+
+    /**
+     * Wraps {@code operation} so that the latency of every attempt is recorded under {@code rpc}.
+     */
+    private PathOperation timed(String rpc, PathOperation operation) {
+        LatencyHistogram latency = metrics.latency(DisposalMetrics.HDFS, rpc);
+        return (fileSystem, path) -> {
+            long start = System.nanoTime();
+            try {
+                operation.apply(fileSystem, path);
+            } finally {
+                latency.recordSince(start);
+            }
+        };
+    }
+
+    /**
+     * Wraps {@code operation} so that every path it succeeds on is acknowledged in the journal, if there is one.
+     */
+    private PathOperation journaled(HDFSConfigEntry entry, PathOperation operation) {
+        if (journal == null) {
+            return operation;
+        }
+        String key = entryKey(entry);
+        return (fileSystem, path) -> {
+            operation.apply(fileSystem, path);
+            journal.done(key, path.toString());
+        };
+    }
+
+    private ParallelDeleter.Batch newDeleteBatch(
+            ParallelDeleter deleter,
+            HDFSConfigEntry entry,
+            UnaryOperator<PathOperation> guard
+    ) {
+        boolean recursive = entry.isRecursive();
+        PathOperation delete = (fileSystem, path) -> fileSystem.delete(path, recursive);
+        return deleter.newBatch("Delete", guard.apply(journaled(entry, timed("delete", delete))));
+    }
+
+    /**
+     * @param timeOfRun names the staging run directory, if the entry stages
+     */
+    private ParallelDeleter.Batch newDisposalBatch(
+            HDFSNamespace namespace,
+            HDFSConfigEntry entry,
+            ZonedDateTime timeOfRun
+    ) {
+        return newDisposalBatch(namespace, entry, timeOfRun, UnaryOperator.identity());
+    }
+
+    /**
+     * @param guard wraps the operation of every path, to check it first
+     */
+    private ParallelDeleter.Batch newDisposalBatch(
+            HDFSNamespace namespace,
+            HDFSConfigEntry entry,
+            ZonedDateTime timeOfRun,
+            UnaryOperator<PathOperation> guard
+    ) {
+        ParallelDeleter deleter = namespace.getDeleter();
+        if (entry.getStagingDir() == null) {
+            return newDeleteBatch(deleter, entry, guard);
+        }
+
+        Path runDir = StagingPurger.runDir(
+                new Path(entry.getStagingDir()),
+                String.valueOf(timeOfRun.toInstant().toEpochMilli())
+        );
+        try {
+            namespace.getFs().mkdirs(runDir);
+        } catch (IOException e) {
+            LOG.error("Unable to create staging directory " + runDir + ", deleting in place instead", e);
+            return newDeleteBatch(deleter, entry, guard);
+        }
+
+        return deleter.newBatch("Rename", guard.apply(journaled(entry, timed("rename", (fileSystem, path) -> {
+            Path staged = StagingPurger.stagedPath(runDir, path);
+            if (!fileSystem.rename(path, staged)) {
+                LOG.warn("Rename of " + path + " to " + staged + " failed, deleting in place instead");
+                fileSystem.delete(path, true);
+            }
+        }))));
+    }
+
+    @Override
+    protected PlanExecution<HDFSConfigEntry> newPlanExecution(ZonedDateTime timeOfRun) {
+        return new HDFSPlanExecution(timeOfRun);
+    }
+
+    /**
+     * Purges the staging directories that entries rename expired paths into.
+     */
+    public void purgeStaging() {
+        if (dryRun || config == null) {
+            return;
+        }
+        Map<HDFSNamespace, Set<Path>> stagingDirs = new LinkedHashMap<>();
+        config.getEntries().stream()
+                .filter(entry -> entry.getStagingDir() != null)
+                .forEach(entry -> stagingDirs
+                        .computeIfAbsent(namespaceFor(new Path(entry.getPath())), namespace -> new LinkedHashSet<>())
+                        .add(new Path(entry.getStagingDir())));
+
+        stagingDirs.forEach((namespace, dirs) -> {
+            try (ParallelDeleter purgeDeleter = new ParallelDeleter(
+                    namespace.getFs(),
+                    config.getStagingPurgeConcurrency(),
+                    config.getDeleteRetries(),
+                    config.getDeleteTargetLatencyMillis())) {
+                StagingPurger purger = new StagingPurger(namespace.getFs(), purgeDeleter);
+                dirs.forEach(purger::purge);
+            }
+        });
+    }
+
+    /**
+     * Helper method invoked by both constructors to reject entries combining options that do not work together.
+     */
+    protected void validateConfig() {
+        if (config == null) {
+            return;
+        }
+        config.getEntries().forEach(entry -> {
+            if (entry.getListingMode() == HDFSListingMode.DATE_TREE
+                    && entry.getRetentionType() != HDFSRetentionType.PATH_DATE) {
+                throw new IllegalStateException(
+                        "Listing mode " + HDFSListingMode.DATE_TREE + " requires retention type " +
+                        HDFSRetentionType.PATH_DATE + " for path " + entry.getPath()
+                );
+            }
+            if (entry.getRetentionType() == HDFSRetentionType.DEEP_MODIFICATION_TIME
+                    && (entry.getListingMode() != HDFSListingMode.GLOB || entry.getStagingDir() != null)) {
+                throw new IllegalStateException(
+                        "Retention type " + HDFSRetentionType.DEEP_MODIFICATION_TIME + " requires listing mode " +
+                        HDFSListingMode.GLOB + " and no staging directory for path " + entry.getPath()
+                );
+            }
+            if (entry.getStagingDir() != null && !entry.isRecursive()) {
+                throw new IllegalStateException(
+                        "A staging directory requires recursive disposal for path " + entry.getPath()
+                );
+            }
+        });
+    }
+
+    /**
+     * Carries out the paths of a plan manifest through the deleter of their namespace, a batch per entry, the way
+     * their entry disposes of paths. Each path is checked by the deleter right before it is deleted: a path that is
+     * gone counts as deleted, and one its entry no longer expires, rewritten since or under a longer retention, is
+     * kept. Directories a deep sweep emptied are deleted last, deepest first and never recursively, once the files
+     * under them are gone.
+     */
+    private final class HDFSPlanExecution implements PlanExecution<HDFSConfigEntry> {
+        private final ZonedDateTime timeOfRun;
+        private final Map<HDFSConfigEntry, ParallelDeleter.Batch> batches = new LinkedHashMap<>();
+        private final Map<HDFSConfigEntry, LongAdder> kept = new HashMap<>();
+        private final Map<HDFSConfigEntry, Set<Path>> emptied = new HashMap<>();
+
+        HDFSPlanExecution(ZonedDateTime timeOfRun) {
+            this.timeOfRun = timeOfRun;
+        }
+
+        @Override
+        public void execute(HDFSConfigEntry entry, PlanManifest.Item item) {
+            batches.computeIfAbsent(entry, this::newBatch).submit(new Path(item.getTarget()));
+        }
+
+        private ParallelDeleter.Batch newBatch(HDFSConfigEntry entry) {
+            HDFSNamespace namespace = namespaceFor(new Path(entry.getPath()));
+            Predicate<FileStatus> expired = stillExpired(entry, timeOfRun);
+            boolean deep = entry.getRetentionType() == HDFSRetentionType.DEEP_MODIFICATION_TIME;
+            LongAdder keptPaths = kept.computeIfAbsent(entry, key -> new LongAdder());
+            Set<Path> dirs = emptied.computeIfAbsent(entry, key -> ConcurrentHashMap.newKeySet());
+
+            UnaryOperator<PathOperation> guard = operation -> (fileSystem, path) -> {
+                FileStatus status = fileSystem.getFileStatus(path);
+                if (deep && status.isDirectory()) {
+                    dirs.add(path);
+                } else if (expired.test(status)) {
+                    operation.apply(fileSystem, path);
+                } else {
+                    LOG.warn("Keeping " + path + " of " + entry.getPath() + ", it is no longer expired");
+                    keptPaths.increment();
+                }
+            };
+            if (deep) {
+                PathOperation delete = timed("delete", (fileSystem, path) -> fileSystem.delete(path, false));
+                return namespace.getDeleter().newBatch("Delete", guard.apply(delete));
+            }
+            return newDisposalBatch(namespace, entry, timeOfRun, guard);
+        }
+
+        @Override
+        public void finish() {
+            batches.forEach((entry, batch) -> {
+                batch.await();
+                Set<Path> dirs = emptied.get(entry);
+                long deleted = batch.getDeletedCount() - kept.get(entry).sum() - dirs.size();
+                long failed = batch.getFailed().size();
+
+                // A directory is deleted once every directory under it is done.
+                TreeMap<Integer, List<Path>> byDepth = dirs.stream()
+                        .collect(Collectors.groupingBy(Path::depth, TreeMap::new, Collectors.toList()));
+                HDFSNamespace namespace = namespaceFor(new Path(entry.getPath()));
+                PathOperation delete = timed("delete", (fileSystem, path) -> fileSystem.delete(path, false));
+                for (List<Path> level : byDepth.descendingMap().values()) {
+                    ParallelDeleter.Batch dirBatch = namespace.getDeleter().newBatch("Delete", delete);
+                    level.forEach(dirBatch::submit);
+                    dirBatch.await();
+                    deleted += dirBatch.getDeletedCount();
+                    failed += dirBatch.getFailed().size();
+                }
+
+                String path = entry.getPath();
+                metrics.counter(DisposalMetrics.HDFS, path, DisposalMetrics.Stage.DELETED).add(deleted);
+                metrics.counter(DisposalMetrics.HDFS, path, DisposalMetrics.Stage.FAILED).add(failed);
+                LOG.info("Deleted " + deleted + " planned paths for " + path + ", " + kept.get(entry).sum() +
+                        " no longer expired, " + failed + " failed");
+            });
+            purgeStaging();
+        }
+    }
+
+    @FunctionalInterface
+    private interface CandidateSource {
+        void forEach(Consumer<FileStatus> consumer) throws IOException;
+    }
+
+    /**
+     * Stops a streaming listing once the run is past its deadline.
+     */
+    private static final class DeadlineReached extends RuntimeException {
+        DeadlineReached() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * What listing an entry turned up: its expired paths listed in full, null if the listing failed, or a source
+     * streaming them.
+     */
+    private static final class Listing {
+        private final String globPath;
+        private final Instant cutoff;
+        private final boolean skipped;
+        private final List<Path> paths;
+        /**
+         * When retention of each of {@link #paths} was counted from, for the plan manifest.
+         */
+        private final Map<Path, Long> epochSeconds;
+        private final CandidateSource streamed;
+
+        private Listing(String globPath, Instant cutoff, boolean skipped, List<Path> paths,
+                        Map<Path, Long> epochSeconds, CandidateSource streamed) {
+            this.globPath = globPath;
+            this.cutoff = cutoff;
+            this.skipped = skipped;
+            this.paths = paths;
+            this.epochSeconds = epochSeconds;
+            this.streamed = streamed;
+        }
+
+        static Listing skipped(String globPath) {
+            return new Listing(globPath, null, true, null, null, null);
+        }
+
+        static Listing listed(String globPath, Instant cutoff, List<Path> paths, Map<Path, Long> epochSeconds) {
+            return new Listing(globPath, cutoff, false, paths, epochSeconds, null);
+        }
+
+        static Listing streamed(String globPath, Instant cutoff, CandidateSource streamed) {
+            return new Listing(globPath, cutoff, false, null, null, streamed);
+        }
     }
 }
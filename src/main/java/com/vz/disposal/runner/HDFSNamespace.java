@@ -0,0 +1,42 @@
+// Copyright Verizon Media
+// Licensed under the terms of the Apache 2.0 license. Please see LICENSE file in the project root for terms.
+
+package com.vz.disposal.runner;
+
+import com.vz.disposal.delete.ParallelDeleter;
+import lombok.Getter;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import java.net.URI;
+
+/**
+ * One HDFS namespace taking part in a run, with its own client and its own delete concurrency budget.
+ */
+public class HDFSNamespace {
+    @Getter
+    private final URI uri;
+
+    @Getter
+    private final FileSystem fs;
+
+    @Getter
+    private final ParallelDeleter deleter;
+
+    public HDFSNamespace(URI uri, FileSystem fs, ParallelDeleter deleter) {
+        this.uri = uri;
+        this.fs = fs;
+        this.deleter = deleter;
+    }
+
+    /**
+     * @return the scheme and authority of {@code path}, or {@code defaultNamespace} if it has none
+     */
+    public static URI namespaceOf(Path path, URI defaultNamespace) {
+        URI uri = path.toUri();
+        if (uri.getScheme() == null) {
+            return defaultNamespace;
+        }
+        return URI.create(uri.getScheme() + "://" + (uri.getAuthority() == null ? "" : uri.getAuthority()) + "/");
+    }
+}
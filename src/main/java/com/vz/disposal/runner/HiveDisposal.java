@@ -7,131 +7,847 @@ package com.vz.disposal.runner;
 import com.vz.disposal.config.ConfigLoader;
 import com.vz.disposal.config.HiveConfigEntry;
 import com.vz.disposal.config.HiveConfigList;
+import com.vz.disposal.config.HiveDropMode;
+import com.vz.disposal.config.HiveListingMode;
+import com.vz.disposal.config.HiveMetastoreConfig;
+import com.vz.disposal.metrics.DisposalMetrics;
+import com.vz.disposal.state.PlanManifest;
+import com.vz.disposal.utils.CompiledDatePattern;
 import com.vz.disposal.utils.Utils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hadoop.hive.metastore.IMetaStoreClient;
+import org.apache.hadoop.hive.metastore.PartitionDropOptions;
+import org.apache.hadoop.hive.metastore.RetryingMetaStoreClient;
+import org.apache.hadoop.hive.metastore.Warehouse;
+import org.apache.hadoop.hive.metastore.api.MetaException;
+import org.apache.hadoop.hive.ql.plan.ExprNodeGenericFuncDesc;
 import org.apache.hive.hcatalog.api.HCatClient;
 import org.apache.hive.hcatalog.api.HCatPartition;
+import org.apache.hive.hcatalog.common.HCatConstants;
 import org.apache.hive.hcatalog.common.HCatException;
-import org.apache.hive.hcatalog.data.schema.HCatFieldSchema;
+import org.apache.thrift.TException;
 
 import java.text.ParseException;
+import java.text.SimpleDateFormat;
 import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.AbstractMap;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.HashSet;
 import java.util.Date;
+import java.util.Set;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 public class HiveDisposal extends Disposal<HiveConfigList, HiveConfigEntry> {
     private static final Log LOG = LogFactory.getLog(HiveDisposal.class);
-    private final HCatClient hcatClient;
+    private static final String HIVE_METASTORE_URIS = "hive.metastore.uris";
+
+    /**
+     * Metastore client pools by metastore name; the default metastore is stored under a null key.
+     */
+    private final Map<String, MetastoreClientPool> clientPools = new HashMap<>();
 
     /**
      * This should only be used for unit testing.
      */
     protected HiveDisposal(HiveConfigList configList, boolean dryRun, HCatClient hCatClient) {
+        this(configList, dryRun, hCatClient, null);
+    }
+
+    /**
+     * This should only be used for unit testing.
+     */
+    protected HiveDisposal(HiveConfigList configList, boolean dryRun, HCatClient hCatClient,
+                           IMetaStoreClient metaStoreClient) {
         super(configList, dryRun);
 
-        this.hcatClient = hCatClient;
+        MetastoreClientPool pool = MetastoreClientPool.of(hCatClient, metaStoreClient);
+        this.clientPools.put(null, pool);
+        configList.getMetastores().forEach(metastore -> clientPools.put(metastore.getName(), pool));
         validateConfig();
     }
 
     public HiveDisposal(String confFile, boolean dryRun) {
-        super(new ConfigLoader<HiveConfigList>().loadConfig(confFile, HiveConfigList.class), dryRun);
+        this(new ConfigLoader<HiveConfigList>().loadConfig(confFile, HiveConfigList.class), dryRun);
+    }
+
+    public HiveDisposal(HiveConfigList config, boolean dryRun) {
+        super(config, dryRun);
 
-        Configuration conf = new Configuration();
         try {
-            hcatClient = HCatClient.create(conf);
+            Set<String> usedMetastores = config.getEntries().stream()
+                    .map(HiveConfigEntry::getMetastore)
+                    .collect(Collectors.toSet());
+            for (String name : usedMetastores) {
+                Configuration conf = metastoreConf(name);
+                // HCatalog hands out one cached client per thread and user, which the clients of a pool would share.
+                Configuration clientConf = new Configuration(conf);
+                clientConf.setBoolean(HCatConstants.HCAT_HIVE_CLIENT_DISABLE_CACHE, true);
+                clientPools.put(name, new MetastoreClientPool(
+                        () -> HCatClient.create(clientConf),
+                        // Reads the hive-site on the classpath like HCatClient does, and never starts a local one.
+                        () -> RetryingMetaStoreClient.getProxy(new HiveConf(conf, HiveDisposal.class), false),
+                        clientPoolSize(name)
+                ));
+            }
             validateConfig();
-        } catch (HCatException | IllegalStateException exception) {
+        } catch (IllegalStateException exception) {
+            close();
             throw new IllegalStateException("Failed to create HCatClient", exception);
         }
     }
 
+    private int clientPoolSize(String name) {
+        return config.getMetastores().stream()
+                .filter(metastore -> metastore.getName().equals(name) && metastore.getClientPoolSize() != null)
+                .map(HiveMetastoreConfig::getClientPoolSize)
+                .findFirst()
+                .orElse(config.getClientPoolSize());
+    }
+
+    private Configuration metastoreConf(String name) {
+        Configuration conf = new Configuration();
+        if (name == null) {
+            return conf;
+        }
+        HiveMetastoreConfig metastore = config.getMetastores().stream()
+                .filter(candidate -> name.equals(candidate.getName()))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("Unknown metastore: " + name));
+        conf.set(HIVE_METASTORE_URIS, metastore.getUris());
+        metastore.getProperties().forEach(conf::set);
+        return conf;
+    }
+
+    MetastoreClientPool clientsFor(HiveConfigEntry entry) {
+        MetastoreClientPool pool = clientPools.get(entry.getMetastore());
+        if (pool == null) {
+            throw new IllegalStateException("Unknown metastore " + entry.getMetastore() + " for " +
+                    entry.getDatabase() + "." + entry.getTable());
+        }
+        return pool;
+    }
+
+    @Override
+    public String getBackend() {
+        return DisposalMetrics.HIVE;
+    }
+
     @Override
-    protected List<Map<String, String>> dispose(HiveConfigEntry entry) {
-        List<Map<String, String>> upForDisposal = new ArrayList<>();
+    public void close() {
+        new HashSet<>(clientPools.values()).forEach(MetastoreClientPool::close);
+    }
+
+    /**
+     * @return the configured entry concurrency, or by default as many tables at a time as there are metastore
+     * clients
+     */
+    @Override
+    protected int entryConcurrency() {
+        if (config.getEntryConcurrency() != null) {
+            return config.getEntryConcurrency();
+        }
+        return Math.max(1, new HashSet<>(clientPools.values()).stream()
+                .mapToInt(MetastoreClientPool::getSize)
+                .sum());
+    }
 
-        Instant beginningOfRetention = Utils.getBeginningOfRetention(TIME_OF_RUN, entry.getRetentionDuration(), entry.getGranularity());
+    @Override
+    protected List<Map<String, String>> dispose(HiveConfigEntry entry, ZonedDateTime timeOfRun) {
+        PartitionSpecs upForDisposal = new PartitionSpecs(entry.getPartitionFilterKey());
+
+        Instant beginningOfRetention = Utils.getBeginningOfRetention(timeOfRun, entry.getRetentionDuration(), entry.getGranularity());
         String databaseTable = entry.getDatabase() + "." + entry.getTable();
 
-        upForDisposal = listPartitions(entry, beginningOfRetention);
+        Instant cutoff = incrementalCutoff(entry, beginningOfRetention);
+        Instant watermark = cutoff == null ? null : watermarks.get(entryKey(entry));
+        if (watermark != null && !cutoff.isAfter(watermark)) {
+            LOG.info("Skipping " + databaseTable + ", nothing expired since its last successful disposal");
+            return upForDisposal;
+        }
+
+        if (pagedListing(entry)) {
+            boolean disposed = disposePaged(entry, beginningOfRetention, watermark);
+            advanceWatermark(entry, cutoff, disposed && !dryRun);
+            return upForDisposal;
+        }
+
+        try {
+            upForDisposal = nameListing(entry)
+                    ? listPartitionNames(entry, beginningOfRetention)
+                    : listPartitions(entry, beginningOfRetention, watermark);
+        } catch (HCatException | TException e) {
+            LOG.error("Unable to get partitions for: " + databaseTable, e);
+            return upForDisposal;
+        }
 
         if (upForDisposal.isEmpty()) {
+            advanceWatermark(entry, cutoff, !dryRun);
             return upForDisposal;
         }
 
         if (!dryRun) {
-            HashSet<HashMap<String, String>> topLevelPartitions = new HashSet<>();
-            String datePartitionKey = entry.getPartitionFilterKey();
-            boolean dropIfExists = true;
-
-            upForDisposal.stream().forEach(map -> {
-                HashMap<String, String> datePartition = new HashMap<>();
-                datePartition.put(datePartitionKey, map.get(datePartitionKey));
-                topLevelPartitions.add(datePartition);
+            advanceWatermark(entry, cutoff, dropExpired(entry, upForDisposal, true));
+        }
+        return upForDisposal;
+    }
+
+    /**
+     * Drops the date partitions {@code upForDisposal} sit under, as the entry's drop mode says.
+     *
+     * @param allListed whether these are all the expired partitions of the entry, so that a resumed run can replay
+     *                  the drops without listing
+     * @return whether every partition is gone
+     */
+    private boolean dropExpired(HiveConfigEntry entry, PartitionSpecs upForDisposal, boolean allListed) {
+        String datePartitionKey = entry.getPartitionFilterKey();
+        Map<String, Long> partitionsPerDate = upForDisposal.countByDate();
+        if (journal != null) {
+            partitionsPerDate.keySet().forEach(date ->
+                    journal.plan(entryKey(entry), partitionName(Collections.singletonMap(datePartitionKey, date))));
+            if (allListed) {
+                journal.listed(entryKey(entry));
+            }
+        }
+
+        // Oldest first, in case the run is cut short.
+        HiveDropMode dropMode = dropModeFor(entry);
+        if (dropMode != HiveDropMode.PER_DATE) {
+            List<String> dates = new ArrayList<>(partitionsPerDate.keySet());
+            return dropByExpression(entry, dropMode, dates, partitionsPerDate);
+        }
+
+        AtomicBoolean failed = new AtomicBoolean();
+        AtomicLong left = new AtomicLong();
+        clientsFor(entry).withClient(hcatClient -> {
+            partitionsPerDate.forEach((date, dropped) -> {
+                if (left.get() > 0 || pastDeadline()) {
+                    left.addAndGet(dropped);
+                } else if (!dropPartition(hcatClient, entry, Collections.singletonMap(datePartitionKey, date),
+                        dropped)) {
+                    failed.set(true);
+                }
             });
+            return null;
+        });
+        if (left.get() > 0) {
+            deferPartitions(entry, left.get());
+        }
+        return !failed.get() && left.get() == 0;
+    }
 
-            synchronized (hcatClient) {
-                topLevelPartitions.stream().forEach(partition -> {
-                    LOG.info("Running method 'hcatClient.dropPartitions(" +
-                                    entry.getDatabase() + "," +
-                                    entry.getTable()    + "," +
-                                    partition           + "," +
-                                    dropIfExists        + "," +
-                                    entry.getDeleteExternalData() + ")'.");
-                    try {
-                        hcatClient.dropPartitions(
-                                entry.getDatabase(),
-                                entry.getTable(),
-                                partition,
-                                dropIfExists,
-                                entry.getDeleteExternalData());
-                    } catch (HCatException e) {
-                        LOG.error("An exception occurred dropping partitions for filter: " + partition, e);
+    /**
+     * @return whether {@code entry} can be listed a page at a time: pages are ranges of dates, so the dates must sort
+     * as text, and partitions are counted before they are listed, which needs plain metastore clients
+     */
+    private boolean pagedListing(HiveConfigEntry entry) {
+        if (entry.getListingMode() != HiveListingMode.PAGED) {
+            return false;
+        }
+        if (!CompiledDatePattern.isChronological(entry.getDateFormat().toPattern())) {
+            LOG.warn("Listing " + entryKey(entry) + " in full, dates in " + entry.getDateFormat().toPattern() +
+                    " do not sort as text");
+            return false;
+        }
+        if (!clientsFor(entry).hasMetaStoreClients()) {
+            LOG.warn("Listing " + entryKey(entry) + " in full, no metastore client can count partitions");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Lists and drops the expired partitions of {@code entry} a page at a time, from the newest expired date back.
+     * A page covers {@code listingWindow} dates, or fewer when they hold more than {@code listingPageSize}
+     * partitions. {@code listingConcurrency} pages are handled at the same time, and the listing stops once no
+     * partition is left before the oldest page, or at the watermark.
+     *
+     * @return whether every page was listed and dropped
+     */
+    private boolean disposePaged(HiveConfigEntry entry, Instant beginningOfRetention, Instant watermark) {
+        String pattern = entry.getDateFormat().toPattern();
+        ChronoUnit unit = CompiledDatePattern.finestUnit(pattern);
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern(pattern).withZone(ZoneOffset.UTC);
+        ZonedDateTime floor = watermark == null ? null : ZonedDateTime.ofInstant(watermark, ZoneOffset.UTC);
+        ZonedDateTime end = ZonedDateTime.ofInstant(Utils.floorTo(beginningOfRetention, unit), ZoneOffset.UTC)
+                .plus(1, unit);
+        int window = Math.max(1, entry.getListingWindow());
+        String databaseTable = entry.getDatabase() + "." + entry.getTable();
+
+        AtomicBoolean failed = new AtomicBoolean();
+        AtomicLong matched = new AtomicLong();
+        IOExecutor pageExecutor = new IOExecutor("hive-pages", Math.max(1, entry.getListingConcurrency()));
+        try {
+            while (floor == null || end.isAfter(floor)) {
+                if (end.getYear() < 1) {
+                    // Only keys that sort before any date are left, and they cannot be paged through.
+                    LOG.warn("Partitions of " + databaseTable + " with keys that are not dates remain before " +
+                            formatter.format(end));
+                    failed.set(true);
+                    break;
+                }
+                List<ZonedDateTime[]> pages = new ArrayList<>();
+                for (int i = 0; i < Math.max(1, entry.getListingConcurrency()); i++) {
+                    if (floor != null && !end.isAfter(floor)) {
+                        break;
+                    }
+                    ZonedDateTime start = end.minus(window, unit);
+                    if (floor != null && start.isBefore(floor)) {
+                        start = floor;
+                    }
+                    pages.add(new ZonedDateTime[] {start, end});
+                    end = start;
+                }
+                pageExecutor.forEach(pages, page -> {
+                    if (!disposePage(entry, formatter, unit, page[0], page[1], beginningOfRetention, matched)) {
+                        failed.set(true);
                     }
                 });
+
+                String older = rangeFilter(entry, formatter, floor, end);
+                try {
+                    int left = countPartitions(entry, older);
+                    if (left == 0) {
+                        break;
+                    }
+                    if (pastDeadline()) {
+                        deferPartitions(entry, left);
+                        failed.set(true);
+                        break;
+                    }
+                } catch (TException e) {
+                    LOG.error("Unable to count partitions of " + databaseTable + " where " + older, e);
+                    failed.set(true);
+                    break;
+                }
             }
+        } finally {
+            pageExecutor.close();
         }
-        return upForDisposal;
+        LOG.info(matched.get() + " partition(s) from " + databaseTable + " up for disposal, listed a page at a time");
+        return !failed.get();
+    }
+
+    /**
+     * Lists and drops the expired partitions dated from {@code start} up to {@code end}, splitting the range while
+     * it holds more than a page of partitions.
+     */
+    private boolean disposePage(HiveConfigEntry entry, DateTimeFormatter formatter, ChronoUnit unit,
+                                ZonedDateTime start, ZonedDateTime end, Instant beginningOfRetention,
+                                AtomicLong matched) {
+        String databaseTable = entry.getDatabase() + "." + entry.getTable();
+        String filter = rangeFilter(entry, formatter, start, end);
+        List<HCatPartition> partitions;
+        try {
+            int count = countPartitions(entry, filter);
+            if (count == 0) {
+                return true;
+            }
+            long dates = unit.between(start, end);
+            if (count > entry.getListingPageSize() && dates > 1) {
+                ZonedDateTime middle = start.plus(dates / 2, unit);
+                return disposePage(entry, formatter, unit, start, middle, beginningOfRetention, matched) &
+                        disposePage(entry, formatter, unit, middle, end, beginningOfRetention, matched);
+            }
+
+            LOG.info("Retrieving partitions where " + filter);
+            long listStart = System.nanoTime();
+            try {
+                partitions = clientsFor(entry).withClient(hcatClient ->
+                        hcatClient.listPartitionsByFilter(entry.getDatabase(), entry.getTable(), filter));
+            } finally {
+                metrics.latency(DisposalMetrics.HIVE, "listPartitionsByFilter").recordSince(listStart);
+            }
+        } catch (TException | HCatException e) {
+            LOG.error("Unable to get partitions of " + databaseTable + " where " + filter, e);
+            return false;
+        }
+
+        PartitionSpecs expired = selectExpired(entry, partitions, beginningOfRetention);
+        planned(entry, expired, beginningOfRetention);
+        metrics.counter(DisposalMetrics.HIVE, entryKey(entry), DisposalMetrics.Stage.SCANNED).add(partitions.size());
+        metrics.counter(DisposalMetrics.HIVE, entryKey(entry), DisposalMetrics.Stage.MATCHED).add(expired.size());
+        matched.addAndGet(expired.size());
+        LOG.info(expired.size() + " partition(s) from " + databaseTable + " where " + filter + " up for disposal");
+        return expired.isEmpty() || dryRun || dropExpired(entry, expired, false);
+    }
+
+    /**
+     * @return a filter on the partition filter key from {@code start}, or from the beginning if null, up to
+     * {@code end}
+     */
+    private static String rangeFilter(HiveConfigEntry entry, DateTimeFormatter formatter, ZonedDateTime start,
+                                      ZonedDateTime end) {
+        String before = entry.getPartitionFilterKey() + " < \"" + formatter.format(end) + "\"";
+        return start == null ? before :
+                entry.getPartitionFilterKey() + " >= \"" + formatter.format(start) + "\" and " + before;
+    }
+
+    private int countPartitions(HiveConfigEntry entry, String filter) throws TException {
+        long start = System.nanoTime();
+        try {
+            return clientsFor(entry).withMetaStoreClient(client ->
+                    client.getNumPartitionsByFilter(entry.getDatabase(), entry.getTable(), filter));
+        } finally {
+            metrics.latency(DisposalMetrics.HIVE, "getNumPartitionsByFilter").recordSince(start);
+        }
+    }
+
+    /**
+     * Drops the journaled partitions {@code entry} still expires; the retention of the entry may have changed since
+     * the interrupted run listed them.
+     */
+    @Override
+    protected void resume(HiveConfigEntry entry, Set<String> pending, ZonedDateTime timeOfRun) {
+        long cutoffSecond = cutoffSecond(entry, timeOfRun);
+        AtomicLong kept = new AtomicLong();
+        clientsFor(entry).withClient(hcatClient -> {
+            int replayed = 0;
+            for (String name : pending) {
+                if (pastDeadline()) {
+                    // How many partitions sit under each journaled date is unknown, so dates are counted instead.
+                    deferPartitions(entry, pending.size() - replayed);
+                    break;
+                }
+                replayed++;
+                if (!isStillExpired(entry, name, cutoffSecond)) {
+                    LOG.warn("Keeping journaled partition " + name + " of " + entryKey(entry) +
+                            ", it is no longer expired");
+                    kept.incrementAndGet();
+                    continue;
+                }
+                Map<String, String> partition;
+                try {
+                    partition = Warehouse.makeSpecFromName(name);
+                } catch (MetaException e) {
+                    LOG.error("Unable to read journaled partition " + name + " of " + entryKey(entry), e);
+                    continue;
+                }
+                // How many partitions sat under the dropped one was not journaled.
+                dropPartition(hcatClient, entry, partition, 1);
+            }
+            return null;
+        });
+        LOG.info("Replayed " + pending.size() + " journaled partition(s) of " + entryKey(entry) + ", " +
+                kept.get() + " no longer expired");
     }
 
-    private List<Map<String, String>> listPartitions(HiveConfigEntry confEntry, Instant retentionStartTimestamp) {
+    @Override
+    protected PlanExecution<HiveConfigEntry> newPlanExecution(ZonedDateTime timeOfRun) {
+        return new HivePlanExecution(timeOfRun);
+    }
+
+    /**
+     * Drops the partitions of a plan manifest that {@code entry} still expires, one at a time, each only if it still
+     * exists.
+     *
+     * @param names partition names such as {@code dt=2019-05-14/region=us}
+     */
+    private void dropPlanned(HiveConfigEntry entry, List<String> names, ZonedDateTime timeOfRun) {
+        long cutoffSecond = cutoffSecond(entry, timeOfRun);
+        AtomicLong kept = new AtomicLong();
+        clientsFor(entry).withClient(hcatClient -> {
+            for (int i = 0; i < names.size(); i++) {
+                if (pastDeadline()) {
+                    deferPartitions(entry, names.size() - i);
+                    break;
+                }
+                String name = names.get(i);
+                if (!isStillExpired(entry, name, cutoffSecond)) {
+                    LOG.warn("Keeping partition " + name + " of " + entryKey(entry) + ", it is no longer expired");
+                    kept.incrementAndGet();
+                    continue;
+                }
+                try {
+                    dropPartition(hcatClient, entry, Warehouse.makeSpecFromName(name), 1);
+                } catch (MetaException e) {
+                    LOG.error("Unable to read planned partition " + name + " of " + entryKey(entry), e);
+                }
+            }
+            return null;
+        });
+        LOG.info("Went through " + names.size() + " planned partition(s) of " + entryKey(entry) + ", " +
+                kept.get() + " no longer expired");
+    }
+
+    private static long cutoffSecond(HiveConfigEntry entry, ZonedDateTime timeOfRun) {
+        return Utils.getBeginningOfRetention(timeOfRun, entry.getRetentionDuration(), entry.getGranularity())
+                .getEpochSecond();
+    }
+
+    /**
+     * @param name a partition name such as {@code dt=2019-05-14/region=us}
+     * @return whether the date of partition {@code name} is still expired under {@code entry}
+     */
+    private static boolean isStillExpired(HiveConfigEntry entry, String name, long cutoffSecond) {
+        String date = PartitionSpecs.valueIn(name, entry.getPartitionFilterKey());
+        if (date == null) {
+            // The metastore spells partition keys in lower case.
+            date = PartitionSpecs.valueIn(name, entry.getPartitionFilterKey().toLowerCase());
+        }
+        long epochSecond = date == null
+                ? CompiledDatePattern.NO_MATCH
+                : entry.getDatePattern().parseEpochSecond(date, 0);
+        return epochSecond != CompiledDatePattern.NO_MATCH && epochSecond <= cutoffSecond;
+    }
+
+    /**
+     * Drops {@code partition} and everything under it, and acknowledges it in the journal if there is one.
+     * The caller has borrowed {@code hcatClient} from its pool.
+     *
+     * @param partitions how many of the listed partitions go with it, for metrics
+     * @return whether the partition is gone
+     */
+    private boolean dropPartition(HCatClient hcatClient, HiveConfigEntry entry, Map<String, String> partition,
+                                  long partitions) {
+        boolean dropIfExists = true;
+        String databaseTable = entry.getDatabase() + "." + entry.getTable();
+        LOG.info("Running method 'hcatClient.dropPartitions(" +
+                        entry.getDatabase() + "," +
+                        entry.getTable()    + "," +
+                        partition           + "," +
+                        dropIfExists        + "," +
+                        entry.getDeleteExternalData() + ")'.");
+        long start = System.nanoTime();
+        try {
+            hcatClient.dropPartitions(
+                    entry.getDatabase(),
+                    entry.getTable(),
+                    partition,
+                    dropIfExists,
+                    entry.getDeleteExternalData());
+            metrics.counter(DisposalMetrics.HIVE, entryKey(entry), DisposalMetrics.Stage.DELETED).add(partitions);
+            if (journal != null) {
+                journal.done(entryKey(entry), partitionName(partition));
+            }
+            return true;
+        } catch (HCatException e) {
+            LOG.error("An exception occurred dropping partitions for filter: " + partition, e);
+            metrics.counter(DisposalMetrics.HIVE, entryKey(entry), DisposalMetrics.Stage.FAILED).add(partitions);
+            fail(entry);
+            return false;
+        } finally {
+            metrics.latency(DisposalMetrics.HIVE, "dropPartitions").recordSince(start);
+        }
+    }
+
+    /**
+     * @return the drop mode {@code entry} can use: dropping by expression needs plain metastore clients, and a
+     * range only matches the expired dates when the dates sort as text
+     */
+    private HiveDropMode dropModeFor(HiveConfigEntry entry) {
+        HiveDropMode mode = entry.getDropMode() == null ? HiveDropMode.PER_DATE : entry.getDropMode();
+        if (mode != HiveDropMode.PER_DATE && !clientsFor(entry).hasMetaStoreClients()) {
+            LOG.warn("Dropping partitions of " + entryKey(entry) + " one date at a time, no metastore client " +
+                    "can drop by expression");
+            return HiveDropMode.PER_DATE;
+        }
+        if (mode == HiveDropMode.RANGE && !CompiledDatePattern.isChronological(entry.getDateFormat().toPattern())) {
+            LOG.warn("Dropping partitions of " + entryKey(entry) + " in batches, dates in " +
+                    entry.getDateFormat().toPattern() + " do not sort as text");
+            return HiveDropMode.BATCH;
+        }
+        return mode;
+    }
+
+    /**
+     * Drops the partitions of the expired {@code dates} with one call per batch of dates, or with a single call for
+     * every date up to the newest expired one.
+     *
+     * @param dates expired values of the partition filter key, oldest first
+     * @param partitionsPerDate how many listed partitions sit under each date, for metrics
+     * @return whether every batch was dropped
+     */
+    private boolean dropByExpression(HiveConfigEntry entry, HiveDropMode mode, List<String> dates,
+                                     Map<String, Long> partitionsPerDate) {
+        List<List<String>> batches = new ArrayList<>();
+        int batchSize = mode == HiveDropMode.RANGE ? dates.size() : Math.max(1, entry.getDropBatchSize());
+        for (int i = 0; i < dates.size(); i += batchSize) {
+            batches.add(dates.subList(i, Math.min(dates.size(), i + batchSize)));
+        }
+
+        String databaseTable = entry.getDatabase() + "." + entry.getTable();
+        return clientsFor(entry).withMetaStoreClient(client -> {
+            PartitionExpressions expressions;
+            try {
+                expressions = PartitionExpressions.forKey(
+                        client.getTable(entry.getDatabase(), entry.getTable()), entry.getPartitionFilterKey());
+            } catch (TException | RuntimeException e) {
+                LOG.error("Unable to get the partition keys of " + databaseTable, e);
+                metrics.counter(DisposalMetrics.HIVE, entryKey(entry), DisposalMetrics.Stage.FAILED)
+                        .add(partitionsPerDate.values().stream().mapToLong(Long::longValue).sum());
+                fail(entry);
+                return false;
+            }
+
+            boolean dropped = true;
+            for (int i = 0; i < batches.size(); i++) {
+                List<String> batch = batches.get(i);
+                if (pastDeadline()) {
+                    deferPartitions(entry, batches.subList(i, batches.size()).stream()
+                            .flatMap(List::stream)
+                            .mapToLong(partitionsPerDate::get)
+                            .sum());
+                    return false;
+                }
+                ExprNodeGenericFuncDesc expression = mode == HiveDropMode.RANGE
+                        ? expressions.atMost(batch.get(batch.size() - 1))
+                        : expressions.anyOf(batch);
+                long listed = batch.stream().mapToLong(partitionsPerDate::get).sum();
+                String label = "batch " + (i + 1) + " of " + batches.size();
+                dropped &= dropBatch(client, entry, expression, batch, listed, label);
+            }
+            return dropped;
+        });
+    }
+
+    /**
+     * Drops the partitions matching {@code expression} in a single call, and acknowledges the dates of the batch in
+     * the journal if there is one.
+     *
+     * @return whether the batch was dropped
+     */
+    private boolean dropBatch(IMetaStoreClient client, HiveConfigEntry entry, ExprNodeGenericFuncDesc expression,
+                              List<String> batch, long listed, String label) {
+        String databaseTable = entry.getDatabase() + "." + entry.getTable();
+        LOG.info("Dropping partitions of " + databaseTable + " where " + expression.getExprString() +
+                " (" + label + ", " + listed + " listed partition(s))");
+        long start = System.nanoTime();
+        try {
+            // The dropped partitions are not sent back: for a range, that would be every expired partition at once.
+            client.dropPartitions(
+                    entry.getDatabase(),
+                    entry.getTable(),
+                    PartitionExpressions.serialize(expression),
+                    PartitionDropOptions.instance()
+                            .deleteData(Boolean.TRUE.equals(entry.getDeleteExternalData()))
+                            .ifExists(true)
+                            .returnResults(false));
+            LOG.info("Dropped the " + listed + " listed partition(s) of " + databaseTable + " in " + label);
+            metrics.counter(DisposalMetrics.HIVE, entryKey(entry), DisposalMetrics.Stage.DELETED).add(listed);
+            if (journal != null) {
+                batch.forEach(date -> journal.done(entryKey(entry),
+                        partitionName(Collections.singletonMap(entry.getPartitionFilterKey(), date))));
+            }
+            return true;
+        } catch (TException | RuntimeException e) {
+            LOG.error("An exception occurred dropping partitions of " + databaseTable + " in " + label, e);
+            metrics.counter(DisposalMetrics.HIVE, entryKey(entry), DisposalMetrics.Stage.FAILED).add(listed);
+            fail(entry);
+            return false;
+        } finally {
+            metrics.latency(DisposalMetrics.HIVE, "dropPartitionsByExpr").recordSince(start);
+        }
+    }
+
+    /**
+     * @return the partition's name as the metastore spells it, e.g. {@code date=2019-05-14}
+     */
+    private static String partitionName(Map<String, String> partition) {
+        try {
+            return Warehouse.makePartName(partition, false);
+        } catch (MetaException e) {
+            throw new IllegalArgumentException("Invalid partition spec " + partition, e);
+        }
+    }
+
+    /**
+     * @return the cutoff a watermark is kept at for {@code entry}, or null if the entry is not disposed of
+     * incrementally. Partition dates are whole units of the date format, and a partition expires when its date is
+     * at or before the beginning of retention, so runs sharing this cutoff expire the same partitions.
+     */
+    private Instant incrementalCutoff(HiveConfigEntry entry, Instant beginningOfRetention) {
+        if (watermarks == null) {
+            return null;
+        }
+        try {
+            ChronoUnit unit = CompiledDatePattern.finestUnit(entry.getDateFormat().toPattern());
+            return Utils.floorTo(beginningOfRetention, unit);
+        } catch (IllegalArgumentException e) {
+            LOG.warn("Disposing of " + entry.getDatabase() + "." + entry.getTable() + " in full, its date format " +
+                    "has no unit to track", e);
+            return null;
+        }
+    }
+
+    @Override
+    public String entryKey(HiveConfigEntry entry) {
+        String table = entry.getDatabase() + "." + entry.getTable();
+        return entry.getMetastore() == null ? table : entry.getMetastore() + "/" + table;
+    }
+
+    private void deferPartitions(HiveConfigEntry entry, long count) {
+        metrics.counter(DisposalMetrics.HIVE, entryKey(entry), DisposalMetrics.Stage.DEFERRED).add(count);
+        defer(entry, count);
+    }
+
+    private void advanceWatermark(HiveConfigEntry entry, Instant cutoff, boolean disposed) {
+        if (cutoff != null && disposed) {
+            watermarks.advance(entryKey(entry), cutoff);
+        }
+    }
+
+    /**
+     * @return whether {@code entry} is listed by partition names, which needs plain metastore clients
+     */
+    private boolean nameListing(HiveConfigEntry entry) {
+        if (entry.getListingMode() != HiveListingMode.NAMES) {
+            return false;
+        }
+        if (!clientsFor(entry).hasMetaStoreClients()) {
+            LOG.warn("Listing " + entryKey(entry) + " in full, no metastore client can list partition names");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Lists only the names of the partitions of {@code confEntry}, such as {@code dt=2019-05-14/region=us}, and
+     * selects the expired ones without building partition objects. When dates in the date format sort as text, a
+     * partition dated after the beginning of retention is recognized by comparing its date with the formatted
+     * beginning of retention, without parsing it.
+     */
+    private PartitionSpecs listPartitionNames(HiveConfigEntry confEntry, Instant retentionStartTimestamp)
+            throws TException {
+        String databaseTable = confEntry.getDatabase() + "." + confEntry.getTable();
+        List<String> names;
+        long start = System.nanoTime();
+        try {
+            names = clientsFor(confEntry).withMetaStoreClient(client ->
+                    client.listPartitionNames(confEntry.getDatabase(), confEntry.getTable(), (short) -1));
+        } finally {
+            metrics.latency(DisposalMetrics.HIVE, "listPartitionNames").recordSince(start);
+        }
+
+        String pattern = confEntry.getDateFormat().toPattern();
+        CompiledDatePattern datePattern = confEntry.getDatePattern();
+        String cutoff = CompiledDatePattern.isChronological(pattern)
+                ? DateTimeFormatter.ofPattern(pattern).withZone(ZoneOffset.UTC).format(retentionStartTimestamp)
+                : null;
+        long cutoffSecond = retentionStartTimestamp.getEpochSecond();
+        // The metastore spells partition keys in lower case.
+        String dateKey = confEntry.getPartitionFilterKey().toLowerCase();
+
+        PartitionSpecs partitionsToDispose = new PartitionSpecs(dateKey);
+        for (String name : names) {
+            String date = PartitionSpecs.valueIn(name, dateKey);
+            if (date == null) {
+                LOG.error("Cannot find " + dateKey + " in partition " + name + " from " + databaseTable);
+                throw new IllegalArgumentException("No " + dateKey + " in partition " + name);
+            }
+            if (cutoff != null && date.length() == cutoff.length() && date.compareTo(cutoff) > 0) {
+                continue;
+            }
+            long epochSecond = datePattern.parseEpochSecond(date, 0);
+            if (epochSecond == CompiledDatePattern.NO_MATCH) {
+                LOG.error("Cannot parse timestamp: " + name + " from " + databaseTable);
+                throw new IllegalArgumentException("Unparseable date in partition " + name);
+            }
+            if (epochSecond <= cutoffSecond) {
+                partitionsToDispose.addName(name, epochSecond);
+            }
+        }
+        metrics.counter(DisposalMetrics.HIVE, entryKey(confEntry), DisposalMetrics.Stage.SCANNED).add(names.size());
+        metrics.counter(DisposalMetrics.HIVE, entryKey(confEntry), DisposalMetrics.Stage.MATCHED)
+                .add(partitionsToDispose.size());
+        planned(confEntry, partitionsToDispose, retentionStartTimestamp);
+        LOG.info(partitionsToDispose.size() + " partition(s) from " + databaseTable + " up for disposal");
+        return partitionsToDispose;
+    }
+
+    /**
+     * @param watermark when not null, partitions before it are known to be gone already and are not listed when the
+     *                  partition filter is enabled
+     */
+    private PartitionSpecs listPartitions(
+            HiveConfigEntry confEntry,
+            Instant retentionStartTimestamp,
+            Instant watermark
+    ) throws HCatException {
         String databaseTable = confEntry.getDatabase() + "." + confEntry.getTable();
-        List<HCatPartition> partitions = new ArrayList<>();
-        List<Map<String, String>> partitionsToDispose = new ArrayList<>();
+        MetastoreClientPool clients = clientsFor(confEntry);
+        List<HCatPartition> partitions;
         boolean enableHivePartitionFilter = confEntry.getEnableHivePartitionFilter() == null ?
                 false :
                 confEntry.getEnableHivePartitionFilter();
 
+        long start = System.nanoTime();
         try {
             if (enableHivePartitionFilter) {
-                synchronized (hcatClient) {
-                    String filter = confEntry.getPartitionFilterKey() +
-                            " < " +
-                            "\"" + confEntry.getDateFormat().format(Date.from(retentionStartTimestamp)) + "\"";
-
-                    LOG.info("Retrieving partitions where " + filter);
-
-                    partitions = hcatClient.listPartitionsByFilter(
-                            confEntry.getDatabase(),
-                            confEntry.getTable(),
-                            filter
-                    );
-                }
+                String beforeRetention = confEntry.getPartitionFilterKey() +
+                        " < " +
+                        "\"" + confEntry.getDateFormat().format(Date.from(retentionStartTimestamp)) + "\"";
+                String filter = watermark == null ? beforeRetention : confEntry.getPartitionFilterKey() +
+                        " >= " +
+                        "\"" + confEntry.getDateFormat().format(Date.from(watermark)) + "\"" +
+                        " and " + beforeRetention;
+
+                LOG.info("Retrieving partitions where " + filter);
+
+                partitions = clients.withClient(hcatClient -> hcatClient.listPartitionsByFilter(
+                        confEntry.getDatabase(),
+                        confEntry.getTable(),
+                        filter
+                ));
             } else {
-                synchronized (hcatClient) {
-                    partitions = hcatClient.getPartitions(confEntry.getDatabase(), confEntry.getTable());
-                }
+                partitions = clients.withClient(hcatClient ->
+                        hcatClient.getPartitions(confEntry.getDatabase(), confEntry.getTable()));
             }
-        } catch (HCatException e) {
-            LOG.error("Unable to get partitions for: " + databaseTable, e);
+        } finally {
+            String rpc = enableHivePartitionFilter ? "listPartitionsByFilter" : "getPartitions";
+            metrics.latency(DisposalMetrics.HIVE, rpc).recordSince(start);
         }
 
 
+        PartitionSpecs partitionsToDispose = selectExpired(confEntry, partitions, retentionStartTimestamp);
+        metrics.counter(DisposalMetrics.HIVE, entryKey(confEntry), DisposalMetrics.Stage.SCANNED)
+                .add(partitions.size());
+        metrics.counter(DisposalMetrics.HIVE, entryKey(confEntry), DisposalMetrics.Stage.MATCHED)
+                .add(partitionsToDispose.size());
+        planned(confEntry, partitionsToDispose, retentionStartTimestamp);
+        LOG.info(partitionsToDispose.size() + " partition(s) from " + databaseTable + " up for disposal");
+
+        return partitionsToDispose;
+    }
+
+    /**
+     * Writes {@code partitions} to the plan manifest, if there is one.
+     */
+    private void planned(HiveConfigEntry entry, PartitionSpecs partitions, Instant beginningOfRetention) {
+        if (manifest == null) {
+            return;
+        }
+        String reason = "partition date at or before " + beginningOfRetention;
+        for (int i = 0; i < partitions.size(); i++) {
+            planned(entry, partitionName(partitions.get(i)), partitions.getEpochSecond(i), reason);
+        }
+    }
+
+    /**
+     * @return the specs of the {@code partitions} dated at or before {@code retentionStartTimestamp}
+     */
+    private static PartitionSpecs selectExpired(
+            HiveConfigEntry confEntry,
+            List<HCatPartition> partitions,
+            Instant retentionStartTimestamp
+    ) {
+        String databaseTable = confEntry.getDatabase() + "." + confEntry.getTable();
+        // Pages of one entry are filtered concurrently, and SimpleDateFormat is not thread-safe.
+        SimpleDateFormat dateFormat = (SimpleDateFormat) confEntry.getDateFormat().clone();
+        PartitionSpecs partitionsToDispose = new PartitionSpecs(confEntry.getPartitionFilterKey());
         partitions.stream()
                 .forEach(
                         partition -> {
@@ -139,57 +855,73 @@ public class HiveDisposal extends Disposal<HiveConfigList, HiveConfigEntry> {
                             Instant partitionTime;
                             try {
                                 partitionTime =
-                                        confEntry.getDateFormat().parse(keys.get(confEntry.getPartitionFilterKey())).toInstant();
+                                        dateFormat.parse(keys.get(confEntry.getPartitionFilterKey())).toInstant();
                             } catch (ParseException e) {
                                 LOG.error("Cannot parse timestamp: " + keys + " from " + databaseTable);
                                 throw new IllegalArgumentException(e);
                             }
                             if (partitionTime.getEpochSecond() <= retentionStartTimestamp.getEpochSecond()) {
-                                partitionsToDispose.add(keys);
+                                partitionsToDispose.add(keys, partitionTime.getEpochSecond());
                             }
                         }
                 );
-        LOG.info(partitionsToDispose.size() + " partition(s) from " + databaseTable + " up for disposal: " + partitionsToDispose);
-
         return partitionsToDispose;
     }
 
-    public static boolean verifyDatePartitionExists(HCatClient client, HiveConfigEntry config)
-            throws IllegalStateException {
-        String database = config.getDatabase(),
-               table = config.getTable(),
-               datePartitionKey = config.getPartitionFilterKey();
+    /**
+     * Collects the partitions of a plan manifest by table, then drops them table by table, as many tables at a time
+     * as entries are disposed of. Dropping a partition if it exists checks it still does in the same call.
+     */
+    private final class HivePlanExecution implements PlanExecution<HiveConfigEntry> {
+        private final ZonedDateTime timeOfRun;
+        private final IOExecutor executor = new IOExecutor(getBackend() + "-plan", entryConcurrency());
+        private final Map<HiveConfigEntry, List<String>> pages = new HashMap<>();
+        private final List<Map.Entry<HiveConfigEntry, List<String>>> fullPages = new ArrayList<>();
 
-        List<HCatFieldSchema> partitionColumns;
+        HivePlanExecution(ZonedDateTime timeOfRun) {
+            this.timeOfRun = timeOfRun;
+        }
 
-        synchronized (client) {
+        /**
+         * Collects the partitions of each entry in pages of {@code listingPageSize}, and drops as many full pages at a
+         * time as entries may be disposed of at once, so that no more than that many pages are held.
+         */
+        @Override
+        public void execute(HiveConfigEntry entry, PlanManifest.Item item) {
+            List<String> page = pages.computeIfAbsent(entry, key -> new ArrayList<>());
+            page.add(item.getTarget());
+            if (page.size() >= Math.max(1, entry.getListingPageSize())) {
+                fullPages.add(new AbstractMap.SimpleImmutableEntry<>(entry, pages.remove(entry)));
+                if (fullPages.size() >= entryConcurrency()) {
+                    dropPages();
+                }
+            }
+        }
+
+        @Override
+        public void finish() {
             try {
-                partitionColumns = client.getTable(database, table).getPartCols();
-            } catch (HCatException hce) {
-                   throw new IllegalStateException("Error occurred getting list of partition columns: ", hce);
+                pages.forEach((entry, page) -> fullPages.add(new AbstractMap.SimpleImmutableEntry<>(entry, page)));
+                pages.clear();
+                dropPages();
+            } finally {
+                executor.close();
             }
         }
 
-        return partitionColumns.parallelStream().filter(
-                   column -> column.getName().equals(datePartitionKey)
-               ).count() > 0;
+        private void dropPages() {
+            List<Map.Entry<HiveConfigEntry, List<String>>> dropping = new ArrayList<>(fullPages);
+            fullPages.clear();
+            executor.forEach(dropping, page -> dropPlanned(page.getKey(), page.getValue(), timeOfRun));
+        }
     }
 
     /**
      * Helper method invoked by both constructors to validate the configuration of the new HiveDisposal object.
-     * Mainly exists to avoid code duplication.
+     * Expands entries with table patterns or a retention property into one entry per table along the way; see
+     * {@link TableDiscovery}.
      */
-
     protected void validateConfig() {
-        this.config.getEntries().parallelStream().forEach(hiveConfigEntry -> {
-            HiveConfigEntry entry = (HiveConfigEntry) hiveConfigEntry;
-            if (entry.isValidationEnabled() && !verifyDatePartitionExists(hcatClient, entry)) {
-                throw new IllegalStateException(
-                        "Failed to detect date partition column " + entry.getPartitionFilterKey() + " in " +
-                        entry.getDatabase() + "." + entry.getTable() + ". Please review the table's schema " +
-                        "and adjust if necessary."
-                );
-            }
-        });
+        config.setEntries(new TableDiscovery(this::clientsFor).expand(config.getEntries()));
     }
 }
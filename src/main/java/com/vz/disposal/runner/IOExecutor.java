@@ -0,0 +1,136 @@
+// Copyright Verizon Media
+// Licensed under the terms of the Apache 2.0 license. Please see LICENSE file in the project root for terms.
+
+package com.vz.disposal.runner;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Runs work that mostly waits on the namenode or the metastore, a bounded number of tasks at a time. Unlike a
+ * parallel stream, which runs on the JVM-wide common fork-join pool, its concurrency does not follow the number of
+ * cores.
+ *
+ * On Java 24 and later, tasks run on virtual threads. Since that release, blocking inside {@code synchronized}, as
+ * the Hadoop IPC and Thrift clients do on every call, no longer pins the carrier thread. Before it, pinned virtual
+ * threads would be held back to one per core again, so older JVMs get a pool of platform threads instead.
+ */
+public final class IOExecutor implements Closeable {
+    private static final Log LOG = LogFactory.getLog(IOExecutor.class);
+    private static final int VIRTUAL_THREADS_SINCE = 24;
+
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final boolean virtual;
+
+    /**
+     * @param name prefix of the names of platform threads
+     * @param concurrency how many tasks may run at the same time
+     */
+    public IOExecutor(String name, int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency of " + name + " must be at least 1, not " + concurrency);
+        }
+        this.permits = new Semaphore(concurrency);
+        ExecutorService virtualThreads = virtualThreadExecutor();
+        this.virtual = virtualThreads != null;
+        if (virtual) {
+            this.executor = virtualThreads;
+        } else {
+            AtomicInteger threadCount = new AtomicInteger();
+            this.executor = Executors.newFixedThreadPool(concurrency, runnable -> {
+                Thread thread = new Thread(runnable, name + "-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        LOG.debug("Running " + name + " on up to " + concurrency + (virtual ? " virtual" : " platform") + " threads");
+    }
+
+    /**
+     * Runs {@code action} on every item and waits for all of them. A task failing does not stop the others.
+     *
+     * @throws RuntimeException the first exception thrown by {@code action}, once every item was run
+     */
+    public <T> void forEach(Collection<? extends T> items, Consumer<? super T> action) {
+        List<Future<?>> futures = new ArrayList<>(items.size());
+        for (T item : items) {
+            futures.add(executor.submit(() -> {
+                permits.acquireUninterruptibly();
+                try {
+                    action.accept(item);
+                } finally {
+                    permits.release();
+                }
+            }));
+        }
+
+        RuntimeException failure = null;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                futures.forEach(pending -> pending.cancel(true));
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for tasks", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                if (failure == null) {
+                    failure = (RuntimeException) cause;
+                } else {
+                    failure.addSuppressed(cause);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * @return whether tasks run on virtual threads
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    /**
+     * @return an executor starting a virtual thread per task, or null if this JVM should not use them
+     */
+    private static ExecutorService virtualThreadExecutor() {
+        if (javaVersion() < VIRTUAL_THREADS_SINCE) {
+            return null;
+        }
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            LOG.warn("Unable to create virtual threads, using platform threads", e);
+            return null;
+        }
+    }
+
+    static int javaVersion() {
+        String version = System.getProperty("java.specification.version");
+        return Integer.parseInt(version.startsWith("1.") ? version.substring(2) : version);
+    }
+}
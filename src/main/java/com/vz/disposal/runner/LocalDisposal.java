@@ -0,0 +1,274 @@
+// Copyright Verizon Media
+// Licensed under the terms of the Apache 2.0 license. Please see LICENSE file in the project root for terms.
+
+package com.vz.disposal.runner;
+
+import com.vz.disposal.config.ConfigLoader;
+import com.vz.disposal.config.LocalConfigEntry;
+import com.vz.disposal.config.LocalConfigList;
+import com.vz.disposal.config.LocalRetentionType;
+import com.vz.disposal.delete.LocalDeleter;
+import com.vz.disposal.metrics.DisposalMetrics;
+import com.vz.disposal.metrics.LatencyHistogram;
+import com.vz.disposal.state.PlanManifest;
+import com.vz.disposal.utils.CompiledDatePattern;
+import com.vz.disposal.utils.LocalGlobLister;
+import com.vz.disposal.utils.Utils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Disposes of files and directories on local and NFS disks, such as the spool and log directories of ingestion hosts,
+ * with the same entries and retention types as Apache HDFS paths.
+ *
+ * The path of an entry is expanded by a {@link LocalGlobLister}, which lists the directories of each level in
+ * parallel, and every expired match goes straight to a {@link LocalDeleter} as it is listed, so neither the listing
+ * nor the deletes wait for each other, and memory use does not grow with the number of matches.
+ */
+public class LocalDisposal extends Disposal<LocalConfigList, LocalConfigEntry> {
+    private static final Log LOG = LogFactory.getLog(LocalDisposal.class);
+    public static final String TIMESTAMP_LOCATOR = "%s";
+
+    private final LocalGlobLister lister;
+    private final LocalDeleter deleter;
+
+    public LocalDisposal(String confFile, boolean dryRun) {
+        this(new ConfigLoader<LocalConfigList>().loadConfig(confFile, LocalConfigList.class), dryRun);
+    }
+
+    public LocalDisposal(LocalConfigList config, boolean dryRun) {
+        super(config, dryRun);
+        validateConfig();
+        this.lister = new LocalGlobLister(config.getListingConcurrency());
+        this.deleter = new LocalDeleter(config.getDeleteConcurrency());
+    }
+
+    @Override
+    public String getBackend() {
+        return DisposalMetrics.LOCAL;
+    }
+
+    @Override
+    protected int entryConcurrency() {
+        return config.getEntryConcurrency();
+    }
+
+    @Override
+    public String entryKey(LocalConfigEntry entry) {
+        return entry.getPath();
+    }
+
+    @Override
+    public void close() {
+        lister.close();
+        deleter.close();
+    }
+
+    @Override
+    protected List dispose(LocalConfigEntry entry, ZonedDateTime timeOfRun) {
+        String path = entry.getPath();
+        Path glob = Paths.get(path.replace(TIMESTAMP_LOCATOR, "*"));
+        Retention retention = new Retention(entry, timeOfRun);
+        String reason = entry.getRetentionType() + " before " + retention.beginningOfRetention;
+        LongAdder matched = metrics.counter(DisposalMetrics.LOCAL, path, DisposalMetrics.Stage.MATCHED);
+        LongAdder deferred = new LongAdder();
+        LocalDeleter.Batch batch = dryRun ? null : deleter.newBatch(timed(entry.isRecursive()));
+
+        long scanned = lister.list(glob, (match, attributes) -> {
+            long epochSecond = retention.epochSecondOf(match, attributes);
+            if (!retention.isExpired(epochSecond)) {
+                return;
+            }
+            matched.increment();
+            if (pastDeadline()) {
+                deferred.increment();
+                return;
+            }
+            planned(entry, match.toString(), epochSecond, reason);
+            if (batch != null) {
+                batch.submit(match);
+            }
+        });
+        metrics.counter(DisposalMetrics.LOCAL, path, DisposalMetrics.Stage.SCANNED).add(scanned);
+        if (deferred.sum() > 0) {
+            deferPaths(entry, deferred.sum());
+        }
+
+        if (batch == null) {
+            LOG.info(matched.sum() + " paths up for disposal under " + glob);
+            return new ArrayList<>();
+        }
+        batch.await();
+        recordOutcome(entry, batch.getDeletedCount(), batch.getFailed().size());
+        LOG.info("Deleted " + batch.getDeletedCount() + " of " + matched.sum() + " expired paths under " + glob +
+                ", " + batch.getFailed().size() + " failed" +
+                (deferred.sum() > 0 ? ", " + deferred.sum() + " left for later" : ""));
+        return new ArrayList<>();
+    }
+
+    /**
+     * Local entries are never listed into the journal, as listing them again is cheap; an entry an interrupted run
+     * did not finish is disposed of anew.
+     */
+    @Override
+    protected void resume(LocalConfigEntry entry, Set<String> pending, ZonedDateTime timeOfRun) {
+        dispose(entry, timeOfRun);
+    }
+
+    @Override
+    protected PlanExecution<LocalConfigEntry> newPlanExecution(ZonedDateTime timeOfRun) {
+        return new LocalPlanExecution(timeOfRun);
+    }
+
+    private void deferPaths(LocalConfigEntry entry, long count) {
+        metrics.counter(DisposalMetrics.LOCAL, entry.getPath(), DisposalMetrics.Stage.DEFERRED).add(count);
+        defer(entry, count);
+    }
+
+    private void recordOutcome(LocalConfigEntry entry, long deleted, long failed) {
+        String path = entry.getPath();
+        metrics.counter(DisposalMetrics.LOCAL, path, DisposalMetrics.Stage.DELETED).add(deleted);
+        metrics.counter(DisposalMetrics.LOCAL, path, DisposalMetrics.Stage.FAILED).add(failed);
+        if (failed > 0) {
+            fail(entry);
+        }
+    }
+
+    /**
+     * @return a delete that records its latency
+     */
+    private LocalDeleter.Operation timed(boolean recursive) {
+        LatencyHistogram latency = metrics.latency(DisposalMetrics.LOCAL, "delete");
+        return path -> {
+            long start = System.nanoTime();
+            try {
+                LocalDeleter.delete(path, recursive);
+            } finally {
+                latency.recordSince(start);
+            }
+        };
+    }
+
+    /**
+     * Helper method invoked by the constructor to reject entries the tool cannot dispose of safely.
+     */
+    protected void validateConfig() {
+        config.getEntries().forEach(entry -> {
+            String path = entry.getPath();
+            Path parsed = path == null ? null : Paths.get(path);
+            if (parsed == null || !parsed.isAbsolute() || parsed.getNameCount() == 0
+                    || !parsed.normalize().toString().equals(path)) {
+                throw new IllegalStateException("Local path " + path + " must be absolute, below the root, and " +
+                        "without trailing slashes or . and .. names");
+            }
+            if (entry.getRetentionType() == null) {
+                throw new IllegalStateException("Local path " + path + " needs a retention type");
+            }
+            if (entry.getRetentionType() == LocalRetentionType.PATH_DATE
+                    && (!path.contains(TIMESTAMP_LOCATOR) || entry.getDatePattern() == null)) {
+                throw new IllegalStateException("Retention type " + LocalRetentionType.PATH_DATE + " requires a " +
+                        "dateFormat and " + TIMESTAMP_LOCATOR + " in local path " + path);
+            }
+        });
+    }
+
+    /**
+     * Tells which paths of an entry expired by a time of run, the way {@link com.vz.disposal.utils.TimePathFilter}s
+     * do for Apache HDFS, but from the local path and attributes.
+     */
+    private static final class Retention {
+        private final LocalConfigEntry entry;
+        private final Instant beginningOfRetention;
+        private final long cutoffSecond;
+        private final int indexOfDatestamp;
+
+        Retention(LocalConfigEntry entry, ZonedDateTime timeOfRun) {
+            this.entry = entry;
+            this.beginningOfRetention = Utils.getBeginningOfRetention(
+                    timeOfRun, entry.getRetentionDuration(), entry.getGranularity());
+            this.indexOfDatestamp = entry.getPath().indexOf(TIMESTAMP_LOCATOR);
+            // Dates in paths have no sub-second part, so comparing whole seconds is the same as Instant.isBefore.
+            this.cutoffSecond = entry.getRetentionType() == LocalRetentionType.PATH_DATE
+                    ? beginningOfRetention.getEpochSecond() + (beginningOfRetention.getNano() > 0 ? 1 : 0)
+                    : beginningOfRetention.getEpochSecond();
+        }
+
+        /**
+         * @return the time retention of {@code path} is counted from, in epoch seconds, or
+         * {@link CompiledDatePattern#NO_MATCH} if it has none
+         */
+        long epochSecondOf(Path path, BasicFileAttributes attributes) {
+            if (entry.getRetentionType() == LocalRetentionType.PATH_DATE) {
+                return entry.getDatePattern().parseEpochSecond(path.toString(), indexOfDatestamp);
+            }
+            return attributes.lastModifiedTime().to(TimeUnit.SECONDS);
+        }
+
+        boolean isExpired(long epochSecond) {
+            return epochSecond != CompiledDatePattern.NO_MATCH && epochSecond < cutoffSecond;
+        }
+    }
+
+    /**
+     * Carries out the paths of a plan manifest through the deleter, a batch per entry. Each path is checked right
+     * before it is deleted: a path that is gone counts as deleted, and one its entry no longer expires is kept.
+     */
+    private final class LocalPlanExecution implements PlanExecution<LocalConfigEntry> {
+        private final ZonedDateTime timeOfRun;
+        private final Map<LocalConfigEntry, LocalDeleter.Batch> batches = new LinkedHashMap<>();
+        private final Map<LocalConfigEntry, LongAdder> kept = new HashMap<>();
+
+        LocalPlanExecution(ZonedDateTime timeOfRun) {
+            this.timeOfRun = timeOfRun;
+        }
+
+        @Override
+        public void execute(LocalConfigEntry entry, PlanManifest.Item item) {
+            batches.computeIfAbsent(entry, this::newBatch).submit(Paths.get(item.getTarget()));
+        }
+
+        private LocalDeleter.Batch newBatch(LocalConfigEntry entry) {
+            Retention retention = new Retention(entry, timeOfRun);
+            LongAdder keptPaths = kept.computeIfAbsent(entry, key -> new LongAdder());
+            LocalDeleter.Operation delete = timed(entry.isRecursive());
+            return deleter.newBatch(path -> {
+                BasicFileAttributes attributes =
+                        Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                if (retention.isExpired(retention.epochSecondOf(path, attributes))) {
+                    delete.apply(path);
+                } else {
+                    LOG.warn("Keeping " + path + " of " + entry.getPath() + ", it is no longer expired");
+                    keptPaths.increment();
+                }
+            });
+        }
+
+        @Override
+        public void finish() {
+            batches.forEach((entry, batch) -> {
+                batch.await();
+                long keptPaths = kept.get(entry).sum();
+                long deleted = batch.getDeletedCount() - keptPaths;
+                recordOutcome(entry, deleted, batch.getFailed().size());
+                LOG.info("Deleted " + deleted + " planned paths for " + entry.getPath() + ", " + keptPaths +
+                        " no longer expired, " + batch.getFailed().size() + " failed");
+            });
+        }
+    }
+}
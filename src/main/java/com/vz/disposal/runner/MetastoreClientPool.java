@@ -0,0 +1,207 @@
+// Copyright Verizon Media
+// Licensed under the terms of the Apache 2.0 license. Please see LICENSE file in the project root for terms.
+
+package com.vz.disposal.runner;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hive.metastore.IMetaStoreClient;
+import org.apache.hadoop.hive.metastore.api.MetaException;
+import org.apache.hive.hcatalog.api.HCatClient;
+import org.apache.hive.hcatalog.common.HCatException;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+
+/**
+ * A bounded pool of clients of one metastore. A metastore client is a single thrift connection and cannot be used
+ * by several threads at once, so each call borrows a client of its own. Clients are connected when first needed,
+ * up to {@code size} of them; callers wait while all of them are in use.
+ *
+ * Besides an {@link HCatClient}, each slot of the pool may hold a plain {@link IMetaStoreClient} for the calls the
+ * HCatalog API does not offer, such as dropping partitions by expression.
+ */
+public class MetastoreClientPool implements Closeable {
+    private static final Log LOG = LogFactory.getLog(MetastoreClientPool.class);
+
+    private final ClientFactory factory;
+    private final MetaStoreClientFactory metaStoreFactory;
+    private final int size;
+    private final Semaphore permits;
+    private final Deque<Slot> idle = new ArrayDeque<>();
+    private final List<Slot> slots = new ArrayList<>();
+
+    @FunctionalInterface
+    public interface ClientFactory {
+        HCatClient create() throws HCatException;
+    }
+
+    @FunctionalInterface
+    public interface MetaStoreClientFactory {
+        IMetaStoreClient create() throws MetaException;
+    }
+
+    @FunctionalInterface
+    public interface ClientCall<R, E extends Exception> {
+        R call(HCatClient client) throws E;
+    }
+
+    @FunctionalInterface
+    public interface MetaStoreCall<R, E extends Exception> {
+        R call(IMetaStoreClient client) throws E;
+    }
+
+    /**
+     * @param metaStoreFactory connects the plain metastore clients, or null if they are not available
+     */
+    public MetastoreClientPool(ClientFactory factory, MetaStoreClientFactory metaStoreFactory, int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("A metastore client pool needs room for at least one client");
+        }
+        this.factory = factory;
+        this.metaStoreFactory = metaStoreFactory;
+        this.size = size;
+        this.permits = new Semaphore(size, true);
+    }
+
+    public MetastoreClientPool(ClientFactory factory, int size) {
+        this(factory, null, size);
+    }
+
+    /**
+     * @return a pool holding just {@code client} and, if not null, {@code metaStoreClient}
+     */
+    public static MetastoreClientPool of(HCatClient client, IMetaStoreClient metaStoreClient) {
+        return new MetastoreClientPool(() -> client, metaStoreClient == null ? null : () -> metaStoreClient, 1);
+    }
+
+    public static MetastoreClientPool of(HCatClient client) {
+        return of(client, null);
+    }
+
+    /**
+     * @return whether {@link #withMetaStoreClient} can be used
+     */
+    public boolean hasMetaStoreClients() {
+        return metaStoreFactory != null;
+    }
+
+    /**
+     * Runs {@code call} with a client no other thread is using, connecting one if none is idle.
+     */
+    public <R, E extends Exception> R withClient(ClientCall<R, E> call) throws E {
+        Slot slot = borrow();
+        try {
+            if (slot.client == null) {
+                slot.client = factory.create();
+            }
+        } catch (HCatException | RuntimeException e) {
+            giveBack(slot);
+            throw new IllegalStateException("Failed to create HCatClient", e);
+        }
+        try {
+            return call.call(slot.client);
+        } finally {
+            giveBack(slot);
+        }
+    }
+
+    /**
+     * Like {@link #withClient}, with a plain metastore client.
+     */
+    public <R, E extends Exception> R withMetaStoreClient(MetaStoreCall<R, E> call) throws E {
+        if (metaStoreFactory == null) {
+            throw new UnsupportedOperationException("No plain metastore clients in this pool");
+        }
+        Slot slot = borrow();
+        try {
+            if (slot.metaStoreClient == null) {
+                slot.metaStoreClient = metaStoreFactory.create();
+            }
+        } catch (MetaException | RuntimeException e) {
+            giveBack(slot);
+            throw new IllegalStateException("Failed to create IMetaStoreClient", e);
+        }
+        try {
+            return call.call(slot.metaStoreClient);
+        } finally {
+            giveBack(slot);
+        }
+    }
+
+    /**
+     * @return how many clients may be in use at the same time
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return how many slots of the pool were used so far
+     */
+    public synchronized int getConnected() {
+        return slots.size();
+    }
+
+    @Override
+    public synchronized void close() {
+        Set<HCatClient> clients = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<IMetaStoreClient> metaStoreClients = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Slot slot : slots) {
+            if (slot.client != null) {
+                clients.add(slot.client);
+            }
+            if (slot.metaStoreClient != null) {
+                metaStoreClients.add(slot.metaStoreClient);
+            }
+        }
+        clients.forEach(client -> {
+            try {
+                client.close();
+            } catch (HCatException e) {
+                LOG.warn("Unable to close metastore client", e);
+            }
+        });
+        metaStoreClients.forEach(IMetaStoreClient::close);
+        slots.clear();
+        idle.clear();
+    }
+
+    /**
+     * Takes an idle slot, or a new one while there is room; the slot's clients are connected by the caller, outside
+     * the lock, so that other threads can borrow and give back meanwhile.
+     */
+    private Slot borrow() {
+        permits.acquireUninterruptibly();
+        synchronized (this) {
+            if (!idle.isEmpty()) {
+                return idle.pop();
+            }
+            Slot slot = new Slot();
+            slots.add(slot);
+            return slot;
+        }
+    }
+
+    private void giveBack(Slot slot) {
+        synchronized (this) {
+            idle.push(slot);
+        }
+        permits.release();
+    }
+
+    /**
+     * The clients one borrower uses at a time.
+     */
+    private static class Slot {
+        private HCatClient client;
+        private IMetaStoreClient metaStoreClient;
+    }
+}
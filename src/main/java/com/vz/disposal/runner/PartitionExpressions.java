@@ -0,0 +1,104 @@
+// Copyright Verizon Media
+// Licensed under the terms of the Apache 2.0 license. Please see LICENSE file in the project root for terms.
+
+package com.vz.disposal.runner;
+
+import org.apache.hadoop.hive.metastore.api.FieldSchema;
+import org.apache.hadoop.hive.metastore.api.Table;
+import org.apache.hadoop.hive.metastore.utils.ObjectPair;
+import org.apache.hadoop.hive.ql.exec.SerializationUtilities;
+import org.apache.hadoop.hive.ql.plan.ExprNodeColumnDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeConstantDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeGenericFuncDesc;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDF;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPEqual;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPEqualOrLessThan;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPOr;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorConverters;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hadoop.hive.serde2.typeinfo.PrimitiveTypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoFactory;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Partition expressions on a single partition key, serialized the way the metastore expects them in
+ * {@code dropPartitions} calls. Values are converted to the type of the key, as Apache Hive does for a
+ * {@code DROP PARTITION} statement.
+ */
+public final class PartitionExpressions {
+    private final String key;
+    private final PrimitiveTypeInfo type;
+
+    private PartitionExpressions(String key, PrimitiveTypeInfo type) {
+        this.key = key;
+        this.type = type;
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code key} is not a partition key of {@code table}
+     */
+    public static PartitionExpressions forKey(Table table, String key) {
+        for (FieldSchema column : table.getPartitionKeys()) {
+            if (column.getName().equalsIgnoreCase(key)) {
+                PrimitiveTypeInfo type = TypeInfoFactory.getPrimitiveTypeInfo(column.getType());
+                return new PartitionExpressions(column.getName(), type);
+            }
+        }
+        throw new IllegalArgumentException(key + " is not a partition key of " +
+                table.getDbName() + "." + table.getTableName());
+    }
+
+    /**
+     * @return an expression matching the partitions whose key is at most {@code value}
+     */
+    public ExprNodeGenericFuncDesc atMost(String value) {
+        return predicate(new GenericUDFOPEqualOrLessThan(), column(), constant(value));
+    }
+
+    /**
+     * @return an expression matching the partitions whose key is one of {@code values}
+     */
+    public ExprNodeGenericFuncDesc anyOf(Collection<String> values) {
+        List<ExprNodeDesc> equalities = new ArrayList<>();
+        for (String value : values) {
+            equalities.add(predicate(new GenericUDFOPEqual(), column(), constant(value)));
+        }
+        if (equalities.size() == 1) {
+            return (ExprNodeGenericFuncDesc) equalities.get(0);
+        }
+        return new ExprNodeGenericFuncDesc(TypeInfoFactory.booleanTypeInfo, new GenericUDFOPOr(), equalities);
+    }
+
+    /**
+     * @return {@code expression} as the single argument of {@code IMetaStoreClient.dropPartitions}
+     */
+    public static List<ObjectPair<Integer, byte[]>> serialize(ExprNodeGenericFuncDesc expression) {
+        byte[] serialized = SerializationUtilities.serializeExpressionToKryo(expression);
+        return Collections.singletonList(new ObjectPair<>(1, serialized));
+    }
+
+    private ExprNodeColumnDesc column() {
+        return new ExprNodeColumnDesc(type, key, null, true);
+    }
+
+    private ExprNodeConstantDesc constant(String value) {
+        Object converted = ObjectInspectorConverters.getConverter(
+                PrimitiveObjectInspectorFactory.javaStringObjectInspector,
+                TypeInfoUtils.getStandardJavaObjectInspectorFromTypeInfo(type)
+        ).convert(value);
+        return new ExprNodeConstantDesc(type, converted);
+    }
+
+    private static ExprNodeGenericFuncDesc predicate(GenericUDF udf, ExprNodeDesc left, ExprNodeDesc right) {
+        List<ExprNodeDesc> children = new ArrayList<>();
+        children.add(left);
+        children.add(right);
+        return new ExprNodeGenericFuncDesc(TypeInfoFactory.booleanTypeInfo, udf, children);
+    }
+}
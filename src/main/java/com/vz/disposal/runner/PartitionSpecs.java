@@ -0,0 +1,252 @@
+// Copyright Verizon Media
+// Licensed under the terms of the Apache 2.0 license. Please see LICENSE file in the project root for terms.
+
+package com.vz.disposal.runner;
+
+import org.apache.hadoop.hive.metastore.utils.FileUtils;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The specs of partitions of one table, as compact as planning allows.
+ *
+ * Instead of a map per partition, specs are kept column by column: key names once per table, each key's values as
+ * indexes into a dictionary of the distinct values of that key, and the parsed date of each partition as epoch
+ * seconds. A table with years of hourly partitions under a handful of other keys thus costs a few ints and a long
+ * per partition. Specs read as {@code key=value} maps, created on access.
+ *
+ * Partitions can be added from their key values or straight from their names as the metastore lists them, such as
+ * {@code dt=2019-05-14/region=us}.
+ */
+public final class PartitionSpecs extends AbstractList<Map<String, String>> {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final String dateKey;
+    private String[] keys;
+    private int dateColumn;
+    private Dictionary[] dictionaries;
+    private int[][] valueIds;
+    private long[] epochSeconds = new long[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * @param dateKey the partition key holding the date
+     */
+    public PartitionSpecs(String dateKey) {
+        this.dateKey = dateKey;
+    }
+
+    /**
+     * Adds a partition; the first one fixes the partition keys of the table.
+     *
+     * @param keyValues the partition's keys and values, in partition key order
+     * @param epochSecond the partition's date
+     * @throws IllegalArgumentException if the partition does not have the same keys as the others
+     */
+    public void add(Map<String, String> keyValues, long epochSecond) {
+        if (keys == null) {
+            initKeys(keyValues.keySet().toArray(new String[0]));
+        }
+        if (keyValues.size() != keys.length) {
+            throw new IllegalArgumentException("Partition " + keyValues + " does not have the keys " +
+                    Arrays.toString(keys));
+        }
+        String[] values = new String[keys.length];
+        for (int column = 0; column < keys.length; column++) {
+            values[column] = keyValues.get(keys[column]);
+            if (values[column] == null) {
+                throw new IllegalArgumentException("Partition " + keyValues + " has no value for " + keys[column]);
+            }
+        }
+        append(values, epochSecond);
+    }
+
+    /**
+     * Adds a partition by its name; the first one fixes the partition keys of the table.
+     *
+     * @param name the partition's name, e.g. {@code dt=2019-05-14/region=us}
+     * @param epochSecond the partition's date
+     * @throws IllegalArgumentException if the partition does not have the same keys as the others
+     */
+    public void addName(String name, long epochSecond) {
+        String[] parts = name.split("/");
+        String[] names = new String[parts.length];
+        String[] values = new String[parts.length];
+        for (int column = 0; column < parts.length; column++) {
+            int equals = parts[column].indexOf('=');
+            if (equals < 0) {
+                throw new IllegalArgumentException("Invalid partition name " + name);
+            }
+            names[column] = unescape(parts[column].substring(0, equals));
+            values[column] = unescape(parts[column].substring(equals + 1));
+        }
+        if (keys == null) {
+            initKeys(names);
+        }
+        if (!Arrays.equals(names, keys)) {
+            throw new IllegalArgumentException("Partition " + name + " does not have the keys " +
+                    Arrays.toString(keys));
+        }
+        append(values, epochSecond);
+    }
+
+    /**
+     * @return the unescaped value of {@code key} in partition name {@code name}, or null if it has no such key
+     */
+    public static String valueIn(String name, String key) {
+        int start = 0;
+        while (start < name.length()) {
+            int end = name.indexOf('/', start);
+            if (end < 0) {
+                end = name.length();
+            }
+            int equals = start + key.length();
+            if (equals < end && name.charAt(equals) == '=' && name.startsWith(key, start)) {
+                return unescape(name.substring(equals + 1, end));
+            }
+            start = end + 1;
+        }
+        return null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the spec of the {@code index}th partition, created on each call
+     */
+    @Override
+    public Map<String, String> get(int index) {
+        checkIndex(index);
+        Map<String, String> spec = new LinkedHashMap<>();
+        for (int column = 0; column < keys.length; column++) {
+            spec.put(keys[column], dictionaries[column].valueOf(valueIds[column][index]));
+        }
+        return Collections.unmodifiableMap(spec);
+    }
+
+    public long getEpochSecond(int index) {
+        checkIndex(index);
+        return epochSeconds[index];
+    }
+
+    /**
+     * @return the value of the date key of the {@code index}th partition
+     */
+    public String getDate(int index) {
+        checkIndex(index);
+        return dictionaries[dateColumn].valueOf(valueIds[dateColumn][index]);
+    }
+
+    /**
+     * @return how many partitions there are per value of the date key, oldest date first, and dates of the same age
+     * in the order they were first added
+     */
+    public Map<String, Long> countByDate() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        if (size == 0) {
+            return counts;
+        }
+        Dictionary dates = dictionaries[dateColumn];
+        long[] perId = new long[dates.size()];
+        long[] epochSecondPerId = new long[dates.size()];
+        for (int i = 0; i < size; i++) {
+            int id = valueIds[dateColumn][i];
+            perId[id]++;
+            epochSecondPerId[id] = epochSeconds[i];
+        }
+        Integer[] ids = new Integer[perId.length];
+        for (int id = 0; id < ids.length; id++) {
+            ids[id] = id;
+        }
+        Arrays.sort(ids, Comparator.comparingLong(id -> epochSecondPerId[id]));
+        for (int id : ids) {
+            if (perId[id] > 0) {
+                counts.put(dates.valueOf(id), perId[id]);
+            }
+        }
+        return counts;
+    }
+
+    private void append(String[] values, long epochSecond) {
+        if (size == epochSeconds.length) {
+            int capacity = size + (size >> 1);
+            epochSeconds = Arrays.copyOf(epochSeconds, capacity);
+            for (int column = 0; column < keys.length; column++) {
+                valueIds[column] = Arrays.copyOf(valueIds[column], capacity);
+            }
+        }
+        for (int column = 0; column < keys.length; column++) {
+            valueIds[column][size] = dictionaries[column].idOf(values[column]);
+        }
+        epochSeconds[size] = epochSecond;
+        size++;
+    }
+
+    private void initKeys(String[] partitionKeys) {
+        keys = new String[partitionKeys.length];
+        dateColumn = -1;
+        for (int column = 0; column < keys.length; column++) {
+            keys[column] = partitionKeys[column].intern();
+            if (keys[column].equals(dateKey)) {
+                dateColumn = column;
+            }
+        }
+        if (dateColumn < 0) {
+            throw new IllegalArgumentException("Partition keys " + Arrays.toString(keys) + " have no date key " +
+                    dateKey);
+        }
+        dictionaries = new Dictionary[keys.length];
+        valueIds = new int[keys.length][];
+        for (int column = 0; column < keys.length; column++) {
+            dictionaries[column] = new Dictionary();
+            valueIds[column] = new int[epochSeconds.length];
+        }
+    }
+
+    private static String unescape(String text) {
+        return text.indexOf('%') < 0 ? text : FileUtils.unescapePathName(text);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+    }
+
+    /**
+     * The distinct values of one partition key, each stored once.
+     */
+    private static final class Dictionary {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        int idOf(String value) {
+            Integer id = ids.get(value);
+            if (id == null) {
+                id = values.size();
+                ids.put(value, id);
+                values.add(value);
+            }
+            return id;
+        }
+
+        String valueOf(int id) {
+            return values.get(id);
+        }
+
+        int size() {
+            return values.size();
+        }
+    }
+}
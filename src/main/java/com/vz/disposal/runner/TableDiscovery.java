@@ -0,0 +1,270 @@
+// Copyright Verizon Media
+// Licensed under the terms of the Apache 2.0 license. Please see LICENSE file in the project root for terms.
+
+package com.vz.disposal.runner;
+
+import com.vz.disposal.config.HiveConfigEntry;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hive.metastore.api.FieldSchema;
+import org.apache.hadoop.hive.metastore.api.Table;
+import org.apache.hive.hcatalog.api.HCatTable;
+import org.apache.hive.hcatalog.common.HCatException;
+import org.apache.hive.hcatalog.data.schema.HCatFieldSchema;
+import org.apache.thrift.TException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Turns the Hive entries of a config into one entry per table, and checks every table has the date partition column
+ * its entry names, in a few bulk metastore calls rather than one call per table.
+ *
+ * Entries whose database or table is a pattern are expanded into the matching tables: one call lists the matching
+ * databases, one call per database the matching tables. The tables themselves are then fetched
+ * {@value #TABLE_BATCH} at a time, for all entries of the same database together, when their schema or properties
+ * are needed. A table matched by a pattern is left out if it lacks the date partition column, or if it is named by
+ * an explicit entry or matched by an earlier pattern. Entries with a retention property take the retention of each
+ * table from that property, and leave out tables without a valid value.
+ *
+ * Without plain metastore clients, names are listed through HCatalog and tables are fetched one at a time.
+ */
+final class TableDiscovery {
+    private static final Log LOG = LogFactory.getLog(TableDiscovery.class);
+
+    /**
+     * How many tables are fetched per call; the metastore fetches as many per batch by default.
+     */
+    static final int TABLE_BATCH = 300;
+
+    private final Function<HiveConfigEntry, MetastoreClientPool> pools;
+
+    /**
+     * @param pools the clients of the metastore of an entry
+     */
+    TableDiscovery(Function<HiveConfigEntry, MetastoreClientPool> pools) {
+        this.pools = pools;
+    }
+
+    /**
+     * @return an entry per table, in the order of {@code entries}; explicit entries that neither need nor got a
+     * retention of their own are kept as they are
+     * @throws IllegalStateException if a table of an explicit entry does not exist or lacks its date partition
+     * column, or if the metastore could not be reached
+     */
+    List<HiveConfigEntry> expand(List<HiveConfigEntry> entries) {
+        List<Candidate> candidates = new ArrayList<>();
+        Set<String> explicit = new HashSet<>();
+        for (HiveConfigEntry entry : entries) {
+            MetastoreClientPool pool = pools.apply(entry);
+            if (entry.isPattern()) {
+                candidates.addAll(match(pool, entry));
+            } else {
+                Candidate candidate = new Candidate(entry, pool, entry.getDatabase(), entry.getTable());
+                candidates.add(candidate);
+                explicit.add(candidate.key());
+            }
+        }
+
+        Map<String, TableInfo> tables = fetch(candidates.stream()
+                .filter(candidate -> candidate.entry.isValidationEnabled() ||
+                        candidate.entry.getRetentionProperty() != null)
+                .collect(Collectors.toList()));
+
+        List<HiveConfigEntry> expanded = new ArrayList<>();
+        Set<String> matched = new HashSet<>();
+        for (Candidate candidate : candidates) {
+            HiveConfigEntry entry = candidate.entry;
+            boolean pattern = entry.isPattern();
+            if (pattern && (explicit.contains(candidate.key()) || !matched.add(candidate.key()))) {
+                continue;
+            }
+            TableInfo table = tables.get(candidate.key());
+            if (table == null && (entry.isValidationEnabled() || entry.getRetentionProperty() != null)) {
+                if (!pattern) {
+                    throw new IllegalStateException("Table " + candidate.name() + " does not exist");
+                }
+                continue;
+            }
+            if (entry.isValidationEnabled() && !table.partitionKeys.contains(entry.getPartitionFilterKey())) {
+                if (!pattern) {
+                    throw new IllegalStateException(
+                            "Failed to detect date partition column " + entry.getPartitionFilterKey() + " in " +
+                            candidate.name() + ". Please review the table's schema and adjust if necessary."
+                    );
+                }
+                LOG.warn("Skipping " + candidate.name() + ", matched by " + entry.getDatabase() + "." +
+                        entry.getTable() + " but without date partition column " + entry.getPartitionFilterKey());
+                continue;
+            }
+
+            if (entry.getRetentionProperty() != null) {
+                Integer retention = retentionOf(table, entry.getRetentionProperty());
+                if (retention == null) {
+                    LOG.warn("Skipping " + candidate.name() + ", no valid " + entry.getRetentionProperty() +
+                            " property: " + table.properties.get(entry.getRetentionProperty()));
+                    continue;
+                }
+                HiveConfigEntry copy = entry.forTable(candidate.database, candidate.table);
+                copy.setRetentionDuration(retention);
+                expanded.add(copy);
+            } else {
+                expanded.add(pattern ? entry.forTable(candidate.database, candidate.table) : entry);
+            }
+        }
+        LOG.info(entries.size() + " Hive entries name " + expanded.size() + " tables");
+        return expanded;
+    }
+
+    /**
+     * @return the tables {@code entry}'s patterns match, sorted by database and name
+     */
+    private static List<Candidate> match(MetastoreClientPool pool, HiveConfigEntry entry) {
+        String databasePattern = entry.getDatabase();
+        String tablePattern = entry.getTable();
+        try {
+            List<String> databases = HiveConfigEntry.isPattern(databasePattern)
+                    ? sorted(pool.hasMetaStoreClients()
+                            ? pool.withMetaStoreClient(client -> client.getDatabases(databasePattern))
+                            : pool.withClient(client -> client.listDatabaseNamesByPattern(databasePattern)))
+                    : Collections.singletonList(databasePattern);
+            List<Candidate> candidates = new ArrayList<>();
+            for (String database : databases) {
+                List<String> names = HiveConfigEntry.isPattern(tablePattern)
+                        ? sorted(pool.hasMetaStoreClients()
+                                ? pool.withMetaStoreClient(client -> client.getTables(database, tablePattern))
+                                : pool.withClient(client -> client.listTableNamesByPattern(database, tablePattern)))
+                        : Collections.singletonList(tablePattern);
+                names.forEach(name -> candidates.add(new Candidate(entry, pool, database, name)));
+            }
+            LOG.info(databasePattern + "." + tablePattern + " matches " + candidates.size() + " tables");
+            return candidates;
+        } catch (HCatException | TException e) {
+            throw new IllegalStateException("Unable to list the tables matching " + databasePattern + "." +
+                    tablePattern, e);
+        }
+    }
+
+    /**
+     * @return the schema and properties of the tables of {@code candidates} that exist, by {@link Candidate#key()}
+     */
+    private static Map<String, TableInfo> fetch(List<Candidate> candidates) {
+        // Tables of the same metastore and database are fetched together.
+        Map<String, Map<String, Set<String>>> byDatabase = new LinkedHashMap<>();
+        Map<String, MetastoreClientPool> pools = new HashMap<>();
+        for (Candidate candidate : candidates) {
+            String metastore = candidate.entry.getMetastore();
+            byDatabase.computeIfAbsent(metastore, name -> new LinkedHashMap<>())
+                    .computeIfAbsent(candidate.database, database -> new LinkedHashSet<>())
+                    .add(candidate.table);
+            pools.put(metastore, candidate.pool);
+        }
+
+        Map<String, TableInfo> tables = new HashMap<>();
+        byDatabase.forEach((metastore, databases) -> databases.forEach((database, names) -> {
+            MetastoreClientPool pool = pools.get(metastore);
+            try {
+                if (pool.hasMetaStoreClients()) {
+                    List<String> all = new ArrayList<>(names);
+                    for (int start = 0; start < all.size(); start += TABLE_BATCH) {
+                        List<String> batch = all.subList(start, Math.min(all.size(), start + TABLE_BATCH));
+                        for (Table table : pool.withMetaStoreClient(client ->
+                                client.getTableObjectsByName(database, batch))) {
+                            tables.put(key(metastore, database, table.getTableName()), new TableInfo(
+                                    table.getPartitionKeys().stream()
+                                            .map(FieldSchema::getName)
+                                            .collect(Collectors.toList()),
+                                    table.getParameters()));
+                        }
+                    }
+                } else {
+                    for (String name : names) {
+                        HCatTable table = pool.withClient(client -> client.getTable(database, name));
+                        tables.put(key(metastore, database, name), new TableInfo(
+                                table.getPartCols().stream()
+                                        .map(HCatFieldSchema::getName)
+                                        .collect(Collectors.toList()),
+                                table.getTblProps()));
+                    }
+                }
+            } catch (HCatException | TException e) {
+                throw new IllegalStateException("Error occurred getting tables of " + database, e);
+            }
+        }));
+        return tables;
+    }
+
+    private static Integer retentionOf(TableInfo table, String property) {
+        String value = table.properties.get(property);
+        if (value == null) {
+            return null;
+        }
+        try {
+            int retention = Integer.parseInt(value.trim());
+            return retention < 0 ? null : retention;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static List<String> sorted(List<String> names) {
+        List<String> sorted = new ArrayList<>(names);
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * Table names are not case-sensitive, and the metastore returns them in lower case.
+     */
+    private static String key(String metastore, String database, String table) {
+        return (metastore + "/" + database + "." + table).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * A table an entry names or matches.
+     */
+    private static final class Candidate {
+        private final HiveConfigEntry entry;
+        private final MetastoreClientPool pool;
+        private final String database;
+        private final String table;
+
+        Candidate(HiveConfigEntry entry, MetastoreClientPool pool, String database, String table) {
+            this.entry = entry;
+            this.pool = pool;
+            this.database = database;
+            this.table = table;
+        }
+
+        String key() {
+            return TableDiscovery.key(entry.getMetastore(), database, table);
+        }
+
+        String name() {
+            return database + "." + table;
+        }
+    }
+
+    /**
+     * What discovery needs to know of a table.
+     */
+    private static final class TableInfo {
+        private final List<String> partitionKeys;
+        private final Map<String, String> properties;
+
+        TableInfo(List<String> partitionKeys, Map<String, String> properties) {
+            this.partitionKeys = partitionKeys;
+            this.properties = properties == null ? Collections.emptyMap() : properties;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+// Copyright Verizon Media
+// Licensed under the terms of the Apache 2.0 license. Please see LICENSE file in the project root for terms.
+
+package com.vz.disposal.state;
+
+import lombok.Getter;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An append-only journal of the deletions of a run, so that a run that died can be resumed without listing again.
+ *
+ * For every entry the journal holds one {@code PLAN} record per planned deletion (a path or a partition spec),
+ * a {@code LISTED} record once every deletion of the entry is planned, a {@code DONE} record per acknowledged
+ * deletion and an {@code ENTRY_DONE} record once the entry is through. When a run finds a journal left behind, it
+ * skips the entries that were through, replays the unacknowledged deletions of the entries that were fully planned
+ * and disposes of the rest as usual. The journal is removed once a run completes.
+ *
+ * Records are flushed whenever an entry is fully planned or done. Losing buffered {@code DONE} records to a crash
+ * only means replaying deletions that already happened, which finds the targets gone.
+ */
+public class DeletionJournal implements Closeable {
+    private static final Log LOG = LogFactory.getLog(DeletionJournal.class);
+    private static final String SUFFIX = ".journal";
+
+    private static final String PLAN = "PLAN";
+    private static final String LISTED = "LISTED";
+    private static final String DONE = "DONE";
+    private static final String ENTRY_DONE = "ENTRY_DONE";
+    /**
+     * Ends every record, so that a record cut short by a crash is recognized and ignored.
+     */
+    private static final String END = ";";
+
+    private final Path file;
+    private final Map<String, Recovered> recovered;
+    private BufferedWriter writer;
+    private boolean broken;
+
+    private DeletionJournal(Path file, Map<String, Recovered> recovered) throws IOException {
+        this.file = file;
+        this.recovered = recovered;
+        this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        // Start on a fresh line after a record cut short.
+        if (Files.size(file) > 0) {
+            writer.newLine();
+        }
+    }
+
+    /**
+     * Opens the journal of config {@code name} in {@code stateDir}, reading what an interrupted run left behind.
+     */
+    public static DeletionJournal open(Path stateDir, String name) throws IOException {
+        Files.createDirectories(stateDir);
+        Path file = stateDir.resolve(name + SUFFIX);
+        Map<String, Recovered> recovered = Files.exists(file) ? read(file) : Collections.emptyMap();
+        if (!recovered.isEmpty()) {
+            LOG.info("Resuming the interrupted run journaled in " + file + " with " + recovered.size() + " entries");
+        }
+        return new DeletionJournal(file, recovered);
+    }
+
+    /**
+     * @return what the interrupted run journaled for {@code entry}, or null if it did not get to it
+     */
+    public Recovered recovered(String entry) {
+        return recovered.get(entry);
+    }
+
+    public void plan(String entry, String target) {
+        append(PLAN, entry, target, false);
+    }
+
+    /**
+     * Marks every deletion of {@code entry} as planned; a resumed run will not list the entry again.
+     */
+    public void listed(String entry) {
+        append(LISTED, entry, null, true);
+    }
+
+    public void done(String entry, String target) {
+        append(DONE, entry, target, false);
+    }
+
+    public void entryDone(String entry) {
+        append(ENTRY_DONE, entry, null, true);
+    }
+
+    /**
+     * Removes the journal once every entry of the run is through; the next run starts from scratch.
+     */
+    public synchronized void complete() throws IOException {
+        close();
+        if (!broken) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+
+    private synchronized void append(String type, String entry, String target, boolean flush) {
+        if (broken || writer == null) {
+            return;
+        }
+        try {
+            writer.write(type + " " + encode(entry) + (target == null ? "" : " " + encode(target)) + " " + END);
+            writer.newLine();
+            if (flush) {
+                writer.flush();
+            }
+        } catch (IOException e) {
+            // Stop journaling altogether: a record missing in the middle could make a resumed run skip work.
+            LOG.error("Unable to write to the journal " + file + ", this run cannot be resumed", e);
+            broken = true;
+        }
+    }
+
+    private static Map<String, Recovered> read(Path file) throws IOException {
+        Map<String, Recovered> entries = new HashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(" ");
+                if (fields.length < 3 || !END.equals(fields[fields.length - 1])) {
+                    continue;
+                }
+                Recovered state = entries.computeIfAbsent(decode(fields[1]), key -> new Recovered());
+                switch (fields[0]) {
+                    case PLAN:
+                        if (fields.length == 4) {
+                            state.pending.add(decode(fields[2]));
+                        }
+                        break;
+                    case DONE:
+                        if (fields.length == 4) {
+                            state.pending.remove(decode(fields[2]));
+                        }
+                        break;
+                    case LISTED:
+                        state.listed = true;
+                        break;
+                    case ENTRY_DONE:
+                        state.done = true;
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+        return entries;
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, StandardCharsets.UTF_8.name());
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, StandardCharsets.UTF_8.name());
+        } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+            return value;
+        }
+    }
+
+    /**
+     * What an interrupted run got through for one entry.
+     */
+    public static class Recovered {
+        /**
+         * Whether every deletion of the entry was planned.
+         */
+        @Getter
+        private boolean listed;
+
+        /**
+         * Whether the entry was through.
+         */
+        @Getter
+        private boolean done;
+
+        /**
+         * Planned deletions that were not acknowledged, in the order they were planned.
+         */
+        @Getter
+        private final Set<String> pending = new LinkedHashSet<>();
+    }
+}
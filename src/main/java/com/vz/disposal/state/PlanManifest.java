@@ -0,0 +1,182 @@
+// Copyright Verizon Media
+// Licensed under the terms of the Apache 2.0 license. Please see LICENSE file in the project root for terms.
+
+package com.vz.disposal.state;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.vz.disposal.utils.CompiledDatePattern;
+import lombok.Getter;
+import lombok.Setter;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The paths and partitions a run found up for disposal, written to a gzip-compressed file one JSON object per line
+ * as they are found, so that a plan of any size can be reviewed without holding it in memory or in the logs:
+ * <pre>
+ * {"backend":"hdfs","entry":"/data/date=%s","target":"/data/date=2019-04-23","time":"2019-04-23T00:00:00Z",
+ *  "reason":"PATH_DATE before 2019-05-18T00:00:00Z"}
+ * </pre>
+ * {@code time} is the date or modification time retention was counted from, left out when the target has none of
+ * its own, and {@code reason} says why the target is up for disposal.
+ *
+ * A failed write stops the manifest, like it stops a {@link DeletionJournal}; {@link #isComplete()} then tells the
+ * manifest is missing targets.
+ */
+public class PlanManifest implements Closeable {
+    private static final Log LOG = LogFactory.getLog(PlanManifest.class);
+    private static final ObjectWriter WRITER = new ObjectMapper()
+            .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+            .writer();
+    private static final ObjectReader READER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+            .reader(Item.class);
+
+    private final Path file;
+    private BufferedWriter writer;
+    private long count;
+    private boolean broken;
+
+    private PlanManifest(Path file) throws IOException {
+        this.file = file;
+        this.writer = new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(Files.newOutputStream(file)), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Creates the manifest {@code file}, replacing any earlier one.
+     */
+    public static PlanManifest create(Path file) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        return new PlanManifest(file);
+    }
+
+    /**
+     * Hands every target of manifest {@code file} to {@code consumer}, in the order they were written, reading one
+     * line at a time.
+     *
+     * @throws IOException if the file cannot be read, or is cut short; the targets before that were handed over
+     */
+    public static void read(Path file, Consumer<Item> consumer) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    consumer.accept(READER.readValue(line));
+                }
+            }
+        }
+    }
+
+    /**
+     * @param epochSecond when retention of the target was counted from, or {@link CompiledDatePattern#NO_MATCH}
+     */
+    public void add(String backend, String entry, String target, long epochSecond, String reason) {
+        Item item = new Item();
+        item.setBackend(backend);
+        item.setEntry(entry);
+        item.setTarget(target);
+        if (epochSecond != CompiledDatePattern.NO_MATCH) {
+            item.setTime(Instant.ofEpochSecond(epochSecond).toString());
+        }
+        item.setReason(reason);
+        String line;
+        try {
+            line = WRITER.writeValueAsString(item);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to write " + target + " to the plan manifest", e);
+        }
+        append(line);
+    }
+
+    /**
+     * @return how many targets were written
+     */
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     * @return whether every target added was written
+     */
+    public synchronized boolean isComplete() {
+        return !broken;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+            LOG.info("Wrote " + count + " target(s) to the plan manifest " + file +
+                    (broken ? ", which is incomplete" : ""));
+        }
+    }
+
+    private synchronized void append(String line) {
+        if (broken || writer == null) {
+            broken = true;
+            return;
+        }
+        try {
+            writer.write(line);
+            writer.newLine();
+            count++;
+        } catch (IOException e) {
+            LOG.error("Unable to write to the plan manifest " + file + ", it is incomplete", e);
+            broken = true;
+        }
+    }
+
+    /**
+     * One line of the manifest.
+     */
+    public static class Item {
+        @Getter
+        @Setter
+        private String backend;
+
+        /**
+         * The key of the entry the target is disposed of for, as in watermarks and the journal.
+         */
+        @Getter
+        @Setter
+        private String entry;
+
+        /**
+         * A path, or a partition name such as {@code dt=2019-05-14/region=us}.
+         */
+        @Getter
+        @Setter
+        private String target;
+
+        @Getter
+        @Setter
+        private String time;
+
+        @Getter
+        @Setter
+        private String reason;
+    }
+}
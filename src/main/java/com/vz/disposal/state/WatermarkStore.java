@@ -0,0 +1,81 @@
+// Copyright Verizon Media
+// Licensed under the terms of the Apache 2.0 license. Please see LICENSE file in the project root for terms.
+
+package com.vz.disposal.state;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.Properties;
+
+/**
+ * The cutoff of the last successful disposal of each entry of one config, kept in a small properties file.
+ *
+ * A watermark says that everything older than the cutoff has been disposed of, so a later run only has to look at
+ * what expired since. Watermarks are only ever moved forward, and only after an entry was disposed of without
+ * failures. Deleting the file makes the next run look at everything again.
+ */
+public class WatermarkStore {
+    private static final Log LOG = LogFactory.getLog(WatermarkStore.class);
+    private static final String SUFFIX = ".watermarks";
+
+    private final Path file;
+    private final Properties watermarks = new Properties();
+
+    private WatermarkStore(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Loads the watermarks of config {@code name} from {@code stateDir}, creating the directory if needed.
+     */
+    public static WatermarkStore open(Path stateDir, String name) throws IOException {
+        Files.createDirectories(stateDir);
+        WatermarkStore store = new WatermarkStore(stateDir.resolve(name + SUFFIX));
+        if (Files.exists(store.file)) {
+            try (Reader reader = Files.newBufferedReader(store.file, StandardCharsets.UTF_8)) {
+                store.watermarks.load(reader);
+            }
+        }
+        return store;
+    }
+
+    /**
+     * @return the cutoff of the last successful disposal of {@code key}, or null if there was none
+     */
+    public synchronized Instant get(String key) {
+        String value = watermarks.getProperty(key);
+        return value == null ? null : Instant.ofEpochMilli(Long.parseLong(value));
+    }
+
+    /**
+     * Records that everything of {@code key} older than {@code cutoff} is gone, unless a later cutoff is already
+     * recorded.
+     */
+    public synchronized void advance(String key, Instant cutoff) {
+        Instant previous = get(key);
+        if (previous == null || cutoff.isAfter(previous)) {
+            watermarks.setProperty(key, String.valueOf(cutoff.toEpochMilli()));
+        }
+    }
+
+    /**
+     * Writes the watermarks next to the state file, then moves them over it.
+     */
+    public synchronized void save() throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            watermarks.store(writer, "Cutoff of the last successful disposal per entry, in epoch milliseconds");
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        LOG.info("Saved " + watermarks.size() + " watermark(s) to " + file);
+    }
+}
@@ -0,0 +1,247 @@
+// Copyright Verizon Media
+// Licensed under the terms of the Apache 2.0 license. Please see LICENSE file in the project root for terms.
+
+package com.vz.disposal.utils;
+
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * A date pattern compiled once and safe to share between threads.
+ *
+ * Patterns made only of zero-padded numeric fields ({@code yyyy}, {@code MM}, {@code dd}, {@code HH}, {@code mm},
+ * {@code ss}) and literal separators, such as {@code yyyyMMdd} or {@code yyyy-MM-dd}, are parsed straight from
+ * the characters into epoch seconds without allocating anything. Text that does not parse that way, and every
+ * other pattern, goes through a per-thread {@link SimpleDateFormat}, so the results are the same as parsing with
+ * the configured {@link SimpleDateFormat} in UTC.
+ */
+public final class CompiledDatePattern {
+    public static final long NO_MATCH = Long.MIN_VALUE;
+
+    private static final long SECONDS_PER_DAY = 86_400;
+
+    private final String pattern;
+    private final boolean numeric;
+    private final ThreadLocal<SimpleDateFormat> fallback;
+
+    private CompiledDatePattern(String pattern) {
+        this.pattern = pattern;
+        this.numeric = isNumeric(pattern);
+        this.fallback = ThreadLocal.withInitial(() -> {
+            SimpleDateFormat format = new SimpleDateFormat(pattern);
+            format.setTimeZone(TimeZone.getTimeZone(ZoneOffset.UTC));
+            return format;
+        });
+    }
+
+    public static CompiledDatePattern compile(String pattern) {
+        return new CompiledDatePattern(pattern);
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    /**
+     * @return the number of characters a date takes in a path, taken to be the length of the pattern
+     */
+    public int length() {
+        return pattern.length();
+    }
+
+    /**
+     * @return whether dates in this pattern are parsed without allocating
+     */
+    public boolean isNumeric() {
+        return numeric;
+    }
+
+    /**
+     * Parses the {@link #length()} characters of {@code text} starting at {@code offset}.
+     *
+     * @return the date in seconds since the epoch, or {@link #NO_MATCH} if the text is too short or not a date
+     */
+    public long parseEpochSecond(CharSequence text, int offset) {
+        if (offset < 0 || text.length() < offset + pattern.length()) {
+            return NO_MATCH;
+        }
+        if (numeric) {
+            long parsed = parseNumeric(text, offset);
+            if (parsed != NO_MATCH) {
+                return parsed;
+            }
+        }
+        return parseFallback(text.subSequence(offset, offset + pattern.length()).toString());
+    }
+
+    /**
+     * @return the smallest unit a date in {@code pattern} resolves to, e.g. {@link ChronoUnit#DAYS} for
+     * {@code yyyy-MM-dd}
+     * @throws IllegalArgumentException if the pattern has no date field
+     */
+    public static ChronoUnit finestUnit(String segment) {
+        ChronoUnit finest = null;
+        for (char letter : segment.toCharArray()) {
+            ChronoUnit unit = unitOf(letter);
+            if (unit != null && (finest == null || unit.compareTo(finest) < 0)) {
+                finest = unit;
+            }
+        }
+        if (finest == null) {
+            throw new IllegalArgumentException("Date format " + segment + " has no date field");
+        }
+        return finest;
+    }
+
+    /**
+     * @return whether dates in {@code pattern} sort as text the way they sort in time: fixed-width numeric fields
+     * from the year down, such as {@code yyyy-MM-dd} or {@code yyyyMMddHH}, but not {@code dd-MM-yyyy}
+     */
+    public static boolean isChronological(String pattern) {
+        if (!isNumeric(pattern)) {
+            return false;
+        }
+        StringBuilder fields = new StringBuilder();
+        for (char letter : pattern.toCharArray()) {
+            if (Character.isLetter(letter) && (fields.length() == 0 || fields.charAt(fields.length() - 1) != letter)) {
+                fields.append(letter);
+            }
+        }
+        return "yMdHms".startsWith(fields.toString());
+    }
+
+    private static ChronoUnit unitOf(char letter) {
+        switch (letter) {
+            case 'y':
+            case 'u':
+                return ChronoUnit.YEARS;
+            case 'M':
+                return ChronoUnit.MONTHS;
+            case 'd':
+            case 'D':
+                return ChronoUnit.DAYS;
+            case 'H':
+            case 'k':
+                return ChronoUnit.HOURS;
+            case 'm':
+                return ChronoUnit.MINUTES;
+            case 's':
+                return ChronoUnit.SECONDS;
+            case 'S':
+                return ChronoUnit.MILLIS;
+            default:
+                return null;
+        }
+    }
+
+    private long parseNumeric(CharSequence text, int offset) {
+        int year = 1970, month = 1, day = 1, hour = 0, minute = 0, second = 0;
+
+        for (int i = 0; i < pattern.length(); i++) {
+            char expected = pattern.charAt(i);
+            char actual = text.charAt(offset + i);
+            if (!Character.isLetter(expected)) {
+                if (actual != expected) {
+                    return NO_MATCH;
+                }
+                continue;
+            }
+            int digit = actual - '0';
+            if (digit < 0 || digit > 9) {
+                return NO_MATCH;
+            }
+            switch (expected) {
+                case 'y':
+                    year = (i > 0 && pattern.charAt(i - 1) == 'y' ? year * 10 : 0) + digit;
+                    break;
+                case 'M':
+                    month = (i > 0 && pattern.charAt(i - 1) == 'M' ? month * 10 : 0) + digit;
+                    break;
+                case 'd':
+                    day = (i > 0 && pattern.charAt(i - 1) == 'd' ? day * 10 : 0) + digit;
+                    break;
+                case 'H':
+                    hour = (i > 0 && pattern.charAt(i - 1) == 'H' ? hour * 10 : 0) + digit;
+                    break;
+                case 'm':
+                    minute = (i > 0 && pattern.charAt(i - 1) == 'm' ? minute * 10 : 0) + digit;
+                    break;
+                default:
+                    second = (i > 0 && pattern.charAt(i - 1) == 's' ? second * 10 : 0) + digit;
+                    break;
+            }
+        }
+
+        // SimpleDateFormat switches to the Julian calendar before 1583; leave those dates to it.
+        if (year < 1583 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)
+                || hour > 23 || minute > 59 || second > 59) {
+            return NO_MATCH;
+        }
+        return daysFromCivil(year, month, day) * SECONDS_PER_DAY + hour * 3600L + minute * 60L + second;
+    }
+
+    private long parseFallback(String date) {
+        Date parsed = fallback.get().parse(date, new ParsePosition(0));
+        return parsed == null ? NO_MATCH : parsed.toInstant().getEpochSecond();
+    }
+
+    /**
+     * A pattern qualifies for the allocation-free path when it only has fixed-width fields, each appearing once,
+     * with a four digit year and two digit month, day, hour, minute and second.
+     */
+    private static boolean isNumeric(String pattern) {
+        String seen = "";
+        int i = 0;
+        while (i < pattern.length()) {
+            char letter = pattern.charAt(i);
+            if (letter == '\'') {
+                return false;
+            }
+            if (!Character.isLetter(letter)) {
+                i++;
+                continue;
+            }
+            int run = 1;
+            while (i + run < pattern.length() && pattern.charAt(i + run) == letter) {
+                run++;
+            }
+            int expectedRun = letter == 'y' ? 4 : "MdHms".indexOf(letter) >= 0 ? 2 : -1;
+            if (run != expectedRun || seen.indexOf(letter) >= 0) {
+                return false;
+            }
+            seen += letter;
+            i += run;
+        }
+        return !seen.isEmpty();
+    }
+
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    /**
+     * Days since 1970-01-01 of a proleptic Gregorian date (Howard Hinnant's days_from_civil).
+     */
+    private static long daysFromCivil(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146_097L + dayOfEra - 719_468;
+    }
+}
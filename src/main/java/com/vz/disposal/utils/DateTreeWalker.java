@@ -0,0 +1,200 @@
+// Copyright Verizon Media
+// Licensed under the terms of the Apache 2.0 license. Please see LICENSE file in the project root for terms.
+
+package com.vz.disposal.utils;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.function.Consumer;
+
+/**
+ * Walks a directory layout where the date is spread over several levels, e.g. {@code /data/%s} with the date
+ * format {@code yyyy/MM/dd/HH}, and finds the expired dates without expanding the whole tree.
+ *
+ * At each level the partial date read so far (a year, then a month, ...) covers a range of time. Ranges that
+ * start at or after the beginning of retention are skipped without being listed. Ranges that end before it are
+ * expired as a whole; when the caller allows it, the ancestor directory is handed out as a single deletion
+ * instead of listing its children. Only ranges straddling the beginning of retention are descended into.
+ *
+ * This class is not thread-safe.
+ */
+public class DateTreeWalker {
+    private static final Log LOG = LogFactory.getLog(DateTreeWalker.class);
+    private static final String DATE_SEPARATOR = "/";
+
+    private final FileSystem fs;
+    private final Instant beginningOfRetention;
+    private final boolean collapseExpiredAncestors;
+
+    private final String baseGlob;
+    private final String firstLevelPrefix;
+    private final String lastLevelSuffix;
+    private final String trailingGlob;
+    private final Level[] levels;
+
+    /**
+     * @param pathTemplate a path containing {@code timestampLocator} where the date is located
+     * @param datePattern a {@link SimpleDateFormat} pattern, with one {@code /}-separated segment per directory level
+     * @param collapseExpiredAncestors whether a directory whose whole date range is expired may be handed out as a
+     *                                 single target; only valid when deletes are recursive
+     */
+    public DateTreeWalker(
+            FileSystem fs,
+            String pathTemplate,
+            String timestampLocator,
+            String datePattern,
+            Instant beginningOfRetention,
+            boolean collapseExpiredAncestors
+    ) {
+        this.fs = fs;
+        this.beginningOfRetention = beginningOfRetention;
+
+        int locator = pathTemplate.indexOf(timestampLocator);
+        if (locator < 0) {
+            throw new IllegalArgumentException("Path " + pathTemplate + " does not contain " + timestampLocator);
+        }
+        String prefix = pathTemplate.substring(0, locator);
+        String suffix = pathTemplate.substring(locator + timestampLocator.length());
+
+        int lastSeparator = prefix.lastIndexOf(Path.SEPARATOR);
+        this.baseGlob = prefix.substring(0, lastSeparator + 1);
+        this.firstLevelPrefix = prefix.substring(lastSeparator + 1);
+
+        int firstSeparator = suffix.indexOf(Path.SEPARATOR);
+        this.lastLevelSuffix = firstSeparator < 0 ? suffix : suffix.substring(0, firstSeparator);
+        this.trailingGlob = firstSeparator < 0 ? "" : suffix.substring(firstSeparator + 1);
+
+        // Only collapse when the date directories are the targets themselves; with a trailing glob, an ancestor
+        // also holds data that the entry does not ask to remove.
+        this.collapseExpiredAncestors = collapseExpiredAncestors && trailingGlob.isEmpty();
+
+        String[] segments = datePattern.split(DATE_SEPARATOR);
+        this.levels = new Level[segments.length];
+        StringBuilder cumulative = new StringBuilder();
+        for (int i = 0; i < segments.length; i++) {
+            if (i > 0) {
+                cumulative.append(DATE_SEPARATOR);
+            }
+            cumulative.append(segments[i]);
+            levels[i] = new Level(cumulative.toString(), CompiledDatePattern.finestUnit(segments[i]));
+        }
+    }
+
+    /**
+     * Hands every expired target to {@code expired}: whole expired ancestors when collapsing is enabled, otherwise
+     * the expired leaf dates (or the paths matching the trailing glob under them).
+     */
+    public void walk(Consumer<FileStatus> expired) throws IOException {
+        StreamingGlobLister lister = new StreamingGlobLister(fs);
+        try {
+            lister.list(new Path(baseGlob), base -> {
+                if (!base.isDirectory()) {
+                    return;
+                }
+                try {
+                    walkLevel(lister, base.getPath(), 0, "", expired);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void walkLevel(StreamingGlobLister lister, Path dir, int depth, String datePrefix, Consumer<FileStatus> expired)
+            throws IOException {
+        Level level = levels[depth];
+        boolean leaf = depth == levels.length - 1;
+        String namePrefix = depth == 0 ? firstLevelPrefix : "";
+        String nameSuffix = leaf ? lastLevelSuffix : "";
+
+        RemoteIterator<FileStatus> children;
+        try {
+            children = fs.listStatusIterator(dir);
+        } catch (FileNotFoundException e) {
+            return;
+        }
+
+        while (children.hasNext()) {
+            FileStatus child = children.next();
+            String name = child.getPath().getName();
+            if (!name.startsWith(namePrefix) || !name.endsWith(nameSuffix)
+                    || name.length() < namePrefix.length() + nameSuffix.length()) {
+                continue;
+            }
+            String value = name.substring(namePrefix.length(), name.length() - nameSuffix.length());
+            String date = depth == 0 ? value : datePrefix + DATE_SEPARATOR + value;
+
+            Instant start = level.parse(date);
+            if (start == null) {
+                LOG.debug("Skipping " + child.getPath() + ", it does not match the date layout");
+                continue;
+            }
+            child.setPath(new Path(dir, name));
+
+            if (leaf) {
+                if (start.isBefore(beginningOfRetention)) {
+                    emitLeaf(lister, child, expired);
+                }
+            } else if (!start.isBefore(beginningOfRetention)) {
+                LOG.debug("Skipping retained " + child.getPath());
+            } else if (collapseExpiredAncestors && !level.end(start).isAfter(beginningOfRetention)) {
+                expired.accept(child);
+            } else if (child.isDirectory()) {
+                walkLevel(lister, child.getPath(), depth + 1, date, expired);
+            }
+        }
+    }
+
+    private void emitLeaf(StreamingGlobLister lister, FileStatus leaf, Consumer<FileStatus> expired) throws IOException {
+        if (trailingGlob.isEmpty()) {
+            expired.accept(leaf);
+        } else if (leaf.isDirectory()) {
+            lister.list(new Path(leaf.getPath(), trailingGlob), expired);
+        }
+    }
+
+    /**
+     * The date pattern down to one directory level, and the unit that one directory at this level spans.
+     */
+    private static class Level {
+        private final SimpleDateFormat format;
+        private final ChronoUnit unit;
+
+        Level(String pattern, ChronoUnit unit) {
+            this.format = new SimpleDateFormat(pattern);
+            this.format.setTimeZone(TimeZone.getTimeZone(ZoneOffset.UTC));
+            this.format.setLenient(false);
+            this.unit = unit;
+        }
+
+        Instant parse(String date) {
+            ParsePosition position = new ParsePosition(0);
+            Date parsed = format.parse(date, position);
+            if (parsed == null || position.getIndex() != date.length()) {
+                return null;
+            }
+            return parsed.toInstant();
+        }
+
+        Instant end(Instant start) {
+            return start.atZone(ZoneOffset.UTC).plus(1, unit).toInstant();
+        }
+    }
+}
@@ -6,19 +6,19 @@ package com.vz.disposal.utils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
 
-import java.text.ParseException;
-import java.text.ParsePosition;
+import java.net.URI;
 import java.text.SimpleDateFormat;
 import java.time.ZonedDateTime;
 import java.time.temporal.ChronoUnit;
-import java.util.Date;
 
 public class DatestampPathFilter extends TimePathFilter {
     private static final Log LOG = LogFactory.getLog(DatestampPathFilter.class);
 
-    private final ParsePosition indexOfDatestamp;
-    private final SimpleDateFormat pathDateFormat;
+    private final int indexOfDatestamp;
+    private final CompiledDatePattern pathDatePattern;
+    private final long beginningOfRetentionSeconds;
 
     public DatestampPathFilter(
             ZonedDateTime timeOfRun,
@@ -26,40 +26,68 @@ public class DatestampPathFilter extends TimePathFilter {
             int retentionDuration,
             int indexOfDatestamp,
             SimpleDateFormat pathDateFormat
+    ) {
+        this(timeOfRun, granularity, retentionDuration, indexOfDatestamp,
+                CompiledDatePattern.compile(pathDateFormat.toPattern()));
+    }
+
+    public DatestampPathFilter(
+            ZonedDateTime timeOfRun,
+            ChronoUnit granularity,
+            int retentionDuration,
+            int indexOfDatestamp,
+            CompiledDatePattern pathDatePattern
     ) {
         super(timeOfRun, granularity, retentionDuration);
-        this.indexOfDatestamp = new ParsePosition(indexOfDatestamp);
-        this.pathDateFormat = pathDateFormat;
+        this.indexOfDatestamp = indexOfDatestamp;
+        this.pathDatePattern = pathDatePattern;
+        // Dates in paths have no sub-second part, so comparing whole seconds is the same as Instant.isBefore.
+        this.beginningOfRetentionSeconds = beginningOfRetention.getEpochSecond()
+                + (beginningOfRetention.getNano() > 0 ? 1 : 0);
     }
 
+    /**
+     * Safe to call from several threads at once.
+     */
     @Override
     public boolean accept(FileStatus fileStatus) {
-        // Need to save index because the parse method modifies the value.
-        int startIndex = indexOfDatestamp.getIndex();
-        int dateLength = this.pathDateFormat.toPattern().length();
-        String path = fileStatus.getPath().toString();
-        int pathExpectedLength = startIndex + dateLength;
+        long pathDate = epochSecondOf(fileStatus);
 
-        if (path.length() < pathExpectedLength) {
-            LOG.error("Path " + path + " is shorter than expected: " + pathExpectedLength);
+        if (pathDate == CompiledDatePattern.NO_MATCH) {
+            Path path = fileStatus.getPath();
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Unable to parse a " + pathDatePattern.getPattern() + " date at index " +
+                        indexOfDatestamp + " of path " + path);
+            }
             return false;
         }
 
-        String date = path.substring(startIndex, pathExpectedLength);
-        Date pathDate = null;
+        return pathDate < beginningOfRetentionSeconds;
+    }
 
-        try {
-            pathDate = pathDateFormat.parse(date);
-        } catch (ParseException pe) {
-            LOG.error(pe);
-        }
+    /**
+     * Safe to call from several threads at once.
+     */
+    @Override
+    public long epochSecondOf(FileStatus fileStatus) {
+        Path path = fileStatus.getPath();
+        URI uri = path.toUri();
+        // The index points into the configured path, which may carry a scheme and authority; read the date straight
+        // from the URI's path instead of rebuilding the whole string for every file.
+        int prefixLength = Path.WINDOWS ? -1 : schemeAndAuthorityLength(uri);
+        return prefixLength < 0
+                ? pathDatePattern.parseEpochSecond(path.toString(), indexOfDatestamp)
+                : pathDatePattern.parseEpochSecond(uri.getPath(), indexOfDatestamp - prefixLength);
+    }
 
-        if (pathDate == null) {
-            LOG.error("Unable to parse date: " + date + " from path " + path);
-            return false;
+    private static int schemeAndAuthorityLength(URI uri) {
+        int length = 0;
+        if (uri.getScheme() != null) {
+            length += uri.getScheme().length() + 1;
         }
-
-        return pathDate.toInstant().isBefore(beginningOfRetention);
+        if (uri.getAuthority() != null) {
+            length += uri.getAuthority().length() + 2;
+        }
+        return length;
     }
-
 }
@@ -0,0 +1,176 @@
+// Copyright Verizon Media
+// Licensed under the terms of the Apache 2.0 license. Please see LICENSE file in the project root for terms.
+
+package com.vz.disposal.utils;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SecureDirectoryStream;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * Expands a glob on the local file system, such as {@code /var/log/app/date=*}, level by level, and hands every
+ * match to a consumer together with its attributes as soon as it is listed.
+ *
+ * Every directory listed is a fork-join task, so the directories of a level are listed in parallel and idle workers
+ * steal subtrees from busy ones. Names without a glob pattern are looked up directly, without listing their parent.
+ * A directory is streamed rather than read whole, so one holding millions of files costs no more memory than a small
+ * one. Attributes are read once per listed name, type and modification time together, and where the platform
+ * supports it, relative to the open directory, which spares resolving the whole path for every file.
+ *
+ * Symbolic links are followed on the way down, as a shell glob does, but matches are reported as they are: a
+ * matching link is itself the match, with its own attributes.
+ */
+public class LocalGlobLister implements Closeable {
+    private static final Log LOG = LogFactory.getLog(LocalGlobLister.class);
+    private static final String GLOB_SPECIAL_CHARS = "{},*?[]\\";
+
+    private final ForkJoinPool pool;
+
+    /**
+     * @param concurrency how many directories are listed at the same time
+     */
+    public LocalGlobLister(int concurrency) {
+        this.pool = new ForkJoinPool(concurrency);
+    }
+
+    /**
+     * Lists what {@code glob} matches; safe to call from several threads at once, which then share the workers.
+     *
+     * @param glob an absolute path below the root, each of whose names may be a glob pattern, in the syntax of
+     *             {@link java.nio.file.FileSystem#getPathMatcher}
+     * @param consumer called from several threads at once
+     * @return how many names were looked at, matching or not
+     */
+    public long list(Path glob, BiConsumer<Path, BasicFileAttributes> consumer) {
+        if (!glob.isAbsolute() || glob.getNameCount() == 0) {
+            throw new IllegalArgumentException("Glob " + glob + " is not an absolute path below the root");
+        }
+        List<PathMatcher> matchers = new ArrayList<>();
+        for (Path name : glob) {
+            matchers.add(isPattern(name.toString())
+                    ? FileSystems.getDefault().getPathMatcher("glob:" + name)
+                    : null);
+        }
+        LongAdder scanned = new LongAdder();
+        pool.invoke(new LevelTask(glob.getRoot(), 0, glob, matchers, consumer, scanned));
+        return scanned.sum();
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    private static boolean isPattern(String name) {
+        return name.chars().anyMatch(c -> GLOB_SPECIAL_CHARS.indexOf(c) >= 0);
+    }
+
+    /**
+     * @param options empty to follow a symbolic link, {@link LinkOption#NOFOLLOW_LINKS} for the link itself
+     */
+    private static BasicFileAttributes attributesOf(DirectoryStream<Path> stream, Path child, LinkOption... options)
+            throws IOException {
+        if (stream instanceof SecureDirectoryStream) {
+            return ((SecureDirectoryStream<Path>) stream)
+                    .getFileAttributeView(child.getFileName(), BasicFileAttributeView.class, options)
+                    .readAttributes();
+        }
+        return Files.readAttributes(child, BasicFileAttributes.class, options);
+    }
+
+    /**
+     * Matches one name of the glob under a directory, then the rest of the glob under every matching directory.
+     */
+    private static final class LevelTask extends RecursiveAction {
+        private final Path dir;
+        private final int level;
+        private final Path glob;
+        private final List<PathMatcher> matchers;
+        private final BiConsumer<Path, BasicFileAttributes> consumer;
+        private final LongAdder scanned;
+
+        LevelTask(Path dir, int level, Path glob, List<PathMatcher> matchers,
+                  BiConsumer<Path, BasicFileAttributes> consumer, LongAdder scanned) {
+            this.dir = dir;
+            this.level = level;
+            this.glob = glob;
+            this.matchers = matchers;
+            this.consumer = consumer;
+            this.scanned = scanned;
+        }
+
+        @Override
+        protected void compute() {
+            boolean last = level == matchers.size() - 1;
+            PathMatcher matcher = matchers.get(level);
+            if (matcher == null) {
+                lookUp(dir.resolve(glob.getName(level)), last);
+                return;
+            }
+
+            List<LevelTask> subdirs = new ArrayList<>();
+            try (DirectoryStream<Path> children = Files.newDirectoryStream(dir)) {
+                for (Path child : children) {
+                    scanned.increment();
+                    if (!matcher.matches(child.getFileName())) {
+                        continue;
+                    }
+                    try {
+                        if (last) {
+                            consumer.accept(child, attributesOf(children, child, LinkOption.NOFOLLOW_LINKS));
+                        } else if (attributesOf(children, child).isDirectory()) {
+                            subdirs.add(next(child));
+                        }
+                    } catch (NoSuchFileException e) {
+                        LOG.debug(child + " is already gone");
+                    }
+                }
+            } catch (NoSuchFileException | NotDirectoryException e) {
+                LOG.debug(dir + " is gone or not a directory");
+            } catch (IOException e) {
+                LOG.error("Listing failed on path: " + dir + ", the rest is listed on the next run", e);
+            }
+            invokeAll(subdirs);
+        }
+
+        private void lookUp(Path child, boolean last) {
+            try {
+                if (last) {
+                    BasicFileAttributes attributes =
+                            Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    scanned.increment();
+                    consumer.accept(child, attributes);
+                } else if (Files.isDirectory(child)) {
+                    next(child).compute();
+                }
+            } catch (NoSuchFileException e) {
+                LOG.debug(child + " does not exist");
+            } catch (IOException e) {
+                LOG.error("Unable to read the attributes of " + child, e);
+            }
+        }
+
+        private LevelTask next(Path child) {
+            return new LevelTask(child, level + 1, glob, matchers, consumer, scanned);
+        }
+    }
+}
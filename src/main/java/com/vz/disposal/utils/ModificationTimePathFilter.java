@@ -16,8 +16,13 @@ public class ModificationTimePathFilter extends TimePathFilter {
 
     @Override
     public boolean accept(FileStatus fileStatus) {
-        long modificationTimeSeconds = TimeUnit.MILLISECONDS.toSeconds(fileStatus.getModificationTime());
+        long modificationTimeSeconds = epochSecondOf(fileStatus);
 
         return modificationTimeSeconds < beginningOfRetention.getEpochSecond();
     }
+
+    @Override
+    public long epochSecondOf(FileStatus fileStatus) {
+        return TimeUnit.MILLISECONDS.toSeconds(fileStatus.getModificationTime());
+    }
 }
@@ -0,0 +1,88 @@
+// Copyright Verizon Media
+// Licensed under the terms of the Apache 2.0 license. Please see LICENSE file in the project root for terms.
+
+package com.vz.disposal.utils;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.GlobPattern;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Expands a glob one path component at a time with {@link FileSystem#listStatusIterator}, handing each match to a
+ * consumer as soon as it is found.
+ *
+ * Unlike {@link FileSystem#globStatus}, nothing is accumulated: at any time only one listing page per glob level
+ * is held in memory, and a consumer that blocks (for instance on a full delete queue) simply pauses the listing.
+ * Wildcards are supported within a single path component, which covers the globs used in disposal configs.
+ */
+public class StreamingGlobLister {
+    private final FileSystem fs;
+
+    public StreamingGlobLister(FileSystem fs) {
+        this.fs = fs;
+    }
+
+    public void list(Path glob, Consumer<FileStatus> consumer) throws IOException {
+        URI uri = glob.toUri();
+        String[] components = Arrays.stream(uri.getPath().split(Path.SEPARATOR))
+                .filter(component -> !component.isEmpty())
+                .toArray(String[]::new);
+        Path root = new Path(uri.getScheme(), uri.getAuthority(), Path.SEPARATOR);
+
+        if (components.length == 0) {
+            consumer.accept(fs.getFileStatus(root));
+            return;
+        }
+        walk(root, components, 0, consumer);
+    }
+
+    private void walk(Path parent, String[] components, int depth, Consumer<FileStatus> consumer) throws IOException {
+        boolean last = depth == components.length - 1;
+        GlobPattern pattern = new GlobPattern(components[depth]);
+
+        if (!pattern.hasWildcard()) {
+            Path child = new Path(parent, components[depth]);
+            if (last) {
+                try {
+                    consumer.accept(fs.getFileStatus(child));
+                } catch (FileNotFoundException e) {
+                    // Nothing matches, same as globStatus.
+                }
+            } else {
+                walk(child, components, depth + 1, consumer);
+            }
+            return;
+        }
+
+        RemoteIterator<FileStatus> children;
+        try {
+            children = fs.listStatusIterator(parent);
+        } catch (FileNotFoundException e) {
+            return;
+        }
+
+        while (children.hasNext()) {
+            FileStatus child = children.next();
+            String name = child.getPath().getName();
+            if (!pattern.matches(name)) {
+                continue;
+            }
+            // Keep the scheme and authority exactly as written in the glob, like globStatus does, so that
+            // offsets computed against the configured path stay valid.
+            child.setPath(new Path(parent, name));
+            if (last) {
+                consumer.accept(child);
+            } else if (child.isDirectory()) {
+                walk(child.getPath(), components, depth + 1, consumer);
+            }
+        }
+    }
+}
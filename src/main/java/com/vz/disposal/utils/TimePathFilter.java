@@ -17,4 +17,10 @@ public abstract class TimePathFilter {
     }
 
     public abstract boolean accept(FileStatus fileStatus);
+
+    /**
+     * @return the time retention of {@code fileStatus} is counted from, in epoch seconds, or
+     * {@link CompiledDatePattern#NO_MATCH} if it has none
+     */
+    public abstract long epochSecondOf(FileStatus fileStatus);
 }
@@ -3,6 +3,7 @@
 
 package com.vz.disposal.utils;
 
+import java.nio.file.Paths;
 import java.time.Instant;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
@@ -13,4 +14,36 @@ public class Utils {
         ZonedDateTime currentDateTime = endOfWindow.withZoneSameInstant(ZoneOffset.UTC);
         return currentDateTime.minus(retentionDuration, granularity).toInstant();
     }
+
+    /**
+     * @return the start of the {@code unit} that {@code instant} falls into, in UTC; months and years included
+     */
+    public static Instant floorTo(Instant instant, ChronoUnit unit) {
+        ZonedDateTime dateTime = instant.atZone(ZoneOffset.UTC);
+        switch (unit) {
+            case YEARS:
+                return dateTime.withDayOfYear(1).truncatedTo(ChronoUnit.DAYS).toInstant();
+            case MONTHS:
+                return dateTime.withDayOfMonth(1).truncatedTo(ChronoUnit.DAYS).toInstant();
+            default:
+                return dateTime.truncatedTo(unit).toInstant();
+        }
+    }
+
+    /**
+     * @return {@code instant} if it starts a {@code unit}, otherwise the start of the next one
+     */
+    public static Instant ceilTo(Instant instant, ChronoUnit unit) {
+        Instant floor = floorTo(instant, unit);
+        return floor.equals(instant) ? floor : floor.atZone(ZoneOffset.UTC).plus(1, unit).toInstant();
+    }
+
+    /**
+     * @return the name the state of config {@code confFile} is kept under: its file name followed by a hash of its
+     * absolute path, so that configs of the same name in different directories do not share their state
+     */
+    public static String stateName(String confFile) {
+        String path = Paths.get(confFile).toAbsolutePath().normalize().toString();
+        return Paths.get(confFile).getFileName() + "-" + String.format("%08x", path.hashCode());
+    }
 }
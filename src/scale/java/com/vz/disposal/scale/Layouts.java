@@ -0,0 +1,137 @@
+// Copyright Verizon Media
+// Licensed under the terms of the Apache 2.0 license. Please see LICENSE file in the project root for terms.
+
+package com.vz.disposal.scale;
+
+import com.vz.disposal.runner.IOExecutor;
+import com.vz.disposal.runner.MetastoreClientPool;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.metastore.TableType;
+import org.apache.hadoop.hive.metastore.api.Database;
+import org.apache.hadoop.hive.metastore.api.FieldSchema;
+import org.apache.hadoop.hive.metastore.api.Partition;
+import org.apache.hadoop.hive.metastore.api.SerDeInfo;
+import org.apache.hadoop.hive.metastore.api.StorageDescriptor;
+import org.apache.hadoop.hive.metastore.api.Table;
+import org.apache.thrift.TException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Creates the directories and tables the scale scenarios dispose of: one of each per hour, going back from a given
+ * hour, so that any retention in hours expires a known share of them.
+ */
+final class Layouts {
+    private static final Log LOG = LogFactory.getLog(Layouts.class);
+
+    static final String HOUR_FORMAT = "yyyyMMddHH";
+    static final String PARTITION_HOUR_FORMAT = "yyyy-MM-dd-HH";
+    static final String PARTITION_KEY = "dt";
+
+    private static final int CREATE_CONCURRENCY = 32;
+    private static final int PARTITION_BATCH = 1000;
+
+    private Layouts() {
+    }
+
+    /**
+     * Creates {@code count} directories {@code hour=yyyyMMddHH} under {@code root}, one per hour back from
+     * {@code now}.
+     */
+    static void createHourlyDirs(FileSystem fs, String root, int count, ZonedDateTime now) {
+        DateTimeFormatter format = DateTimeFormatter.ofPattern(HOUR_FORMAT);
+        List<Integer> hours = IntStream.range(0, count).boxed().collect(Collectors.toList());
+        try (IOExecutor executor = new IOExecutor("create-dirs", CREATE_CONCURRENCY)) {
+            executor.forEach(hours, hour -> {
+                try {
+                    fs.mkdirs(new Path(root, "hour=" + format.format(now.minusHours(hour))));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+        LOG.info("Created " + count + " hourly directories under " + root);
+    }
+
+    /**
+     * Creates {@code tables} tables in {@code database}, each partitioned by {@value #PARTITION_KEY} with
+     * {@code partitions} hourly partitions back from {@code now}.
+     */
+    static void createHourlyTables(MetastoreClientPool clients, String database, int tables, int partitions,
+                                   ZonedDateTime now) throws TException {
+        clients.withMetaStoreClient(client -> {
+            client.createDatabase(new Database(database, null, null, new HashMap<>()));
+            return null;
+        });
+        List<String> names = IntStream.range(0, tables)
+                .mapToObj(Layouts::tableName)
+                .collect(Collectors.toList());
+        DateTimeFormatter format = DateTimeFormatter.ofPattern(PARTITION_HOUR_FORMAT);
+        try (IOExecutor executor = new IOExecutor("create-tables", clients.getSize())) {
+            executor.forEach(names, name -> {
+                try {
+                    Table table = clients.withMetaStoreClient(client -> {
+                        client.createTable(hourlyTable(database, name));
+                        return client.getTable(database, name);
+                    });
+                    for (int start = 0; start < partitions; start += PARTITION_BATCH) {
+                        List<Partition> batch = new ArrayList<>(PARTITION_BATCH);
+                        for (int hour = start; hour < Math.min(partitions, start + PARTITION_BATCH); hour++) {
+                            batch.add(partition(table, format.format(now.minusHours(hour))));
+                        }
+                        clients.withMetaStoreClient(client -> client.add_partitions(batch));
+                    }
+                } catch (TException e) {
+                    throw new IllegalStateException("Unable to create " + database + "." + name, e);
+                }
+            });
+        }
+        LOG.info("Created " + tables + " tables of " + partitions + " hourly partitions in " + database);
+    }
+
+    static String tableName(int index) {
+        return String.format("events_%04d", index);
+    }
+
+    private static Table hourlyTable(String database, String name) {
+        StorageDescriptor sd = new StorageDescriptor();
+        sd.setCols(Collections.singletonList(new FieldSchema("payload", "string", null)));
+        sd.setInputFormat("org.apache.hadoop.mapred.TextInputFormat");
+        sd.setOutputFormat("org.apache.hadoop.hive.ql.io.HiveIgnoreKeyTextOutputFormat");
+        sd.setSerdeInfo(new SerDeInfo(null, "org.apache.hadoop.hive.serde2.lazy.LazySimpleSerDe", new HashMap<>()));
+
+        Table table = new Table();
+        table.setDbName(database);
+        table.setTableName(name);
+        table.setTableType(TableType.MANAGED_TABLE.name());
+        table.setPartitionKeys(Collections.singletonList(new FieldSchema(PARTITION_KEY, "string", null)));
+        table.setSd(sd);
+        table.setParameters(new HashMap<>());
+        return table;
+    }
+
+    private static Partition partition(Table table, String hour) {
+        StorageDescriptor sd = table.getSd().deepCopy();
+        sd.setLocation(table.getSd().getLocation() + "/" + PARTITION_KEY + "=" + hour);
+
+        Partition partition = new Partition();
+        partition.setDbName(table.getDbName());
+        partition.setTableName(table.getTableName());
+        partition.setValues(Collections.singletonList(hour));
+        partition.setSd(sd);
+        partition.setParameters(new HashMap<>());
+        return partition;
+    }
+}
@@ -0,0 +1,168 @@
+// Copyright Verizon Media
+// Licensed under the terms of the Apache 2.0 license. Please see LICENSE file in the project root for terms.
+
+package com.vz.disposal.scale;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.vz.disposal.runner.MetastoreClientPool;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hdfs.server.namenode.NameNode;
+import org.apache.hadoop.hdfs.server.namenode.NameNodeRpcServer;
+import org.apache.hadoop.hive.metastore.HiveMetaStore;
+import org.apache.hadoop.hive.metastore.HiveMetaStoreClient;
+import org.apache.hadoop.hive.metastore.conf.MetastoreConf;
+import org.apache.hadoop.hive.metastore.metrics.Metrics;
+import org.apache.hadoop.hive.metastore.metrics.MetricsConstants;
+import org.apache.hadoop.hive.metastore.security.HadoopThriftAuthBridge;
+import org.apache.hive.hcatalog.api.HCatClient;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * A namenode and a Thrift metastore backed by an embedded Derby database, both in this JVM and both keeping their
+ * data under one local directory, along with counters of the calls each of them served.
+ *
+ * The namenode runs without datanodes: disposals only list, rename and delete, which never reach a datanode.
+ */
+public class LocalCluster implements Closeable {
+    private static final Log LOG = LogFactory.getLog(LocalCluster.class);
+    private static final long METASTORE_START_MILLIS = 120_000;
+
+    private final MiniDFSCluster dfs;
+    private final Configuration metastoreConf;
+    private final String metastoreUris;
+
+    /**
+     * @param baseDir where the namenode and the metastore keep their data
+     */
+    public LocalCluster(Path baseDir) throws IOException {
+        Configuration dfsConf = new Configuration();
+        dfsConf.set(MiniDFSCluster.HDFS_MINIDFS_BASEDIR, baseDir.resolve("dfs").toString());
+        this.dfs = new MiniDFSCluster.Builder(dfsConf).numDataNodes(0).build();
+        this.dfs.waitActive();
+        LOG.info("Namenode listening at " + getNamenode());
+
+        int port = freePort();
+        this.metastoreUris = "thrift://localhost:" + port;
+        this.metastoreConf = MetastoreConf.newMetastoreConf();
+        MetastoreConf.setVar(metastoreConf, MetastoreConf.ConfVars.CONNECT_URL_KEY,
+                "jdbc:derby:;databaseName=" + baseDir.resolve("metastore_db") + ";create=true");
+        MetastoreConf.setBoolVar(metastoreConf, MetastoreConf.ConfVars.AUTO_CREATE_ALL, true);
+        MetastoreConf.setBoolVar(metastoreConf, MetastoreConf.ConfVars.SCHEMA_VERIFICATION, false);
+        MetastoreConf.setVar(metastoreConf, MetastoreConf.ConfVars.WAREHOUSE, getNamenode() + "/warehouse");
+        MetastoreConf.setBoolVar(metastoreConf, MetastoreConf.ConfVars.METRICS_ENABLED, true);
+        MetastoreConf.setVar(metastoreConf, MetastoreConf.ConfVars.METRICS_REPORTERS, "jmx");
+        MetastoreConf.setVar(metastoreConf, MetastoreConf.ConfVars.THRIFT_URIS, metastoreUris);
+        startMetastore(port);
+        LOG.info("Metastore listening at " + metastoreUris);
+    }
+
+    public URI getNamenode() {
+        return dfs.getURI();
+    }
+
+    public FileSystem getFileSystem() throws IOException {
+        return dfs.getFileSystem();
+    }
+
+    public String getMetastoreUris() {
+        return metastoreUris;
+    }
+
+    /**
+     * @return a pool of up to {@code size} clients of the metastore, each connected on first use
+     */
+    public MetastoreClientPool metastoreClients(int size) {
+        return new MetastoreClientPool(
+                () -> HCatClient.create(new Configuration(metastoreConf)),
+                () -> new HiveMetaStoreClient(metastoreConf),
+                size
+        );
+    }
+
+    /**
+     * @return how many RPCs the namenode served to clients so far
+     */
+    public long namenodeCalls() {
+        return ((NameNodeRpcServer) dfs.getNameNodeRpc()).getClientRpcServer().getRpcMetrics()
+                .getProcessingSampleCount();
+    }
+
+    /**
+     * @return how many file operations, such as listings, renames and deletes, the namenode served so far
+     */
+    public long namenodeFileOps() {
+        return NameNode.getNameNodeMetrics().totalFileOps();
+    }
+
+    /**
+     * @return how many API calls the metastore served so far
+     */
+    public long metastoreCalls() {
+        MetricRegistry registry = Metrics.getRegistry();
+        if (registry == null) {
+            return 0;
+        }
+        long calls = 0;
+        for (Map.Entry<String, Timer> timer : registry.getTimers().entrySet()) {
+            if (timer.getKey().startsWith(MetricsConstants.API_PREFIX)) {
+                calls += timer.getValue().getCount();
+            }
+        }
+        return calls;
+    }
+
+    @Override
+    public void close() {
+        // The metastore's server thread is a daemon and goes with the JVM.
+        dfs.shutdown();
+    }
+
+    private void startMetastore(int port) throws IOException {
+        Thread server = new Thread(() -> {
+            try {
+                HiveMetaStore.startMetaStore(port, HadoopThriftAuthBridge.getBridge(), metastoreConf);
+            } catch (Throwable e) {
+                LOG.error("Metastore stopped", e);
+            }
+        }, "metastore");
+        server.setDaemon(true);
+        server.start();
+
+        long giveUp = System.currentTimeMillis() + METASTORE_START_MILLIS;
+        while (true) {
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress("localhost", port), 1000);
+                return;
+            } catch (IOException e) {
+                if (!server.isAlive() || System.currentTimeMillis() > giveUp) {
+                    throw new IOException("Metastore did not start on port " + port, e);
+                }
+            }
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for the metastore", e);
+            }
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,242 @@
+// Copyright Verizon Media
+// Licensed under the terms of the Apache 2.0 license. Please see LICENSE file in the project root for terms.
+
+package com.vz.disposal.scale;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.vz.disposal.DataDisposal;
+import com.vz.disposal.runner.MetastoreClientPool;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.thrift.TException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs {@link DataDisposal} end to end against a {@link LocalCluster}, scenario by scenario, and reports the wall
+ * time, the calls the namenode and the metastore served and the heap high-water mark of each run.
+ *
+ * Scenarios:
+ * <ul>
+ *     <li>{@code hdfs}: {@code --hourly_dirs} hourly directories spread over {@code --datasets} entries</li>
+ *     <li>{@code hive}: {@code --tables} tables of {@code --partitions} hourly partitions each</li>
+ * </ul>
+ * Every entry keeps half of its hours, so about half of every layout is disposed of. Layouts are created fresh for
+ * each run, under {@code --work_dir}, where the configs and the logs of the runs are kept too.
+ */
+public final class ScaleBenchmark {
+    private static final Log LOG = LogFactory.getLog(ScaleBenchmark.class);
+
+    private static final String SCENARIOS = "scenarios";
+    private static final String HOURLY_DIRS = "hourly_dirs";
+    private static final String DATASETS = "datasets";
+    private static final String TABLES = "tables";
+    private static final String PARTITIONS = "partitions";
+    private static final String HDFS_LISTING_MODE = "hdfs_listing_mode";
+    private static final String HIVE_LISTING_MODE = "hive_listing_mode";
+    private static final String HIVE_DROP_MODE = "hive_drop_mode";
+    private static final String DRY_RUN = "dry_run";
+    private static final String CHILD_HEAP = "child_heap";
+    private static final String WORK_DIR = "work_dir";
+    private static final String REPORT = "report";
+
+    private static final String DATABASE = "scale";
+    private static final String METASTORE = "local";
+    private static final int LAYOUT_CLIENTS = 16;
+
+    private final CommandLine args;
+    private final Path workDir;
+    private final ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC).truncatedTo(ChronoUnit.HOURS);
+
+    private ScaleBenchmark(CommandLine args, Path workDir) {
+        this.args = args;
+        this.workDir = workDir;
+    }
+
+    private static CommandLine parseArgs(String[] args) throws ParseException {
+        Options options = new Options();
+        options.addOption(withArg(SCENARIOS, "Comma-separated scenarios to run, out of hdfs and hive (default both)"));
+        options.addOption(withArg(HOURLY_DIRS, "Hourly directories of the hdfs scenario (default 500000)"));
+        options.addOption(withArg(DATASETS, "Entries the hourly directories are spread over (default 10)"));
+        options.addOption(withArg(TABLES, "Tables of the hive scenario (default 200)"));
+        options.addOption(withArg(PARTITIONS, "Hourly partitions per table (default 50000)"));
+        options.addOption(withArg(HDFS_LISTING_MODE, "listingMode of the hdfs entries (default GLOB)"));
+        options.addOption(withArg(HIVE_LISTING_MODE, "listingMode of the hive entries (default FULL)"));
+        options.addOption(withArg(HIVE_DROP_MODE, "dropMode of the hive entries (default PER_DATE)"));
+        options.addOption(Option.builder().longOpt(DRY_RUN).desc("Run the disposals as dry runs").build());
+        options.addOption(withArg(CHILD_HEAP, "Maximum heap of the disposal's JVM (default 4g)"));
+        options.addOption(withArg(WORK_DIR, "Directory for the cluster, configs and logs (default a new temp dir)"));
+        options.addOption(withArg(REPORT, "File to write the results to as JSON"));
+        return new DefaultParser().parse(options, args);
+    }
+
+    private static Option withArg(String name, String desc) {
+        return Option.builder().longOpt(name).hasArg().desc(desc).build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLine cmdArgs = parseArgs(args);
+        Path workDir = cmdArgs.hasOption(WORK_DIR)
+                ? Files.createDirectories(Paths.get(cmdArgs.getOptionValue(WORK_DIR)))
+                : Files.createTempDirectory("disposal-scale");
+        LOG.info("Scale benchmark working in " + workDir);
+
+        List<ScenarioResult> results = new ArrayList<>();
+        ScaleBenchmark benchmark = new ScaleBenchmark(cmdArgs, workDir);
+        try (LocalCluster cluster = new LocalCluster(workDir.resolve("cluster"))) {
+            for (String scenario : cmdArgs.getOptionValue(SCENARIOS, "hdfs,hive").split(",")) {
+                switch (scenario.trim()) {
+                    case "hdfs":
+                        results.add(benchmark.runHdfs(cluster));
+                        break;
+                    case "hive":
+                        results.add(benchmark.runHive(cluster));
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown scenario: " + scenario);
+                }
+                LOG.info(results.get(results.size() - 1));
+            }
+        }
+
+        results.forEach(System.out::println);
+        if (cmdArgs.hasOption(REPORT)) {
+            new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT)
+                    .writeValue(new File(cmdArgs.getOptionValue(REPORT)), results);
+        }
+        // The metastore's server threads may keep the JVM alive.
+        System.exit(0);
+    }
+
+    private ScenarioResult runHdfs(LocalCluster cluster) throws IOException, InterruptedException {
+        int dirs = intArg(HOURLY_DIRS, 500_000);
+        int datasets = intArg(DATASETS, 10);
+        int hoursPerDataset = (dirs + datasets - 1) / datasets;
+
+        long start = System.nanoTime();
+        FileSystem fs = cluster.getFileSystem();
+        StringBuilder config = new StringBuilder()
+                .append("hdfsNamenode: \"").append(cluster.getNamenode()).append("\"\n")
+                .append("entries:\n");
+        for (int dataset = 0; dataset < datasets; dataset++) {
+            String root = cluster.getNamenode() + String.format("/scale/dataset_%02d", dataset);
+            int hours = Math.min(hoursPerDataset, dirs - dataset * hoursPerDataset);
+            Layouts.createHourlyDirs(fs, root, hours, now);
+            config.append("  - path: ").append(root).append("/hour=%s\n")
+                    .append("    retentionDuration: ").append(hours / 2).append('\n')
+                    .append("    granularity: HOURS\n")
+                    .append("    retentionType: PATH_DATE\n")
+                    .append("    dateFormat: ").append(Layouts.HOUR_FORMAT).append('\n')
+                    .append("    recursive: true\n")
+                    .append("    listingMode: ").append(args.getOptionValue(HDFS_LISTING_MODE, "GLOB")).append('\n');
+        }
+        long layoutMillis = (System.nanoTime() - start) / 1_000_000;
+
+        ScenarioResult result = run(cluster, "hdfs", DataDisposal.HDFS_CONF, config.toString());
+        result.setObjects(dirs);
+        result.setLayoutMillis(layoutMillis);
+        return result;
+    }
+
+    private ScenarioResult runHive(LocalCluster cluster) throws IOException, InterruptedException, TException {
+        int tables = intArg(TABLES, 200);
+        int partitions = intArg(PARTITIONS, 50_000);
+
+        long start = System.nanoTime();
+        try (MetastoreClientPool clients = cluster.metastoreClients(LAYOUT_CLIENTS)) {
+            Layouts.createHourlyTables(clients, DATABASE, tables, partitions, now);
+        }
+        StringBuilder config = new StringBuilder()
+                .append("metastores:\n")
+                .append("  - name: ").append(METASTORE).append('\n')
+                .append("    uris: ").append(cluster.getMetastoreUris()).append('\n')
+                .append("entries:\n");
+        for (int table = 0; table < tables; table++) {
+            config.append("  - database: ").append(DATABASE).append('\n')
+                    .append("    table: ").append(Layouts.tableName(table)).append('\n')
+                    .append("    metastore: ").append(METASTORE).append('\n')
+                    .append("    partitionFilterKey: ").append(Layouts.PARTITION_KEY).append('\n')
+                    .append("    deleteExternalData: true\n")
+                    .append("    retentionDuration: ").append(partitions / 2).append('\n')
+                    .append("    granularity: HOURS\n")
+                    .append("    dateFormat: ").append(Layouts.PARTITION_HOUR_FORMAT).append('\n')
+                    .append("    listingMode: ").append(args.getOptionValue(HIVE_LISTING_MODE, "FULL")).append('\n')
+                    .append("    dropMode: ").append(args.getOptionValue(HIVE_DROP_MODE, "PER_DATE")).append('\n');
+        }
+        long layoutMillis = (System.nanoTime() - start) / 1_000_000;
+
+        ScenarioResult result = run(cluster, "hive", DataDisposal.HIVE_CONF, config.toString());
+        result.setObjects((long) tables * partitions);
+        result.setLayoutMillis(layoutMillis);
+        return result;
+    }
+
+    /**
+     * Runs the disposal of {@code config} in a JVM of its own and measures it.
+     */
+    private ScenarioResult run(LocalCluster cluster, String scenario, String confOption, String config)
+            throws IOException, InterruptedException {
+        Path confFile = workDir.resolve(scenario + ".yaml");
+        Files.write(confFile, config.getBytes(StandardCharsets.UTF_8));
+        Path resultFile = workDir.resolve(scenario + "-run.json");
+        Path log = workDir.resolve(scenario + ".log");
+
+        List<String> command = new ArrayList<>(Arrays.asList(
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-Xmx" + args.getOptionValue(CHILD_HEAP, "4g"),
+                "-cp", System.getProperty("java.class.path"),
+                ScaleRun.class.getName(),
+                resultFile.toString(),
+                "--" + confOption, confFile.toString()
+        ));
+        if (args.hasOption(DRY_RUN)) {
+            command.add("--" + DataDisposal.DRY_RUN);
+        }
+
+        long namenodeCalls = cluster.namenodeCalls();
+        long namenodeFileOps = cluster.namenodeFileOps();
+        long metastoreCalls = cluster.metastoreCalls();
+        LOG.info("Running the " + scenario + " scenario, logging to " + log);
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(log.toFile())
+                .start();
+        int exitCode = process.waitFor();
+        if (exitCode != 0) {
+            throw new IllegalStateException("The " + scenario + " run exited with " + exitCode + ", see " + log);
+        }
+
+        Map<?, ?> measured = new ObjectMapper().readValue(resultFile.toFile(), Map.class);
+        ScenarioResult result = new ScenarioResult();
+        result.setScenario(scenario);
+        result.setWallMillis(((Number) measured.get(ScaleRun.WALL_MILLIS)).longValue());
+        result.setPeakHeapBytes(((Number) measured.get(ScaleRun.PEAK_HEAP_BYTES)).longValue());
+        result.setNamenodeCalls(cluster.namenodeCalls() - namenodeCalls);
+        result.setNamenodeFileOps(cluster.namenodeFileOps() - namenodeFileOps);
+        result.setMetastoreCalls(cluster.metastoreCalls() - metastoreCalls);
+        return result;
+    }
+
+    private int intArg(String name, int defaultValue) {
+        return args.hasOption(name) ? Integer.parseInt(args.getOptionValue(name)) : defaultValue;
+    }
+}
@@ -0,0 +1,49 @@
+// Copyright Verizon Media
+// Licensed under the terms of the Apache 2.0 license. Please see LICENSE file in the project root for terms.
+
+package com.vz.disposal.scale;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vz.disposal.DataDisposal;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Runs {@link DataDisposal} in a JVM of its own, so that the heap it peaked at is not mixed up with the cluster's,
+ * and writes how long it took and that peak to a JSON file.
+ *
+ * Usage: {@code ScaleRun <result file> <DataDisposal arguments...>}
+ */
+public final class ScaleRun {
+    static final String WALL_MILLIS = "wallMillis";
+    static final String PEAK_HEAP_BYTES = "peakHeapBytes";
+
+    private ScaleRun() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        File result = new File(args[0]);
+        long start = System.nanoTime();
+        DataDisposal.main(Arrays.copyOfRange(args, 1, args.length));
+        long wallMillis = (System.nanoTime() - start) / 1_000_000;
+
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peakHeap += pool.getPeakUsage().getUsed();
+            }
+        }
+        Map<String, Long> measured = new LinkedHashMap<>();
+        measured.put(WALL_MILLIS, wallMillis);
+        measured.put(PEAK_HEAP_BYTES, peakHeap);
+        new ObjectMapper().writeValue(result, measured);
+        // Client threads of Hadoop and Hive may keep the JVM alive.
+        System.exit(0);
+    }
+}
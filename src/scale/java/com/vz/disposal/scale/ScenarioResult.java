@@ -0,0 +1,60 @@
+// Copyright Verizon Media
+// Licensed under the terms of the Apache 2.0 license. Please see LICENSE file in the project root for terms.
+
+package com.vz.disposal.scale;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * What one end-to-end run of a scenario cost.
+ */
+public class ScenarioResult {
+    @Getter
+    @Setter
+    private String scenario;
+
+    /**
+     * How many directories or partitions the layout holds, about half of which are expired.
+     */
+    @Getter
+    @Setter
+    private long objects;
+
+    /**
+     * How long creating the layout took; not part of the run.
+     */
+    @Getter
+    @Setter
+    private long layoutMillis;
+
+    @Getter
+    @Setter
+    private long wallMillis;
+
+    /**
+     * The sum of the peak usage of every heap pool of the disposal's JVM, which bounds its heap high-water mark.
+     */
+    @Getter
+    @Setter
+    private long peakHeapBytes;
+
+    @Getter
+    @Setter
+    private long namenodeCalls;
+
+    @Getter
+    @Setter
+    private long namenodeFileOps;
+
+    @Getter
+    @Setter
+    private long metastoreCalls;
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d objects in %d ms, peak heap %d MB, %d namenode RPCs (%d file ops), " +
+                        "%d metastore calls",
+                scenario, objects, wallMillis, peakHeapBytes >> 20, namenodeCalls, namenodeFileOps, metastoreCalls);
+    }
+}
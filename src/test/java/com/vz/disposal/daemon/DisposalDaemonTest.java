@@ -0,0 +1,243 @@
+// Copyright Verizon Media
+// Licensed under the terms of the Apache 2.0 license. Please see LICENSE file in the project root for terms.
+
+package com.vz.disposal.daemon;
+
+import com.vz.disposal.config.ConfigLoader;
+import com.vz.disposal.config.HDFSConfigList;
+import com.vz.disposal.runner.HDFSDisposal;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DisposalDaemonTest {
+
+    private static final String CONFIG =
+            "entries:\n"
+            + "  - path: hdfs://namenode:8020/somepath/dir/date=%s\n"
+            + "    retentionDuration: 14\n"
+            + "    granularity: DAYS\n"
+            + "    retentionType: PATH_DATE\n"
+            + "    dateFormat: yyyy-MM-dd\n"
+            + "    schedule: PT24H\n";
+
+    private static java.nio.file.Path writeConfig(String config) throws IOException {
+        java.nio.file.Path file = Files.createTempFile("hdfs", ".yaml");
+        file.toFile().deleteOnExit();
+        Files.write(file, config.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static List<EntryStatus> entryStatuses(DisposalDaemon daemon) {
+        List<Map<String, Object>> configs = (List<Map<String, Object>>) daemon.getStatus().get("configs");
+        return (List<EntryStatus>) configs.get(0).get("entries");
+    }
+
+    @Test
+    public void testEntriesAreRunOnTheirSchedule() throws Exception {
+        FileSystem fs = Mockito.mock(FileSystem.class);
+        when(fs.globStatus(any(Path.class))).thenReturn(new FileStatus[0]);
+        java.nio.file.Path confFile = writeConfig(CONFIG);
+
+        try (DisposalDaemon daemon = new DisposalDaemon(null, Duration.ofHours(1), 1);
+             StatusServer server = new StatusServer(daemon, 0)) {
+            daemon.addConfig(confFile.toString(), file ->
+                    new HDFSDisposal(new ConfigLoader<HDFSConfigList>().readConfig(file, HDFSConfigList.class),
+                            false, fs) {
+                    });
+            daemon.start();
+            server.start();
+            Assert.assertTrue(daemon.isHealthy());
+
+            List<EntryStatus> statuses = entryStatuses(daemon);
+            Assert.assertEquals(statuses.size(), 1);
+            EntryStatus status = statuses.get(0);
+            Assert.assertEquals(status.getSchedule(), "PT24H");
+
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (status.getRuns() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            Assert.assertEquals(status.getRuns(), 1);
+            Assert.assertEquals(status.getFailures(), 0);
+            Assert.assertNotNull(status.getLastSuccess());
+            verify(fs, atLeastOnce()).globStatus(any(Path.class));
+
+            List<EntryStatus.Run> runs = status.getRecentRuns();
+            Assert.assertEquals(runs.size(), 1);
+            Assert.assertEquals(runs.get(0).getStart(), status.getLastStart());
+            Assert.assertEquals(runs.get(0).getEnd(), status.getLastEnd());
+            Assert.assertNull(runs.get(0).getError());
+
+            HttpURLConnection page = (HttpURLConnection)
+                    new URL("http://localhost:" + server.getPort() + "/status").openConnection();
+            Assert.assertEquals(page.getResponseCode(), 200);
+            try (Scanner body = new Scanner(page.getInputStream(), "UTF-8").useDelimiter("\\A")) {
+                String json = body.next().replaceAll("\\s", "");
+                Assert.assertTrue(json.contains("\"recentRuns\":[{"), json);
+                Assert.assertTrue(json.contains("\"start\":\"" + status.getLastStart() + "\""), json);
+                Assert.assertTrue(json.contains("\"lastEnd\":\"" + status.getLastEnd() + "\""), json);
+            }
+            page.disconnect();
+        }
+    }
+
+    @Test
+    public void testStatusKeepsTheLatestRuns() {
+        EntryStatus status = new EntryStatus("hdfs", "/data/%s", Duration.ofHours(1));
+        Instant start = Instant.parse("2019-04-23T00:00:00Z");
+        for (int run = 0; run < EntryStatus.RECENT_RUNS + 2; run++) {
+            Instant runStart = start.plus(Duration.ofHours(run));
+            status.started(runStart);
+            if (run % 2 == 0) {
+                status.succeeded(runStart, runStart.plusSeconds(90));
+            } else {
+                status.failed(runStart, runStart.plusSeconds(30), new IllegalStateException("namenode down"));
+            }
+        }
+
+        List<EntryStatus.Run> runs = status.getRecentRuns();
+        Assert.assertEquals(runs.size(), EntryStatus.RECENT_RUNS);
+        Assert.assertEquals(runs.get(0).getStart(), "2019-04-23T02:00:00Z");
+        Assert.assertEquals(runs.get(0).getDurationMillis(), 90_000);
+        Assert.assertNull(runs.get(0).getError());
+        EntryStatus.Run last = runs.get(runs.size() - 1);
+        Assert.assertEquals(last.getEnd(), "2019-04-23T11:00:30Z");
+        Assert.assertEquals(last.getError(), "java.lang.IllegalStateException: namenode down");
+        Assert.assertEquals(status.getLastEnd(), last.getEnd());
+    }
+
+    @Test
+    public void testConfigThatFailsToLoadIsUnhealthy() throws Exception {
+        java.nio.file.Path confFile = writeConfig("entries: [");
+
+        try (DisposalDaemon daemon = new DisposalDaemon(null, Duration.ofHours(1), 1);
+             StatusServer server = new StatusServer(daemon, 0)) {
+            daemon.addConfig(confFile.toString(), file ->
+                    new HDFSDisposal(new ConfigLoader<HDFSConfigList>().readConfig(file, HDFSConfigList.class),
+                            false, null) {
+                    });
+            daemon.start();
+            server.start();
+
+            Assert.assertFalse(daemon.isHealthy());
+            Assert.assertEquals(entryStatuses(daemon), Collections.emptyList());
+
+            HttpURLConnection health = (HttpURLConnection)
+                    new URL("http://localhost:" + server.getPort() + "/health").openConnection();
+            Assert.assertEquals(health.getResponseCode(), 503);
+            health.disconnect();
+        }
+    }
+
+    private static void touch(java.nio.file.Path file) throws IOException {
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 1000));
+    }
+
+    @Test
+    public void testConfigThatFailsToLoadIsClosedAndNotLoadedAgainUntilItChanges() throws Exception {
+        java.nio.file.Path confFile = writeConfig(CONFIG);
+        // Watermarks cannot be kept under a state dir that is a file.
+        java.nio.file.Path stateDir = Files.createTempFile("state", "");
+        stateDir.toFile().deleteOnExit();
+        AtomicInteger created = new AtomicInteger();
+        AtomicInteger closed = new AtomicInteger();
+
+        try (DisposalDaemon daemon = new DisposalDaemon(stateDir, Duration.ofHours(1), 1)) {
+            daemon.addConfig(confFile.toString(), file -> {
+                created.incrementAndGet();
+                return new HDFSDisposal(new ConfigLoader<HDFSConfigList>().readConfig(file, HDFSConfigList.class),
+                        false, Mockito.mock(FileSystem.class)) {
+                    @Override
+                    public void close() {
+                        closed.incrementAndGet();
+                    }
+                };
+            });
+            daemon.start();
+            Assert.assertFalse(daemon.isHealthy());
+            Assert.assertEquals(created.get(), 1);
+            Assert.assertEquals(closed.get(), 1);
+
+            daemon.reloadChanged();
+            Assert.assertEquals(created.get(), 1);
+
+            touch(confFile);
+            daemon.reloadChanged();
+            Assert.assertEquals(created.get(), 2);
+            Assert.assertEquals(closed.get(), 2);
+        }
+    }
+
+    @Test
+    public void testChangedConfigWaitsForItsRunningEntriesWithoutBlocking() throws Exception {
+        java.nio.file.Path confFile = writeConfig(CONFIG);
+        FileSystem fs = Mockito.mock(FileSystem.class);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(fs.globStatus(any(Path.class))).thenAnswer(invocation -> {
+            running.countDown();
+            release.await();
+            return new FileStatus[0];
+        });
+        AtomicInteger created = new AtomicInteger();
+        AtomicInteger closed = new AtomicInteger();
+
+        try (DisposalDaemon daemon = new DisposalDaemon(null, Duration.ofHours(1), 2)) {
+            daemon.addConfig(confFile.toString(), file -> {
+                created.incrementAndGet();
+                return new HDFSDisposal(new ConfigLoader<HDFSConfigList>().readConfig(file, HDFSConfigList.class),
+                        false, fs) {
+                    @Override
+                    public void close() {
+                        closed.incrementAndGet();
+                    }
+                };
+            });
+            daemon.start();
+            Assert.assertTrue(running.await(10, TimeUnit.SECONDS));
+            List<EntryStatus> previous = entryStatuses(daemon);
+
+            touch(confFile);
+            daemon.reloadChanged();
+            // The running entry keeps the previous config in place, and the new one is dropped until the next check.
+            Assert.assertSame(entryStatuses(daemon), previous);
+            Assert.assertEquals(created.get(), 2);
+            Assert.assertEquals(closed.get(), 1);
+
+            release.countDown();
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (entryStatuses(daemon) == previous && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+                daemon.reloadChanged();
+            }
+            Assert.assertNotSame(entryStatuses(daemon), previous);
+            // Every disposal but the one in place is closed.
+            Assert.assertEquals(closed.get(), created.get() - 1);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+// Copyright Verizon Media
+// Licensed under the terms of the Apache 2.0 license. Please see LICENSE file in the project root for terms.
+
+package com.vz.disposal.delete;
+
+import com.vz.disposal.utils.ModificationTimePathFilter;
+import com.vz.disposal.utils.TestingUtils;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PathIsNotEmptyDirectoryException;
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DeepSweeperTest {
+    private static final ZonedDateTime TIME_OF_RUN = ZonedDateTime.parse("2019-06-01T00:00:00Z");
+    private static final long OLD = TIME_OF_RUN.minusDays(30).toInstant().toEpochMilli();
+    private static final long NEW = TIME_OF_RUN.minusHours(1).toInstant().toEpochMilli();
+
+    private static final ModificationTimePathFilter FILTER =
+            new ModificationTimePathFilter(TIME_OF_RUN, ChronoUnit.DAYS, 7);
+
+    /**
+     * /tmp holds an old and a new file, an old tree holding only an old file, an old directory holding a new file and
+     * a new directory holding an old file.
+     */
+    private FileSystem mockScratchLayout() throws IOException {
+        FileSystem fs = Mockito.mock(FileSystem.class);
+        TestingUtils.mockListing(fs, new Path("/tmp"),
+                file("/tmp/old.log", OLD),
+                file("/tmp/new.log", NEW),
+                directory("/tmp/a", OLD),
+                directory("/tmp/c", OLD),
+                directory("/tmp/d", NEW));
+        TestingUtils.mockListing(fs, new Path("/tmp/a"), directory("/tmp/a/b", OLD));
+        TestingUtils.mockListing(fs, new Path("/tmp/a/b"), file("/tmp/a/b/x", OLD));
+        TestingUtils.mockListing(fs, new Path("/tmp/c"), file("/tmp/c/y", NEW));
+        TestingUtils.mockListing(fs, new Path("/tmp/d"), file("/tmp/d/z", OLD));
+        return fs;
+    }
+
+    @Test
+    public void testDeletesExpiredFilesAndPrunesEmptiedDirectories() throws IOException {
+        FileSystem fs = mockScratchLayout();
+        ParallelDeleter deleter = new ParallelDeleter(fs, 4, 0, 1000);
+
+        DeepSweeper.Sweep sweep;
+        try (DeepSweeper sweeper = sweeper(fs, true, () -> deleter.newBatch(false), () -> false, status -> { })) {
+            sweep = sweeper.sweep(directory("/tmp", OLD));
+        }
+
+        Assert.assertEquals(sweep.getScanned(), 9);
+        Assert.assertEquals(sweep.getExpired(), 3);
+        Assert.assertEquals(sweep.getDeleted(), 3);
+        Assert.assertEquals(sweep.getPruned(), 2);
+        for (String deleted : new String[] {"/tmp/old.log", "/tmp/a/b/x", "/tmp/d/z", "/tmp/a/b", "/tmp/a"}) {
+            verify(fs, times(1)).delete(new Path(deleted), false);
+        }
+        for (String kept : new String[] {"/tmp", "/tmp/new.log", "/tmp/c", "/tmp/c/y", "/tmp/d"}) {
+            verify(fs, never()).delete(Mockito.eq(new Path(kept)), anyBoolean());
+        }
+        verify(fs, never()).delete(any(Path.class), Mockito.eq(true));
+        deleter.close();
+    }
+
+    @Test
+    public void testKeepsDirectoryWrittenIntoSinceListing() throws IOException {
+        FileSystem fs = mockScratchLayout();
+        when(fs.delete(new Path("/tmp/a/b"), false)).thenThrow(new PathIsNotEmptyDirectoryException("/tmp/a/b"));
+        ParallelDeleter deleter = new ParallelDeleter(fs, 4, 0, 1000);
+
+        DeepSweeper.Sweep sweep;
+        try (DeepSweeper sweeper = sweeper(fs, true, () -> deleter.newBatch(false), () -> false, status -> { })) {
+            sweep = sweeper.sweep(directory("/tmp", OLD));
+        }
+
+        Assert.assertEquals(sweep.getDeleted(), 3);
+        Assert.assertEquals(sweep.getFailed(), 0);
+        Assert.assertEquals(sweep.getPruned(), 0);
+        verify(fs, never()).delete(new Path("/tmp/a"), false);
+        deleter.close();
+    }
+
+    @Test
+    public void testDryRunAndShallowSweepsDeleteNothing() throws IOException {
+        FileSystem fs = mockScratchLayout();
+
+        DeepSweeper.Sweep sweep;
+        Set<Path> found = ConcurrentHashMap.newKeySet();
+        try (DeepSweeper sweeper = sweeper(fs, true, null, () -> false, status -> found.add(status.getPath()))) {
+            sweep = sweeper.sweep(directory("/tmp", OLD));
+        }
+        Assert.assertEquals(found, Stream.of("/tmp/old.log", "/tmp/a/b/x", "/tmp/d/z", "/tmp/a/b", "/tmp/a")
+                .map(Path::new)
+                .collect(Collectors.toSet()));
+        Assert.assertEquals(sweep.getExpired(), 3);
+        Assert.assertEquals(sweep.getDeleted(), 0);
+        Assert.assertEquals(sweep.getPruned(), 2);
+
+        // Without descending, only the files right under the root are looked at, and nothing is left empty.
+        try (DeepSweeper sweeper = sweeper(fs, false, null, () -> false, status -> { })) {
+            sweep = sweeper.sweep(directory("/tmp", OLD));
+        }
+        Assert.assertEquals(sweep.getScanned(), 5);
+        Assert.assertEquals(sweep.getExpired(), 1);
+        Assert.assertEquals(sweep.getPruned(), 0);
+
+        // Past the deadline, expired files are only counted as left for later.
+        try (DeepSweeper sweeper = sweeper(fs, false, null, () -> true, status -> { })) {
+            Assert.assertEquals(sweeper.sweep(file("/tmp/old.log", OLD)).getDeferred(), 1);
+        }
+        verify(fs, never()).delete(any(Path.class), anyBoolean());
+    }
+
+    private static DeepSweeper sweeper(FileSystem fs, boolean descend, Supplier<ParallelDeleter.Batch> deletes,
+                                       BooleanSupplier stop, Consumer<FileStatus> found) {
+        return new DeepSweeper(fs, 4, FILTER, descend, deletes, stop, found);
+    }
+
+    private static FileStatus file(String path, long modificationTime) {
+        return new FileStatus(1, false, 3, 128, modificationTime, new Path(path));
+    }
+
+    private static FileStatus directory(String path, long modificationTime) {
+        return new FileStatus(0, true, 0, 0, modificationTime, new Path(path));
+    }
+}
@@ -0,0 +1,70 @@
+// Copyright Verizon Media
+// Licensed under the terms of the Apache 2.0 license. Please see LICENSE file in the project root for terms.
+
+package com.vz.disposal.delete;
+
+import org.apache.hadoop.fs.Path;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class DeletionPlanTest {
+
+    @Test
+    public void testRefusesPathsUnderRecursiveDeletions() {
+        DeletionPlan plan = new DeletionPlan();
+
+        Assert.assertTrue(plan.claim(new Path("hdfs://nn1:8020/data/events"), true));
+        Assert.assertFalse(plan.claim(new Path("hdfs://nn1:8020/data/events/date=2019-04-23"), false));
+        Assert.assertFalse(plan.claim(new Path("hdfs://nn1:8020/data/events/date=2019-04-23/hour=00"), true));
+        Assert.assertTrue(plan.claim(new Path("hdfs://nn1:8020/data/eventsdaily"), true));
+        Assert.assertTrue(plan.claim(new Path("hdfs://nn2:8020/data/events/date=2019-04-23"), true));
+
+        Assert.assertEquals(plan.getClaimed(), 3);
+        Assert.assertEquals(plan.getCovered(), 2);
+    }
+
+    @Test
+    public void testClaimsEachPathOnce() {
+        DeletionPlan plan = new DeletionPlan();
+
+        Assert.assertTrue(plan.claim(new Path("/data/events/date=2019-04-23/part-0"), false));
+        Assert.assertFalse(plan.claim(new Path("/data/events/date=2019-04-23/part-0"), false));
+        // A non-recursive deletion only covers itself.
+        Assert.assertTrue(plan.claim(new Path("/data/events/date=2019-04-23"), false));
+        Assert.assertTrue(plan.claim(new Path("/data/events/date=2019-04-23/part-1"), false));
+    }
+
+    @Test
+    public void testRecursiveClaimWinsOverAnEarlierNonRecursiveOne() {
+        DeletionPlan plan = new DeletionPlan();
+
+        Assert.assertTrue(plan.claim(new Path("/data/events/date=2019-04-23/hour=00"), false));
+        Assert.assertTrue(plan.claim(new Path("/data/events/date=2019-04-23"), false));
+        // Only the recursive deletion removes the directory if it is not empty.
+        Assert.assertTrue(plan.claim(new Path("/data/events/date=2019-04-23"), true));
+        Assert.assertFalse(plan.claim(new Path("/data/events/date=2019-04-23"), true));
+        Assert.assertFalse(plan.claim(new Path("/data/events/date=2019-04-23"), false));
+        Assert.assertFalse(plan.claim(new Path("/data/events/date=2019-04-23/hour=01"), false));
+
+        Assert.assertEquals(plan.getClaimed(), 3);
+        Assert.assertEquals(plan.getCovered(), 3);
+    }
+
+    @Test
+    public void testIsCoveredDoesNotClaim() {
+        DeletionPlan plan = new DeletionPlan();
+        Assert.assertTrue(plan.claim(new Path("hdfs://nn1/data/day=1"), true));
+        Assert.assertTrue(plan.claim(new Path("hdfs://nn1/logs/day=1"), false));
+
+        Assert.assertTrue(plan.isCovered(new Path("hdfs://nn1/data/day=1/part-0")));
+        Assert.assertTrue(plan.isCovered(new Path("hdfs://nn1/logs/day=1")));
+        Assert.assertFalse(plan.isCovered(new Path("hdfs://nn1/logs/day=1/part-0")));
+        Assert.assertFalse(plan.isCovered(new Path("hdfs://nn1/data/day=2")));
+        Assert.assertFalse(plan.isCovered(new Path("hdfs://nn2/data/day=1")));
+
+        // A path that was only checked is still free to claim.
+        Assert.assertTrue(plan.claim(new Path("hdfs://nn1/data/day=2"), false));
+        Assert.assertEquals(plan.getClaimed(), 3);
+        Assert.assertEquals(plan.getCovered(), 2);
+    }
+}
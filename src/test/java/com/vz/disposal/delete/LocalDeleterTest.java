@@ -0,0 +1,68 @@
+// Copyright Verizon Media
+// Licensed under the terms of the Apache 2.0 license. Please see LICENSE file in the project root for terms.
+
+package com.vz.disposal.delete;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RejectedExecutionException;
+
+public class LocalDeleterTest {
+
+    @Test(timeOut = 10_000)
+    public void testWorkerBlockedOnQueuedWorkLetsTheForkJoinPoolGoOn() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        LocalDeleter deleter = new LocalDeleter(1);
+        LocalDeleter.Batch batch = deleter.newBatch(path -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+        });
+        ForkJoinPool pool = new ForkJoinPool(1);
+
+        // More deletes than the deleter queues, while none of them can finish.
+        ForkJoinTask<?> submitting = pool.submit(() -> {
+            for (int i = 0; i < 10; i++) {
+                batch.submit(Paths.get("/data/" + i));
+            }
+        });
+        // Only runs if the pool makes up for its blocked worker.
+        pool.submit(release::countDown).join();
+        submitting.join();
+        batch.await();
+
+        Assert.assertEquals(batch.getDeletedCount(), 10);
+        pool.shutdown();
+        deleter.close();
+    }
+
+    @Test(timeOut = 10_000)
+    public void testSubmitAfterCloseLeavesNothingOutstanding() {
+        LocalDeleter deleter = new LocalDeleter(1);
+        LocalDeleter.Batch batch = deleter.newBatch(false);
+        deleter.close();
+
+        Path path = Paths.get("/data/late");
+        // Ten rejections would have used up every permit of the deleter's queue if they were not given back.
+        for (int i = 0; i < 10; i++) {
+            try {
+                batch.submit(path);
+                Assert.fail("A closed deleter took a delete");
+            } catch (RejectedExecutionException e) {
+                // Expected.
+            }
+        }
+        batch.await();
+
+        Assert.assertEquals(batch.getDeletedCount(), 0);
+    }
+}
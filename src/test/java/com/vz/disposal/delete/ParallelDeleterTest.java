@@ -0,0 +1,122 @@
+// Copyright Verizon Media
+// Licensed under the terms of the Apache 2.0 license. Please see LICENSE file in the project root for terms.
+
+package com.vz.disposal.delete;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.security.AccessControlException;
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ParallelDeleterTest {
+
+    @Test
+    public void testDeletesEveryPath() throws IOException {
+        FileSystem fs = Mockito.mock(FileSystem.class);
+        ParallelDeleter deleter = new ParallelDeleter(fs, 8, 0, 1000);
+
+        ParallelDeleter.Batch batch = deleter.newBatch(true);
+        for (int i = 0; i < 100; i++) {
+            batch.submit(new Path("/data/" + i));
+        }
+        batch.await();
+
+        Assert.assertEquals(batch.getDeletedCount(), 100);
+        Assert.assertTrue(batch.getFailed().isEmpty());
+        for (int i = 0; i < 100; i++) {
+            verify(fs, times(1)).delete(eq(new Path("/data/" + i)), eq(true));
+        }
+        deleter.close();
+    }
+
+    @Test
+    public void testRetriesTransientFailure() throws IOException {
+        Path path = new Path("/data/flaky");
+        FileSystem fs = Mockito.mock(FileSystem.class);
+        when(fs.delete(path, false)).thenThrow(new IOException("namenode busy")).thenReturn(true);
+        ParallelDeleter deleter = new ParallelDeleter(fs, 4, 2, 1000);
+
+        ParallelDeleter.Batch batch = deleter.newBatch(false);
+        batch.submit(path);
+        batch.await();
+
+        Assert.assertEquals(batch.getDeletedCount(), 1);
+        verify(fs, times(2)).delete(path, false);
+        deleter.close();
+    }
+
+    @Test
+    public void testDoesNotRetryPermissionFailure() throws IOException {
+        Path path = new Path("/data/forbidden");
+        FileSystem fs = Mockito.mock(FileSystem.class);
+        when(fs.delete(path, true)).thenThrow(new AccessControlException("denied"));
+        ParallelDeleter deleter = new ParallelDeleter(fs, 4, 3, 1000);
+
+        ParallelDeleter.Batch batch = deleter.newBatch(true);
+        batch.submit(path);
+        batch.await();
+
+        Assert.assertEquals(batch.getDeletedCount(), 0);
+        Assert.assertEquals(batch.getFailed(), Collections.singletonList(path));
+        verify(fs, times(1)).delete(path, true);
+        deleter.close();
+    }
+
+    @Test(timeOut = 10_000)
+    public void testRuntimeFailureFailsThePathAndFreesItsSlot() throws IOException {
+        Path path = new Path("/data/broken");
+        FileSystem fs = Mockito.mock(FileSystem.class);
+        when(fs.delete(path, true)).thenThrow(new IllegalArgumentException("Wrong FS"));
+        ParallelDeleter deleter = new ParallelDeleter(fs, 4, 3, 1000);
+
+        ParallelDeleter.Batch batch = deleter.newBatch(true);
+        for (int i = 0; i < 10; i++) {
+            batch.submit(path);
+        }
+        batch.await();
+
+        Assert.assertEquals(batch.getDeletedCount(), 0);
+        Assert.assertEquals(batch.getFailed().size(), 10);
+        Assert.assertEquals(deleter.getLimiter().getInFlight(), 0);
+        verify(fs, times(10)).delete(path, true);
+        deleter.close();
+    }
+
+    @Test
+    public void testLimiterIncreasesOnFastCallsAndHalvesOnFailure() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 10, TimeUnit.SECONDS.toNanos(10));
+
+        for (int i = 0; i < 20; i++) {
+            limiter.onSuccess(limiter.acquire());
+        }
+        int grown = limiter.getLimit();
+        Assert.assertTrue(grown > 2, "limit should grow on fast calls, was " + grown);
+
+        limiter.onFailure(limiter.acquire());
+        Assert.assertEquals(limiter.getLimit(), grown / 2);
+        Assert.assertEquals(limiter.getInFlight(), 0);
+    }
+
+    @Test
+    public void testLimiterCutsOnceForCallsInFlightDuringDecrease() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(8, 1, 8, TimeUnit.SECONDS.toNanos(10));
+
+        long first = limiter.acquire();
+        long second = limiter.acquire();
+        limiter.onFailure(first);
+        limiter.onFailure(second);
+
+        Assert.assertEquals(limiter.getLimit(), 4);
+    }
+}
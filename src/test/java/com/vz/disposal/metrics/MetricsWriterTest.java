@@ -0,0 +1,76 @@
+// Copyright Verizon Media
+// Licensed under the terms of the Apache 2.0 license. Please see LICENSE file in the project root for terms.
+
+package com.vz.disposal.metrics;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+public class MetricsWriterTest {
+
+    private DisposalMetrics sampleMetrics() {
+        DisposalMetrics metrics = new DisposalMetrics();
+        metrics.counter(DisposalMetrics.HDFS, "/data/\"quoted\"/%s", DisposalMetrics.Stage.MATCHED).add(3);
+        metrics.counter(DisposalMetrics.HDFS, "/data/\"quoted\"/%s", DisposalMetrics.Stage.DELETED).add(2);
+        LatencyHistogram delete = metrics.latency(DisposalMetrics.HDFS, "delete");
+        delete.record(TimeUnit.MICROSECONDS.toNanos(500));
+        delete.record(TimeUnit.MILLISECONDS.toNanos(40));
+        delete.record(TimeUnit.MINUTES.toNanos(10));
+        metrics.recordRunDuration(DisposalMetrics.HDFS, Duration.ofMillis(1500));
+        return metrics;
+    }
+
+    @Test
+    public void testHistogramBuckets() {
+        LatencyHistogram histogram = sampleMetrics().latency(DisposalMetrics.HDFS, "delete");
+        long[] counts = histogram.getBucketCounts();
+
+        Assert.assertEquals(counts.length, LatencyHistogram.getBoundsMillis().length + 1);
+        Assert.assertEquals(counts[0], 1);
+        Assert.assertEquals(counts[5], 1);
+        Assert.assertEquals(counts[counts.length - 1], 1);
+        Assert.assertEquals(histogram.getCount(), 3);
+    }
+
+    @Test
+    public void testPrometheusFormat() throws IOException {
+        StringWriter out = new StringWriter();
+        new MetricsWriter(sampleMetrics()).writePrometheus(out);
+        String text = out.toString();
+
+        Assert.assertTrue(text.contains("# TYPE data_disposal_entry_paths_total counter\n"));
+        Assert.assertTrue(text.contains(
+                "data_disposal_entry_paths_total{backend=\"hdfs\",entry=\"/data/\\\"quoted\\\"/%s\",stage=\"matched\"} 3\n"));
+        Assert.assertTrue(text.contains(
+                "data_disposal_rpc_latency_seconds_bucket{backend=\"hdfs\",rpc=\"delete\",le=\"0.001\"} 1\n"));
+        Assert.assertTrue(text.contains(
+                "data_disposal_rpc_latency_seconds_bucket{backend=\"hdfs\",rpc=\"delete\",le=\"0.05\"} 2\n"));
+        Assert.assertTrue(text.contains(
+                "data_disposal_rpc_latency_seconds_bucket{backend=\"hdfs\",rpc=\"delete\",le=\"+Inf\"} 3\n"));
+        Assert.assertTrue(text.contains("data_disposal_rpc_latency_seconds_count{backend=\"hdfs\",rpc=\"delete\"} 3\n"));
+        Assert.assertTrue(text.contains("data_disposal_run_duration_seconds{backend=\"hdfs\"} 1.5\n"));
+    }
+
+    @Test
+    public void testJsonFileIsWrittenInPlace() throws IOException {
+        Path dir = Files.createTempDirectory("metrics");
+        Path file = dir.resolve("disposal.json");
+        new MetricsWriter(sampleMetrics()).write(file);
+
+        JsonNode json = new ObjectMapper().readTree(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+        Assert.assertEquals(json.get("counters").size(), 2);
+        Assert.assertEquals(json.get("latencies").get(0).get("count").asLong(), 3);
+        Assert.assertEquals(json.get("runDurationMillis").get("hdfs").asLong(), 1500);
+        Assert.assertFalse(Files.exists(dir.resolve("disposal.json.tmp")));
+    }
+}
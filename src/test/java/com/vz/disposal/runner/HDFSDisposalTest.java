@@ -4,10 +4,22 @@
 package com.vz.disposal.runner;
 
 import com.vz.disposal.config.HDFSConfigEntry;
+import com.vz.disposal.config.HDFSConfigList;
+import com.vz.disposal.config.HDFSListingMode;
+import com.vz.disposal.config.HDFSNamespaceConfig;
 import com.vz.disposal.config.HDFSRetentionType;
+import com.vz.disposal.delete.StagingPurger;
+import com.vz.disposal.metrics.DisposalMetrics;
+import com.vz.disposal.state.DeletionJournal;
+import com.vz.disposal.state.PlanManifest;
+import com.vz.disposal.state.WatermarkStore;
+import com.vz.disposal.utils.CompiledDatePattern;
+import com.vz.disposal.utils.TestingUtils;
+import com.vz.disposal.utils.Utils;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.security.AccessControlException;
 import org.mockito.Mockito;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
@@ -15,19 +27,32 @@ import org.testng.Assert;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
 
+import java.time.Instant;
+import java.time.LocalDate;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
 import static org.mockito.Mockito.atLeast;
 import static org.mockito.Mockito.atMost;
 import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 public class HDFSDisposalTest {
 
@@ -85,6 +110,38 @@ public class HDFSDisposalTest {
 
     }
 
+    @Test
+    public void testDryRunWritesItsPlanToTheManifest() throws IOException {
+        String CONFIG_PATH = "hdfs://host:4443/data/date=%s";
+        FileSystem fs = Mockito.mock(FileSystem.class);
+        mockFileSystemGlobStatus(fs, new Path("hdfs://host:4443/data/date=*"), new FileStatus[] {
+                TestingUtils.directory("hdfs://host:4443/data/date=2019-04-24"),
+                TestingUtils.directory("hdfs://host:4443/data/date=2019-04-23"),
+                TestingUtils.directory("hdfs://host:4443/data/date=" + LocalDate.now(ZoneOffset.UTC))
+        });
+        java.nio.file.Path file = Files.createTempDirectory("plan").resolve("plan.jsonl.gz");
+        PlanManifest manifest = PlanManifest.create(file);
+
+        HDFSConfigEntry entry = new HDFSConfigEntry();
+        entry.setPath(CONFIG_PATH);
+        entry.setRetentionType(HDFSRetentionType.PATH_DATE);
+        entry.setDateFormat("yyyy-MM-dd");
+        entry.setRetentionDuration(14);
+        entry.setGranularity(ChronoUnit.DAYS);
+        HDFSDisposal runner = new HDFSDisposal(null, true, fs);
+        runner.setManifest(manifest);
+        runner.dispose(entry);
+        manifest.close();
+
+        List<String> lines = TestingUtils.readGzipLines(file);
+        Assert.assertEquals(lines.size(), 2);
+        Assert.assertTrue(lines.get(0).startsWith("{\"backend\":\"hdfs\",\"entry\":\"" + CONFIG_PATH + "\"," +
+                "\"target\":\"hdfs://host:4443/data/date=2019-04-23\",\"time\":\"2019-04-23T00:00:00Z\"," +
+                "\"reason\":\"PATH_DATE before "), lines.get(0));
+        Assert.assertTrue(lines.get(1).contains("\"target\":\"hdfs://host:4443/data/date=2019-04-24\""));
+        verify(fs, never()).delete(any(), anyBoolean());
+    }
+
     @Test
     public void testDisposeAFile() throws IOException {
         Path NOT_MATCHING_FILE = new Path("hdfs://host:4443/projects/name/datasetgroup/datsetname/hi.txt");
@@ -152,4 +209,602 @@ public class HDFSDisposalTest {
         verify(fs, atLeast(numberOfDeletes)).delete(eq(INCLUDE_PATH1), eq(true));
         verify(fs, atMost(numberOfDeletes)).delete(any(), eq(true));
     }
+
+    @Test
+    public void testDeepSweepPrunesEmptiedDirectoriesUnderEachMatch() throws IOException {
+        String CONFIG_PATH = "hdfs://host:4443/jobs/*/_temporary";
+        Path ROOT = new Path("hdfs://host:4443/jobs/a/_temporary");
+        Path ATTEMPT = new Path(ROOT, "attempt_0");
+        Path PART = new Path(ATTEMPT, "part-00000");
+        FileSystem fs = Mockito.mock(FileSystem.class);
+        mockFileSystemGlobStatus(fs, new Path(CONFIG_PATH),
+                new FileStatus[] {TestingUtils.directory(ROOT.toString())});
+        TestingUtils.mockListing(fs, ROOT, TestingUtils.directory(ATTEMPT.toString()));
+        TestingUtils.mockListing(fs, ATTEMPT, TestingUtils.file(PART.toString()));
+
+        HDFSConfigEntry entry = new HDFSConfigEntry();
+        entry.setPath(CONFIG_PATH);
+        entry.setRetentionType(HDFSRetentionType.DEEP_MODIFICATION_TIME);
+        entry.setRetentionDuration(1);
+        entry.setGranularity(ChronoUnit.DAYS);
+        entry.setRecursive(true);
+
+        HDFSDisposal runner = new HDFSDisposal(null, false, fs);
+        Assert.assertTrue(runner.dispose(entry).isEmpty());
+
+        verify(fs, times(1)).delete(PART, false);
+        verify(fs, times(1)).delete(ATTEMPT, false);
+        verify(fs, never()).delete(eq(ROOT), anyBoolean());
+        verify(fs, never()).delete(any(), eq(true));
+    }
+
+    @Test
+    public void testDisposeStreamingDeletesWithoutCollecting() throws IOException {
+        String CONFIG_PATH = "hdfs://host:4443/projects/name/datasetgroup/datsetname/date=%s";
+        Path PARENT = new Path("hdfs://host:4443/projects/name/datasetgroup/datsetname");
+        Path EXPIRED = new Path("hdfs://host:4443/projects/name/datasetgroup/datsetname/date=2019-04-23");
+        Path NOT_A_DATE = new Path("hdfs://host:4443/projects/name/datasetgroup/datsetname/oops.txt");
+        FileSystem fs = Mockito.mock(FileSystem.class);
+        TestingUtils.mockListing(fs, PARENT,
+                TestingUtils.directory(EXPIRED.toString()),
+                TestingUtils.file(NOT_A_DATE.toString()));
+
+        HDFSConfigEntry entry = new HDFSConfigEntry();
+        entry.setPath(CONFIG_PATH);
+        entry.setRetentionType(HDFSRetentionType.PATH_DATE);
+        entry.setListingMode(HDFSListingMode.STREAMING);
+        entry.setDateFormat("yyyy-MM-dd");
+        entry.setRetentionDuration(14);
+        entry.setGranularity(ChronoUnit.DAYS);
+        entry.setRecursive(true);
+
+        HDFSDisposal runner = new HDFSDisposal(null, false, fs);
+        List<Path> dispose = runner.dispose(entry);
+
+        Assert.assertTrue(dispose.isEmpty());
+        verify(fs, times(1)).delete(eq(EXPIRED), eq(true));
+        verify(fs, never()).delete(eq(NOT_A_DATE), anyBoolean());
+        verify(fs, never()).globStatus(any());
+    }
+
+    @Test
+    public void testStagesExpiredPathsThenPurgesStagingDirectory() throws IOException {
+        String CONFIG_PATH = "hdfs://host:4443/projects/name/datasetgroup/datsetname/date=%s";
+        Path GLOB_PATH = new Path(CONFIG_PATH.replace("%s", "*"));
+        Path EXPIRED = new Path("hdfs://host:4443/projects/name/datasetgroup/datsetname/date=2019-04-23");
+        Path STAGING_DIR = new Path("hdfs://host:4443/staging");
+        Path RUN_DIR = StagingPurger.runDir(STAGING_DIR, String.valueOf(Disposal.TIME_OF_RUN.toInstant().toEpochMilli()));
+        Path STAGED = StagingPurger.stagedPath(RUN_DIR, EXPIRED);
+
+        FileSystem fs = Mockito.mock(FileSystem.class);
+        mockFileSystemGlobStatus(fs, GLOB_PATH, new FileStatus[] {TestingUtils.directory(EXPIRED.toString())});
+        when(fs.rename(EXPIRED, STAGED)).thenReturn(true);
+        TestingUtils.mockListing(fs, STAGING_DIR, TestingUtils.directory(RUN_DIR.toString()));
+        TestingUtils.mockListing(fs, RUN_DIR, TestingUtils.directory(STAGED.toString()));
+
+        HDFSConfigEntry entry = new HDFSConfigEntry();
+        entry.setPath(CONFIG_PATH);
+        entry.setRetentionType(HDFSRetentionType.PATH_DATE);
+        entry.setDateFormat("yyyy-MM-dd");
+        entry.setRetentionDuration(14);
+        entry.setGranularity(ChronoUnit.DAYS);
+        entry.setRecursive(true);
+        entry.setStagingDir(STAGING_DIR.toString());
+        HDFSConfigList config = new HDFSConfigList();
+        config.setEntries(Collections.singletonList(entry));
+
+        new HDFSDisposal(config, false, fs).run();
+
+        Assert.assertTrue(STAGED.getName().contains("date%3D2019-04-23"));
+        verify(fs, times(1)).mkdirs(RUN_DIR);
+        verify(fs, times(1)).rename(EXPIRED, STAGED);
+        verify(fs, never()).delete(eq(EXPIRED), anyBoolean());
+        verify(fs, times(1)).delete(STAGED, true);
+        verify(fs, times(1)).delete(RUN_DIR, false);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testStagingRequiresRecursive() {
+        HDFSConfigEntry entry = new HDFSConfigEntry();
+        entry.setPath("/data/%s");
+        entry.setRetentionType(HDFSRetentionType.PATH_DATE);
+        entry.setStagingDir("/staging");
+        HDFSConfigList config = new HDFSConfigList();
+        config.setEntries(Collections.singletonList(entry));
+
+        new HDFSDisposal(config, false, Mockito.mock(FileSystem.class));
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testDeepSweepRequiresGlobListing() {
+        HDFSConfigEntry entry = new HDFSConfigEntry();
+        entry.setPath("/tmp");
+        entry.setRetentionType(HDFSRetentionType.DEEP_MODIFICATION_TIME);
+        entry.setListingMode(HDFSListingMode.STREAMING);
+        HDFSConfigList config = new HDFSConfigList();
+        config.setEntries(Collections.singletonList(entry));
+
+        new HDFSDisposal(config, false, Mockito.mock(FileSystem.class));
+    }
+
+    @Test
+    public void testEntriesResolveToTheirOwnNamespace() {
+        HDFSNamespaceConfig second = new HDFSNamespaceConfig();
+        second.setUri("hdfs://namenode2:8020");
+        second.setDeleteConcurrency(4);
+        HDFSConfigList config = new HDFSConfigList();
+        config.setHdfsNamenode("hdfs://namenode1:8020");
+        config.setEntries(Collections.emptyList());
+        config.setNamespaces(Collections.singletonList(second));
+
+        HDFSDisposal runner = new HDFSDisposal(config, false, Mockito.mock(FileSystem.class));
+        HDFSNamespace first = runner.namespaceFor(new Path("hdfs://namenode1:8020/data/a"));
+        HDFSNamespace other = runner.namespaceFor(new Path("hdfs://namenode2:8020/data/b"));
+
+        Assert.assertSame(runner.namespaceFor(new Path("/data/c")), first);
+        Assert.assertNotSame(other, first);
+        Assert.assertEquals(other.getUri(), URI.create("hdfs://namenode2:8020/"));
+        Assert.assertNotSame(other.getDeleter(), first.getDeleter());
+    }
+
+    @Test
+    public void testDisposalIsCounted() throws IOException {
+        String CONFIG_PATH = "hdfs://host:4443/projects/metrics/date=%s";
+        Path EXPIRED = new Path("hdfs://host:4443/projects/metrics/date=2019-04-23");
+        Path RETAINED = new Path("hdfs://host:4443/projects/metrics/date=" +
+                ZonedDateTime.now(ZoneOffset.UTC).toLocalDate());
+        FileSystem fs = Mockito.mock(FileSystem.class);
+        FileStatus expired = Mockito.mock(FileStatus.class);
+        mockFileStatusGetPath(expired, EXPIRED);
+        FileStatus retained = Mockito.mock(FileStatus.class);
+        mockFileStatusGetPath(retained, RETAINED);
+        mockFileSystemGlobStatus(fs, new Path(CONFIG_PATH.replace("%s", "*")), new FileStatus[] {expired, retained});
+
+        HDFSDisposal runner = new HDFSDisposal(null, false, fs);
+
+        HDFSConfigEntry entry = new HDFSConfigEntry();
+        entry.setPath(CONFIG_PATH);
+        entry.setRetentionType(HDFSRetentionType.PATH_DATE);
+        entry.setDateFormat("yyyy-MM-dd");
+        entry.setRetentionDuration(14);
+        entry.setGranularity(ChronoUnit.DAYS);
+        runner.dispose(entry);
+
+        Assert.assertEquals(runner.metrics.counter(DisposalMetrics.HDFS, CONFIG_PATH, DisposalMetrics.Stage.SCANNED).sum(), 2);
+        Assert.assertEquals(runner.metrics.counter(DisposalMetrics.HDFS, CONFIG_PATH, DisposalMetrics.Stage.MATCHED).sum(), 1);
+        Assert.assertEquals(runner.metrics.counter(DisposalMetrics.HDFS, CONFIG_PATH, DisposalMetrics.Stage.DELETED).sum(), 1);
+        Assert.assertEquals(runner.metrics.counter(DisposalMetrics.HDFS, CONFIG_PATH, DisposalMetrics.Stage.FAILED).sum(), 0);
+        Assert.assertTrue(runner.metrics.latency(DisposalMetrics.HDFS, "delete").getCount() >= 1);
+    }
+
+    @Test
+    public void testIncrementalRunOnlyGlobsNewlyExpiredDates() throws IOException {
+        String CONFIG_PATH = "hdfs://host:4443/projects/incremental/date=%s";
+        Instant cutoff = Utils.ceilTo(
+                Utils.getBeginningOfRetention(Disposal.TIME_OF_RUN, 14, ChronoUnit.DAYS),
+                ChronoUnit.DAYS
+        );
+        DateTimeFormatter format = DateTimeFormatter.ISO_LOCAL_DATE.withZone(ZoneOffset.UTC);
+        String firstDay = format.format(cutoff.minus(2, ChronoUnit.DAYS));
+        String secondDay = format.format(cutoff.minus(1, ChronoUnit.DAYS));
+        Path WINDOW_GLOB = new Path("hdfs://host:4443/projects/incremental/date={" + firstDay + "," + secondDay + "}");
+        Path EXPIRED = new Path("hdfs://host:4443/projects/incremental/date=" + secondDay);
+
+        FileSystem fs = Mockito.mock(FileSystem.class);
+        FileStatus expired = Mockito.mock(FileStatus.class);
+        mockFileStatusGetPath(expired, EXPIRED);
+        mockFileSystemGlobStatus(fs, WINDOW_GLOB, new FileStatus[] {expired});
+
+        WatermarkStore watermarks = WatermarkStore.open(Files.createTempDirectory("state"), "hdfs_config.yaml");
+        watermarks.advance(CONFIG_PATH, cutoff.minus(2, ChronoUnit.DAYS));
+
+        HDFSDisposal runner = new HDFSDisposal(null, false, fs);
+        runner.setWatermarks(watermarks);
+
+        HDFSConfigEntry entry = new HDFSConfigEntry();
+        entry.setPath(CONFIG_PATH);
+        entry.setRetentionType(HDFSRetentionType.PATH_DATE);
+        entry.setDateFormat("yyyy-MM-dd");
+        entry.setRetentionDuration(14);
+        entry.setGranularity(ChronoUnit.DAYS);
+
+        List<Path> dispose = runner.dispose(entry);
+        Assert.assertEquals(dispose, Collections.singletonList(EXPIRED));
+        Assert.assertEquals(watermarks.get(CONFIG_PATH), cutoff);
+
+        // The cutoff has not moved since, so the second run does not list anything.
+        Assert.assertTrue(runner.dispose(entry).isEmpty());
+        verify(fs, times(1)).globStatus(any());
+        verify(fs, times(1)).delete(EXPIRED, false);
+    }
+
+    @Test
+    public void testResumesJournaledDeletionsWithoutListing() throws IOException {
+        String LISTED_PATH = "hdfs://host:4443/projects/journaled/date=%s";
+        String UNLISTED_PATH = "hdfs://host:4443/projects/unlisted/date=%s";
+        Path PENDING = new Path("hdfs://host:4443/projects/journaled/date=2019-04-24");
+        // Listed under a longer retention than the entry has now.
+        Path RECENT = new Path("hdfs://host:4443/projects/journaled/date=" + LocalDate.now(ZoneOffset.UTC));
+        java.nio.file.Path stateDir = Files.createTempDirectory("state");
+
+        DeletionJournal interrupted = DeletionJournal.open(stateDir, "hdfs_config.yaml");
+        interrupted.plan(LISTED_PATH, "hdfs://host:4443/projects/journaled/date=2019-04-23");
+        interrupted.plan(LISTED_PATH, PENDING.toString());
+        interrupted.plan(LISTED_PATH, RECENT.toString());
+        interrupted.listed(LISTED_PATH);
+        interrupted.done(LISTED_PATH, "hdfs://host:4443/projects/journaled/date=2019-04-23");
+        interrupted.plan(UNLISTED_PATH, "hdfs://host:4443/projects/unlisted/date=2019-04-23");
+        interrupted.close();
+
+        List<HDFSConfigEntry> entries = new ArrayList<>();
+        for (String path : new String[] {LISTED_PATH, UNLISTED_PATH}) {
+            HDFSConfigEntry entry = new HDFSConfigEntry();
+            entry.setPath(path);
+            entry.setRetentionType(HDFSRetentionType.PATH_DATE);
+            entry.setDateFormat("yyyy-MM-dd");
+            entry.setRetentionDuration(14);
+            entry.setGranularity(ChronoUnit.DAYS);
+            entries.add(entry);
+        }
+        HDFSConfigList config = new HDFSConfigList();
+        config.setEntries(entries);
+
+        FileSystem fs = Mockito.mock(FileSystem.class);
+        when(fs.globStatus(any())).thenReturn(new FileStatus[0]);
+        when(fs.getFileStatus(PENDING)).thenReturn(TestingUtils.directory(PENDING.toString()));
+        when(fs.getFileStatus(RECENT)).thenReturn(TestingUtils.directory(RECENT.toString()));
+        HDFSDisposal runner = new HDFSDisposal(config, false, fs);
+        runner.setJournal(DeletionJournal.open(stateDir, "hdfs_config.yaml"));
+        runner.run();
+
+        verify(fs, times(1)).delete(PENDING, false);
+        verify(fs, times(1)).delete(any(), anyBoolean());
+        Assert.assertEquals(
+                runner.metrics.counter(DisposalMetrics.HDFS, LISTED_PATH, DisposalMetrics.Stage.DELETED).sum(), 1);
+        verify(fs, never()).globStatus(new Path(LISTED_PATH.replace("%s", "*")));
+        verify(fs, times(1)).globStatus(new Path(UNLISTED_PATH.replace("%s", "*")));
+        Assert.assertFalse(Files.exists(stateDir.resolve("hdfs_config.yaml.journal")));
+    }
+
+    @Test
+    public void testOverlappingEntriesDeleteEachPathOnce() throws IOException {
+        String DAYS_PATH = "hdfs://host:4443/projects/events/date=%s";
+        String HOURS_PATH = "hdfs://host:4443/projects/events/date=%s/hour=*";
+        Path DAY = new Path("hdfs://host:4443/projects/events/date=2019-04-23");
+        Path HOUR = new Path("hdfs://host:4443/projects/events/date=2019-04-23/hour=00");
+        Path NEXT_DAY = new Path("hdfs://host:4443/projects/events/date=2019-04-24");
+
+        FileSystem fs = Mockito.mock(FileSystem.class);
+        mockFileSystemGlobStatus(fs, new Path(DAYS_PATH.replace("%s", "*")), new FileStatus[] {
+                TestingUtils.directory(DAY.toString()),
+                TestingUtils.directory(NEXT_DAY.toString())
+        });
+        mockFileSystemGlobStatus(fs, new Path(HOURS_PATH.replace("%s", "*")), new FileStatus[] {
+                TestingUtils.directory(HOUR.toString())
+        });
+
+        List<HDFSConfigEntry> entries = new ArrayList<>();
+        // The hourly entry comes first, yet the daily entry deleting its parents recursively covers it.
+        for (String path : new String[] {HOURS_PATH, DAYS_PATH, DAYS_PATH}) {
+            HDFSConfigEntry entry = new HDFSConfigEntry();
+            entry.setPath(path);
+            entry.setRetentionType(HDFSRetentionType.PATH_DATE);
+            entry.setDateFormat("yyyy-MM-dd");
+            entry.setRetentionDuration(14);
+            entry.setGranularity(ChronoUnit.DAYS);
+            entry.setRecursive(path.equals(DAYS_PATH));
+            entries.add(entry);
+        }
+        HDFSConfigList config = new HDFSConfigList();
+        config.setEntries(entries);
+
+        new HDFSDisposal(config, false, fs).run();
+
+        verify(fs, times(1)).delete(DAY, true);
+        verify(fs, times(1)).delete(NEXT_DAY, true);
+        verify(fs, never()).delete(eq(HOUR), anyBoolean());
+        verify(fs, times(2)).delete(any(), anyBoolean());
+    }
+
+    @Test
+    public void testRecursiveEntryDeletesADirectoryAnotherEntryMatchesToo() throws IOException {
+        String FLAT_PATH = "hdfs://host:4443/projects/events/date=%s";
+        String TREE_PATH = "hdfs://host:4443/projects/event?/date=%s";
+        Path DAY = new Path("hdfs://host:4443/projects/events/date=2019-04-23");
+
+        FileSystem fs = Mockito.mock(FileSystem.class);
+        for (String path : new String[] {FLAT_PATH, TREE_PATH}) {
+            mockFileSystemGlobStatus(fs, new Path(path.replace("%s", "*")), new FileStatus[] {
+                    TestingUtils.directory(DAY.toString())
+            });
+        }
+
+        List<HDFSConfigEntry> entries = new ArrayList<>();
+        // The non-recursive entry comes first, but only the recursive one removes the directory if it is not empty.
+        for (String path : new String[] {FLAT_PATH, TREE_PATH}) {
+            HDFSConfigEntry entry = new HDFSConfigEntry();
+            entry.setPath(path);
+            entry.setRetentionType(HDFSRetentionType.PATH_DATE);
+            entry.setDateFormat("yyyy-MM-dd");
+            entry.setRetentionDuration(14);
+            entry.setGranularity(ChronoUnit.DAYS);
+            entry.setRecursive(path.equals(TREE_PATH));
+            entries.add(entry);
+        }
+        HDFSConfigList config = new HDFSConfigList();
+        config.setEntryConcurrency(1);
+        config.setEntries(entries);
+
+        new HDFSDisposal(config, false, fs).run();
+
+        verify(fs, times(1)).delete(DAY, true);
+        verify(fs, never()).delete(DAY, false);
+    }
+
+    @Test
+    public void testManifestLeavesOutPathsAnotherEntryDeletes() throws IOException {
+        String FLAT_PATH = "hdfs://host:4443/projects/events/date=%s";
+        String TREE_PATH = "hdfs://host:4443/projects/event?/date=%s";
+        Path DAY = new Path("hdfs://host:4443/projects/events/date=2019-04-23");
+
+        FileSystem fs = Mockito.mock(FileSystem.class);
+        for (String path : new String[] {FLAT_PATH, TREE_PATH}) {
+            mockFileSystemGlobStatus(fs, new Path(path.replace("%s", "*")), new FileStatus[] {
+                    TestingUtils.directory(DAY.toString())
+            });
+        }
+        java.nio.file.Path file = Files.createTempDirectory("plan").resolve("plan.jsonl.gz");
+        PlanManifest manifest = PlanManifest.create(file);
+
+        List<HDFSConfigEntry> entries = new ArrayList<>();
+        for (String path : new String[] {FLAT_PATH, TREE_PATH}) {
+            HDFSConfigEntry entry = new HDFSConfigEntry();
+            entry.setPath(path);
+            entry.setRetentionType(HDFSRetentionType.PATH_DATE);
+            entry.setDateFormat("yyyy-MM-dd");
+            entry.setRetentionDuration(14);
+            entry.setGranularity(ChronoUnit.DAYS);
+            entry.setRecursive(path.equals(TREE_PATH));
+            entries.add(entry);
+        }
+        HDFSConfigList config = new HDFSConfigList();
+        config.setEntries(entries);
+
+        HDFSDisposal runner = new HDFSDisposal(config, true, fs);
+        runner.setManifest(manifest);
+        runner.run();
+        manifest.close();
+
+        List<String> lines = TestingUtils.readGzipLines(file);
+        Assert.assertEquals(lines.size(), 1);
+        Assert.assertTrue(lines.get(0).contains("\"entry\":\"" + TREE_PATH + "\""), lines.get(0));
+    }
+
+    @Test
+    public void testExpiredPathsAreDeletedOldestFirst() throws IOException {
+        String CONFIG_PATH = "hdfs://host:4443/projects/ordered/date=%s";
+        Path OLDER = new Path("hdfs://host:4443/projects/ordered/date=2019-04-23");
+        Path NEWER = new Path("hdfs://host:4443/projects/ordered/date=2019-04-24");
+        FileSystem fs = Mockito.mock(FileSystem.class);
+        mockFileSystemGlobStatus(fs, new Path(CONFIG_PATH.replace("%s", "*")), new FileStatus[] {
+                TestingUtils.directory(NEWER.toString()),
+                TestingUtils.directory(OLDER.toString())
+        });
+
+        HDFSConfigEntry entry = new HDFSConfigEntry();
+        entry.setPath(CONFIG_PATH);
+        entry.setRetentionType(HDFSRetentionType.PATH_DATE);
+        entry.setDateFormat("yyyy-MM-dd");
+        entry.setRetentionDuration(14);
+        entry.setGranularity(ChronoUnit.DAYS);
+
+        Assert.assertEquals(new HDFSDisposal(null, false, fs).dispose(entry), Arrays.asList(OLDER, NEWER));
+    }
+
+    @Test
+    public void testEntriesFurthestBehindComeFirst() throws IOException {
+        WatermarkStore watermarks = WatermarkStore.open(Files.createTempDirectory("state"), "hdfs_config.yaml");
+        watermarks.advance("/recent/%s", Instant.parse("2019-05-01T00:00:00Z"));
+        watermarks.advance("/behind/%s", Instant.parse("2019-04-01T00:00:00Z"));
+
+        List<HDFSConfigEntry> entries = new ArrayList<>();
+        for (String path : new String[] {"/recent/%s", "/behind/%s", "/short/%s", "/long/%s"}) {
+            HDFSConfigEntry entry = new HDFSConfigEntry();
+            entry.setPath(path);
+            entry.setRetentionDuration(path.equals("/long/%s") ? 90 : 7);
+            entry.setGranularity(ChronoUnit.DAYS);
+            entries.add(entry);
+        }
+        HDFSConfigList config = new HDFSConfigList();
+        config.setEntries(entries);
+        HDFSDisposal runner = new HDFSDisposal(config, false, Mockito.mock(FileSystem.class));
+        runner.setWatermarks(watermarks);
+
+        List<String> order = new ArrayList<>();
+        runner.entriesByPriority().forEach(entry -> order.add(entry.getPath()));
+        Assert.assertEquals(order, Arrays.asList("/long/%s", "/short/%s", "/behind/%s", "/recent/%s"));
+    }
+
+    @Test
+    public void testRunCutShortByItsDeadlineIsResumedByTheNextRun() throws IOException {
+        String CONFIG_PATH = "hdfs://host:4443/projects/deadline/date=%s";
+        String LATE_PATH = "hdfs://host:4443/projects/late/date=%s";
+        Path GLOB_PATH = new Path(CONFIG_PATH.replace("%s", "*"));
+        Path OLDER = new Path("hdfs://host:4443/projects/deadline/date=2019-04-23");
+        Path NEWER = new Path("hdfs://host:4443/projects/deadline/date=2019-04-24");
+        java.nio.file.Path stateDir = Files.createTempDirectory("state");
+
+        FileSystem fs = Mockito.mock(FileSystem.class);
+        // The listing outlasts the deadline of the run.
+        when(fs.globStatus(GLOB_PATH)).thenAnswer(invocation -> {
+            Thread.sleep(300);
+            return new FileStatus[] {
+                    TestingUtils.directory(NEWER.toString()),
+                    TestingUtils.directory(OLDER.toString())
+            };
+        });
+
+        List<HDFSConfigEntry> entries = new ArrayList<>();
+        for (String path : new String[] {CONFIG_PATH, LATE_PATH}) {
+            HDFSConfigEntry entry = new HDFSConfigEntry();
+            entry.setPath(path);
+            entry.setRetentionType(HDFSRetentionType.PATH_DATE);
+            entry.setDateFormat("yyyy-MM-dd");
+            // The late entry has the shorter retention, so it comes second.
+            entry.setRetentionDuration(path.equals(CONFIG_PATH) ? 14 : 7);
+            entry.setGranularity(ChronoUnit.DAYS);
+            entries.add(entry);
+        }
+        HDFSConfigList config = new HDFSConfigList();
+        config.setEntryConcurrency(1);
+        config.setEntries(entries);
+
+        HDFSDisposal cutShort = new HDFSDisposal(config, false, fs);
+        cutShort.setJournal(DeletionJournal.open(stateDir, "hdfs_config.yaml"));
+        cutShort.setDeadline(Instant.now().plusMillis(100));
+        cutShort.run();
+
+        verify(fs, never()).delete(any(), anyBoolean());
+        verify(fs, never()).globStatus(new Path(LATE_PATH.replace("%s", "*")));
+        Assert.assertEquals(
+                cutShort.metrics.counter(DisposalMetrics.HDFS, CONFIG_PATH, DisposalMetrics.Stage.DEFERRED).sum(), 2);
+        Assert.assertTrue(Files.exists(stateDir.resolve("hdfs_config.yaml.journal")));
+
+        when(fs.getFileStatus(OLDER)).thenReturn(TestingUtils.directory(OLDER.toString()));
+        when(fs.getFileStatus(NEWER)).thenReturn(TestingUtils.directory(NEWER.toString()));
+        HDFSDisposal next = new HDFSDisposal(config, false, fs);
+        next.setJournal(DeletionJournal.open(stateDir, "hdfs_config.yaml"));
+        next.run();
+
+        verify(fs, times(1)).globStatus(GLOB_PATH);
+        verify(fs, times(1)).delete(OLDER, false);
+        verify(fs, times(1)).delete(NEWER, false);
+        Assert.assertFalse(Files.exists(stateDir.resolve("hdfs_config.yaml.journal")));
+    }
+
+    @Test
+    public void testEntryWithFailedDeletionsIsNotMarkedDoneInTheJournal() throws IOException {
+        String CONFIG_PATH = "hdfs://host:4443/projects/failing/date=%s";
+        Path GLOB_PATH = new Path(CONFIG_PATH.replace("%s", "*"));
+        Path DELETED = new Path("hdfs://host:4443/projects/failing/date=2019-04-23");
+        Path FORBIDDEN = new Path("hdfs://host:4443/projects/failing/date=2019-04-24");
+        java.nio.file.Path stateDir = Files.createTempDirectory("state");
+
+        FileSystem fs = Mockito.mock(FileSystem.class);
+        when(fs.globStatus(GLOB_PATH)).thenReturn(new FileStatus[] {
+                TestingUtils.directory(DELETED.toString()),
+                TestingUtils.directory(FORBIDDEN.toString())
+        });
+        when(fs.delete(FORBIDDEN, false)).thenThrow(new AccessControlException("denied"));
+
+        HDFSConfigEntry entry = new HDFSConfigEntry();
+        entry.setPath(CONFIG_PATH);
+        entry.setRetentionType(HDFSRetentionType.PATH_DATE);
+        entry.setDateFormat("yyyy-MM-dd");
+        entry.setRetentionDuration(14);
+        entry.setGranularity(ChronoUnit.DAYS);
+        HDFSConfigList config = new HDFSConfigList();
+        config.setEntries(Collections.singletonList(entry));
+
+        // The process dies before the journal of the run is completed.
+        DeletionJournal journal = Mockito.spy(DeletionJournal.open(stateDir, "hdfs_config.yaml"));
+        doAnswer(invocation -> {
+            ((DeletionJournal) invocation.getMock()).close();
+            return null;
+        }).when(journal).complete();
+        HDFSDisposal crashed = new HDFSDisposal(config, false, fs);
+        crashed.setJournal(journal);
+        crashed.run();
+
+        DeletionJournal.Recovered recovered =
+                DeletionJournal.open(stateDir, "hdfs_config.yaml").recovered(CONFIG_PATH);
+        Assert.assertTrue(recovered.isListed());
+        Assert.assertFalse(recovered.isDone());
+        Assert.assertEquals(recovered.getPending(), Collections.singleton(FORBIDDEN.toString()));
+    }
+
+    @DataProvider(name = "undatedPlanTargets")
+    public static Object[][] undatedPlanTargets() {
+        return new Object[][] {
+                // Only date-tree listings plan whole expired years, whose paths hold no full date.
+                {HDFSListingMode.DATE_TREE, 1},
+                {HDFSListingMode.GLOB, 0}
+        };
+    }
+
+    @Test(dataProvider = "undatedPlanTargets")
+    public void testPlanTargetsWithoutAFullDateAreOnlyTrustedFromDateTrees(HDFSListingMode listingMode, int deletes)
+            throws IOException {
+        String CONFIG_PATH = "hdfs://host:4443/daily/%s";
+        Path YEAR = new Path("hdfs://host:4443/daily/2019");
+
+        FileSystem fs = Mockito.mock(FileSystem.class);
+        when(fs.getFileStatus(YEAR)).thenReturn(TestingUtils.directory(YEAR.toString()));
+
+        java.nio.file.Path file = Files.createTempDirectory("plan").resolve("plan.jsonl.gz");
+        try (PlanManifest manifest = PlanManifest.create(file)) {
+            manifest.add("hdfs", CONFIG_PATH, YEAR.toString(), CompiledDatePattern.NO_MATCH, "PATH_DATE");
+        }
+
+        HDFSConfigEntry entry = new HDFSConfigEntry();
+        entry.setPath(CONFIG_PATH);
+        entry.setRetentionType(HDFSRetentionType.PATH_DATE);
+        entry.setListingMode(listingMode);
+        entry.setDateFormat("yyyy/MM/dd");
+        entry.setRetentionDuration(14);
+        entry.setGranularity(ChronoUnit.DAYS);
+        entry.setRecursive(true);
+        HDFSConfigList config = new HDFSConfigList();
+        config.setEntries(Collections.singletonList(entry));
+
+        new HDFSDisposal(config, false, fs).execute(file);
+
+        verify(fs, times(deletes)).delete(YEAR, true);
+    }
+
+    @Test
+    public void testExecutesAPlanWithoutListing() throws IOException {
+        String CONFIG_PATH = "hdfs://host:4443/scratch/*";
+        Path EXPIRED = new Path("hdfs://host:4443/scratch/old.log");
+        Path REWRITTEN = new Path("hdfs://host:4443/scratch/rewritten.log");
+        Path GONE = new Path("hdfs://host:4443/scratch/gone.log");
+        Path UNKNOWN = new Path("hdfs://host:4443/elsewhere/old.log");
+        long old = Instant.now().minus(30, ChronoUnit.DAYS).toEpochMilli();
+
+        FileSystem fs = Mockito.mock(FileSystem.class);
+        when(fs.getFileStatus(EXPIRED)).thenReturn(new FileStatus(1, false, 3, 128, old, EXPIRED));
+        when(fs.getFileStatus(REWRITTEN)).thenReturn(
+                new FileStatus(1, false, 3, 128, System.currentTimeMillis(), REWRITTEN));
+        when(fs.getFileStatus(GONE)).thenThrow(new FileNotFoundException(GONE.toString()));
+
+        java.nio.file.Path file = Files.createTempDirectory("plan").resolve("plan.jsonl.gz");
+        try (PlanManifest manifest = PlanManifest.create(file)) {
+            for (Path path : new Path[] {EXPIRED, REWRITTEN, GONE}) {
+                manifest.add("hdfs", CONFIG_PATH, path.toString(), old / 1000, "MODIFICATION_TIME");
+            }
+            manifest.add("hdfs", "hdfs://host:4443/elsewhere/*", UNKNOWN.toString(), old / 1000, "removed entry");
+            manifest.add("hive", CONFIG_PATH, EXPIRED.toString(), old / 1000, "other backend");
+        }
+
+        HDFSConfigEntry entry = new HDFSConfigEntry();
+        entry.setPath(CONFIG_PATH);
+        entry.setRetentionType(HDFSRetentionType.MODIFICATION_TIME);
+        entry.setRetentionDuration(7);
+        entry.setGranularity(ChronoUnit.DAYS);
+        HDFSConfigList config = new HDFSConfigList();
+        config.setEntries(Collections.singletonList(entry));
+
+        HDFSDisposal runner = new HDFSDisposal(config, false, fs);
+        runner.execute(file);
+
+        verify(fs, times(1)).delete(EXPIRED, false);
+        verify(fs, never()).delete(eq(REWRITTEN), anyBoolean());
+        verify(fs, never()).delete(eq(GONE), anyBoolean());
+        verify(fs, never()).delete(eq(UNKNOWN), anyBoolean());
+        verify(fs, never()).globStatus(any());
+        verify(fs, never()).listStatusIterator(any());
+        // A path already gone counts as deleted.
+        Assert.assertEquals(
+                runner.metrics.counter(DisposalMetrics.HDFS, CONFIG_PATH, DisposalMetrics.Stage.DELETED).sum(), 2);
+    }
 }
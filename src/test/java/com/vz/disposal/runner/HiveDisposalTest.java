@@ -5,7 +5,21 @@ package com.vz.disposal.runner;
 
 import com.vz.disposal.config.HiveConfigEntry;
 import com.vz.disposal.config.HiveConfigList;
+import com.vz.disposal.config.HiveDropMode;
+import com.vz.disposal.config.HiveListingMode;
+import com.vz.disposal.config.HiveMetastoreConfig;
+import com.vz.disposal.metrics.DisposalMetrics;
+import com.vz.disposal.state.DeletionJournal;
+import com.vz.disposal.state.PlanManifest;
+import com.vz.disposal.state.WatermarkStore;
+import com.vz.disposal.utils.CompiledDatePattern;
 import com.vz.disposal.utils.Utils;
+import org.apache.hadoop.hive.metastore.IMetaStoreClient;
+import org.apache.hadoop.hive.metastore.PartitionDropOptions;
+import org.apache.hadoop.hive.metastore.api.FieldSchema;
+import org.apache.hadoop.hive.metastore.api.Table;
+import org.apache.hadoop.hive.metastore.utils.ObjectPair;
+import org.apache.hadoop.hive.ql.exec.SerializationUtilities;
 import org.apache.hive.hcatalog.api.HCatClient;
 import org.apache.hive.hcatalog.api.HCatDatabase;
 import org.apache.hive.hcatalog.api.HCatPartition;
@@ -18,13 +32,20 @@ import org.testng.annotations.DataProvider;
 import org.testng.annotations.ExpectedExceptions;
 import org.testng.annotations.Test;
 
+import java.nio.file.Files;
 import java.text.SimpleDateFormat;
 import java.time.*;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
-
-import static com.vz.disposal.runner.HiveDisposal.verifyDatePartitionExists;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.atLeast;
 import static org.mockito.Mockito.atMost;
@@ -58,42 +79,6 @@ public class HiveDisposalTest {
         };
     }
 
-    @DataProvider(name = "schemata")
-    public Object[][] schemata() throws HCatException {
-
-        HCatClient client = Mockito.mock(HCatClient.class);
-        HCatTable  table  = Mockito.mock(HCatTable.class);
-        List<HCatFieldSchema> mockColumns = new ArrayList<>();
-        HCatFieldSchema column1  = Mockito.mock(HCatFieldSchema.class);
-        HCatFieldSchema column2  = Mockito.mock(HCatFieldSchema.class);
-
-        when(column1.getName()).thenReturn("trans_dt");
-        when(column2.getName()).thenReturn("ticker");
-
-        mockColumns.add(column1);
-        mockColumns.add(column2);
-
-        HiveConfigEntry configEntryMock1 = Mockito.mock(HiveConfigEntry.class);
-        when(configEntryMock1.getDatabase()).thenReturn("whatever");
-        when(configEntryMock1.getTable()).thenReturn("whatever");
-        when(configEntryMock1.getPartitionFilterKey()).thenReturn("trans_dt");
-
-        HiveConfigEntry configEntryMock2 = Mockito.mock(HiveConfigEntry.class);
-        when(configEntryMock2.getDatabase()).thenReturn("whatever");
-        when(configEntryMock2.getTable()).thenReturn("whatever");
-        when(configEntryMock2.getPartitionFilterKey()).thenReturn("commit_time");
-
-        when(client.getTable(configEntryMock1.getDatabase(), configEntryMock1.getTable())).thenReturn(table);
-        when(client.getTable(configEntryMock2.getDatabase(), configEntryMock2.getTable())).thenReturn(table);
-
-        when(table.getPartCols()).thenReturn(mockColumns);
-
-        return new Object[][] {
-                {client, configEntryMock1, true},
-                {client, configEntryMock2, false}
-        };
-    }
-
     @Test(dataProvider = "hiveEntries")
     public void testHiveDisposal(
             boolean dryRun,
@@ -229,18 +214,463 @@ public class HiveDisposalTest {
          }                
     }
 
-    @Test(dataProvider = "schemata")
-    public void testVerifyDatePartitionExists(
-            HCatClient client,
-            HiveConfigEntry mockConfigEntry,
-            boolean expected) {
-        Assert.assertEquals(verifyDatePartitionExists(client, mockConfigEntry), expected);
-    }
-
     private static String formatInstant(Instant instantToFormat, String pattern) {
         DateTimeFormatter dtf = DateTimeFormatter.ofPattern(pattern)
                 .withZone(ZoneOffset.UTC);
 
         return dtf.format(instantToFormat);
     }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testUnknownMetastoreIsRejected() {
+        HiveConfigEntry entry = new HiveConfigEntry();
+        entry.setDatabase("db");
+        entry.setTable("table");
+        entry.setPartitionFilterKey("key");
+        entry.setDateFormat("yyyy-MM-dd");
+        entry.setValidationEnabled(false);
+        entry.setMetastore("nowhere");
+
+        HiveMetastoreConfig known = new HiveMetastoreConfig();
+        known.setName("cluster2");
+        known.setUris("thrift://metastore2:9083");
+        HiveConfigList conf = new HiveConfigList();
+        conf.setEntries(Collections.singletonList(entry));
+        conf.setMetastores(Collections.singletonList(known));
+
+        new HiveDisposal(conf, true, Mockito.mock(HCatClient.class));
+    }
+
+    @Test
+    public void testPooledClientsHaveConnectionsOfTheirOwn() throws Exception {
+        java.nio.file.Path dir = Files.createTempDirectory("metastore");
+        System.setProperty("derby.stream.error.file", dir.resolve("derby.log").toString());
+        HiveMetastoreConfig embedded = new HiveMetastoreConfig();
+        embedded.setName("embedded");
+        embedded.setUris("");
+        embedded.setClientPoolSize(2);
+        embedded.getProperties().put("javax.jdo.option.ConnectionURL",
+                "jdbc:derby:;databaseName=" + dir.resolve("metastore_db") + ";create=true");
+        embedded.getProperties().put("datanucleus.schema.autoCreateAll", "true");
+        embedded.getProperties().put("hive.metastore.schema.verification", "false");
+        embedded.getProperties().put("hive.metastore.warehouse.dir", dir.resolve("warehouse").toUri().toString());
+
+        HiveConfigEntry entry = new HiveConfigEntry();
+        entry.setDatabase("db");
+        entry.setTable("table");
+        entry.setPartitionFilterKey("key");
+        entry.setDateFormat("yyyy-MM-dd");
+        entry.setValidationEnabled(false);
+        entry.setMetastore("embedded");
+        HiveConfigList conf = new HiveConfigList();
+        conf.setEntries(Collections.singletonList(entry));
+        conf.setMetastores(Collections.singletonList(embedded));
+
+        // Both clients are borrowed on the same thread, where HCatalog's client cache would hand out the same one.
+        java.lang.reflect.Field connection = Class.forName("org.apache.hive.hcatalog.api.HCatClientHMSImpl")
+                .getDeclaredField("hmsClient");
+        connection.setAccessible(true);
+        try (HiveDisposal runner = new HiveDisposal(conf, true)) {
+            MetastoreClientPool pool = runner.clientsFor(entry);
+            pool.withClient(first -> pool.withClient(second -> {
+                Assert.assertNotSame(second, first);
+                Assert.assertNotSame(connection.get(second), connection.get(first));
+                return null;
+            }));
+        }
+    }
+
+    @Test
+    public void testIncrementalRunOnlyListsNewlyExpiredPartitions() throws Exception {
+        Instant beginningOfRetention = Utils.getBeginningOfRetention(Disposal.TIME_OF_RUN, 14, ChronoUnit.DAYS);
+        Instant cutoff = Utils.floorTo(beginningOfRetention, ChronoUnit.DAYS);
+        Instant watermark = cutoff.minus(3, ChronoUnit.DAYS);
+        String filter = "key >= \"" + formatInstant(watermark, "yyyy-MM-dd") + "\" and key < \"" +
+                formatInstant(beginningOfRetention, "yyyy-MM-dd") + "\"";
+
+        HCatClient client = Mockito.mock(HCatClient.class);
+        HCatPartition partition = Mockito.mock(HCatPartition.class);
+        LinkedHashMap<String, String> keys = new LinkedHashMap<>();
+        keys.put("key", formatInstant(cutoff.minus(1, ChronoUnit.DAYS), "yyyy-MM-dd"));
+        when(partition.getPartitionKeyValMap()).thenReturn(keys);
+        when(client.listPartitionsByFilter("db", "table", filter)).thenReturn(Collections.singletonList(partition));
+
+        HiveConfigEntry entry = new HiveConfigEntry();
+        entry.setDatabase("db");
+        entry.setTable("table");
+        entry.setPartitionFilterKey("key");
+        entry.setDeleteExternalData(false);
+        entry.setEnableHivePartitionFilter(true);
+        entry.setRetentionDuration(14);
+        entry.setGranularity(ChronoUnit.DAYS);
+        entry.setDateFormat("yyyy-MM-dd");
+        HiveConfigList conf = new HiveConfigList();
+        conf.setEntries(new ArrayList<>());
+
+        WatermarkStore watermarks = WatermarkStore.open(Files.createTempDirectory("state"), "hive_config.yaml");
+        watermarks.advance("db.table", watermark);
+        HiveDisposal runner = new HiveDisposal(conf, false, client);
+        runner.setWatermarks(watermarks);
+
+        Assert.assertEquals(runner.dispose(entry), Collections.singletonList(keys));
+        Assert.assertEquals(watermarks.get("db.table"), cutoff);
+
+        // The cutoff has not moved since, so the second run does not list anything.
+        Assert.assertTrue(runner.dispose(entry).isEmpty());
+        verify(client, Mockito.times(1)).listPartitionsByFilter(eq("db"), eq("table"), Mockito.anyString());
+        verify(client, Mockito.times(1)).dropPartitions(eq("db"), eq("table"), eq(keys), eq(true), eq(false));
+    }
+
+    @DataProvider(name = "dropModes")
+    public Object[][] dropModes() {
+        return new Object[][] {
+                // mode, pattern, batch size, expected calls, expected last expression
+                {HiveDropMode.RANGE, "yyyy-MM-dd", 100, 1, "(key <= '%s')"},
+                {HiveDropMode.BATCH, "yyyy-MM-dd", 2, 3, "(key = '%s')"},
+                // dd-MM-yyyy dates do not sort as text, so a range falls back to batches.
+                {HiveDropMode.RANGE, "dd-MM-yyyy", 100, 1, null},
+        };
+    }
+
+    @Test(dataProvider = "dropModes")
+    public void testDropsByExpression(HiveDropMode mode, String pattern, int batchSize, int expectedCalls,
+                                      String lastExpression) throws Exception {
+        Instant beginningOfRetention = Utils.getBeginningOfRetention(Disposal.TIME_OF_RUN, 14, ChronoUnit.DAYS);
+        List<HCatPartition> partitions = new ArrayList<>();
+        List<String> dates = new ArrayList<>();
+        for (int day = 1; day <= 5; day++) {
+            String date = formatInstant(beginningOfRetention.minus(day, ChronoUnit.DAYS), pattern);
+            dates.add(date);
+            HCatPartition partition = Mockito.mock(HCatPartition.class);
+            LinkedHashMap<String, String> keys = new LinkedHashMap<>();
+            keys.put("key", date);
+            when(partition.getPartitionKeyValMap()).thenReturn(keys);
+            partitions.add(partition);
+        }
+        HCatClient client = Mockito.mock(HCatClient.class);
+        when(client.getPartitions("db", "table")).thenReturn(partitions);
+
+        Table table = new Table();
+        table.setDbName("db");
+        table.setTableName("table");
+        table.setPartitionKeys(Collections.singletonList(new FieldSchema("key", "string", null)));
+        IMetaStoreClient metaStoreClient = Mockito.mock(IMetaStoreClient.class);
+        when(metaStoreClient.getTable("db", "table")).thenReturn(table);
+        List<String> expressions = new ArrayList<>();
+        when(metaStoreClient.dropPartitions(eq("db"), eq("table"), any(List.class), any(PartitionDropOptions.class)))
+                .thenAnswer(invocation -> {
+                    List<ObjectPair<Integer, byte[]>> exprs = (List<ObjectPair<Integer, byte[]>>)
+                            invocation.getArguments()[2];
+                    expressions.add(SerializationUtilities.deserializeExpressionFromKryo(
+                            exprs.get(0).getSecond()).getExprString());
+                    // Asking for the dropped partitions would send back every one of them.
+                    Assert.assertFalse(((PartitionDropOptions) invocation.getArguments()[3]).returnResults);
+                    return null;
+                });
+
+        HiveConfigEntry entry = new HiveConfigEntry();
+        entry.setDatabase("db");
+        entry.setTable("table");
+        entry.setPartitionFilterKey("key");
+        entry.setDeleteExternalData(false);
+        entry.setRetentionDuration(14);
+        entry.setGranularity(ChronoUnit.DAYS);
+        entry.setDateFormat(pattern);
+        entry.setDropMode(mode);
+        entry.setDropBatchSize(batchSize);
+        HiveConfigList conf = new HiveConfigList();
+        conf.setEntries(new ArrayList<>());
+
+        HiveDisposal runner = new HiveDisposal(conf, false, client, metaStoreClient);
+        LongAdder deleted = runner.metrics.counter(DisposalMetrics.HIVE, "db.table", DisposalMetrics.Stage.DELETED);
+        long deletedBefore = deleted.sum();
+        Assert.assertEquals(runner.dispose(entry).size(), 5);
+
+        verify(client, Mockito.never()).dropPartitions(anyString(), anyString(), any(Map.class), eq(true), eq(false));
+        Assert.assertEquals(deleted.sum() - deletedBefore, 5);
+        Assert.assertEquals(expressions.size(), expectedCalls);
+        if (lastExpression != null) {
+            Collections.sort(dates);
+            Assert.assertEquals(expressions.get(expressions.size() - 1),
+                    String.format(lastExpression, dates.get(dates.size() - 1)));
+        }
+    }
+
+    @Test
+    public void testDropsOneDateAtATimeWithoutMetaStoreClient() throws Exception {
+        Instant beginningOfRetention = Utils.getBeginningOfRetention(Disposal.TIME_OF_RUN, 14, ChronoUnit.DAYS);
+        HCatPartition partition = Mockito.mock(HCatPartition.class);
+        LinkedHashMap<String, String> keys = new LinkedHashMap<>();
+        keys.put("key", formatInstant(beginningOfRetention.minus(1, ChronoUnit.DAYS), "yyyy-MM-dd"));
+        when(partition.getPartitionKeyValMap()).thenReturn(keys);
+        HCatClient client = Mockito.mock(HCatClient.class);
+        when(client.getPartitions("db", "table")).thenReturn(Collections.singletonList(partition));
+
+        HiveConfigEntry entry = new HiveConfigEntry();
+        entry.setDatabase("db");
+        entry.setTable("table");
+        entry.setPartitionFilterKey("key");
+        entry.setDeleteExternalData(false);
+        entry.setRetentionDuration(14);
+        entry.setGranularity(ChronoUnit.DAYS);
+        entry.setDateFormat("yyyy-MM-dd");
+        entry.setDropMode(HiveDropMode.RANGE);
+        HiveConfigList conf = new HiveConfigList();
+        conf.setEntries(new ArrayList<>());
+
+        new HiveDisposal(conf, false, client).dispose(entry);
+        verify(client, Mockito.times(1)).dropPartitions(eq("db"), eq("table"), eq(keys), eq(true), eq(false));
+    }
+
+    private static final Pattern RANGE_FILTER = Pattern.compile("(?:key >= \"([^\"]*)\" and )?key < \"([^\"]*)\"");
+
+    private static List<String> datesMatching(List<String> dates, String filter) {
+        Matcher matcher = RANGE_FILTER.matcher(filter);
+        Assert.assertTrue(matcher.matches(), filter);
+        return dates.stream()
+                .filter(date -> matcher.group(1) == null || date.compareTo(matcher.group(1)) >= 0)
+                .filter(date -> date.compareTo(matcher.group(2)) < 0)
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void testPagedListingStaysWithinThePageSize() throws Exception {
+        Instant beginningOfRetention = Utils.getBeginningOfRetention(Disposal.TIME_OF_RUN, 14, ChronoUnit.DAYS);
+        List<String> dates = new ArrayList<>();
+        for (int day = -5; day < 40; day++) {
+            dates.add(formatInstant(beginningOfRetention.minus(day, ChronoUnit.DAYS), "yyyy-MM-dd"));
+        }
+
+        HCatClient client = Mockito.mock(HCatClient.class);
+        AtomicInteger largestPage = new AtomicInteger();
+        when(client.listPartitionsByFilter(eq("db"), eq("table"), anyString())).thenAnswer(invocation -> {
+            List<HCatPartition> page = new ArrayList<>();
+            for (String date : datesMatching(dates, (String) invocation.getArguments()[2])) {
+                HCatPartition partition = Mockito.mock(HCatPartition.class);
+                LinkedHashMap<String, String> keys = new LinkedHashMap<>();
+                keys.put("key", date);
+                when(partition.getPartitionKeyValMap()).thenReturn(keys);
+                page.add(partition);
+            }
+            largestPage.accumulateAndGet(page.size(), Math::max);
+            return page;
+        });
+        IMetaStoreClient metaStoreClient = Mockito.mock(IMetaStoreClient.class);
+        when(metaStoreClient.getNumPartitionsByFilter(eq("db"), eq("table"), anyString())).thenAnswer(invocation ->
+                datesMatching(dates, (String) invocation.getArguments()[2]).size());
+
+        HiveConfigEntry entry = new HiveConfigEntry();
+        entry.setDatabase("db");
+        entry.setTable("table");
+        entry.setPartitionFilterKey("key");
+        entry.setDeleteExternalData(false);
+        entry.setRetentionDuration(14);
+        entry.setGranularity(ChronoUnit.DAYS);
+        entry.setDateFormat("yyyy-MM-dd");
+        entry.setListingMode(HiveListingMode.PAGED);
+        entry.setListingWindow(10);
+        entry.setListingPageSize(4);
+        entry.setListingConcurrency(2);
+        HiveConfigList conf = new HiveConfigList();
+        conf.setEntries(new ArrayList<>());
+
+        new HiveDisposal(conf, false, client, metaStoreClient).dispose(entry);
+
+        verify(client, Mockito.never()).getPartitions(anyString(), anyString());
+        Assert.assertTrue(largestPage.get() <= 4, "largest page: " + largestPage.get());
+        // The dates from the beginning of retention back are expired, the five after it are not.
+        for (String date : dates) {
+            boolean expired = date.compareTo(formatInstant(beginningOfRetention, "yyyy-MM-dd")) <= 0;
+            verify(client, Mockito.times(expired ? 1 : 0)).dropPartitions(
+                    eq("db"), eq("table"), eq(Collections.singletonMap("key", date)), eq(true), eq(false));
+        }
+    }
+
+    @DataProvider(name = "nameListingFormats")
+    public Object[][] nameListingFormats() {
+        return new Object[][] {
+                {"yyyyMMddHH", ChronoUnit.HOURS},
+                // Does not sort as text, so every date is parsed.
+                {"dd-MM-yyyy", ChronoUnit.DAYS},
+        };
+    }
+
+    @Test(dataProvider = "nameListingFormats")
+    public void testListsPartitionNamesOnly(String pattern, ChronoUnit unit) throws Exception {
+        Instant beginningOfRetention = Utils.getBeginningOfRetention(Disposal.TIME_OF_RUN, 14, ChronoUnit.DAYS);
+        List<String> names = new ArrayList<>();
+        List<Map<String, String>> expected = new ArrayList<>();
+        for (int i = -3; i <= 3; i++) {
+            Instant date = Utils.floorTo(beginningOfRetention, unit).minus(i, unit);
+            String name = "key=" + formatInstant(date, pattern) + "/region=us";
+            names.add(name);
+            if (i >= 0) {
+                LinkedHashMap<String, String> spec = new LinkedHashMap<>();
+                spec.put("key", formatInstant(date, pattern));
+                spec.put("region", "us");
+                expected.add(spec);
+            }
+        }
+        HCatClient client = Mockito.mock(HCatClient.class);
+        IMetaStoreClient metaStoreClient = Mockito.mock(IMetaStoreClient.class);
+        when(metaStoreClient.listPartitionNames("db", "table", (short) -1)).thenReturn(names);
+
+        HiveConfigEntry entry = new HiveConfigEntry();
+        entry.setDatabase("db");
+        entry.setTable("table");
+        entry.setPartitionFilterKey("key");
+        entry.setDeleteExternalData(false);
+        entry.setRetentionDuration(14);
+        entry.setGranularity(ChronoUnit.DAYS);
+        entry.setDateFormat(pattern);
+        entry.setListingMode(HiveListingMode.NAMES);
+        HiveConfigList conf = new HiveConfigList();
+        conf.setEntries(new ArrayList<>());
+
+        Assert.assertEquals(new HiveDisposal(conf, true, client, metaStoreClient).dispose(entry), expected);
+        verify(client, Mockito.never()).getPartitions(anyString(), anyString());
+        verify(client, Mockito.never()).listPartitionsByFilter(anyString(), anyString(), anyString());
+    }
+
+    @Test
+    public void testExecutesAPlanDroppingOnlyPartitionsStillExpired() throws Exception {
+        Instant beginningOfRetention = Utils.getBeginningOfRetention(Disposal.TIME_OF_RUN, 14, ChronoUnit.DAYS);
+        String expired = "key=" + formatInstant(beginningOfRetention.minus(1, ChronoUnit.DAYS), "yyyy-MM-dd") +
+                "/region=us";
+        String retained = "key=" + formatInstant(beginningOfRetention.plus(1, ChronoUnit.DAYS), "yyyy-MM-dd") +
+                "/region=us";
+
+        HiveConfigEntry entry = new HiveConfigEntry();
+        entry.setDatabase("db");
+        entry.setTable("table");
+        entry.setPartitionFilterKey("key");
+        entry.setValidationEnabled(false);
+        entry.setDeleteExternalData(false);
+        // The retention has grown since the plan was made.
+        entry.setRetentionDuration(14);
+        entry.setGranularity(ChronoUnit.DAYS);
+        entry.setDateFormat("yyyy-MM-dd");
+        HiveConfigList conf = new HiveConfigList();
+        conf.setEntries(new ArrayList<>(Collections.singletonList(entry)));
+
+        java.nio.file.Path file = Files.createTempDirectory("plan").resolve("plan.jsonl.gz");
+        try (PlanManifest manifest = PlanManifest.create(file)) {
+            manifest.add("hive", "db.table", expired, CompiledDatePattern.NO_MATCH, "partition date");
+            manifest.add("hive", "db.table", retained, CompiledDatePattern.NO_MATCH, "partition date");
+        }
+
+        HCatClient client = Mockito.mock(HCatClient.class);
+        new HiveDisposal(conf, false, client).execute(file);
+
+        Map<String, String> expiredSpec = new LinkedHashMap<>();
+        expiredSpec.put("key", expired.substring("key=".length(), expired.indexOf('/')));
+        expiredSpec.put("region", "us");
+        verify(client, Mockito.times(1)).dropPartitions(eq("db"), eq("table"), any(Map.class), eq(true), eq(false));
+        verify(client, Mockito.times(1)).dropPartitions(eq("db"), eq("table"), eq(expiredSpec), eq(true), eq(false));
+        verify(client, Mockito.never()).getPartitions(anyString(), anyString());
+    }
+
+    @Test
+    public void testExecutesAPlanAPageAtATime() throws Exception {
+        Instant beginningOfRetention = Utils.getBeginningOfRetention(Disposal.TIME_OF_RUN, 14, ChronoUnit.DAYS);
+        HiveConfigEntry entry = new HiveConfigEntry();
+        entry.setDatabase("db");
+        entry.setTable("table");
+        entry.setPartitionFilterKey("key");
+        entry.setValidationEnabled(false);
+        entry.setDeleteExternalData(false);
+        entry.setRetentionDuration(14);
+        entry.setGranularity(ChronoUnit.DAYS);
+        entry.setDateFormat("yyyy-MM-dd");
+        entry.setListingPageSize(2);
+        HiveConfigList conf = new HiveConfigList();
+        conf.setEntries(new ArrayList<>(Collections.singletonList(entry)));
+
+        java.nio.file.Path file = Files.createTempDirectory("plan").resolve("plan.jsonl.gz");
+        try (PlanManifest manifest = PlanManifest.create(file)) {
+            for (int day = 1; day <= 5; day++) {
+                String date = formatInstant(beginningOfRetention.minus(day, ChronoUnit.DAYS), "yyyy-MM-dd");
+                manifest.add("hive", "db.table", "key=" + date, CompiledDatePattern.NO_MATCH, "partition date");
+            }
+        }
+
+        HCatClient client = Mockito.mock(HCatClient.class);
+        new HiveDisposal(conf, false, client).execute(file);
+
+        verify(client, Mockito.times(5)).dropPartitions(eq("db"), eq("table"), any(Map.class), eq(true), eq(false));
+    }
+
+    @Test
+    public void testResumeDropsOnlyJournaledPartitionsStillExpired() throws Exception {
+        Instant beginningOfRetention = Utils.getBeginningOfRetention(Disposal.TIME_OF_RUN, 14, ChronoUnit.DAYS);
+        String expiredDate = formatInstant(beginningOfRetention.minus(1, ChronoUnit.DAYS), "yyyy-MM-dd");
+        String retainedDate = formatInstant(beginningOfRetention.plus(1, ChronoUnit.DAYS), "yyyy-MM-dd");
+
+        HiveConfigEntry entry = new HiveConfigEntry();
+        entry.setDatabase("db");
+        entry.setTable("table");
+        entry.setPartitionFilterKey("key");
+        entry.setValidationEnabled(false);
+        entry.setDeleteExternalData(false);
+        // The retention has grown since the interrupted run listed its partitions.
+        entry.setRetentionDuration(14);
+        entry.setGranularity(ChronoUnit.DAYS);
+        entry.setDateFormat("yyyy-MM-dd");
+        HiveConfigList conf = new HiveConfigList();
+        conf.setEntries(new ArrayList<>(Collections.singletonList(entry)));
+
+        java.nio.file.Path stateDir = Files.createTempDirectory("state");
+        DeletionJournal interrupted = DeletionJournal.open(stateDir, "hive_config.yaml");
+        interrupted.plan("db.table", "key=" + expiredDate);
+        interrupted.plan("db.table", "key=" + retainedDate);
+        interrupted.listed("db.table");
+        interrupted.close();
+
+        HCatClient client = Mockito.mock(HCatClient.class);
+        HiveDisposal runner = new HiveDisposal(conf, false, client);
+        runner.setJournal(DeletionJournal.open(stateDir, "hive_config.yaml"));
+        runner.run();
+
+        verify(client, Mockito.times(1)).dropPartitions(eq("db"), eq("table"), any(Map.class), eq(true), eq(false));
+        verify(client, Mockito.times(1)).dropPartitions(eq("db"), eq("table"),
+                eq(Collections.singletonMap("key", expiredDate)), eq(true), eq(false));
+        verify(client, Mockito.never()).getPartitions(anyString(), anyString());
+    }
+
+    @Test
+    public void testMetricsAreKeyedByEntry() throws Exception {
+        Instant beginningOfRetention = Utils.getBeginningOfRetention(Disposal.TIME_OF_RUN, 14, ChronoUnit.DAYS);
+        String expired = "key=" + formatInstant(beginningOfRetention.minus(1, ChronoUnit.DAYS), "yyyy-MM-dd");
+
+        HiveConfigEntry entry = new HiveConfigEntry();
+        entry.setDatabase("db");
+        entry.setTable("table");
+        entry.setPartitionFilterKey("key");
+        entry.setValidationEnabled(false);
+        entry.setDeleteExternalData(false);
+        entry.setRetentionDuration(14);
+        entry.setGranularity(ChronoUnit.DAYS);
+        entry.setDateFormat("yyyy-MM-dd");
+        entry.setMetastore("cluster2");
+        HiveMetastoreConfig cluster2 = new HiveMetastoreConfig();
+        cluster2.setName("cluster2");
+        cluster2.setUris("thrift://metastore2:9083");
+        HiveConfigList conf = new HiveConfigList();
+        conf.setEntries(new ArrayList<>(Collections.singletonList(entry)));
+        conf.setMetastores(Collections.singletonList(cluster2));
+
+        java.nio.file.Path file = Files.createTempDirectory("plan").resolve("plan.jsonl.gz");
+        try (PlanManifest manifest = PlanManifest.create(file)) {
+            manifest.add("hive", "cluster2/db.table", expired, CompiledDatePattern.NO_MATCH, "partition date");
+        }
+
+        HiveDisposal runner = new HiveDisposal(conf, false, Mockito.mock(HCatClient.class));
+        // Metrics are shared by every disposal in the JVM.
+        LongAdder deleted = runner.metrics.counter(DisposalMetrics.HIVE, "cluster2/db.table",
+                DisposalMetrics.Stage.DELETED);
+        long before = deleted.sum();
+        runner.execute(file);
+
+        Assert.assertEquals(deleted.sum() - before, 1);
+    }
 }
@@ -0,0 +1,61 @@
+// Copyright Verizon Media
+// Licensed under the terms of the Apache 2.0 license. Please see LICENSE file in the project root for terms.
+
+package com.vz.disposal.runner;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class IOExecutorTest {
+
+    @Test
+    public void testRunsAsManyBlockingTasksAsConfiguredRegardlessOfCores() {
+        int concurrency = Runtime.getRuntime().availableProcessors() * 4;
+        List<Integer> tasks = IntStream.range(0, concurrency * 2).boxed().collect(Collectors.toList());
+        CountDownLatch allStarted = new CountDownLatch(concurrency);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        try (IOExecutor executor = new IOExecutor("test", concurrency)) {
+            executor.forEach(tasks, task -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                allStarted.countDown();
+                try {
+                    // Stands in for a namenode call: only returns once every thread is blocked at the same time.
+                    allStarted.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+            });
+        }
+
+        Assert.assertEquals(allStarted.getCount(), 0);
+        Assert.assertEquals(maxRunning.get(), concurrency);
+    }
+
+    @Test
+    public void testRunsEveryTaskBeforeRethrowingAFailure() {
+        List<Integer> done = new ArrayList<>();
+        try (IOExecutor executor = new IOExecutor("test", 1)) {
+            executor.forEach(IntStream.range(0, 4).boxed().collect(Collectors.toList()), task -> {
+                if (task == 1) {
+                    throw new IllegalStateException("task " + task);
+                }
+                done.add(task);
+            });
+            Assert.fail("Expected the failure of task 1");
+        } catch (IllegalStateException e) {
+            Assert.assertEquals(e.getMessage(), "task 1");
+        }
+        Assert.assertEquals(done.size(), 3);
+    }
+}
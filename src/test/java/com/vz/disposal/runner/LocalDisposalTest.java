@@ -0,0 +1,140 @@
+// Copyright Verizon Media
+// Licensed under the terms of the Apache 2.0 license. Please see LICENSE file in the project root for terms.
+
+package com.vz.disposal.runner;
+
+import com.vz.disposal.config.LocalConfigEntry;
+import com.vz.disposal.config.LocalConfigList;
+import com.vz.disposal.config.LocalRetentionType;
+import com.vz.disposal.metrics.DisposalMetrics;
+import com.vz.disposal.state.PlanManifest;
+import com.vz.disposal.utils.TestingUtils;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.List;
+
+public class LocalDisposalTest {
+
+    @Test
+    public void testDisposesOfExpiredPathDates() throws IOException {
+        Path root = Files.createTempDirectory("spool");
+        Path expired = Files.createDirectories(root.resolve("date=2019-04-23"));
+        Files.createFile(expired.resolve("part-0"));
+        Files.createFile(Files.createDirectories(expired.resolve("nested")).resolve("part-1"));
+        Path recent = Files.createDirectories(root.resolve("date=" + LocalDate.now(ZoneOffset.UTC)));
+        Path undated = Files.createDirectories(root.resolve("date=unknown"));
+
+        LocalConfigEntry entry = entry(root + "/date=%s", LocalRetentionType.PATH_DATE);
+        entry.setDateFormat("yyyy-MM-dd");
+        entry.setRecursive(true);
+        try (LocalDisposal disposal = new LocalDisposal(config(entry), false)) {
+            disposal.dispose(entry);
+            Assert.assertEquals(disposal.metrics.counter(DisposalMetrics.LOCAL, entry.getPath(),
+                    DisposalMetrics.Stage.DELETED).sum(), 1);
+        }
+
+        Assert.assertFalse(Files.exists(expired));
+        Assert.assertTrue(Files.exists(recent));
+        Assert.assertTrue(Files.exists(undated));
+    }
+
+    @Test
+    public void testDisposesOfExpiredModificationTimesWithoutRecursing() throws IOException {
+        Path root = Files.createTempDirectory("spool");
+        FileTime old = FileTime.from(Instant.now().minus(30, ChronoUnit.DAYS));
+        Path oldLog = Files.createFile(root.resolve("old.log"));
+        Files.setLastModifiedTime(oldLog, old);
+        Path newLog = Files.createFile(root.resolve("new.log"));
+        Path oldDir = Files.createDirectories(root.resolve("old"));
+        Files.createFile(oldDir.resolve("kept"));
+        Files.setLastModifiedTime(oldDir, old);
+
+        LocalConfigEntry entry = entry(root + "/*", LocalRetentionType.MODIFICATION_TIME);
+        try (LocalDisposal disposal = new LocalDisposal(config(entry), false)) {
+            disposal.dispose(entry);
+            Assert.assertEquals(disposal.metrics.counter(DisposalMetrics.LOCAL, entry.getPath(),
+                    DisposalMetrics.Stage.FAILED).sum(), 1);
+        }
+
+        Assert.assertFalse(Files.exists(oldLog));
+        Assert.assertTrue(Files.exists(newLog));
+        // Not recursive, so the expired directory that is not empty stays.
+        Assert.assertTrue(Files.exists(oldDir.resolve("kept")));
+    }
+
+    @Test
+    public void testDryRunPlanIsExecutedAfterCheckingEachPathAgain() throws IOException {
+        Path root = Files.createTempDirectory("spool");
+        FileTime old = FileTime.from(Instant.now().minus(30, ChronoUnit.DAYS));
+        Path stillOld = Files.createFile(root.resolve("a.log"));
+        Path rewritten = Files.createFile(root.resolve("b.log"));
+        Path gone = Files.createFile(root.resolve("c.log"));
+        for (Path path : new Path[] {stillOld, rewritten, gone}) {
+            Files.setLastModifiedTime(path, old);
+        }
+        Path file = Files.createTempDirectory("plan").resolve("plan.jsonl.gz");
+
+        LocalConfigEntry entry = entry(root + "/*.log", LocalRetentionType.MODIFICATION_TIME);
+        try (LocalDisposal dryRun = new LocalDisposal(config(entry), true);
+             PlanManifest manifest = PlanManifest.create(file)) {
+            dryRun.setManifest(manifest);
+            dryRun.dispose(entry);
+        }
+        List<String> lines = TestingUtils.readGzipLines(file);
+        Assert.assertEquals(lines.size(), 3);
+        Assert.assertTrue(lines.get(0).startsWith("{\"backend\":\"local\",\"entry\":\"" + entry.getPath() + "\""));
+        Assert.assertTrue(Files.exists(stillOld));
+
+        Files.setLastModifiedTime(rewritten, FileTime.from(Instant.now()));
+        Files.delete(gone);
+        try (LocalDisposal disposal = new LocalDisposal(config(entry), false)) {
+            disposal.execute(file);
+        }
+
+        Assert.assertFalse(Files.exists(stillOld));
+        Assert.assertTrue(Files.exists(rewritten));
+    }
+
+    @Test
+    public void testRejectsPathsThatAreNotAbsoluteAndNormalized() {
+        for (String path : new String[] {"spool/*", "/", "/var/spool/", "/var/../spool/*"}) {
+            try {
+                new LocalDisposal(config(entry(path, LocalRetentionType.MODIFICATION_TIME)), true);
+                Assert.fail("Path " + path + " should be rejected");
+            } catch (IllegalStateException e) {
+                Assert.assertTrue(e.getMessage().contains(path));
+            }
+        }
+        try {
+            new LocalDisposal(config(entry("/var/spool/*", LocalRetentionType.PATH_DATE)), true);
+            Assert.fail("A path date needs a date format and a location in the path");
+        } catch (IllegalStateException e) {
+            Assert.assertTrue(e.getMessage().contains(LocalRetentionType.PATH_DATE.name()));
+        }
+    }
+
+    private static LocalConfigEntry entry(String path, LocalRetentionType retentionType) {
+        LocalConfigEntry entry = new LocalConfigEntry();
+        entry.setPath(path);
+        entry.setRetentionType(retentionType);
+        entry.setRetentionDuration(14);
+        entry.setGranularity(ChronoUnit.DAYS);
+        return entry;
+    }
+
+    private static LocalConfigList config(LocalConfigEntry entry) {
+        LocalConfigList config = new LocalConfigList();
+        config.setEntries(Collections.singletonList(entry));
+        return config;
+    }
+}
@@ -0,0 +1,69 @@
+// Copyright Verizon Media
+// Licensed under the terms of the Apache 2.0 license. Please see LICENSE file in the project root for terms.
+
+package com.vz.disposal.runner;
+
+import org.apache.hive.hcatalog.api.HCatClient;
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class MetastoreClientPoolTest {
+
+    @Test
+    public void testClientsAreNeverSharedAndBounded() throws Exception {
+        int size = 3;
+        MetastoreClientPool pool = new MetastoreClientPool(() -> Mockito.mock(HCatClient.class), size);
+        Set<HCatClient> inUse = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+        AtomicInteger maxInUse = new AtomicInteger();
+        AtomicInteger shared = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(20);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 20; i++) {
+            executor.submit(() -> {
+                pool.withClient(client -> {
+                    if (!inUse.add(client)) {
+                        shared.incrementAndGet();
+                    }
+                    maxInUse.accumulateAndGet(inUse.size(), Math::max);
+                    Thread.sleep(5);
+                    inUse.remove(client);
+                    return null;
+                });
+                done.countDown();
+                return null;
+            });
+        }
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        Assert.assertEquals(shared.get(), 0);
+        Assert.assertTrue(maxInUse.get() <= size);
+        Assert.assertTrue(pool.getConnected() <= size);
+    }
+
+    @Test
+    public void testCloseClosesEveryClientOnce() throws Exception {
+        HCatClient client = Mockito.mock(HCatClient.class);
+        MetastoreClientPool pool = MetastoreClientPool.of(client);
+        pool.withClient(c -> c.listDatabaseNamesByPattern("*"));
+        pool.withClient(c -> c.listDatabaseNamesByPattern("*"));
+        Assert.assertEquals(pool.getConnected(), 1);
+
+        pool.close();
+        verify(client, times(1)).close();
+    }
+}
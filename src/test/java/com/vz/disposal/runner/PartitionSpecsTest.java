@@ -0,0 +1,82 @@
+// Copyright Verizon Media
+// Licensed under the terms of the Apache 2.0 license. Please see LICENSE file in the project root for terms.
+
+package com.vz.disposal.runner;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class PartitionSpecsTest {
+
+    private static Map<String, String> spec(String date, String region) {
+        Map<String, String> spec = new LinkedHashMap<>();
+        spec.put("dt", date);
+        spec.put("region", region);
+        return spec;
+    }
+
+    @Test
+    public void testReadsBackAsMaps() {
+        PartitionSpecs specs = new PartitionSpecs("dt");
+        List<Map<String, String>> expected = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Map<String, String> spec = spec("2019-05-" + (10 + i % 3), "region" + i % 7);
+            specs.add(spec, i);
+            expected.add(spec);
+        }
+
+        Assert.assertEquals(specs.size(), 100);
+        Assert.assertEquals(specs, expected);
+        Assert.assertEquals(specs.getEpochSecond(42), 42);
+        Assert.assertEquals(specs.getDate(1), "2019-05-11");
+        Assert.assertEquals(new ArrayList<>(specs.get(5).keySet()), new ArrayList<>(expected.get(5).keySet()));
+    }
+
+    @Test
+    public void testCountsPartitionsPerDate() {
+        PartitionSpecs specs = new PartitionSpecs("dt");
+        specs.add(spec("2019-05-10", "us"), 0);
+        specs.add(spec("2019-05-11", "us"), 0);
+        specs.add(spec("2019-05-10", "eu"), 0);
+
+        Map<String, Long> expected = new LinkedHashMap<>();
+        expected.put("2019-05-10", 2L);
+        expected.put("2019-05-11", 1L);
+        Assert.assertEquals(specs.countByDate(), expected);
+        Assert.assertTrue(new PartitionSpecs("dt").countByDate().isEmpty());
+
+        PartitionSpecs outOfOrder = new PartitionSpecs("dt");
+        outOfOrder.add(spec("2019-05-11", "us"), 1557532800L);
+        outOfOrder.add(spec("2019-05-10", "us"), 1557446400L);
+        Assert.assertEquals(new ArrayList<>(outOfOrder.countByDate().keySet()),
+                Arrays.asList("2019-05-10", "2019-05-11"));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testRejectsPartitionsWithOtherKeys() {
+        PartitionSpecs specs = new PartitionSpecs("dt");
+        specs.add(spec("2019-05-10", "us"), 0);
+        Map<String, String> other = new LinkedHashMap<>();
+        other.put("dt", "2019-05-10");
+        other.put("country", "us");
+        specs.add(other, 0);
+    }
+
+    @Test
+    public void testAddsPartitionsByName() {
+        PartitionSpecs specs = new PartitionSpecs("dt");
+        specs.addName("dt=2019-05-10/region=us", 0);
+        specs.addName("dt=2019-05-10/region=a%2Fb", 0);
+
+        Assert.assertEquals(specs, Arrays.asList(spec("2019-05-10", "us"), spec("2019-05-10", "a/b")));
+        Assert.assertEquals(PartitionSpecs.valueIn("dt=2019-05-10/region=a%2Fb", "region"), "a/b");
+        Assert.assertEquals(PartitionSpecs.valueIn("dt=2019-05-10/region=us", "dt"), "2019-05-10");
+        Assert.assertNull(PartitionSpecs.valueIn("dtx=2019-05-10/region=us", "dt"));
+    }
+}
@@ -0,0 +1,116 @@
+// Copyright Verizon Media
+// Licensed under the terms of the Apache 2.0 license. Please see LICENSE file in the project root for terms.
+
+package com.vz.disposal.runner;
+
+import com.vz.disposal.config.HiveConfigEntry;
+import org.apache.hadoop.hive.metastore.IMetaStoreClient;
+import org.apache.hadoop.hive.metastore.api.FieldSchema;
+import org.apache.hadoop.hive.metastore.api.Table;
+import org.apache.hive.hcatalog.api.HCatClient;
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TableDiscoveryTest {
+
+    @Test
+    public void testPatternsExpandIntoTablesWithTheirRetention() throws Exception {
+        IMetaStoreClient client = Mockito.mock(IMetaStoreClient.class);
+        when(client.getDatabases("ev*")).thenReturn(Arrays.asList("events_b", "events_a"));
+        when(client.getTables("events_a", "*")).thenReturn(Arrays.asList("clicks", "views", "dims"));
+        when(client.getTables("events_b", "*")).thenReturn(Collections.singletonList("clicks"));
+        when(client.getTableObjectsByName(eq("events_a"), any(List.class))).thenReturn(Arrays.asList(
+                table("events_a", "clicks", "dt", "30"),
+                table("events_a", "views", "dt", null),
+                table("events_a", "dims", "kind", "30")
+        ));
+        when(client.getTableObjectsByName(eq("events_b"), any(List.class))).thenReturn(Collections.singletonList(
+                table("events_b", "clicks", "dt", "7")
+        ));
+        MetastoreClientPool pool = MetastoreClientPool.of(Mockito.mock(HCatClient.class), client);
+
+        // The explicit entry takes events_b.clicks from the pattern.
+        HiveConfigEntry explicit = entry("events_b", "clicks");
+        explicit.setRetentionDuration(90);
+        HiveConfigEntry pattern = entry("ev*", "*");
+        pattern.setRetentionProperty("retention.days");
+
+        List<HiveConfigEntry> expanded = new TableDiscovery(entry -> pool).expand(Arrays.asList(pattern, explicit));
+
+        // events_a.views has no retention and events_a.dims no date partition column.
+        Assert.assertEquals(expanded.stream()
+                .map(entry -> entry.getDatabase() + "." + entry.getTable() + "=" + entry.getRetentionDuration())
+                .collect(Collectors.toList()), Arrays.asList("events_a.clicks=30", "events_b.clicks=90"));
+        Assert.assertSame(expanded.get(1), explicit);
+        Assert.assertEquals(expanded.get(0).getDateFormat().toPattern(), "yyyy-MM-dd");
+        Assert.assertNotSame(expanded.get(0).getDateFormat(), pattern.getDateFormat());
+        verify(client, times(1)).getTableObjectsByName(eq("events_a"), any(List.class));
+        verify(client, times(1)).getTableObjectsByName(eq("events_b"), any(List.class));
+        verify(client, never()).getTable(anyString(), anyString());
+    }
+
+    @Test
+    public void testExplicitEntriesAreValidatedInBatches() throws Exception {
+        IMetaStoreClient client = Mockito.mock(IMetaStoreClient.class);
+        Map<String, Table> tables = new HashMap<>();
+        List<HiveConfigEntry> entries = new ArrayList<>();
+        for (int i = 0; i < TableDiscovery.TABLE_BATCH * 2 + 1; i++) {
+            tables.put("t" + i, table("db", "t" + i, "dt", null));
+            entries.add(entry("db", "t" + i));
+        }
+        when(client.getTableObjectsByName(eq("db"), any(List.class))).thenAnswer(invocation ->
+                ((List<String>) invocation.getArguments()[1]).stream().map(tables::get).collect(Collectors.toList()));
+        MetastoreClientPool pool = MetastoreClientPool.of(Mockito.mock(HCatClient.class), client);
+
+        Assert.assertEquals(new TableDiscovery(entry -> pool).expand(entries), entries);
+        verify(client, times(3)).getTableObjectsByName(eq("db"), any(List.class));
+
+        tables.put("t1", table("db", "t1", "kind", null));
+        try {
+            new TableDiscovery(entry -> pool).expand(entries);
+            Assert.fail("A table without its date partition column should fail validation");
+        } catch (IllegalStateException e) {
+            Assert.assertTrue(e.getMessage().contains("db.t1"));
+        }
+    }
+
+    private static HiveConfigEntry entry(String database, String table) {
+        HiveConfigEntry entry = new HiveConfigEntry();
+        entry.setDatabase(database);
+        entry.setTable(table);
+        entry.setPartitionFilterKey("dt");
+        entry.setGranularity(ChronoUnit.DAYS);
+        entry.setDateFormat("yyyy-MM-dd");
+        return entry;
+    }
+
+    private static Table table(String database, String name, String partitionKey, String retentionDays) {
+        Table table = new Table();
+        table.setDbName(database);
+        table.setTableName(name);
+        table.setPartitionKeys(Collections.singletonList(new FieldSchema(partitionKey, "string", null)));
+        table.setParameters(new HashMap<>());
+        if (retentionDays != null) {
+            table.getParameters().put("retention.days", retentionDays);
+        }
+        return table;
+    }
+}
@@ -0,0 +1,67 @@
+// Copyright Verizon Media
+// Licensed under the terms of the Apache 2.0 license. Please see LICENSE file in the project root for terms.
+
+package com.vz.disposal.state;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+
+public class DeletionJournalTest {
+    private static final String ENTRY = "hdfs://namenode:8020/data/date=%s";
+
+    @Test
+    public void testRecoversWhatAnInterruptedRunLeftBehind() throws IOException {
+        Path stateDir = Files.createTempDirectory("state");
+        DeletionJournal journal = DeletionJournal.open(stateDir, "hdfs_config.yaml");
+        journal.plan(ENTRY, "/data/date=2019-05-13");
+        journal.plan(ENTRY, "/data/date=2019-05-14 with space");
+        journal.plan(ENTRY, "/data/date=2019-05-15");
+        journal.listed(ENTRY);
+        journal.done(ENTRY, "/data/date=2019-05-13");
+        journal.plan("db.unlisted", "date=2019-05-13");
+        journal.entryDone("db.through");
+        journal.close();
+
+        DeletionJournal resumed = DeletionJournal.open(stateDir, "hdfs_config.yaml");
+        DeletionJournal.Recovered entry = resumed.recovered(ENTRY);
+        Assert.assertTrue(entry.isListed());
+        Assert.assertFalse(entry.isDone());
+        Assert.assertEquals(entry.getPending(),
+                new LinkedHashSet<>(Arrays.asList("/data/date=2019-05-14 with space", "/data/date=2019-05-15")));
+        Assert.assertFalse(resumed.recovered("db.unlisted").isListed());
+        Assert.assertTrue(resumed.recovered("db.through").isDone());
+        Assert.assertNull(resumed.recovered("db.untouched"));
+
+        resumed.complete();
+        Assert.assertFalse(Files.exists(stateDir.resolve("hdfs_config.yaml.journal")));
+    }
+
+    @Test
+    public void testIgnoresRecordCutShort() throws IOException {
+        Path stateDir = Files.createTempDirectory("state");
+        DeletionJournal journal = DeletionJournal.open(stateDir, "config.yaml");
+        journal.listed(ENTRY);
+        journal.close();
+        // A crash in the middle of a record, which may name an ancestor of the planned path.
+        Files.write(stateDir.resolve("config.yaml.journal"), "PLAN db.table %2Fdata".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+
+        DeletionJournal resumed = DeletionJournal.open(stateDir, "config.yaml");
+        Assert.assertTrue(resumed.recovered(ENTRY).getPending().isEmpty());
+        Assert.assertEquals(resumed.recovered("db.table"), null);
+        resumed.plan(ENTRY, "/data/date=2019-05-15");
+        resumed.close();
+
+        Assert.assertEquals(DeletionJournal.open(stateDir, "config.yaml").recovered(ENTRY).getPending(),
+                Collections.singleton("/data/date=2019-05-15"));
+    }
+}
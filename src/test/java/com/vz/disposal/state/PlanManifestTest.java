@@ -0,0 +1,65 @@
+// Copyright Verizon Media
+// Licensed under the terms of the Apache 2.0 license. Please see LICENSE file in the project root for terms.
+
+package com.vz.disposal.state;
+
+import com.vz.disposal.utils.CompiledDatePattern;
+import com.vz.disposal.utils.TestingUtils;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class PlanManifestTest {
+
+    @Test
+    public void testWritesOneCompressedLinePerTarget() throws IOException {
+        Path file = Files.createTempDirectory("plan").resolve("nested").resolve("plan.jsonl.gz");
+        PlanManifest manifest = PlanManifest.create(file);
+        manifest.add("hdfs", "/data/date=%s", "/data/date=2019-04-23",
+                Instant.parse("2019-04-23T00:00:00Z").getEpochSecond(), "PATH_DATE before 2019-05-18T00:00:00Z");
+        manifest.add("hive", "db.events", "dt=2019-04-23/region=us \"quoted\"", CompiledDatePattern.NO_MATCH,
+                "partition date");
+        Assert.assertEquals(manifest.getCount(), 2);
+        manifest.close();
+
+        Assert.assertTrue(manifest.isComplete());
+        Assert.assertEquals(TestingUtils.readGzipLines(file), Arrays.asList(
+                "{\"backend\":\"hdfs\",\"entry\":\"/data/date=%s\",\"target\":\"/data/date=2019-04-23\"," +
+                        "\"time\":\"2019-04-23T00:00:00Z\",\"reason\":\"PATH_DATE before 2019-05-18T00:00:00Z\"}",
+                "{\"backend\":\"hive\",\"entry\":\"db.events\",\"target\":\"dt=2019-04-23/region=us \\\"quoted\\\"\"," +
+                        "\"reason\":\"partition date\"}"
+        ));
+
+        // Targets added after the manifest is closed are lost, and the manifest says so.
+        manifest.add("hdfs", "/data/date=%s", "/data/date=2019-04-24", CompiledDatePattern.NO_MATCH, "late");
+        Assert.assertFalse(manifest.isComplete());
+    }
+
+    @Test
+    public void testReadsBackEveryTargetInOrder() throws IOException {
+        Path file = Files.createTempDirectory("plan").resolve("plan.jsonl.gz");
+        try (PlanManifest manifest = PlanManifest.create(file)) {
+            manifest.add("hdfs", "/data/date=%s", "/data/date=2019-04-23",
+                    Instant.parse("2019-04-23T00:00:00Z").getEpochSecond(), "PATH_DATE");
+            manifest.add("hive", "db.events", "dt=2019-04-23", CompiledDatePattern.NO_MATCH, "partition date");
+        }
+
+        List<PlanManifest.Item> items = new ArrayList<>();
+        PlanManifest.read(file, items::add);
+
+        Assert.assertEquals(items.size(), 2);
+        Assert.assertEquals(items.get(0).getBackend(), "hdfs");
+        Assert.assertEquals(items.get(0).getEntry(), "/data/date=%s");
+        Assert.assertEquals(items.get(0).getTarget(), "/data/date=2019-04-23");
+        Assert.assertEquals(items.get(0).getTime(), "2019-04-23T00:00:00Z");
+        Assert.assertEquals(items.get(1).getTarget(), "dt=2019-04-23");
+        Assert.assertNull(items.get(1).getTime());
+    }
+}
@@ -0,0 +1,42 @@
+// Copyright Verizon Media
+// Licensed under the terms of the Apache 2.0 license. Please see LICENSE file in the project root for terms.
+
+package com.vz.disposal.state;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+
+public class WatermarkStoreTest {
+    private static final String KEY = "hdfs://namenode:8020/data/date=%s";
+
+    @Test
+    public void testWatermarksSurviveReopening() throws IOException {
+        Path stateDir = Files.createTempDirectory("state").resolve("nested");
+        WatermarkStore store = WatermarkStore.open(stateDir, "hdfs_config.yaml");
+        Assert.assertNull(store.get(KEY));
+
+        store.advance(KEY, Instant.parse("2019-05-15T00:00:00Z"));
+        store.save();
+
+        WatermarkStore reopened = WatermarkStore.open(stateDir, "hdfs_config.yaml");
+        Assert.assertEquals(reopened.get(KEY), Instant.parse("2019-05-15T00:00:00Z"));
+        Assert.assertNull(WatermarkStore.open(stateDir, "hive_config.yaml").get(KEY));
+    }
+
+    @Test
+    public void testWatermarksOnlyMoveForward() throws IOException {
+        WatermarkStore store = WatermarkStore.open(Files.createTempDirectory("state"), "config.yaml");
+
+        store.advance(KEY, Instant.parse("2019-05-15T00:00:00Z"));
+        store.advance(KEY, Instant.parse("2019-05-01T00:00:00Z"));
+        Assert.assertEquals(store.get(KEY), Instant.parse("2019-05-15T00:00:00Z"));
+
+        store.advance(KEY, Instant.parse("2019-05-16T00:00:00Z"));
+        Assert.assertEquals(store.get(KEY), Instant.parse("2019-05-16T00:00:00Z"));
+    }
+}
@@ -0,0 +1,59 @@
+// Copyright Verizon Media
+// Licensed under the terms of the Apache 2.0 license. Please see LICENSE file in the project root for terms.
+
+package com.vz.disposal.utils;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.text.ParsePosition;
+import java.util.Date;
+
+public class CompiledDatePatternTest {
+
+    @DataProvider(name = "dates")
+    public Object[][] dates() {
+        return new Object[][] {
+                {"yyyyMMdd", "20190423", true},
+                {"yyyyMMdd", "20160229", true},
+                {"yyyyMMddHH", "2019042317", true},
+                {"yyyy-MM-dd", "2019-04-23", true},
+                {"yyyy/MM/dd/HH", "1999/12/31/23", true},
+                {"yy-MM-dd", "19-04-23", false},
+                {"yyyy-MMM-dd", "2019-Apr-23", false},
+                {"yyyyMMdd", "2017-05-", true},
+                {"yyyyMMdd", "20190231", true},
+                {"yyyy-MM-dd", "2019_04_23", true},
+                {"yyyy-MM-dd", "oops.txt!!", true},
+        };
+    }
+
+    @Test(dataProvider = "dates")
+    public void testParsesLikeSimpleDateFormat(String pattern, String date, boolean numeric) {
+        CompiledDatePattern compiled = CompiledDatePattern.compile(pattern);
+        Date expected = TestingUtils.getFormatter(pattern).parse(date, new ParsePosition(0));
+
+        Assert.assertEquals(compiled.isNumeric(), numeric);
+        Assert.assertEquals(
+                compiled.parseEpochSecond("/prefix/" + date, "/prefix/".length()),
+                expected == null ? CompiledDatePattern.NO_MATCH : expected.toInstant().getEpochSecond());
+    }
+
+    @Test
+    public void testRejectsTextShorterThanPattern() {
+        CompiledDatePattern compiled = CompiledDatePattern.compile("yyyyMMdd");
+
+        Assert.assertEquals(compiled.parseEpochSecond("/data/2019", 6), CompiledDatePattern.NO_MATCH);
+    }
+
+    @Test
+    public void testChronologicalPatterns() {
+        Assert.assertTrue(CompiledDatePattern.isChronological("yyyy-MM-dd"));
+        Assert.assertTrue(CompiledDatePattern.isChronological("yyyyMMddHH"));
+        Assert.assertTrue(CompiledDatePattern.isChronological("yyyy"));
+        Assert.assertFalse(CompiledDatePattern.isChronological("dd-MM-yyyy"));
+        Assert.assertFalse(CompiledDatePattern.isChronological("yyyy-dd"));
+        Assert.assertFalse(CompiledDatePattern.isChronological("yyyy-M-d"));
+    }
+}
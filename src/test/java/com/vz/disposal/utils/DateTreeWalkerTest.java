@@ -0,0 +1,102 @@
+// Copyright Verizon Media
+// Licensed under the terms of the Apache 2.0 license. Please see LICENSE file in the project root for terms.
+
+package com.vz.disposal.utils;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DateTreeWalkerTest {
+    private static final Instant BEGINNING_OF_RETENTION = Instant.parse("2019-05-15T00:00:00Z");
+
+    private FileSystem mockYearMonthDayLayout() throws IOException {
+        FileSystem fs = Mockito.mock(FileSystem.class);
+        when(fs.getFileStatus(new Path("/data/"))).thenReturn(TestingUtils.directory("/data"));
+        TestingUtils.mockListing(fs, new Path("/data"),
+                TestingUtils.directory("/data/2018"),
+                TestingUtils.directory("/data/2019"),
+                TestingUtils.directory("/data/2020"),
+                TestingUtils.directory("/data/_tmp"));
+        TestingUtils.mockListing(fs, new Path("/data/2018"),
+                TestingUtils.directory("/data/2018/12"));
+        TestingUtils.mockListing(fs, new Path("/data/2018/12"),
+                TestingUtils.directory("/data/2018/12/31"));
+        TestingUtils.mockListing(fs, new Path("/data/2019"),
+                TestingUtils.directory("/data/2019/04"),
+                TestingUtils.directory("/data/2019/05"),
+                TestingUtils.directory("/data/2019/06"));
+        TestingUtils.mockListing(fs, new Path("/data/2019/04"),
+                TestingUtils.directory("/data/2019/04/30"));
+        TestingUtils.mockListing(fs, new Path("/data/2019/05"),
+                TestingUtils.directory("/data/2019/05/14"),
+                TestingUtils.directory("/data/2019/05/15"),
+                TestingUtils.directory("/data/2019/05/16"));
+        return fs;
+    }
+
+    @Test
+    public void testCollapsesExpiredAncestorsAndSkipsRetainedOnes() throws IOException {
+        FileSystem fs = mockYearMonthDayLayout();
+
+        List<Path> expired = new ArrayList<>();
+        new DateTreeWalker(fs, "/data/%s", "%s", "yyyy/MM/dd", BEGINNING_OF_RETENTION, true)
+                .walk(status -> expired.add(status.getPath()));
+
+        Assert.assertEquals(expired, Arrays.asList(
+                new Path("/data/2018"),
+                new Path("/data/2019/04"),
+                new Path("/data/2019/05/14")));
+        verify(fs, never()).listStatusIterator(new Path("/data/2018"));
+        verify(fs, never()).listStatusIterator(new Path("/data/2019/06"));
+        verify(fs, never()).listStatusIterator(new Path("/data/2020"));
+    }
+
+    @Test
+    public void testDescendsToLeavesWhenNotCollapsing() throws IOException {
+        FileSystem fs = mockYearMonthDayLayout();
+
+        List<Path> expired = new ArrayList<>();
+        new DateTreeWalker(fs, "/data/%s", "%s", "yyyy/MM/dd", BEGINNING_OF_RETENTION, false)
+                .walk(status -> expired.add(status.getPath()));
+
+        Assert.assertEquals(expired, Arrays.asList(
+                new Path("/data/2018/12/31"),
+                new Path("/data/2019/04/30"),
+                new Path("/data/2019/05/14")));
+    }
+
+    @Test
+    public void testMatchesLiteralsAroundTheDateAndTrailingGlob() throws IOException {
+        FileSystem fs = Mockito.mock(FileSystem.class);
+        when(fs.getFileStatus(new Path("/data/"))).thenReturn(TestingUtils.directory("/data"));
+        TestingUtils.mockListing(fs, new Path("/data"),
+                TestingUtils.directory("/data/dt=20190514_v1"),
+                TestingUtils.directory("/data/dt=20190514_v2"),
+                TestingUtils.directory("/data/dt=20190516_v1"));
+        FileStatus[] parts = {
+                TestingUtils.file("/data/dt=20190514_v1/part-0"),
+                TestingUtils.file("/data/dt=20190514_v1/_SUCCESS")
+        };
+        TestingUtils.mockListing(fs, new Path("/data/dt=20190514_v1"), parts);
+
+        List<Path> expired = new ArrayList<>();
+        new DateTreeWalker(fs, "/data/dt=%s_v1/part-*", "%s", "yyyyMMdd", BEGINNING_OF_RETENTION, true)
+                .walk(status -> expired.add(status.getPath()));
+
+        Assert.assertEquals(expired, Arrays.asList(new Path("/data/dt=20190514_v1/part-0")));
+    }
+}
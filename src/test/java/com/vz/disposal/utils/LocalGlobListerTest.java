@@ -0,0 +1,64 @@
+// Copyright Verizon Media
+// Licensed under the terms of the Apache 2.0 license. Please see LICENSE file in the project root for terms.
+
+package com.vz.disposal.utils;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class LocalGlobListerTest {
+
+    @Test
+    public void testListsEveryMatchWithItsAttributes() throws IOException {
+        Path root = Files.createTempDirectory("spool");
+        for (String host : new String[] {"host1", "host2"}) {
+            Files.createDirectories(root.resolve(host).resolve("date=2019-04-23"));
+            Files.createDirectories(root.resolve(host).resolve("date=2019-04-24"));
+            Files.createFile(root.resolve(host).resolve("README"));
+        }
+        Files.createDirectories(root.resolve("host3"));
+        Files.createFile(root.resolve("host1").resolve("date=2019-04-23").resolve("part-0"));
+
+        Map<Path, BasicFileAttributes> found = new ConcurrentHashMap<>();
+        long scanned;
+        try (LocalGlobLister lister = new LocalGlobLister(4)) {
+            scanned = lister.list(root.resolve("*").resolve("date=*"), found::put);
+        }
+
+        Assert.assertEquals(new TreeSet<>(found.keySet()), new TreeSet<>(Arrays.asList(
+                root.resolve("host1/date=2019-04-23"),
+                root.resolve("host1/date=2019-04-24"),
+                root.resolve("host2/date=2019-04-23"),
+                root.resolve("host2/date=2019-04-24"))));
+        Assert.assertTrue(found.values().stream().allMatch(BasicFileAttributes::isDirectory));
+        // The three hosts, then what is under the first two; the directories of the root are looked up directly.
+        Assert.assertEquals(scanned, 3 + 6);
+    }
+
+    @Test
+    public void testLiteralNamesAreLookedUpAndMissingOnesMatchNothing() throws IOException {
+        Path root = Files.createTempDirectory("spool");
+        Files.createDirectories(root.resolve("logs"));
+        Path log = Files.createFile(root.resolve("logs").resolve("app.log"));
+
+        Map<Path, BasicFileAttributes> found = new ConcurrentHashMap<>();
+        try (LocalGlobLister lister = new LocalGlobLister(2)) {
+            lister.list(log, found::put);
+            lister.list(root.resolve("missing").resolve("*"), found::put);
+            lister.list(root.resolve("logs").resolve("app.log").resolve("*"), found::put);
+        }
+
+        Assert.assertEquals(found.keySet(), Collections.singleton(log));
+        Assert.assertTrue(found.get(log).isRegularFile());
+    }
+}
@@ -0,0 +1,77 @@
+// Copyright Verizon Media
+// Licensed under the terms of the Apache 2.0 license. Please see LICENSE file in the project root for terms.
+
+package com.vz.disposal.utils;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class StreamingGlobListerTest {
+
+    @Test
+    public void testExpandsWildcardsLevelByLevel() throws IOException {
+        FileSystem fs = Mockito.mock(FileSystem.class);
+        TestingUtils.mockListing(fs, new Path("hdfs://nn:8020/data"),
+                TestingUtils.directory("hdfs://nn:8020/data/date=2019-01-01"),
+                TestingUtils.directory("hdfs://nn:8020/data/date=2019-01-02"),
+                TestingUtils.file("hdfs://nn:8020/data/_SUCCESS"));
+        TestingUtils.mockListing(fs, new Path("hdfs://nn:8020/data/date=2019-01-01"),
+                TestingUtils.directory("hdfs://nn:8020/data/date=2019-01-01/hour=00"),
+                TestingUtils.directory("hdfs://nn:8020/data/date=2019-01-01/hour=01"));
+        TestingUtils.mockListing(fs, new Path("hdfs://nn:8020/data/date=2019-01-02"),
+                TestingUtils.directory("hdfs://nn:8020/data/date=2019-01-02/hour=00"));
+
+        List<Path> matched = new ArrayList<>();
+        new StreamingGlobLister(fs).list(new Path("hdfs://nn:8020/data/date=*/hour=*"),
+                status -> matched.add(status.getPath()));
+
+        Assert.assertEquals(matched, Arrays.asList(
+                new Path("hdfs://nn:8020/data/date=2019-01-01/hour=00"),
+                new Path("hdfs://nn:8020/data/date=2019-01-01/hour=01"),
+                new Path("hdfs://nn:8020/data/date=2019-01-02/hour=00")));
+    }
+
+    @Test
+    public void testKeepsPathsUnqualifiedLikeTheGlob() throws IOException {
+        FileSystem fs = Mockito.mock(FileSystem.class);
+        TestingUtils.mockListing(fs, new Path("/data"),
+                TestingUtils.directory("hdfs://nn:8020/data/20190101"));
+
+        List<String> matched = new ArrayList<>();
+        new StreamingGlobLister(fs).list(new Path("/data/*"), status -> matched.add(status.getPath().toString()));
+
+        Assert.assertEquals(matched, Arrays.asList("/data/20190101"));
+    }
+
+    @Test
+    public void testLiteralComponentsAreNotListed() throws IOException {
+        FileSystem fs = Mockito.mock(FileSystem.class);
+        FileStatus leaf = TestingUtils.directory("/data/fixed");
+        when(fs.getFileStatus(new Path("/data/fixed"))).thenReturn(leaf);
+        when(fs.getFileStatus(new Path("/data/missing"))).thenThrow(new FileNotFoundException());
+
+        List<FileStatus> matched = new ArrayList<>();
+        StreamingGlobLister lister = new StreamingGlobLister(fs);
+        lister.list(new Path("/data/fixed"), matched::add);
+        lister.list(new Path("/data/missing"), matched::add);
+
+        Assert.assertEquals(matched.stream().map(FileStatus::getPath).collect(Collectors.toList()),
+                Arrays.asList(new Path("/data/fixed")));
+        verify(fs, never()).listStatusIterator(Mockito.any(Path.class));
+    }
+}
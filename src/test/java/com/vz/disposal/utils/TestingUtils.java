@@ -3,9 +3,26 @@
 
 package com.vz.disposal.utils;
 
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.text.SimpleDateFormat;
 import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
 import java.util.TimeZone;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+import static org.mockito.Mockito.when;
 
 public class TestingUtils {
     public static SimpleDateFormat getFormatter(String pattern) {
@@ -13,4 +30,45 @@ public class TestingUtils {
         sdf.setTimeZone(TimeZone.getTimeZone(ZoneId.of("UTC")));
         return sdf;
     }
+
+    public static FileStatus directory(String path) {
+        return new FileStatus(0, true, 0, 0, 0, new Path(path));
+    }
+
+    public static FileStatus file(String path) {
+        return new FileStatus(1, false, 3, 128, 0, new Path(path));
+    }
+
+    /**
+     * Stubs both listing calls of a mocked file system so that listing {@code dir} returns {@code children}.
+     */
+    public static void mockListing(FileSystem fs, Path dir, FileStatus... children) throws IOException {
+        when(fs.listStatus(dir)).thenReturn(children);
+        when(fs.listStatusIterator(dir)).thenAnswer(invocation -> remoteIterator(children));
+    }
+
+    public static RemoteIterator<FileStatus> remoteIterator(FileStatus... statuses) {
+        Iterator<FileStatus> iterator = Arrays.asList(statuses).iterator();
+        return new RemoteIterator<FileStatus>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public FileStatus next() {
+                return iterator.next();
+            }
+        };
+    }
+
+    /**
+     * @return the lines of gzip-compressed text {@code file}
+     */
+    public static List<String> readGzipLines(java.nio.file.Path file) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+            return reader.lines().collect(Collectors.toList());
+        }
+    }
 }
@@ -51,4 +51,29 @@ public class UtilsTest {
 
         Assert.assertEquals(actual, expected);
     }
+
+    @DataProvider(name = "rounding")
+    public Object[][] rounding() {
+        return new Object[][]{
+                {"2019-05-14T10:15:30Z", ChronoUnit.HOURS , "2019-05-14T10:00:00Z", "2019-05-14T11:00:00Z"},
+                {"2019-05-14T10:15:30Z", ChronoUnit.DAYS  , "2019-05-14T00:00:00Z", "2019-05-15T00:00:00Z"},
+                {"2019-05-14T10:15:30Z", ChronoUnit.MONTHS, "2019-05-01T00:00:00Z", "2019-06-01T00:00:00Z"},
+                {"2019-05-14T10:15:30Z", ChronoUnit.YEARS , "2019-01-01T00:00:00Z", "2020-01-01T00:00:00Z"},
+                {"2019-05-01T00:00:00Z", ChronoUnit.MONTHS, "2019-05-01T00:00:00Z", "2019-05-01T00:00:00Z"},
+        };
+    }
+
+    @Test(dataProvider = "rounding")
+    public void testFloorAndCeil(String instant, ChronoUnit unit, String floor, String ceil) {
+        Assert.assertEquals(Utils.floorTo(Instant.parse(instant), unit), Instant.parse(floor));
+        Assert.assertEquals(Utils.ceilTo(Instant.parse(instant), unit), Instant.parse(ceil));
+    }
+
+    @Test
+    public void testStateNamesTellApartConfigsOfTheSameName() {
+        String name = Utils.stateName("/etc/disposal/a/hdfs_config.yaml");
+        Assert.assertTrue(name.startsWith("hdfs_config.yaml-"), name);
+        Assert.assertNotEquals(Utils.stateName("/etc/disposal/b/hdfs_config.yaml"), name);
+        Assert.assertEquals(Utils.stateName("/etc/disposal/a/../a/hdfs_config.yaml"), name);
+    }
 }